@@ -1,8 +1,14 @@
 package domain.comment;
 
+import java.io.IOException;
 import java.util.Date;
 
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import domain.user.UserDictionary;
 import utils.ToJSON;
+
 // simple pojo
 public class Comment {
   public Long timestamp;
@@ -17,11 +23,17 @@ public class Comment {
     instance.text = text; // readonly
     instance.timestamp = new Date().getTime(); // readonly
     instance.postUuid = postUuid; // readonly
-    instance.author = author; // readonly
+    instance.author = UserDictionary.intern(author); // readonly
 
     return instance;
   }
 
+  // the shared instance of the username (see UserDictionary)
+  @JsonSetter("author")
+  private void setAuthor(String author) {
+    this.author = UserDictionary.intern(author);
+  }
+
   public String toJSON() {
 
     return String.join("",
@@ -32,4 +44,14 @@ public class Comment {
         "  \"author\":" + "\"" + this.author + "\"",
         "}");
   }
+
+  // stream the same json of toJSON
+  public void writeJSON(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    gen.writeStringField("text", this.text);
+    gen.writeNumberField("timestamp", this.timestamp);
+    gen.writeStringField("postUuid", this.postUuid);
+    gen.writeStringField("author", this.author);
+    gen.writeEndObject();
+  }
 }
@@ -1,5 +1,11 @@
 package domain.post;
 
+import java.io.IOException;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import domain.user.UserDictionary;
 import utils.ToJSON;
 
 // simple record { author, postUuid }
@@ -12,10 +18,16 @@ public class AuthorPostUuid {
   }
 
   private AuthorPostUuid(String author, String postUuid) {
-    this.author = author;
+    this.author = UserDictionary.intern(author);
     this.postUuid = postUuid;
   }
 
+  // the shared instance of the username (see UserDictionary)
+  @JsonSetter("author")
+  private void setAuthor(String author) {
+    this.author = UserDictionary.intern(author);
+  }
+
   public static AuthorPostUuid of(String author, String postUuid) {
     return new AuthorPostUuid(author != null ? author : "", postUuid != null ? postUuid : "");
   }
@@ -23,4 +35,12 @@ public class AuthorPostUuid {
   public String ToJSON() {
     return "{\"author\":" + ToJSON.toJSON(author) + ",\"postUuid\":" + ToJSON.toJSON(postUuid) + "}";
   }
+
+  // stream the same json of ToJSON
+  public void writeJSON(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    gen.writeStringField("author", this.author);
+    gen.writeStringField("postUuid", this.postUuid);
+    gen.writeEndObject();
+  }
 }
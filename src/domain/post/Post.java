@@ -1,5 +1,6 @@
 package domain.post;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -10,9 +11,14 @@ import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import domain.comment.Comment;
 import domain.reaction.Reaction;
+import domain.reaction.ReactionStore;
+import domain.user.UserDictionary;
+import utils.AppendOnlyList;
 import utils.ToJSON;
 
 // ignore 'upvotes' and 'downvotes' that are not actual Post's fields
@@ -25,8 +31,8 @@ public class Post {
   public String author;
   public Boolean justDeleted;
   public List<AuthorPostUuid> rewins; // List<{author, postUuid}>
-  public List<Comment> comments;
-  public List<Reaction> reactions;
+  public AppendOnlyList<Comment> comments;
+  public ReactionStore reactions;
   public Long walletScannerIteration; // current iteration of the wallet thread
 
   // to store unknown properties collected during
@@ -38,6 +44,12 @@ public class Post {
     unknowns.put(key, value);
   }
 
+  // the shared instance of the username (see UserDictionary)
+  @JsonSetter("author")
+  private void setAuthor(String author) {
+    this.author = UserDictionary.intern(author);
+  }
+
   public static Post of(String title, String content, String author) {
 
     var instance = new Post();
@@ -46,11 +58,11 @@ public class Post {
     instance.timestamp = new Date().getTime(); // readonly
     instance.title = title; // readonly
     instance.content = content; // readonly
-    instance.author = author; // readonly
+    instance.author = UserDictionary.intern(author); // readonly
     instance.justDeleted = false; // needs manual synchronization
     instance.rewins = new LinkedList<AuthorPostUuid>(); // needs manual synchronization
-    instance.comments = new LinkedList<Comment>(); // needs manual synchronization
-    instance.reactions = new LinkedList<Reaction>(); // needs manual synchronization
+    instance.comments = AppendOnlyList.of(); // appends are thread safe, reads don't need locks
+    instance.reactions = ReactionStore.of(); // appends are thread safe, reads don't need locks
     instance.walletScannerIteration = 1L; // needs manual synchronization (wallet thread and persistence thread)
 
     return instance;
@@ -58,56 +70,32 @@ public class Post {
 
   // get positive reactions
   public Long getUpvotes() {
-    // by returning a clone, we can safely perform
-    // further actions on the list without the need
-    // of the lock, although "the read may not get the latest write"
-    // (eventual consistency)
-    synchronized (this.reactions) {
-      return this.reactions
-          .stream()
-          .filter(r -> r.isUpvote)
-          .count();
-    }
+    return this.reactions.getUpvotes();
   }
 
   // get negative reactions
   public Long getDownvotes() {
-    // by returning a clone, we can safely perform
-    // further actions on the list without the need
-    // of the lock, although "the read may not get the latest write"
-    // (eventual consistency)
-    synchronized (this.reactions) {
-      return this.reactions
-          .stream()
-          .filter(r -> !r.isUpvote)
-          .count();
-    }
+    return this.reactions.getDownvotes();
   }
 
   // get all the reactions
   public List<Reaction> getReactions() {
-    // by returning a clone, we can safely perform
-    // further actions on the list without the need
-    // of the lock, although "the read may not get the latest write"
+    // a copy of the reactions added so far: the store can be
+    // read without locks, although "the read may not get the latest write"
     // (eventual consistency)
-    synchronized (reactions) {
-      return this.reactions
-          .stream()
-          .collect(Collectors.toList());
-    }
+    return this.reactions
+        .stream()
+        .collect(Collectors.toList());
   }
 
   // get all the comments
   public List<Comment> getComments() {
-    // by returning a clone, we can safely perform
-    // further actions on the list without the need
-    // of the lock, although "the read may not get the latest write"
+    // a copy of the comments added so far: the list can be
+    // read without locks, although "the read may not get the latest write"
     // (eventual consistency)
-    synchronized (comments) {
-      return this.comments
-      .stream()
-      .collect(Collectors.toList());
-    }
+    return this.comments
+        .stream()
+        .collect(Collectors.toList());
   }
 
   public synchronized Long getWalletScannerIteration() {
@@ -121,21 +109,17 @@ public class Post {
   public String toJSON() {
 
     var commentsLine = "\"comments\":[";
-    synchronized (this.comments) {
-      commentsLine += this.comments
-          .stream()
-          .map(c -> c.toJSON())
-          .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
-    }
+    commentsLine += this.comments
+        .stream()
+        .map(c -> c.toJSON())
+        .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
     commentsLine += "]";
 
     var reactionsLine = "\"reactions\":[";
-    synchronized (this.reactions) {
-      reactionsLine += this.reactions
-          .stream()
-          .map(r -> r.toJSON())
-          .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
-    }
+    reactionsLine += this.reactions
+        .stream()
+        .map(r -> r.toJSON())
+        .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
     reactionsLine += "]";
 
     var rewinsLine = "\"rewins\":[";
@@ -163,4 +147,40 @@ public class Post {
         reactionsLine,
         "}");
   }
+
+  // stream the same json of toJSON, holding the lock of the rewins only
+  public void writeJSON(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    gen.writeStringField("uuid", this.uuid);
+    gen.writeNumberField("timestamp", this.timestamp);
+    gen.writeStringField("title", this.title);
+    gen.writeStringField("content", this.content);
+    gen.writeStringField("author", this.author);
+    gen.writeBooleanField("justDeleted", this.justDeleted);
+    gen.writeStringField("walletScannerIteration", this.getWalletScannerIteration() + "");
+    gen.writeStringField("upvotes", this.getUpvotes() + "");
+    gen.writeStringField("downvotes", this.getDownvotes() + "");
+
+    gen.writeArrayFieldStart("rewins");
+    synchronized (this.rewins) {
+      for (var rewin : this.rewins) {
+        rewin.writeJSON(gen);
+      }
+    }
+    gen.writeEndArray();
+
+    gen.writeArrayFieldStart("comments");
+    for (var comment : this.comments) {
+      comment.writeJSON(gen);
+    }
+    gen.writeEndArray();
+
+    gen.writeArrayFieldStart("reactions");
+    for (var reaction : this.reactions) {
+      reaction.writeJSON(gen);
+    }
+    gen.writeEndArray();
+
+    gen.writeEndObject();
+  }
 }
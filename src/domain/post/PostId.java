@@ -0,0 +1,66 @@
+package domain.post;
+
+import java.util.UUID;
+
+// the uuid of a post as the two longs of its canonical form
+// (xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx, lowercase): the strings are parsed
+// without allocating, they are kept only in the posts and on the wire
+public class PostId {
+
+  private PostId() {
+  }
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    } else if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    } else {
+      return -1;
+    }
+  }
+
+  private static Boolean isDash(int i) {
+    return i == 8 || i == 13 || i == 18 || i == 23;
+  }
+
+  // the string is the canonical form of a uuid
+  public static Boolean isCanonical(String uuid) {
+    if (uuid == null || uuid.length() != 36) {
+      return false;
+    }
+    for (var i = 0; i < 36; i++) {
+      var c = uuid.charAt(i);
+      if (isDash(i) ? c != '-' : hexValue(c) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // the 16 hex digits of a canonical uuid starting at the index from
+  private static long bits(String uuid, int from) {
+    var toRet = 0L;
+    var digits = 0;
+    for (var i = from; digits < 16; i++) {
+      if (!isDash(i)) {
+        toRet = (toRet << 4) | hexValue(uuid.charAt(i));
+        digits++;
+      }
+    }
+    return toRet;
+  }
+
+  // the bits of a canonical uuid (see isCanonical)
+  public static long mostSignificantBits(String uuid) {
+    return bits(uuid, 0);
+  }
+
+  public static long leastSignificantBits(String uuid) {
+    return bits(uuid, 19);
+  }
+
+  public static String toString(long mostSignificantBits, long leastSignificantBits) {
+    return new UUID(mostSignificantBits, leastSignificantBits).toString();
+  }
+}
@@ -0,0 +1,279 @@
+package domain.post;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// a map keyed by the uuids of the posts: the canonical uuids are stored as
+// their two longs in an open addressing table (linear probing), so a lookup
+// doesn't allocate nor hash a string. The writes are serialized, while the
+// readers don't need any lock. The keys that are not canonical uuids
+// (or whose halves are zero) are kept in a plain concurrent map
+public class PostIndex<V> extends AbstractMap<String, V> implements ConcurrentMap<String, V> {
+
+  private static final int MIN_CAPACITY = 4;
+
+  // a slot is empty if its msb is zero, removed if its value is null
+  private static class Table {
+    final long[] msb;
+    final long[] lsb;
+    // the values are published after the keys of their slot
+    final AtomicReferenceArray<Object> values;
+
+    Table(int capacity) {
+      this.msb = new long[capacity];
+      this.lsb = new long[capacity];
+      this.values = new AtomicReferenceArray<>(capacity);
+    }
+  }
+
+  private static final Table EMPTY = new Table(0);
+
+  private volatile Table table = EMPTY;
+  // slots with a key (values and removed ones)
+  private int used = 0;
+  private volatile int size = 0;
+
+  private final ConcurrentMap<String, V> others = new ConcurrentHashMap<>();
+
+  // public for jackson
+  public PostIndex() {
+  }
+
+  public static <V> PostIndex<V> of() {
+    return new PostIndex<V>();
+  }
+
+  private static Boolean isIndexed(String key) {
+    return PostId.isCanonical(key)
+        && PostId.mostSignificantBits(key) != 0
+        && PostId.leastSignificantBits(key) != 0;
+  }
+
+  private static int home(Table table, long msb, long lsb) {
+    var hash = msb ^ lsb;
+    hash ^= hash >>> 32;
+    return ((int) hash * 0x9E3779B9 >>> 1) & (table.msb.length - 1);
+  }
+
+  // the slot of the key, or the empty slot that ends its probe sequence
+  private static int probe(Table table, long msb, long lsb) {
+    var mask = table.msb.length - 1;
+    var i = home(table, msb, lsb);
+    while (table.msb[i] != 0 && (table.msb[i] != msb || table.lsb[i] != lsb)) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V lookup(long msb, long lsb) {
+    var table = this.table;
+    if (table.msb.length == 0) {
+      return null;
+    }
+    var i = probe(table, msb, lsb);
+    var value = table.values.get(i);
+    // the probe may have stopped on an empty slot that a writer has filled
+    // meanwhile with another key: the keys are published before the value
+    return table.msb[i] == msb && table.lsb[i] == lsb ? (V) value : null;
+  }
+
+  // the caller owns the lock
+  private void resize() {
+    var capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(this.size * 4 + 3));
+    var old = this.table;
+    var table = new Table(capacity);
+
+    for (var i = 0; i < old.msb.length; i++) {
+      var value = old.values.get(i);
+      if (value != null) {
+        var j = probe(table, old.msb[i], old.lsb[i]);
+        table.msb[j] = old.msb[i];
+        table.lsb[j] = old.lsb[i];
+        table.values.set(j, value);
+      }
+    }
+
+    this.used = this.size;
+    this.table = table;
+  }
+
+  // the caller owns the lock: returns the previous value
+  @SuppressWarnings("unchecked")
+  private V store(long msb, long lsb, V value) {
+    var table = this.table;
+    if ((this.used + 1) * 2 > table.msb.length) {
+      resize();
+      table = this.table;
+    }
+
+    var i = probe(table, msb, lsb);
+    if (table.msb[i] == 0) {
+      // a reader that sees only one half of the key cannot match it:
+      // the halves of the indexed keys are never zero
+      table.lsb[i] = lsb;
+      table.msb[i] = msb;
+      this.used++;
+    }
+
+    var previous = (V) table.values.getAndSet(i, value);
+    if (previous == null && value != null) {
+      this.size = this.size + 1;
+    } else if (previous != null && value == null) {
+      this.size = this.size - 1;
+    }
+    return previous;
+  }
+
+  // ---------------------------------------
+  // map methods
+
+  @Override
+  public V get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    var uuid = (String) key;
+    if (!isIndexed(uuid)) {
+      return others.get(uuid);
+    }
+    return lookup(PostId.mostSignificantBits(uuid), PostId.leastSignificantBits(uuid));
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public V put(String key, V value) {
+    Objects.requireNonNull(value);
+    if (!isIndexed(key)) {
+      return others.put(key, value);
+    }
+    synchronized (this) {
+      return store(PostId.mostSignificantBits(key), PostId.leastSignificantBits(key), value);
+    }
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    var uuid = (String) key;
+    if (!isIndexed(uuid)) {
+      return others.remove(uuid);
+    }
+    synchronized (this) {
+      var msb = PostId.mostSignificantBits(uuid);
+      var lsb = PostId.leastSignificantBits(uuid);
+      return lookup(msb, lsb) == null ? null : store(msb, lsb, null);
+    }
+  }
+
+  @Override
+  public V putIfAbsent(String key, V value) {
+    Objects.requireNonNull(value);
+    if (!isIndexed(key)) {
+      return others.putIfAbsent(key, value);
+    }
+    synchronized (this) {
+      var previous = get(key);
+      return previous != null ? previous : put(key, value);
+    }
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    if (!(key instanceof String) || !isIndexed((String) key)) {
+      return others.remove(key, value);
+    }
+    synchronized (this) {
+      var current = get(key);
+      if (current != null && current.equals(value)) {
+        remove(key);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  @Override
+  public boolean replace(String key, V oldValue, V newValue) {
+    Objects.requireNonNull(newValue);
+    if (!isIndexed(key)) {
+      return others.replace(key, oldValue, newValue);
+    }
+    synchronized (this) {
+      var current = get(key);
+      if (current != null && current.equals(oldValue)) {
+        put(key, newValue);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  @Override
+  public V replace(String key, V value) {
+    Objects.requireNonNull(value);
+    if (!isIndexed(key)) {
+      return others.replace(key, value);
+    }
+    synchronized (this) {
+      return get(key) != null ? put(key, value) : null;
+    }
+  }
+
+  @Override
+  public int size() {
+    return this.size + others.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  // a copy of the values, without building the keys
+  @Override
+  @SuppressWarnings("unchecked")
+  public Collection<V> values() {
+    var table = this.table;
+    var toRet = new ArrayList<V>(this.size + others.size());
+    for (var i = 0; i < table.msb.length; i++) {
+      var value = table.values.get(i);
+      if (value != null) {
+        toRet.add((V) value);
+      }
+    }
+    toRet.addAll(others.values());
+    return Collections.unmodifiableList(toRet);
+  }
+
+  // a copy of the entries: the keys are built from their longs
+  @Override
+  @SuppressWarnings("unchecked")
+  public Set<Map.Entry<String, V>> entrySet() {
+    var table = this.table;
+    var toRet = new LinkedHashSet<Map.Entry<String, V>>();
+    for (var i = 0; i < table.msb.length; i++) {
+      var value = table.values.get(i);
+      if (value != null) {
+        toRet.add(new SimpleImmutableEntry<>(PostId.toString(table.msb[i], table.lsb[i]), (V) value));
+      }
+    }
+    toRet.addAll(others.entrySet());
+    return Collections.unmodifiableSet(toRet);
+  }
+}
@@ -0,0 +1,162 @@
+package domain.post.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import domain.post.PostId;
+import domain.post.PostIndex;
+
+public class PostIndexTest {
+
+  @Test
+  void canonicalUuids() {
+    var random = new Random(42);
+    for (var i = 0; i < 1000; i++) {
+      var uuid = new UUID(random.nextLong(), random.nextLong());
+      var s = uuid.toString();
+
+      assertTrue(PostId.isCanonical(s));
+      assertEquals(uuid.getMostSignificantBits(), PostId.mostSignificantBits(s));
+      assertEquals(uuid.getLeastSignificantBits(), PostId.leastSignificantBits(s));
+      assertEquals(s, PostId.toString(PostId.mostSignificantBits(s), PostId.leastSignificantBits(s)));
+    }
+
+    assertFalse(PostId.isCanonical(null));
+    assertFalse(PostId.isCanonical("not a uuid"));
+    assertFalse(PostId.isCanonical(UUID.randomUUID().toString().toUpperCase()));
+    assertFalse(PostId.isCanonical(UUID.randomUUID().toString().replace('-', '_')));
+  }
+
+  // random puts and removes, with some keys that are not canonical uuids,
+  // compared with a HashMap
+  @Test
+  void sameEntriesOfHashMap() {
+    var random = new Random(42);
+    var keys = new ArrayList<String>();
+    for (var i = 0; i < 2000; i++) {
+      keys.add(UUID.randomUUID().toString());
+    }
+    keys.add("legacy post");
+    keys.add("00000000-0000-0000-0000-000000000000");
+    keys.add(UUID.randomUUID().toString().toUpperCase());
+
+    var index = PostIndex.<Integer>of();
+    var expected = new HashMap<String, Integer>();
+
+    for (var i = 0; i < 100000; i++) {
+      var key = keys.get(random.nextInt(keys.size()));
+      switch (random.nextInt(4)) {
+        case 0:
+          assertEquals(expected.remove(key), index.remove(key));
+          break;
+        case 1:
+          assertEquals(expected.putIfAbsent(key, i), index.putIfAbsent(key, i));
+          break;
+        default:
+          assertEquals(expected.put(key, i), index.put(key, i));
+      }
+    }
+
+    assertEquals(expected.size(), index.size());
+    for (var key : keys) {
+      assertEquals(expected.get(key), index.get(key));
+    }
+    assertEquals(expected.entrySet(), index.entrySet());
+    assertEquals(new HashSet<>(expected.values()), new HashSet<>(index.values()));
+  }
+
+  // lookups of missing uuids while a writer fills the table never return
+  // the value of another key
+  @Test
+  void concurrentInsertsAndLookups() throws Exception {
+    var missing = new ArrayList<String>();
+    for (var i = 0; i < 256; i++) {
+      missing.add(UUID.randomUUID().toString());
+    }
+
+    // small tables, that are filled again and again
+    var index = new AtomicReference<PostIndex<String>>(PostIndex.of());
+    var done = new AtomicBoolean(false);
+    var wrong = new AtomicInteger(0);
+    var readers = new ArrayList<Thread>();
+    for (var r = 0; r < 2; r++) {
+      var reader = new Thread(() -> {
+        while (!done.get()) {
+          var current = index.get();
+          for (var key : missing) {
+            if (current.get(key) != null) {
+              wrong.incrementAndGet();
+            }
+          }
+        }
+      });
+      readers.add(reader);
+      reader.start();
+    }
+
+    var deadline = System.currentTimeMillis() + 2000;
+    while (System.currentTimeMillis() < deadline) {
+      var current = PostIndex.<String>of();
+      index.set(current);
+      for (var i = 0; i < 512; i++) {
+        var key = UUID.randomUUID().toString();
+        current.put(key, key);
+      }
+    }
+    done.set(true);
+    for (var reader : readers) {
+      reader.join();
+    }
+
+    assertEquals(0, wrong.get());
+  }
+
+  // looking up a post allocates nothing
+  @Test
+  void lookupWithoutAllocations() {
+    var index = PostIndex.<String>of();
+    var keys = new ArrayList<String>();
+    for (var i = 0; i < 1000; i++) {
+      var key = UUID.randomUUID().toString();
+      keys.add(key);
+      index.put(key, "author" + i);
+    }
+    var missing = UUID.randomUUID().toString();
+
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    var id = Thread.currentThread().getId();
+
+    // the same measure with an empty body, to subtract the cost of measuring
+    var overhead = threads.getThreadAllocatedBytes(id);
+    overhead = threads.getThreadAllocatedBytes(id) - overhead;
+
+    var found = 0;
+    var allocated = threads.getThreadAllocatedBytes(id);
+    for (var round = 0; round < 100; round++) {
+      for (var key : keys) {
+        found += index.get(key) != null ? 1 : 0;
+      }
+      found += index.get(missing) != null ? 1 : 0;
+    }
+    allocated = threads.getThreadAllocatedBytes(id) - allocated - overhead;
+
+    assertEquals(100 * keys.size(), found);
+    // the iterator of the list, at most
+    assertTrue(allocated < 100 * 64, allocated + " bytes allocated");
+    assertNull(index.get("not a uuid"));
+  }
+}
@@ -0,0 +1,48 @@
+package domain.post.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import domain.comment.Comment;
+import domain.post.Post;
+import domain.reaction.Reaction;
+
+public class PostReactionsTest {
+
+  @Test
+  void oneReactionPerUser() {
+    var post = Post.of("A title", "Random content", "John Doe");
+
+    assertTrue(post.reactions.add(Reaction.of(true, post.uuid, "Jane Doe")));
+    assertTrue(post.reactions.add(Reaction.of(false, post.uuid, "Jim Doe")));
+    assertFalse(post.reactions.add(Reaction.of(false, post.uuid, "Jane Doe")));
+
+    assertTrue(post.reactions.hasReacted("Jane Doe"));
+    assertFalse(post.reactions.hasReacted("John Doe"));
+    assertEquals(2, post.reactions.size());
+    assertEquals(1L, post.getUpvotes());
+    assertEquals(1L, post.getDownvotes());
+  }
+
+  @Test
+  void jsonRoundTrip() throws Exception {
+    var post = Post.of("A title", "Random content", "John Doe");
+    post.reactions.add(Reaction.of(true, post.uuid, "Jane Doe"));
+    post.reactions.add(Reaction.of(true, post.uuid, "Jim Doe"));
+    post.comments.add(Comment.of("A comment", post.uuid, "Jane Doe"));
+    post.comments.add(Comment.of("A comment", post.uuid, "Jane Doe"));
+
+    var restored = new ObjectMapper().readValue(post.toJSON(), Post.class);
+
+    assertEquals(post.toJSON(), restored.toJSON());
+    assertEquals(2L, restored.getUpvotes());
+    assertEquals(0L, restored.getDownvotes());
+    assertTrue(restored.reactions.hasReacted("Jim Doe"));
+    assertEquals(2, restored.comments.size());
+  }
+}
@@ -1,6 +1,13 @@
 package domain.reaction;
 
+import java.io.IOException;
 import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import domain.user.UserDictionary;
+
 // simple pojo
 public class Reaction {
   public Long timestamp;
@@ -15,11 +22,17 @@ public class Reaction {
     instance.isUpvote = isUpvote; // readonly
     instance.timestamp = new Date().getTime(); // readonly
     instance.postUuid = postUuid; // readonly
-    instance.author = author; // readonly
+    instance.author = UserDictionary.intern(author); // readonly
 
     return instance;
   }
 
+  // the shared instance of the username (see UserDictionary)
+  @JsonSetter("author")
+  private void setAuthor(String author) {
+    this.author = UserDictionary.intern(author);
+  }
+
   public String toJSON() {
 
     return String.join("",
@@ -30,4 +43,14 @@ public class Reaction {
         "\"author\":" + "\"" + this.author + "\"",
         "}");
   }
+
+  // stream the same json of toJSON
+  public void writeJSON(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    gen.writeBooleanField("isUpvote", this.isUpvote);
+    gen.writeNumberField("timestamp", this.timestamp);
+    gen.writeStringField("postUuid", this.postUuid);
+    gen.writeStringField("author", this.author);
+    gen.writeEndObject();
+  }
 }
@@ -0,0 +1,89 @@
+package domain.reaction;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utils.AppendOnlyList;
+
+// the reactions of a post: they are kept in the order they were added,
+// together with the up/down counters and the authors of the reactions,
+// so that checking if a user has already rated the post and counting
+// the votes don't need to scan all the reactions
+public class ReactionStore extends AbstractList<Reaction> implements RandomAccess {
+
+  private final AppendOnlyList<Reaction> reactions = AppendOnlyList.of();
+  private final Set<String> authors = ConcurrentHashMap.newKeySet();
+  private final AtomicLong upvotes = new AtomicLong(0);
+  private final AtomicLong downvotes = new AtomicLong(0);
+
+  // public for jackson
+  public ReactionStore() {
+  }
+
+  public static ReactionStore of() {
+    return new ReactionStore();
+  }
+
+  // add the reaction only if its author has not already reacted:
+  // returns false otherwise
+  @Override
+  public boolean add(Reaction reaction) {
+    if (!this.claim(reaction.author)) {
+      return false;
+    }
+    this.append(reaction);
+    return true;
+  }
+
+  // reserve the reaction of an author, before the reaction exists:
+  // returns false if the author has already reacted or reserved it
+  public Boolean claim(String author) {
+    return this.authors.add(author);
+  }
+
+  // give back a reservation that has not been followed by a reaction
+  public void release(String author) {
+    this.authors.remove(author);
+  }
+
+  // add the reaction of an author that has been reserved by claim
+  public void append(Reaction reaction) {
+    this.reactions.add(reaction);
+    if (reaction.isUpvote) {
+      this.upvotes.incrementAndGet();
+    } else {
+      this.downvotes.incrementAndGet();
+    }
+  }
+
+  public Boolean hasReacted(String author) {
+    return this.authors.contains(author);
+  }
+
+  public Long getUpvotes() {
+    return this.upvotes.get();
+  }
+
+  public Long getDownvotes() {
+    return this.downvotes.get();
+  }
+
+  @Override
+  public Reaction get(int index) {
+    return this.reactions.get(index);
+  }
+
+  @Override
+  public int size() {
+    return this.reactions.size();
+  }
+
+  @Override
+  public Iterator<Reaction> iterator() {
+    return this.reactions.iterator();
+  }
+}
@@ -1,33 +1,40 @@
 package domain.user;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import domain.post.Post;
+import domain.post.PostIndex;
 import utils.Hasher;
 
 public class User {
   public String username;
-  public String password;
+  public volatile String password;
   public List<String> tags;
-  public ConcurrentMap<String, Post> posts; // Map<postUuid, Post>
+  public PostIndex<Post> posts; // Map<postUuid, Post>
   public Set<String> followers;
   public Set<String> following;
 
+  // held while the follow relations of this user are changed: reads don't need it
+  private final Object graphLock = new Object();
+
   public static User of(String username, String password, List<String> tags, Boolean hashPassword) {
     var instance = new User();
 
-    instance.username = username; // readonly
-    instance.password = hashPassword ? Hasher.hash(password) : password; // readonly
+    instance.username = UserDictionary.intern(username); // readonly
+    instance.password = hashPassword ? Hasher.hashPassword(password) : password; // rehashed at the login
     instance.tags = tags; // readonly
-    instance.posts = new ConcurrentHashMap<String, Post>();
-    instance.followers = new HashSet<String>(); // needs manual synchronization
-    instance.following = new HashSet<String>(); // needs manual synchronization
+    instance.posts = PostIndex.of();
+    instance.followers = UserSet.of(); // changed under the graph locks
+    instance.following = UserSet.of(); // changed under the graph locks
 
     return instance;
   }
@@ -36,55 +43,76 @@ public class User {
     return of(username, password, tags, true);
   }
 
+  // the shared instance of the username (see UserDictionary)
+  @JsonSetter("username")
+  private void setUsername(String username) {
+    this.username = UserDictionary.intern(username);
+  }
+
+  // jackson would restore the sets as plain HashSets
+  @JsonSetter("followers")
+  private void setFollowers(Collection<String> followers) {
+    this.followers = UserSet.of();
+    this.followers.addAll(followers);
+  }
+
+  @JsonSetter("following")
+  private void setFollowing(Collection<String> following) {
+    this.following = UserSet.of();
+    this.following.addAll(following);
+  }
+
   public List<String> getFollowers() {
     // by returning a clone, we can safely perform
-    // further actions on the list without the need
-    // of the lock, although "the read may not get the latest write"
+    // further actions on the list, although
+    // "the read may not get the latest write"
     // (eventual consistency)
-    synchronized (this.followers) {
-      return this.followers.stream().collect(Collectors.toList());
-    }
+    return new ArrayList<String>(this.followers);
   }
 
   public List<String> getFollowing() {
     // by returning a clone, we can safely perform
-    // further actions on the list without the need
-    // of the lock, although "the read may not get the latest write"
+    // further actions on the list, although
+    // "the read may not get the latest write"
     // (eventual consistency)
-    synchronized (this.following) {
-      return this.following.stream().collect(Collectors.toList());
-    }
+    return new ArrayList<String>(this.following);
   }
 
   public Boolean addFollower(String follower) {
-    synchronized (this.followers) {
-      return this.followers.add(follower);
-    }
+    return this.followers.add(follower);
   }
 
   public Boolean addFollowing(String following) {
-    synchronized (this.following) {
-      return this.following.add(following);
-    }
+    return this.following.add(following);
   }
 
   public Boolean removeFollower(String follower) {
-    synchronized (this.followers) {
-      return this.followers.remove(follower);
-    }
+    return this.followers.remove(follower);
   }
 
   public Boolean removeFollowing(String following) {
-    synchronized (this.following) {
-      return this.following.remove(following);
+    return this.following.remove(following);
+  }
+
+  // run an action holding the graph locks of two users: they are always
+  // taken in the order of the usernames, so two users that follow each
+  // other at the same time cannot deadlock
+  public static <T> T synchronizedOnFollow(User user, User other, Supplier<T> action) {
+    var first = user.username.compareTo(other.username) <= 0 ? user : other;
+    var second = first == user ? other : user;
+
+    synchronized (first.graphLock) {
+      synchronized (second.graphLock) {
+        return action.get();
+      }
     }
   }
 
-  // lock the followers and then call the callback with a clone
-  // of the followers set
+  // call the callback with a clone of the followers set while
+  // no one can start or stop following the user
   public void synchronizedActionOnFollowers(Consumer<List<String>> cb) {
-    synchronized (this.followers) {
-      cb.accept(this.followers.stream().collect(Collectors.toList()));
+    synchronized (this.graphLock) {
+      cb.accept(this.getFollowers());
     }
   }
 
@@ -102,28 +130,25 @@ public class User {
     tagsLine += "]";
 
     var postsLine = "\"posts\":{";
-    postsLine += this.posts.entrySet()
+    // a post is keyed by its uuid
+    postsLine += this.posts.values()
         .stream()
-        .map(e -> "\"" + e.getKey() + "\":" + e.getValue().toJSON())
+        .map(p -> "\"" + p.uuid + "\":" + p.toJSON())
         .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
     postsLine += "}";
 
     var followersLine = "\"followers\":[";
-    synchronized (this.followers) {
-      followersLine += this.followers
-          .stream()
-          .map(f -> "\"" + f.toString() + "\"")
-          .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
-    }
+    followersLine += this.followers
+        .stream()
+        .map(f -> "\"" + f.toString() + "\"")
+        .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
     followersLine += "]";
 
     var followingLine = "\"following\":[";
-    synchronized (this.following) {
-      followingLine += this.following
-          .stream()
-          .map(f -> "\"" + f.toString() + "\"")
-          .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
-    }
+    followingLine += this.following
+        .stream()
+        .map(f -> "\"" + f.toString() + "\"")
+        .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
     followingLine += "]";
 
     return String.join("",
@@ -136,4 +161,40 @@ public class User {
         followingLine,
         "}");
   }
+
+  // stream the same json of toJSON
+  public void writeJSON(JsonGenerator gen, Boolean includePassword) throws IOException {
+    gen.writeStartObject();
+    gen.writeStringField("username", this.username);
+    if (includePassword) {
+      gen.writeStringField("password", this.password);
+    }
+
+    gen.writeArrayFieldStart("tags");
+    for (var tag : this.tags) {
+      gen.writeString(tag);
+    }
+    gen.writeEndArray();
+
+    gen.writeObjectFieldStart("posts");
+    for (var post : this.posts.values()) {
+      gen.writeFieldName(post.uuid);
+      post.writeJSON(gen);
+    }
+    gen.writeEndObject();
+
+    gen.writeArrayFieldStart("followers");
+    for (var follower : this.followers) {
+      gen.writeString(follower);
+    }
+    gen.writeEndArray();
+
+    gen.writeArrayFieldStart("following");
+    for (var following : this.following) {
+      gen.writeString(following);
+    }
+    gen.writeEndArray();
+
+    gen.writeEndObject();
+  }
 }
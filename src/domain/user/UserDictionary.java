@@ -0,0 +1,51 @@
+package domain.user;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import utils.AppendOnlyList;
+
+// the dictionary of the usernames: each username is given a dense int id
+// and a single String instance, shared by every object that refers to the
+// user. The ids are never persisted: they are assigned again in each run,
+// in the order the usernames are met
+public class UserDictionary {
+
+  private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+  // id -> username
+  private static final AppendOnlyList<String> usernames = AppendOnlyList.of();
+
+  private UserDictionary() {
+  }
+
+  // the id of a username, assigned if it is the first time it is met
+  public static Integer id(String username) {
+    var id = ids.get(username);
+    if (id != null) {
+      return id;
+    }
+
+    return ids.computeIfAbsent(username, __ -> {
+      synchronized (usernames) {
+        // the same instance of the key
+        usernames.add(username);
+        return usernames.size() - 1;
+      }
+    });
+  }
+
+  // the id of a username, -1 if it has never been met
+  public static Integer find(String username) {
+    var id = ids.get(username);
+    return id != null ? id : -1;
+  }
+
+  public static String username(Integer id) {
+    return usernames.get(id);
+  }
+
+  // the shared instance of a username
+  public static String intern(String username) {
+    return username == null ? null : usernames.get(id(username));
+  }
+}
@@ -0,0 +1,51 @@
+package domain.user;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import utils.IntHashSet;
+
+// a set of usernames stored as the ids given by the UserDictionary:
+// an int per username instead of a node and a reference
+// (the writes are serialized, the reads don't need any lock)
+public class UserSet extends AbstractSet<String> {
+
+  private final IntHashSet ids = IntHashSet.of();
+
+  // public for jackson
+  public UserSet() {
+  }
+
+  public static UserSet of() {
+    return new UserSet();
+  }
+
+  @Override
+  public boolean add(String username) {
+    return this.ids.add(UserDictionary.id(username));
+  }
+
+  @Override
+  public boolean remove(Object username) {
+    return username instanceof String && this.ids.remove(UserDictionary.find((String) username));
+  }
+
+  @Override
+  public boolean contains(Object username) {
+    return username instanceof String && this.ids.contains(UserDictionary.find((String) username));
+  }
+
+  @Override
+  public int size() {
+    return this.ids.size();
+  }
+
+  // iterate over a copy of the usernames: the set is not changed by the iterator
+  @Override
+  public Iterator<String> iterator() {
+    var usernames = new ArrayList<String>(this.ids.size());
+    this.ids.forEach(id -> usernames.add(UserDictionary.username(id)));
+    return usernames.iterator();
+  }
+}
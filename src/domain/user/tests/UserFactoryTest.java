@@ -99,7 +99,7 @@ public class UserFactoryTest {
 
     var user = euser.get();
     assertEquals(user.username, "johndoe");
-    assertEquals(user.password, Hasher.hash("abcde12345"));
+    assertTrue(Hasher.verify("abcde12345", user.password));
     assertTrue(user.tags.contains("tag1"));
     assertTrue(user.tags.contains("tag2"));
     assertTrue(user.tags.contains("tag3"));
@@ -117,7 +117,7 @@ public class UserFactoryTest {
 
     var user = euser.get();
     assertEquals(user.username, "johndoe");
-    assertEquals(user.password, Hasher.hash("abcde12345"));
+    assertTrue(Hasher.verify("abcde12345", user.password));
     assertTrue(user.tags.contains("tag1"));
     assertTrue(user.tags.contains("tag2"));
     assertTrue(user.tags.contains("tag3"));
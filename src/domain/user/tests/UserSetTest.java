@@ -0,0 +1,61 @@
+package domain.user.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import domain.user.User;
+import domain.user.UserDictionary;
+import domain.user.UserSet;
+
+public class UserSetTest {
+
+  @Test
+  void sameIdAndInstanceForEqualUsernames() {
+    var username = new String("dictionary user");
+    var copy = new String("dictionary user");
+
+    assertEquals(UserDictionary.id(username), UserDictionary.id(copy));
+    assertSame(UserDictionary.intern(username), UserDictionary.intern(copy));
+    assertEquals(username, UserDictionary.username(UserDictionary.id(copy)));
+    assertEquals(-1, UserDictionary.find("never met user"));
+  }
+
+  @Test
+  void setOfUsernames() {
+    var set = UserSet.of();
+    assertTrue(set.add("mario"));
+    assertTrue(set.add("luigi"));
+    assertFalse(set.add("mario"));
+
+    assertTrue(set.contains("luigi"));
+    assertFalse(set.contains("peach"));
+    assertFalse(set.remove("peach"));
+    assertTrue(set.remove("luigi"));
+
+    assertEquals(Set.of("mario"), set);
+  }
+
+  // the usernames restored by jackson are the shared ones
+  @Test
+  void jsonRoundTrip() throws Exception {
+    var user = User.of("mario", "pwd", List.of("music"));
+    user.followers.add("luigi");
+    user.following.add("peach");
+
+    var restored = new ObjectMapper().readValue(user.toJSON(), User.class);
+
+    assertEquals(user.toJSON(), restored.toJSON());
+    assertTrue(restored.followers instanceof UserSet);
+    assertTrue(restored.following instanceof UserSet);
+    assertSame(user.username, restored.username);
+  }
+}
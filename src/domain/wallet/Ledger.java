@@ -0,0 +1,177 @@
+package domain.wallet;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// the transactions of a user stored by columns, their timestamps and their
+// gains in primitive arrays, together with the running balance: the appends
+// are serialized, while the readers don't need any lock and see every
+// transaction that was appended before they have read the size.
+// Each read builds a new transaction, the ledger cannot be altered through it
+public class Ledger extends AbstractList<WalletTransaction> implements RandomAccess {
+
+  private static final int MIN_CAPACITY = 8;
+
+  // replaced by bigger copies when they are full
+  private static class Columns {
+    final long[] timestamps;
+    final double[] gains;
+
+    Columns(int capacity) {
+      this.timestamps = new long[capacity];
+      this.gains = new double[capacity];
+    }
+  }
+
+  private static final Columns EMPTY = new Columns(0);
+
+  // written before the size that makes its new transactions visible
+  private volatile Columns columns = EMPTY;
+  private volatile int size = 0;
+
+  // compensated (Kahan) sum of the gains, only the appends touch it
+  private double sum = 0.;
+  private double compensation = 0.;
+  private volatile double balance = 0.;
+
+  // public for jackson
+  public Ledger() {
+  }
+
+  public static Ledger of() {
+    return new Ledger();
+  }
+
+  // append a batch of transactions: the readers see all of them or none
+  public void append(List<WalletTransaction> transactions) {
+    transactions.forEach(t -> {
+      Objects.requireNonNull(t.gain);
+      Objects.requireNonNull(t.timestamp);
+    });
+
+    synchronized (this) {
+      var size = this.size;
+      if (transactions.size() > Integer.MAX_VALUE - size) {
+        throw new IllegalStateException("ledger is full");
+      }
+
+      var columns = this.columns;
+      var needed = size + transactions.size();
+      if (needed > columns.timestamps.length) {
+        var capacity = Math.max(MIN_CAPACITY, columns.timestamps.length);
+        while (capacity < needed) {
+          capacity = capacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : capacity * 2;
+        }
+        var grown = new Columns(capacity);
+        System.arraycopy(columns.timestamps, 0, grown.timestamps, 0, size);
+        System.arraycopy(columns.gains, 0, grown.gains, 0, size);
+        columns = grown;
+      }
+
+      for (var t : transactions) {
+        columns.timestamps[size] = t.timestamp;
+        columns.gains[size] = t.gain;
+        size++;
+
+        var y = t.gain - this.compensation;
+        var s = this.sum + y;
+        this.compensation = (s - this.sum) - y;
+        this.sum = s;
+      }
+
+      // publish the batch
+      this.columns = columns;
+      this.balance = this.sum;
+      this.size = size;
+    }
+  }
+
+  // the sum of the gains, in constant time
+  public Double getBalance() {
+    return this.balance;
+  }
+
+  // there is a transaction with exactly this timestamp and this gain
+  public Boolean contains(Long timestamp, Double gain) {
+    var size = this.size;
+    var columns = this.columns;
+    for (var i = 0; i < size; i++) {
+      if (columns.timestamps[i] == timestamp && Double.compare(columns.gains[i], gain) == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // a copy of at most limit transactions, starting from the index from
+  public List<WalletTransaction> page(Integer from, Integer limit) {
+    var size = this.size;
+    var columns = this.columns;
+    var to = (int) Math.min(size, (long) from + limit);
+
+    var toRet = new ArrayList<WalletTransaction>(Math.max(0, to - from));
+    for (var i = from; i < to; i++) {
+      toRet.add(WalletTransaction.of(columns.gains[i], columns.timestamps[i]));
+    }
+    return toRet;
+  }
+
+  // ---------------------------------------
+  // list methods
+
+  @Override
+  public boolean add(WalletTransaction transaction) {
+    append(List.of(transaction));
+    return true;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends WalletTransaction> transactions) {
+    append(new ArrayList<>(transactions));
+    return !transactions.isEmpty();
+  }
+
+  @Override
+  public WalletTransaction get(int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    var columns = this.columns;
+    return WalletTransaction.of(columns.gains[index], columns.timestamps[index]);
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  // iterate over the transactions appended before the call
+  @Override
+  public Iterator<WalletTransaction> iterator() {
+    var end = this.size;
+    var columns = this.columns;
+    return new Iterator<WalletTransaction>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < end;
+      }
+
+      @Override
+      public WalletTransaction next() {
+        if (next >= end) {
+          throw new NoSuchElementException();
+        }
+        var i = next++;
+        return WalletTransaction.of(columns.gains[i], columns.timestamps[i]);
+      }
+    };
+  }
+}
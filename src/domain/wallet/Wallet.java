@@ -1,7 +1,7 @@
 package domain.wallet;
 
+import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -15,7 +15,7 @@ public class Wallet {
 
   // ConcurrentMap<username, transactions>
   @JsonProperty("wallet")
-  private final ConcurrentMap<String, List<WalletTransaction>> wallet = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Ledger> wallet = new ConcurrentHashMap<>();
 
   // last time the wallet thread has run
   @JsonProperty("prevTimestamp")
@@ -45,39 +45,57 @@ public class Wallet {
     }
   }
 
-  // return a deep copy of the wallet of an user
+  // return the wallet of an user: a read-only view of the transactions added
+  // so far, where each read builds a new transaction
   public Either<String, List<WalletTransaction>> getWalletOf(String username) {
     return nullGuard(username, "username")
         .map(__ -> this.wallet.get(username))
-        .flatMap(ts -> {
-          if (ts != null) {
-
-            // sync with addTransaction
-            synchronized (ts) {
-              return Either.right(ts
-                  .stream()
-                  // deep clone to allow future updates
-                  // without affecting the original data
-                  .map(WalletTransaction::clone)
-                  .collect(Collectors.toList()));
-            }
-            // by returning a clone, we can safely perform
-            // further actions on the list without the need
-            // of the lock, although "the read may not get the latest write"
-            // (eventual consistency)
+        .flatMap(ts -> ts == null
+            ? Either.left("unknown user")
+            // the transactions added later are not part of the view,
+            // "the read may not get the latest write" (eventual consistency)
+            : Either.right(Collections.unmodifiableList(ts.subList(0, ts.size()))));
+  }
 
-          } else {
-            return Either.left("unknown user");
-          }
-        });
+  // return a copy of at most limit transactions of a user, starting from
+  // the index from (a null limit means no limit)
+  public Either<String, List<WalletTransaction>> getHistoryOf(String username, Integer from, Integer limit) {
+    return nullGuard(username, "username")
+        .flatMap(__ -> nullGuard(from, "from"))
+        .flatMap(__ -> from < 0 ? Either.left("invalid from") : Either.right(from))
+        .flatMap(__ -> limit != null && limit <= 0 ? Either.left("invalid limit") : Either.right(limit))
+        .map(__ -> this.wallet.get(username))
+        .flatMap(ts -> ts == null
+            ? Either.left("unknown user")
+            : Either.right(ts.page(from, limit == null ? Integer.MAX_VALUE : limit)));
+  }
 
+  // the sum of the gains of a user, in constant time
+  public Either<String, Double> getBalanceOf(String username) {
+    return nullGuard(username, "username")
+        .map(__ -> this.wallet.get(username))
+        .flatMap(ts -> ts == null ? Either.left("unknown user") : Either.right(ts.getBalance()));
+  }
+
+  // the number of transactions of a user
+  public Either<String, Integer> countTransactionsOf(String username) {
+    return nullGuard(username, "username")
+        .map(__ -> this.wallet.get(username))
+        .flatMap(ts -> ts == null ? Either.left("unknown user") : Either.right(ts.size()));
   }
 
   // add a user to the wallet
   public Either<String, Void> addUser(String username) {
     // does not happen so often
     return nullGuard(username, "username")
-        .map(__ -> this.wallet.computeIfAbsent(username, k -> new LinkedList<WalletTransaction>()))
+        .map(__ -> this.wallet.computeIfAbsent(username, k -> Ledger.of()))
+        .flatMap(__ -> Either.<String, Void>right(null));
+  }
+
+  // remove a user, with its transactions, from the wallet
+  public Either<String, Void> removeUser(String username) {
+    return nullGuard(username, "username")
+        .map(__ -> this.wallet.remove(username))
         .flatMap(__ -> Either.<String, Void>right(null));
   }
 
@@ -94,15 +112,64 @@ public class Wallet {
           var et = WalletTransactionFactory.create(gain)
               .toEither();
 
-          // sync with getWalletOf
-          synchronized (ts) {
-            et.forEach(ts::add);
-          }
+          // the balance is updated together with the transaction
+          et.forEach(ts::add);
 
           return et;
         });
   }
 
+  // add a batch of transactions to the wallet of a user, given their gains,
+  // taking the lock of the wallet only once
+  public Either<String, List<WalletTransaction>> addTransactions(String username, List<Double> gains) {
+    return nullGuard(username, "username")
+        .flatMap(__ -> nullGuard(gains, "gains"))
+        .flatMap(__ -> {
+          var ts = this.wallet.get(username);
+          return ts == null ? Either.left("unknown user") : Either.right(ts);
+        })
+        .flatMap(ts -> {
+          var ets = Either.sequence(gains
+              .stream()
+              .map(gain -> WalletTransactionFactory.create(gain).toEither())
+              .collect(Collectors.toList()))
+              // collect together eventual errors
+              .mapLeft(seq -> seq.mkString("\n"))
+              .map(seq -> seq.toJavaList());
+
+          // the readers see the whole batch or nothing of it
+          ets.forEach(ts::append);
+
+          return ets;
+        });
+  }
+
+  // add the transactions of a user taken from a log, unless they are already there
+  // (a batch of transactions is added atomically, so the first one is enough to tell)
+  public Either<String, Boolean> restoreTransactions(String username, List<WalletTransaction> transactions) {
+    return nullGuard(username, "username")
+        .flatMap(__ -> nullGuard(transactions, "transactions"))
+        .flatMap(__ -> {
+          var ts = this.wallet.get(username);
+          return ts == null ? Either.left("unknown user") : Either.right(ts);
+        })
+        .map(ts -> {
+          if (transactions.isEmpty()) {
+            return false;
+          }
+
+          var first = transactions.get(0);
+          // sync with the other restores
+          synchronized (ts) {
+            if (ts.contains(first.timestamp, first.gain)) {
+              return false;
+            }
+            ts.append(transactions);
+            return true;
+          }
+        });
+  }
+
   public String toJSON() {
 
     var walletLine = "\"wallet\":{";
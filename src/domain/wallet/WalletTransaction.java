@@ -1,16 +1,23 @@
 package domain.wallet;
 
+import java.io.IOException;
 import java.util.Date;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 // simple record { gain, timestamp }
 public class WalletTransaction {
   public Double gain;
   public Long timestamp;
 
   public static WalletTransaction of(Double gain) {
+    return of(gain, new Date().getTime());
+  }
+
+  public static WalletTransaction of(Double gain, Long timestamp) {
     var instance = new WalletTransaction();
 
-    instance.timestamp = new Date().getTime(); // readonly
+    instance.timestamp = timestamp; // readonly
     instance.gain = gain; // readonly
 
     return instance;
@@ -33,4 +40,12 @@ public class WalletTransaction {
         "\"gain\":" + this.gain,
         "}");
   }
+
+  // stream the same json of toJSON
+  public void writeJSON(JsonGenerator gen) throws IOException {
+    gen.writeStartObject();
+    gen.writeNumberField("timestamp", this.timestamp);
+    gen.writeNumberField("gain", this.gain);
+    gen.writeEndObject();
+  }
 }
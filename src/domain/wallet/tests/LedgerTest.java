@@ -0,0 +1,132 @@
+package domain.wallet.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import domain.wallet.Ledger;
+import domain.wallet.WalletTransaction;
+
+public class LedgerTest {
+
+  @Test
+  void transactionsAndBalance() {
+    var ledger = Ledger.of();
+    var expected = new ArrayList<WalletTransaction>();
+
+    for (var i = 0; i < 1000; i++) {
+      var t = WalletTransaction.of(i * 0.5, (long) i);
+      expected.add(t);
+      if (i % 3 == 0) {
+        ledger.add(t);
+      } else {
+        ledger.append(List.of(t));
+      }
+    }
+
+    assertEquals(expected.size(), ledger.size());
+    for (var i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).gain, ledger.get(i).gain);
+      assertEquals(expected.get(i).timestamp, ledger.get(i).timestamp);
+    }
+    assertEquals(0.5 * 999 * 1000 / 2, ledger.getBalance());
+
+    assertTrue(ledger.contains(10L, 5.));
+    assertFalse(ledger.contains(10L, 5.5));
+
+    var page = ledger.page(995, 10);
+    assertEquals(List.of(995L, 996L, 997L, 998L, 999L), page
+        .stream()
+        .map(t -> t.timestamp)
+        .collect(Collectors.toList()));
+    assertTrue(ledger.page(1000, 10).isEmpty());
+
+    // the reads cannot alter the ledger
+    ledger.get(0).gain = 100.;
+    assertEquals(0., ledger.get(0).gain);
+  }
+
+  // the balance is a compensated sum of the gains
+  @Test
+  void compensatedBalance() {
+    var ledger = Ledger.of();
+    var naive = 0.;
+    for (var i = 0; i < 1000000; i++) {
+      ledger.add(WalletTransaction.of(0.1, (long) i));
+      naive += 0.1;
+    }
+
+    assertEquals(100000., ledger.getBalance(), 1e-9);
+    assertTrue(Math.abs(naive - 100000.) > 1e-9);
+  }
+
+  // a reader sees a batch entirely or not at all, and a balance
+  // that never goes backwards
+  @Test
+  void batchesAreAtomic() throws InterruptedException {
+    var ledger = Ledger.of();
+    var done = new AtomicBoolean(false);
+    var error = new AtomicReference<String>();
+
+    var reader = new Thread(() -> {
+      var last = 0.;
+      while (!done.get()) {
+        var size = ledger.size();
+        if (size % 10 != 0) {
+          error.set("half batch of " + size);
+        }
+        var balance = ledger.getBalance();
+        if (balance < last) {
+          error.set("balance went from " + last + " to " + balance);
+        }
+        last = balance;
+        var i = 0;
+        for (var t : ledger) {
+          if (t.timestamp != i++) {
+            error.set("transaction " + t.timestamp + " at " + (i - 1));
+          }
+        }
+      }
+    });
+    reader.start();
+
+    for (var b = 0; b < 5000; b++) {
+      var batch = new ArrayList<WalletTransaction>();
+      for (var i = 0; i < 10; i++) {
+        batch.add(WalletTransaction.of(1., (long) b * 10 + i));
+      }
+      ledger.append(batch);
+    }
+    done.set(true);
+    reader.join();
+
+    assertEquals(null, error.get());
+    assertEquals(50000, ledger.size());
+    assertEquals(50000., ledger.getBalance());
+  }
+
+  @Test
+  void json() throws Exception {
+    var ledger = Ledger.of();
+    ledger.add(WalletTransaction.of(2.6, 1L));
+    ledger.add(WalletTransaction.of(4.8, 2L));
+
+    var objectMapper = new ObjectMapper();
+    var fromJSON = objectMapper.readValue(objectMapper.writeValueAsString(ledger), Ledger.class);
+
+    assertEquals(2, fromJSON.size());
+    assertEquals(4.8, fromJSON.get(1).gain);
+    assertEquals(2L, fromJSON.get(1).timestamp);
+    assertEquals(ledger.getBalance(), fromJSON.getBalance());
+  }
+}
@@ -1,9 +1,13 @@
 package domain.wallet.tests;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -45,4 +49,44 @@ public class WalletTest {
 
     assertTrue(walletInternalField instanceof ConcurrentMap<?, ?>);
   }
+
+  @Test
+  public void testAddTransactions() {
+    var wallet = Wallet.of();
+
+    assertTrue(wallet.addUser("user1").isRight());
+    assertTrue(wallet.addTransaction("user1", 2.6).isRight());
+    assertTrue(wallet.addTransactions("user1", List.of(4.8, 9.5)).isRight());
+
+    assertEquals(List.of(2.6, 4.8, 9.5), wallet.getWalletOf("user1").get()
+        .stream()
+        .map(t -> t.gain)
+        .collect(Collectors.toList()));
+
+    // a batch is added only if every transaction is valid
+    assertTrue(wallet.addTransactions("user1", Arrays.asList(1.0, null)).isLeft());
+    assertTrue(wallet.addTransactions("user2", List.of(1.0)).isLeft());
+    assertEquals(3, wallet.getWalletOf("user1").get().size());
+  }
+
+  @Test
+  public void testBalanceAndHistory() {
+    var wallet = Wallet.of();
+
+    assertTrue(wallet.addUser("user1").isRight());
+    assertTrue(wallet.addTransactions("user1", List.of(2.5, 4.75, 9.5)).isRight());
+    assertTrue(wallet.addTransaction("user1", -1.).isRight());
+
+    assertEquals(15.75, wallet.getBalanceOf("user1").get());
+    assertEquals(List.of(4.75, 9.5), wallet.getHistoryOf("user1", 1, 2).get()
+        .stream()
+        .map(t -> t.gain)
+        .collect(Collectors.toList()));
+    assertEquals(4, wallet.getHistoryOf("user1", 0, null).get().size());
+    assertTrue(wallet.getHistoryOf("user1", 4, 2).get().isEmpty());
+
+    assertTrue(wallet.getHistoryOf("user1", -1, 2).isLeft());
+    assertTrue(wallet.getHistoryOf("user1", 0, 0).isLeft());
+    assertTrue(wallet.getBalanceOf("user2").isLeft());
+  }
 }
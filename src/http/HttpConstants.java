@@ -15,6 +15,7 @@ public class HttpConstants {
   public static final String[] NOT_FOUND_404 = { "404", "Not Found" };
   public static final String[] METHOD_NOT_ALLOWED_405 = { "405", "Method Not Allowed" };
   public static final String[] INTERNAL_SERVER_ERROR_500 = { "500", "Internal Server Error" };
+  public static final String[] SERVICE_UNAVAILABLE_503 = { "503", "Service Unavailable" };
 
   public static final String MIME_APPLICATION_JSON = "application/json";
   public static final String MIME_TEXT_PLAIN = "text/plain";
@@ -87,25 +87,8 @@ public class HttpRequest {
         }
 
         // parse query params (key=value pairs)
-        if (errorMessage.equals("") && instance.requestTarget.contains("?")) {
-          try {
-            var paramsString = instance.requestTarget.substring(instance.requestTarget.indexOf("?") + 1);
-            var pairs = paramsString.split("&");
-
-            Arrays.stream(pairs).forEach(pair -> {
-              try {
-                int idx = pair.indexOf("=");
-                var key = URLDecoder.decode(pair.substring(0, idx), "UTF-8");
-                var value = URLDecoder.decode(pair.substring(idx + 1), "UTF-8");
-
-                instance.queryParams.put(key, value);
-              } catch (Exception e) {
-                e.printStackTrace();
-              }
-            });
-          } catch (Exception e) {
-            e.printStackTrace();
-          }
+        if (errorMessage.equals("")) {
+          instance.parseQueryParams();
         }
 
         // parse headers
@@ -136,6 +119,60 @@ public class HttpRequest {
     }
   }
 
+  // build a request from its already parsed parts
+  // (used by HttpRequestParser, the parts must not be null)
+  static Either<String, HttpRequest> fromParts(String method, String requestTarget, String HTTPVersion,
+      Map<String, String> headers, String body) {
+    var instance = new HttpRequest();
+
+    switch (method) {
+      case HttpConstants.GET:
+      case HttpConstants.POST:
+      case HttpConstants.PUT:
+      case HttpConstants.PATCH:
+      case HttpConstants.DELETE:
+      case HttpConstants.OPTIONS: {
+        break;
+      }
+      default: {
+        return Either.left(method + " is not yet supported by HttpRequest");
+      }
+    }
+
+    instance.method = method;
+    instance.requestTarget = requestTarget;
+    instance.HTTPVersion = HTTPVersion;
+    instance.headers = headers;
+    instance.body = body;
+    instance.parseQueryParams();
+
+    return Either.right(instance);
+  }
+
+  // parse the query params (key=value pairs) of the request target
+  private void parseQueryParams() {
+    if (this.requestTarget.contains("?")) {
+      try {
+        var paramsString = this.requestTarget.substring(this.requestTarget.indexOf("?") + 1);
+        var pairs = paramsString.split("&");
+
+        Arrays.stream(pairs).forEach(pair -> {
+          try {
+            int idx = pair.indexOf("=");
+            var key = URLDecoder.decode(pair.substring(0, idx), "UTF-8");
+            var value = URLDecoder.decode(pair.substring(idx + 1), "UTF-8");
+
+            this.queryParams.put(key, value);
+          } catch (Exception e) {
+            e.printStackTrace();
+          }
+        });
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
   public Either<String, HttpRequest> setRequestTarget(String requestTarget) {
     if (requestTarget != null) {
       this.requestTarget = requestTarget;
@@ -0,0 +1,321 @@
+package http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import io.vavr.control.Either;
+
+// incremental HTTP/1.1 request parser
+// the bytes of a request are scanned only once, as they arrive: the parser keeps
+// its position between calls and records the offsets of the request line, of the
+// headers and of the body, so that no String is built until the request is complete
+public class HttpRequestParser {
+
+  // max size of the request line plus the headers
+  public static final int MAX_HEAD_SIZE = 64 * 1024;
+  // max size of the body, as declared by the Content-Length header
+  public static final int MAX_BODY_SIZE = 1024 * 1024;
+
+  private static final byte CR = 0x0D;
+  private static final byte LF = 0x0A;
+  private static final byte SP = 0x20;
+  private static final byte HTAB = 0x09;
+  private static final byte COLON = 0x3A;
+  private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+
+  private enum State {
+    REQUEST_LINE, HEADERS, BODY, DONE, ERROR
+  }
+
+  private State state = State.REQUEST_LINE;
+  // next byte to be scanned
+  private int scanned = 0;
+  // first byte of the line being scanned
+  private int lineStart = 0;
+
+  // offsets of the request line parts
+  private int methodStart = 0;
+  private int methodEnd = 0;
+  private int targetStart = 0;
+  private int targetEnd = 0;
+  private int versionStart = 0;
+  private int versionEnd = 0;
+
+  // offsets of the headers: nameStart, nameEnd, valueStart, valueEnd for each header
+  private int[] headerOffsets = new int[32];
+  private int headersCount = 0;
+
+  // -1 until the Content-Length header has been found
+  private int contentLength = -1;
+  private int bodyStart = 0;
+  // first byte after the request
+  private int requestEnd = 0;
+
+  private String error = "";
+
+  private HttpRequestParser() {
+  }
+
+  // scan the bytes that have been added to the data since the last call,
+  // the valid bytes of the data are those in [0, data.limit())
+  // returns true if the whole request has been scanned
+  public Either<String, Boolean> advance(ByteBuffer data) {
+    var limit = data.limit();
+
+    while (state != State.DONE && state != State.ERROR && scanned < limit) {
+
+      if (state == State.BODY) {
+        // the body is not scanned, we only need to know when it ends
+        scanned = Math.min(limit, requestEnd);
+        if (scanned == requestEnd) {
+          state = State.DONE;
+        }
+        break;
+      }
+
+      var b = data.get(scanned++);
+
+      // the empty lines before the request line count too
+      if (scanned > MAX_HEAD_SIZE) {
+        fail("request header too large");
+        break;
+      }
+
+      if (b != LF) {
+        continue;
+      }
+
+      // a line has ended, the CR before the LF is optional
+      var lineEnd = scanned - 1;
+      if (lineEnd > lineStart && data.get(lineEnd - 1) == CR) {
+        lineEnd--;
+      }
+
+      if (state == State.REQUEST_LINE) {
+        // empty lines before the request line are ignored
+        if (lineEnd > lineStart) {
+          parseRequestLine(data, lineStart, lineEnd);
+        }
+      } else if (lineEnd > lineStart) {
+        parseHeader(data, lineStart, lineEnd);
+      } else {
+        // empty line: end of the headers
+        endOfHeaders(data);
+      }
+
+      lineStart = scanned;
+    }
+
+    if (state == State.ERROR) {
+      return Either.left(error);
+    } else {
+      return Either.right(state == State.DONE);
+    }
+  }
+
+  // build the request once it has been entirely scanned
+  public Either<String, HttpRequest> build(ByteBuffer data) {
+    if (state == State.ERROR) {
+      return Either.left(error);
+    }
+    if (state != State.DONE) {
+      return Either.left("the request has not been entirely read");
+    }
+
+    var headers = new HashMap<String, String>();
+    for (var i = 0; i < headersCount; i++) {
+      var offset = i * 4;
+      headers.put(
+          string(data, headerOffsets[offset], headerOffsets[offset + 1]),
+          string(data, headerOffsets[offset + 2], headerOffsets[offset + 3]));
+    }
+
+    return HttpRequest.fromParts(
+        string(data, methodStart, methodEnd),
+        string(data, targetStart, targetEnd),
+        string(data, versionStart, versionEnd),
+        headers,
+        string(data, bodyStart, requestEnd));
+  }
+
+  // index of the first byte after the request, valid once the request is complete
+  public int getRequestEnd() {
+    return requestEnd;
+  }
+
+  public Boolean isComplete() {
+    return state == State.DONE;
+  }
+
+  // prepare the parser for another request
+  public void reset() {
+    state = State.REQUEST_LINE;
+    scanned = 0;
+    lineStart = 0;
+    methodStart = methodEnd = 0;
+    targetStart = targetEnd = 0;
+    versionStart = versionEnd = 0;
+    headersCount = 0;
+    contentLength = -1;
+    bodyStart = 0;
+    requestEnd = 0;
+    error = "";
+  }
+
+  // METHOD SP request-target SP HTTP-version
+  private void parseRequestLine(ByteBuffer data, int from, int to) {
+    var firstSpace = indexOf(data, SP, from, to);
+    var secondSpace = firstSpace < 0 ? -1 : indexOf(data, SP, firstSpace + 1, to);
+
+    if (firstSpace <= from || secondSpace <= firstSpace + 1 || secondSpace == to - 1) {
+      fail("invalid http request: malformed request line");
+      return;
+    }
+
+    methodStart = from;
+    methodEnd = firstSpace;
+    targetStart = firstSpace + 1;
+    targetEnd = secondSpace;
+    versionStart = secondSpace + 1;
+    versionEnd = to;
+    state = State.HEADERS;
+  }
+
+  // field-name ":" OWS field-value OWS
+  private void parseHeader(ByteBuffer data, int from, int to) {
+    var colon = indexOf(data, COLON, from, to);
+
+    if (colon <= from) {
+      fail("invalid http request: malformed header");
+      return;
+    }
+
+    var valueStart = colon + 1;
+    while (valueStart < to && isWhitespace(data.get(valueStart))) {
+      valueStart++;
+    }
+    var valueEnd = to;
+    while (valueEnd > valueStart && isWhitespace(data.get(valueEnd - 1))) {
+      valueEnd--;
+    }
+
+    if (headersCount * 4 == headerOffsets.length) {
+      headerOffsets = Arrays.copyOf(headerOffsets, headerOffsets.length * 2);
+    }
+    var offset = headersCount++ * 4;
+    headerOffsets[offset] = from;
+    headerOffsets[offset + 1] = colon;
+    headerOffsets[offset + 2] = valueStart;
+    headerOffsets[offset + 3] = valueEnd;
+
+    if (equalsIgnoreCase(data, from, colon, CONTENT_LENGTH)) {
+      contentLength = parseContentLength(data, valueStart, valueEnd);
+      if (contentLength < 0) {
+        fail("malformed Content-Length header");
+      }
+    }
+  }
+
+  private void endOfHeaders(ByteBuffer data) {
+    bodyStart = scanned;
+
+    if (contentLength < 0) {
+      var noCLRequired = equalsIgnoreCase(data, methodStart, methodEnd, HttpConstants.GET.getBytes())
+          || equalsIgnoreCase(data, methodStart, methodEnd, HttpConstants.DELETE.getBytes())
+          || equalsIgnoreCase(data, methodStart, methodEnd, HttpConstants.OPTIONS.getBytes());
+
+      if (!noCLRequired) {
+        // if there is no Content-Length header and the request is not a GET request nor
+        // a DELETE request nor a OPTIONS request, the server does not accept that request
+        fail("missing Content-Length header");
+        return;
+      }
+      contentLength = 0;
+    }
+
+    // the request buffer must not grow without bound, nor the end of the request overflow
+    if (contentLength > MAX_BODY_SIZE || contentLength > Integer.MAX_VALUE - bodyStart) {
+      fail("request body too large");
+      return;
+    }
+
+    requestEnd = bodyStart + contentLength;
+    state = contentLength == 0 ? State.DONE : State.BODY;
+  }
+
+  private void fail(String message) {
+    error = message;
+    state = State.ERROR;
+  }
+
+  // returns -1 if the value is not a valid non negative int
+  private static int parseContentLength(ByteBuffer data, int from, int to) {
+    if (from == to) {
+      return -1;
+    }
+
+    long value = 0;
+    for (var i = from; i < to; i++) {
+      var b = data.get(i);
+      if (b < '0' || b > '9') {
+        return -1;
+      }
+      value = value * 10 + (b - '0');
+      if (value > Integer.MAX_VALUE) {
+        return -1;
+      }
+    }
+    return (int) value;
+  }
+
+  private static int indexOf(ByteBuffer data, byte target, int from, int to) {
+    for (var i = from; i < to; i++) {
+      if (data.get(i) == target) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == SP || b == HTAB;
+  }
+
+  // ASCII case insensitive comparison
+  private static boolean equalsIgnoreCase(ByteBuffer data, int from, int to, byte[] other) {
+    if (to - from != other.length) {
+      return false;
+    }
+    for (var i = 0; i < other.length; i++) {
+      var b = data.get(from + i);
+      if (b >= 'A' && b <= 'Z') {
+        b += 'a' - 'A';
+      }
+      var o = other[i];
+      if (o >= 'A' && o <= 'Z') {
+        o += 'a' - 'A';
+      }
+      if (b != o) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String string(ByteBuffer data, int from, int to) {
+    if (data.hasArray()) {
+      return new String(data.array(), data.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+    } else {
+      var bytes = new byte[to - from];
+      data.get(from, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  public static HttpRequestParser of() {
+    return new HttpRequestParser();
+  }
+
+}
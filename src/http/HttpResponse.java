@@ -1,5 +1,6 @@
 package http;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,6 +15,8 @@ public class HttpResponse {
   private String reasonPhrase = "";
   private Map<String, String> headers = new HashMap<String, String>();
   private String body = "";
+  // the body encoded in UTF-8, computed at most once per body
+  private byte[] bodyBytes = null;
 
   private HttpResponse() {
   }
@@ -106,6 +109,7 @@ public class HttpResponse {
   public Either<String, HttpResponse> setBody(String body) {
     if (body != null) {
       this.body = body;
+      this.bodyBytes = null;
       return Either.right(this);
     } else {
       return Either.left("HTTP response body cannot be null");
@@ -127,17 +131,18 @@ public class HttpResponse {
   // serialize into a string
   public String toString() {
 
-    var response = this.HTTPVersion + " " + this.statusCode + " " + this.reasonPhrase + HttpConstants.CRLF;
+    var response = new StringBuilder(this.HTTPVersion + " " + this.statusCode + " " + this.reasonPhrase)
+        .append(HttpConstants.CRLF);
 
     for (var entry : this.headers.entrySet()) {
-      response += entry.getKey() + ": " + entry.getValue() + HttpConstants.CRLF;
+      response.append(entry.getKey()).append(": ").append(entry.getValue()).append(HttpConstants.CRLF);
     }
 
-    response += HttpConstants.CRLF;
+    response.append(HttpConstants.CRLF);
 
-    response += this.body;
+    response.append(this.body);
 
-    return response;
+    return response.toString();
   }
 
   // getters
@@ -161,21 +166,28 @@ public class HttpResponse {
     return this.body;
   }
 
+  public byte[] getBodyBytes() {
+    if (this.bodyBytes == null) {
+      this.bodyBytes = this.body.getBytes(StandardCharsets.UTF_8);
+    }
+    return this.bodyBytes;
+  }
+
   // useful builders
   private static Either<String, HttpResponse> buildFromCode(String bodyN, String mime, Boolean keepAliveConnection,
       String[] code) {
     String body = bodyN != null ? bodyN : "";
-    String bodyLength = body.getBytes().length + "";
 
+    // the body is encoded once, the bytes are reused when the response is sent
     return HttpResponse.build(HttpConstants.HTTPV11, code[0], code[1])
+        .flatMap(r -> r.setBody(body))
         .flatMap(r -> r.setHeader("Connection", keepAliveConnection ? "keep-alive" : "close"))
-        .flatMap(r -> r.setHeader("Content-Length", bodyLength))
+        .flatMap(r -> r.setHeader("Content-Length", r.getBodyBytes().length + ""))
         .flatMap(r -> mime != null ? r.setHeader("Content-Type", mime) : Either.right(r))
         .flatMap(r -> r.setHeader("Access-Control-Allow-Origin", "*")) // temp hotfix because of CORS
         .flatMap(r -> r.setHeader("Access-Control-Allow-Methods", "*")) // temp hotfix because of CORS
         .flatMap(r -> r.setHeader("Access-Control-Allow-Headers", "*")) // temp hotfix because of CORS
-        .flatMap(r -> r.setHeader("Access-Control-Allow-Credentials", "true")) // temp hotfix because of CORS
-        .flatMap(r -> r.setBody(body));
+        .flatMap(r -> r.setHeader("Access-Control-Allow-Credentials", "true")); // temp hotfix because of CORS
   }
 
   public static Either<String, HttpResponse> build200(String bodyN, String mime, Boolean keepAliveConnection) {
@@ -213,4 +225,8 @@ public class HttpResponse {
   public static Either<String, HttpResponse> build500(String bodyN, String mime, Boolean keepAliveConnection) {
     return buildFromCode(bodyN, mime, keepAliveConnection, HttpConstants.INTERNAL_SERVER_ERROR_500);
   }
+
+  public static Either<String, HttpResponse> build503(String bodyN, String mime, Boolean keepAliveConnection) {
+    return buildFromCode(bodyN, mime, keepAliveConnection, HttpConstants.SERVICE_UNAVAILABLE_503);
+  }
 }
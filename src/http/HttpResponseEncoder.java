@@ -0,0 +1,107 @@
+package http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// encode a HttpResponse into the buffers to be sent with a single gathering write:
+// the first one contains the status line and the headers, the second one wraps
+// the body bytes without copying them
+public class HttpResponseEncoder {
+
+  private static final byte[] CRLF = HttpConstants.CRLF.getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HEADER_SEPARATOR = ": ".getBytes(StandardCharsets.US_ASCII);
+
+  // status lines of the known status codes, e.g. "HTTP/1.1 200 OK\r\n"
+  // (read-only after the static initialization)
+  private static final Map<String, byte[]> STATUS_LINES = new HashMap<>();
+  // header lines that are the same for a lot of responses, e.g. "Connection: keep-alive\r\n"
+  // (read-only after the static initialization)
+  private static final Map<String, Map<String, byte[]>> HEADER_LINES = new HashMap<>();
+
+  static {
+    for (var code : new String[][] { HttpConstants.OK_200, HttpConstants.CREATED_201, HttpConstants.CREATED_204,
+        HttpConstants.BAD_REQUEST_400, HttpConstants.UNAUTHORIZED_401, HttpConstants.FORBIDDEN_403,
+        HttpConstants.NOT_FOUND_404, HttpConstants.METHOD_NOT_ALLOWED_405, HttpConstants.INTERNAL_SERVER_ERROR_500,
+        HttpConstants.SERVICE_UNAVAILABLE_503 }) {
+      STATUS_LINES.put(HttpConstants.HTTPV11 + " " + code[0] + " " + code[1],
+          (HttpConstants.HTTPV11 + " " + code[0] + " " + code[1] + HttpConstants.CRLF)
+              .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    cacheHeaderLine("Connection", "keep-alive");
+    cacheHeaderLine("Connection", "close");
+    cacheHeaderLine("Content-Type", HttpConstants.MIME_APPLICATION_JSON);
+    cacheHeaderLine("Content-Type", HttpConstants.MIME_TEXT_PLAIN);
+    cacheHeaderLine("Content-Type", HttpConstants.MIME_TEXT_HTML);
+    cacheHeaderLine("Access-Control-Allow-Origin", "*");
+    cacheHeaderLine("Access-Control-Allow-Methods", "*");
+    cacheHeaderLine("Access-Control-Allow-Headers", "*");
+    cacheHeaderLine("Access-Control-Allow-Credentials", "true");
+  }
+
+  private HttpResponseEncoder() {
+  }
+
+  private static void cacheHeaderLine(String key, String value) {
+    HEADER_LINES.computeIfAbsent(key, k -> new HashMap<>())
+        .put(value, (key + ": " + value + HttpConstants.CRLF).getBytes(StandardCharsets.US_ASCII));
+  }
+
+  // returns the head and the body buffers, ready to be written
+  public static ByteBuffer[] encode(HttpResponse res) {
+    var statusLineKey = res.getHTTPVersion() + " " + res.getStatusCode() + " " + res.getReasonPhrase();
+    var statusLine = STATUS_LINES.get(statusLineKey);
+    if (statusLine == null) {
+      statusLine = (statusLineKey + HttpConstants.CRLF).getBytes(StandardCharsets.UTF_8);
+    }
+
+    var headers = res.getHeaders();
+    var headerLines = new byte[headers.size()][];
+    var headSize = statusLine.length + CRLF.length;
+
+    var i = 0;
+    for (var entry : headers.entrySet()) {
+      var cachedValues = HEADER_LINES.get(entry.getKey());
+      var line = cachedValues != null ? cachedValues.get(entry.getValue()) : null;
+
+      if (line == null) {
+        var key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        var value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+
+        line = new byte[key.length + HEADER_SEPARATOR.length + value.length + CRLF.length];
+        System.arraycopy(key, 0, line, 0, key.length);
+        System.arraycopy(HEADER_SEPARATOR, 0, line, key.length, HEADER_SEPARATOR.length);
+        System.arraycopy(value, 0, line, key.length + HEADER_SEPARATOR.length, value.length);
+        System.arraycopy(CRLF, 0, line, line.length - CRLF.length, CRLF.length);
+      }
+
+      headerLines[i++] = line;
+      headSize += line.length;
+    }
+
+    var head = ByteBuffer.allocate(headSize);
+    head.put(statusLine);
+    for (var line : headerLines) {
+      head.put(line);
+    }
+    head.put(CRLF);
+    head.flip();
+
+    return new ByteBuffer[] { head, ByteBuffer.wrap(res.getBodyBytes()) };
+  }
+
+  // true if some bytes of the encoded response have yet to be written:
+  // every buffer has to be checked because the body could be empty,
+  // so that a partial write of the head leaves the last buffer drained
+  public static boolean hasRemaining(ByteBuffer[] buffers) {
+    for (var buf : buffers) {
+      if (buf.hasRemaining()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,174 @@
+package http.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import http.HttpConstants;
+import http.HttpRequestParser;
+
+public class HttpRequestParserTest {
+
+  private static final String CRLF = "\r\n";
+
+  private static final String validGET = "" +
+      "GET /test/index.html?name=Mario&surname=Rossi HTTP/1.1" + CRLF +
+      "Host: www.tutorialspoint.com" + CRLF +
+      "Accept-Language: en-us" + CRLF +
+      "Connection: Keep-Alive" + CRLF +
+      CRLF;
+
+  private static final String validPOST = "" +
+      "POST /test/index.html HTTP/1.1" + CRLF +
+      "Host: www.tutorialspoint.com" + CRLF +
+      "Content-Type: application/json" + CRLF +
+      "content-length: 47" + CRLF +
+      CRLF +
+      "{\"field\":\"pròperty\",\"array\":[1,2,{\"three\":3}]}";
+
+  private static final String missingCL = "" +
+      "POST /test/index.html HTTP/1.1" + CRLF +
+      "Host: www.tutorialspoint.com" + CRLF +
+      CRLF +
+      "{}";
+
+  private static final String malformedCL = "" +
+      "PUT /test/index.html HTTP/1.1" + CRLF +
+      "Content-Length: 4x" + CRLF +
+      CRLF +
+      "{}";
+
+  private static final String malformedRequestLine = "" +
+      "GET/test/index.html" + CRLF +
+      CRLF;
+
+  @Test
+  void parseValidGET() {
+    var bytes = validGET.getBytes(StandardCharsets.UTF_8);
+    var parser = HttpRequestParser.of();
+
+    var eres = parser.advance(ByteBuffer.wrap(bytes));
+    assertTrue(eres.isRight());
+    assertTrue(eres.get());
+    assertEquals(bytes.length, parser.getRequestEnd());
+
+    var ereq = parser.build(ByteBuffer.wrap(bytes));
+    assertTrue(ereq.isRight());
+
+    var req = ereq.get();
+    assertEquals(HttpConstants.GET, req.getMethod());
+    assertEquals("/test/index.html", req.getRequestTarget());
+    assertEquals("HTTP/1.1", req.getHTTPVersion());
+    assertEquals("Mario", req.getQueryParams().get("name"));
+    assertEquals("Rossi", req.getQueryParams().get("surname"));
+    assertEquals("www.tutorialspoint.com", req.getHeaders().get("Host"));
+    assertEquals("Keep-Alive", req.getHeaders().get("Connection"));
+    assertEquals(3, req.getHeaders().size());
+    assertEquals("", req.getBody());
+  }
+
+  @Test
+  void parsePOSTOneByteAtATime() {
+    var bytes = validPOST.getBytes(StandardCharsets.UTF_8);
+    var parser = HttpRequestParser.of();
+
+    // the request arrives one byte at a time
+    for (var i = 1; i < bytes.length; i++) {
+      var eres = parser.advance(ByteBuffer.wrap(bytes, 0, i));
+      assertTrue(eres.isRight());
+      assertTrue(!eres.get());
+    }
+    var eres = parser.advance(ByteBuffer.wrap(bytes));
+    assertTrue(eres.isRight());
+    assertTrue(eres.get());
+
+    var ereq = parser.build(ByteBuffer.wrap(bytes));
+    assertTrue(ereq.isRight());
+
+    var req = ereq.get();
+    assertEquals(HttpConstants.POST, req.getMethod());
+    assertEquals("application/json", req.getHeaders().get("Content-Type"));
+    assertEquals("{\"field\":\"pròperty\",\"array\":[1,2,{\"three\":3}]}", req.getBody());
+  }
+
+  @Test
+  void stopsAtTheEndOfTheRequest() {
+    var bytes = (validPOST + validGET).getBytes(StandardCharsets.UTF_8);
+    var parser = HttpRequestParser.of();
+
+    var eres = parser.advance(ByteBuffer.wrap(bytes));
+    assertTrue(eres.isRight());
+    assertTrue(eres.get());
+    assertEquals(validPOST.getBytes(StandardCharsets.UTF_8).length, parser.getRequestEnd());
+
+    var ereq = parser.build(ByteBuffer.wrap(bytes));
+    assertTrue(ereq.isRight());
+    assertEquals(HttpConstants.POST, ereq.get().getMethod());
+  }
+
+  @Test
+  void resetAllowsReuse() {
+    var parser = HttpRequestParser.of();
+
+    var post = validPOST.getBytes(StandardCharsets.UTF_8);
+    assertTrue(parser.advance(ByteBuffer.wrap(post)).get());
+
+    parser.reset();
+
+    var get = validGET.getBytes(StandardCharsets.UTF_8);
+    assertTrue(parser.advance(ByteBuffer.wrap(get)).get());
+    assertEquals(HttpConstants.GET, parser.build(ByteBuffer.wrap(get)).get().getMethod());
+  }
+
+  @Test
+  void rejectInvalidRequests() {
+    for (var invalid : new String[] { missingCL, malformedCL, malformedRequestLine }) {
+      var parser = HttpRequestParser.of();
+      var bytes = invalid.getBytes(StandardCharsets.UTF_8);
+
+      var eres = parser.advance(ByteBuffer.wrap(bytes));
+      assertTrue(eres.isLeft());
+      assertTrue(parser.build(ByteBuffer.wrap(bytes)).isLeft());
+    }
+  }
+
+  @Test
+  void rejectUnsupportedMethod() {
+    var bytes = ("TRACE / HTTP/1.1" + CRLF + "Content-Length: 0" + CRLF + CRLF).getBytes(StandardCharsets.UTF_8);
+    var parser = HttpRequestParser.of();
+
+    assertTrue(parser.advance(ByteBuffer.wrap(bytes)).get());
+    assertTrue(parser.build(ByteBuffer.wrap(bytes)).isLeft());
+  }
+
+  @Test
+  void rejectTooLargeBodies() {
+    for (var length : new String[] { (HttpRequestParser.MAX_BODY_SIZE + 1) + "", (Integer.MAX_VALUE - 10) + "" }) {
+      var bytes = ("POST / HTTP/1.1" + CRLF + "Content-Length: " + length + CRLF + CRLF + "{}")
+          .getBytes(StandardCharsets.UTF_8);
+      var parser = HttpRequestParser.of();
+
+      assertTrue(parser.advance(ByteBuffer.wrap(bytes)).isLeft());
+      assertTrue(parser.build(ByteBuffer.wrap(bytes)).isLeft());
+    }
+  }
+
+  @Test
+  void rejectEndlessEmptyLines() {
+    var bytes = new byte[HttpRequestParser.MAX_HEAD_SIZE * 2];
+    Arrays.fill(bytes, (byte) '\n');
+    var parser = HttpRequestParser.of();
+
+    // a bit at a time, as it is read from the socket
+    var data = ByteBuffer.wrap(bytes);
+    var eres = parser.advance(data.limit(HttpRequestParser.MAX_HEAD_SIZE / 2));
+    assertTrue(eres.isRight());
+    assertTrue(parser.advance(data.limit(bytes.length)).isLeft());
+  }
+
+}
@@ -0,0 +1,107 @@
+package http.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import http.HttpConstants;
+import http.HttpResponse;
+import http.HttpResponseEncoder;
+
+public class HttpResponseEncoderTest {
+
+  private static String decode(ByteBuffer[] buffers) {
+    var out = new ByteArrayOutputStream();
+    for (var buf : buffers) {
+      var bytes = new byte[buf.remaining()];
+      buf.duplicate().get(bytes);
+      out.write(bytes, 0, bytes.length);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void encodeLikeToString() {
+    var res = HttpResponse.build200("{\"città\":\"Pisa\"}", HttpConstants.MIME_APPLICATION_JSON, true).get();
+
+    var buffers = HttpResponseEncoder.encode(res);
+    assertEquals(2, buffers.length);
+    assertEquals(res.toString(), decode(buffers));
+
+    // the body is not copied
+    assertTrue(buffers[1].array() == res.getBodyBytes());
+    assertEquals(res.getBodyBytes().length + "", res.getHeaders().get("Content-Length"));
+    assertEquals(17, res.getBodyBytes().length);
+  }
+
+  @Test
+  void encodeCustomStatusAndHeaders() {
+    var res = HttpResponse.build(HttpConstants.HTTPV11, "418", "I'm a teapot")
+        .flatMap(r -> r.setHeader("X-Custom", "vàlue"))
+        .flatMap(r -> r.setBody("short and stout"))
+        .get();
+
+    var encoded = decode(HttpResponseEncoder.encode(res));
+    assertEquals(res.toString(), encoded);
+
+    var parsed = HttpResponse.parse(encoded).get();
+    assertEquals("418", parsed.getStatusCode());
+    assertEquals("vàlue", parsed.getHeaders().get("X-Custom"));
+    assertEquals("short and stout", parsed.getBody());
+  }
+
+  @Test
+  void partialHeadWriteWithEmptyBody() throws Exception {
+    var res = HttpResponse.build204("", HttpConstants.MIME_TEXT_PLAIN, true).get();
+
+    var buffers = HttpResponseEncoder.encode(res);
+    assertEquals(0, buffers[1].remaining());
+    assertTrue(HttpResponseEncoder.hasRemaining(buffers));
+
+    // a slow client accepts only a few bytes of the head
+    var out = new ByteArrayOutputStream();
+    var channel = new GatheringByteChannel() {
+      public long write(ByteBuffer[] srcs, int offset, int length) {
+        var head = srcs[offset];
+        var n = Math.min(head.remaining(), 5);
+        var bytes = new byte[n];
+        head.get(bytes);
+        out.write(bytes, 0, n);
+        return n;
+      }
+
+      public long write(ByteBuffer[] srcs) {
+        return write(srcs, 0, srcs.length);
+      }
+
+      public int write(ByteBuffer src) {
+        return (int) write(new ByteBuffer[] { src });
+      }
+
+      public boolean isOpen() {
+        return true;
+      }
+
+      public void close() {
+      }
+    };
+
+    channel.write(buffers);
+    assertFalse(buffers[buffers.length - 1].hasRemaining());
+    assertTrue(HttpResponseEncoder.hasRemaining(buffers));
+
+    // the response is sent only once the whole head went out
+    while (HttpResponseEncoder.hasRemaining(buffers)) {
+      channel.write(buffers);
+    }
+    assertEquals(res.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+}
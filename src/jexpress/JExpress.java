@@ -11,7 +11,9 @@ import http.HttpConstants;
 import http.HttpRequest;
 import http.HttpResponse;
 import io.vavr.control.Either;
+import io.vavr.control.Option;
 import jexpress.expressrouting.ExpressRoute;
+import jexpress.expressrouting.ExpressRouteTrie;
 import utils.TriConsumer;
 import utils.Wrapper;
 import utils.QuadriConsumer;
@@ -26,18 +28,18 @@ public class JExpress {
   private final String DELETE = HttpConstants.DELETE;
   private final String OPTIONS = HttpConstants.OPTIONS;
 
-  // routes handlers
-  private final Map<String, Map<ExpressRoute, TriConsumer<HttpRequest, Map<String, String>, Consumer<Either<String, HttpResponse>>>>> routes = new HashMap<>();
+  // routes handlers, compiled into a trie for each HTTP method
+  private final Map<String, ExpressRouteTrie<TriConsumer<HttpRequest, Map<String, String>, Consumer<Either<String, HttpResponse>>>>> routes = new HashMap<>();
   // global middlewares that act before the above handlers
   private final List<QuadriConsumer<HttpRequest, Map<String, String>, Consumer<Either<String, HttpResponse>>, Runnable>> globalMiddlewares = new LinkedList<>();
 
   public JExpress() {
-    this.routes.put(GET, new HashMap<>());
-    this.routes.put(POST, new HashMap<>());
-    this.routes.put(PUT, new HashMap<>());
-    this.routes.put(PATCH, new HashMap<>());
-    this.routes.put(DELETE, new HashMap<>());
-    this.routes.put(OPTIONS, new HashMap<>());
+    this.routes.put(GET, new ExpressRouteTrie<>());
+    this.routes.put(POST, new ExpressRouteTrie<>());
+    this.routes.put(PUT, new ExpressRouteTrie<>());
+    this.routes.put(PATCH, new ExpressRouteTrie<>());
+    this.routes.put(DELETE, new ExpressRouteTrie<>());
+    this.routes.put(OPTIONS, new ExpressRouteTrie<>());
   }
 
   public static JExpress of() {
@@ -56,7 +58,7 @@ public class JExpress {
   // handlers registration
   private void add(ExpressRoute route, String method,
       TriConsumer<HttpRequest, Map<String, String>, Consumer<Either<String, HttpResponse>>> cb) {
-    this.routes.get(method).put(route, cb);
+    this.routes.get(method).add(route, cb);
   }
 
   public void get(String route,
@@ -129,6 +131,18 @@ public class JExpress {
 
   }
 
+  // return the definition of the route that would handle the request, if any
+  // in the form "METHOD /route/:param"
+  public Option<String> resolveRoute(HttpRequest request) {
+    if (request == null || this.routes.get(request.getMethod()) == null) {
+      return Option.none();
+    }
+
+    return this.routes.get(request.getMethod())
+        .match(request.getRequestTarget())
+        .map(match -> request.getMethod() + " " + match.getRoute().getPathDefinition());
+  }
+
   // this method is thread safe as long as the configuration process has finished
   public Either<String, HttpResponse> handle(HttpRequest request) {
 
@@ -142,38 +156,32 @@ public class JExpress {
       if (handlers != null) {
         // the used HTTP method is supported
         var target = request.getRequestTarget();
-        var isThereHandler = handlers.keySet().stream().anyMatch(route -> route.matches(target));
+        // a single walk of the trie finds the most specific route and its parameters
+        var ematch = handlers.match(target);
 
-        if (isThereHandler) {
+        if (ematch.isDefined()) {
 
           // there is a proper handler for the request target
-          handlers.entrySet().forEach(entry -> {
-            var route = entry.getKey();
-            var handler = entry.getValue();
-
-            if (route.matches(target)) {
-              // extract query parameters
-              var parametersFromPath = route.getParametersFromPath(target);
-              var runRouteHandler = Wrapper.of(false);
-
-              // first: run middlewares
-              runMiddlewares(request, parametersFromPath, this.globalMiddlewares, 0, runRouteHandler, resWrapper);
-
-              // second: call the route handler only if the last middleware has called the
-              // next callback
-              if (runRouteHandler.value) {
-                handler.accept(request, parametersFromPath, eresponse -> {
-                  // if something went wrong, return a 500
-                  var response = eresponse
-                      .recoverWith(err -> HttpResponse.build500(
-                          Feedback.error(
-                              ToJSON.toJSON(err)).toJSON(),
-                          HttpConstants.MIME_APPLICATION_JSON, true));
-                  resWrapper.value = response;
-                });
-              }
-            }
-          });
+          var handler = ematch.get().getValue();
+          var parametersFromPath = ematch.get().getParameters();
+          var runRouteHandler = Wrapper.of(false);
+
+          // first: run middlewares
+          runMiddlewares(request, parametersFromPath, this.globalMiddlewares, 0, runRouteHandler, resWrapper);
+
+          // second: call the route handler only if the last middleware has called the
+          // next callback
+          if (runRouteHandler.value) {
+            handler.accept(request, parametersFromPath, eresponse -> {
+              // if something went wrong, return a 500
+              var response = eresponse
+                  .recoverWith(err -> HttpResponse.build500(
+                      Feedback.error(
+                          ToJSON.toJSON(err)).toJSON(),
+                      HttpConstants.MIME_APPLICATION_JSON, true));
+              resWrapper.value = response;
+            });
+          }
         } else {
 
           // not found a proper handler for the request target
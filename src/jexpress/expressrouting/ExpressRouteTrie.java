@@ -0,0 +1,238 @@
+package jexpress.expressrouting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import io.vavr.control.Option;
+
+/**
+ * Routes compiled into a trie of path segments: static segments, ":param" segments
+ * and a trailing "*" wildcard. A dispatch walks the trie once, without regexes,
+ * collecting the parameters along the way. Patterns that use other features
+ * (custom groups, modifiers, partial segments) are matched by their regex.
+ * When more than one route matches, the most specific one according to
+ * ExpressRoutePatternComparator wins; ties go to the first registered route.
+ */
+public class ExpressRouteTrie<T> {
+    private static final Pattern PARAM_SEGMENT = Pattern.compile(":\\w+");
+    private static final Pattern COMPLEX_SEGMENT = Pattern.compile("[:*()?+\\\\]");
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> statics = new HashMap<>();
+        private Node<T> param = null;
+        // routes that end with "*" right after this node
+        private final List<Entry<T>> wildcards = new ArrayList<>();
+        // routes that end at this node
+        private final List<Entry<T>> terminals = new ArrayList<>();
+    }
+
+    private static class Entry<T> {
+        private final ExpressRoute route;
+        private final T value;
+        private final List<String> paramNames;
+        // registration order, used to break ties
+        private final int order;
+
+        private Entry(ExpressRoute route, T value, List<String> paramNames, int order) {
+            this.route = route;
+            this.value = value;
+            this.paramNames = paramNames;
+            this.order = order;
+        }
+    }
+
+    public static class Match<T> {
+        private final ExpressRoute route;
+        private final T value;
+        private final Map<String, String> parameters;
+
+        private Match(ExpressRoute route, T value, Map<String, String> parameters) {
+            this.route = route;
+            this.value = value;
+            this.parameters = parameters;
+        }
+
+        public ExpressRoute getRoute() {
+            return route;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+    }
+
+    private final Node<T> root = new Node<>();
+    // routes that cannot be expressed by the trie
+    private final List<Entry<T>> fallbacks = new ArrayList<>();
+    private int size = 0;
+
+    // not thread safe: the routes have to be added before the dispatching starts
+    public void add(ExpressRoute route, T value) {
+        var definition = route.getPathDefinition();
+        var order = size++;
+
+        if (!definition.startsWith("/")) {
+            fallbacks.add(new Entry<>(route, value, null, order));
+            return;
+        }
+
+        var segments = splitDefinition(definition);
+        var paramNames = new ArrayList<String>();
+        var node = root;
+
+        for (var i = 0; i < segments.size(); i++) {
+            var segment = segments.get(i);
+            var isLast = i == segments.size() - 1;
+
+            if (segment.equals("*") && isLast) {
+                paramNames.add(Integer.toString(0));
+                node.wildcards.add(new Entry<>(route, value, paramNames, order));
+                return;
+            } else if (PARAM_SEGMENT.matcher(segment).matches()) {
+                paramNames.add(segment.substring(1));
+                if (node.param == null) {
+                    node.param = new Node<>();
+                }
+                node = node.param;
+            } else if (COMPLEX_SEGMENT.matcher(segment).find()) {
+                fallbacks.add(new Entry<>(route, value, null, order));
+                return;
+            } else {
+                node = node.statics.computeIfAbsent(segment, s -> new Node<>());
+            }
+        }
+
+        node.terminals.add(new Entry<>(route, value, paramNames, order));
+    }
+
+    // find the route that handles the path (without the query string), if any
+    public Option<Match<T>> match(String path) {
+        if (path == null) {
+            return Option.none();
+        }
+
+        var best = (Match<T>) null;
+        var bestOrder = Integer.MAX_VALUE;
+        var comparator = new ExpressRoutePatternComparator(path);
+
+        if (path.startsWith("/")) {
+            // offsets of the first char of each segment
+            var starts = new ArrayList<Integer>();
+            var ends = new ArrayList<Integer>();
+            var from = 1;
+            while (true) {
+                var slash = path.indexOf('/', from);
+                starts.add(from);
+                ends.add(slash < 0 ? path.length() : slash);
+                if (slash < 0) {
+                    break;
+                }
+                from = slash + 1;
+            }
+
+            // a trailing slash is allowed, as in the non-strict regexes
+            var count = starts.size();
+            if (count > 1 && starts.get(count - 1).equals(path.length())) {
+                count--;
+            }
+
+            var candidates = new ArrayList<Entry<T>>();
+            var values = new ArrayList<List<String>>();
+            collect(root, path, starts, ends, count, 0, new ArrayList<>(), candidates, values);
+
+            for (var i = 0; i < candidates.size(); i++) {
+                var entry = candidates.get(i);
+                if (best == null || isBetter(comparator, entry.route, entry.order, best.route, bestOrder)) {
+                    var parameters = new HashMap<String, String>();
+                    for (var j = 0; j < entry.paramNames.size(); j++) {
+                        parameters.put(entry.paramNames.get(j), values.get(i).get(j));
+                    }
+                    best = new Match<>(entry.route, entry.value, parameters);
+                    bestOrder = entry.order;
+                }
+            }
+        }
+
+        for (var entry : fallbacks) {
+            if (entry.route.matches(path)
+                    && (best == null || isBetter(comparator, entry.route, entry.order, best.route, bestOrder))) {
+                best = new Match<>(entry.route, entry.value, entry.route.getParametersFromPath(path));
+                bestOrder = entry.order;
+            }
+        }
+
+        return Option.of(best);
+    }
+
+    private static boolean isBetter(ExpressRoutePatternComparator comparator, ExpressRoute route, int order,
+            ExpressRoute other, int otherOrder) {
+        var cmp = comparator.compare(route, other);
+        return cmp < 0 || (cmp == 0 && order < otherOrder);
+    }
+
+    // depth first walk of every branch compatible with the path
+    private void collect(Node<T> node, String path, List<Integer> starts, List<Integer> ends, int count, int depth,
+            List<String> params, List<Entry<T>> candidates, List<List<String>> values) {
+
+        // "*" matches the rest of the path, even if empty, as long as there is a slash
+        if (!node.wildcards.isEmpty() && (depth < count || path.length() > (depth == 0 ? 0 : ends.get(depth - 1)))) {
+            var rest = depth < starts.size() ? path.substring(starts.get(depth)) : "";
+            for (var entry : node.wildcards) {
+                var withRest = new ArrayList<>(params);
+                withRest.add(rest);
+                candidates.add(entry);
+                values.add(withRest);
+            }
+        }
+
+        if (depth == count) {
+            for (var entry : node.terminals) {
+                candidates.add(entry);
+                values.add(new ArrayList<>(params));
+            }
+            return;
+        }
+
+        var segment = path.substring(starts.get(depth), ends.get(depth));
+
+        var child = node.statics.get(segment);
+        if (child != null) {
+            collect(child, path, starts, ends, count, depth + 1, params, candidates, values);
+        }
+
+        if (node.param != null && !segment.isEmpty()) {
+            params.add(segment);
+            collect(node.param, path, starts, ends, count, depth + 1, params, candidates, values);
+            params.remove(params.size() - 1);
+        }
+    }
+
+    // "/users/:id/" -> ["users", ":id"]
+    private static List<String> splitDefinition(String definition) {
+        var segments = new ArrayList<String>();
+        var from = 1;
+
+        while (true) {
+            var slash = definition.indexOf('/', from);
+            segments.add(definition.substring(from, slash < 0 ? definition.length() : slash));
+            if (slash < 0) {
+                break;
+            }
+            from = slash + 1;
+        }
+
+        // a trailing slash in the definition is optional, as in the non-strict regexes
+        if (segments.size() > 1 && segments.get(segments.size() - 1).isEmpty()) {
+            segments.remove(segments.size() - 1);
+        }
+
+        return segments;
+    }
+}
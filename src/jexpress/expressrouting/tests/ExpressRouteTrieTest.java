@@ -0,0 +1,77 @@
+package jexpress.expressrouting.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import jexpress.expressrouting.ExpressRoute;
+import jexpress.expressrouting.ExpressRouteTrie;
+
+public class ExpressRouteTrieTest {
+
+  // the routes of ServerMain plus some more exotic ones
+  private static final List<String> DEFINITIONS = List.of(
+      "/login", "/logout", "/users", "/users/:user_id", "/users/:user_id/followers",
+      "/users/:user_id/following", "/users/:user_id/blog", "/users/:user_id/feed",
+      "/users/:user_id/wallet", "/users/:user_id/posts", "/users/:user_id/posts/:post_id",
+      "/posts/:post_id", "/users/:user_id/posts/:post_id/reactions",
+      "/users/:user_id/posts/:post_id/comments", "/multicast", "/metrics",
+      "/files/*", "/:commoditySlug/options/:optionId", "/numbers/:id(\\d+)");
+
+  private static final List<String> PATHS = List.of(
+      "/login", "/login/", "/logout", "/users", "/users/", "/users/mario", "/users/mario/",
+      "/users/mario/followers", "/users/mario/posts/42", "/users/mario/posts/42/", "/users/mario/posts/42/comments",
+      "/posts/42", "/posts/", "/posts", "/files/", "/files/a/b.txt", "/files", "/porkbelly/options/1234",
+      "/numbers/123", "/numbers/abc", "/users//followers", "/nope", "/", "");
+
+  private ExpressRouteTrie<String> makeTrie() {
+    var trie = new ExpressRouteTrie<String>();
+    DEFINITIONS.forEach(definition -> trie.add(new ExpressRoute(definition), definition));
+    return trie;
+  }
+
+  @Test
+  void sameResultsOfTheRegexes() {
+    var trie = makeTrie();
+
+    for (var path : PATHS) {
+      var matching = DEFINITIONS.stream()
+          .map(ExpressRoute::new)
+          .filter(route -> route.matches(path))
+          .toList();
+      var ematch = trie.match(path);
+
+      // none of these definitions overlap
+      assertTrue(matching.size() <= 1, path);
+      assertEquals(matching.size() == 1, ematch.isDefined(), path);
+
+      if (ematch.isDefined()) {
+        var route = matching.get(0);
+        assertEquals(route.getPathDefinition(), ematch.get().getValue(), path);
+        assertEquals(route.getParametersFromPath(path), ematch.get().getParameters(), path);
+      }
+    }
+  }
+
+  @Test
+  void mostSpecificRouteWins() {
+    var trie = new ExpressRouteTrie<String>();
+    trie.add(new ExpressRoute("/*"), "any");
+    trie.add(new ExpressRoute("/users/:user_id"), "user");
+    trie.add(new ExpressRoute("/users/me"), "me");
+    trie.add(new ExpressRoute("/users/:id"), "user again");
+
+    assertEquals("me", trie.match("/users/me").get().getValue());
+    // same priority: the first registered route wins
+    assertEquals("user", trie.match("/users/luigi").get().getValue());
+    assertEquals(Map.of("user_id", "luigi"), trie.match("/users/luigi").get().getParameters());
+    assertEquals("any", trie.match("/posts/1").get().getValue());
+    assertEquals(Map.of("0", "posts/1"), trie.match("/posts/1").get().getParameters());
+    assertTrue(trie.match("users").isEmpty());
+  }
+
+}
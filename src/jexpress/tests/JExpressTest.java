@@ -184,7 +184,7 @@ public class JExpressTest {
           throw new RuntimeException();
         }
 
-        request.context = User.of(usernameClaim.asString(), "INVALD_USER", null);
+        request.context = User.of(usernameClaim.asString(), "INVALD_USER", null, false);
 
         // run the next middleware or the route handler only if the user is authorized
         next.run();
@@ -0,0 +1,122 @@
+package jexpress.tests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import jexpress.expressrouting.ExpressRoute;
+import jexpress.expressrouting.ExpressRouteTrie;
+
+// run with: --select-class jexpress.tests.RouteDispatchBenchmark
+// compares the cost of finding the route (and its parameters) of a request among
+// the routes of ServerMain with the old linear regex scan and with the trie
+public class RouteDispatchBenchmark {
+
+  private static final Integer DISPATCHES = Integer.getInteger("benchmark.dispatches", 2000000);
+
+  // method + definition, as registered by ServerMain
+  private static final List<String[]> ROUTES = List.of(
+      new String[] { "GET", "/multicast" },
+      new String[] { "GET", "/metrics" },
+      new String[] { "OPTIONS", "/*" },
+      new String[] { "POST", "/login" },
+      new String[] { "POST", "/logout" },
+      new String[] { "POST", "/users" },
+      new String[] { "GET", "/users/:user_id" },
+      new String[] { "GET", "/users" },
+      new String[] { "GET", "/users/:user_id/followers" },
+      new String[] { "GET", "/users/:user_id/following" },
+      new String[] { "POST", "/users/:user_id/following" },
+      new String[] { "DELETE", "/users/:user_id/following" },
+      new String[] { "GET", "/users/:user_id/blog" },
+      new String[] { "GET", "/users/:user_id/feed" },
+      new String[] { "GET", "/users/:user_id/wallet" },
+      new String[] { "POST", "/users/:user_id/posts" },
+      new String[] { "DELETE", "/users/:user_id/posts/:post_id" },
+      new String[] { "GET", "/users/:user_id/posts/:post_id" },
+      new String[] { "GET", "/posts/:post_id" },
+      new String[] { "POST", "/users/:user_id/posts/:post_id/reactions" },
+      new String[] { "POST", "/users/:user_id/posts/:post_id/comments" });
+
+  // a mix of the most common requests
+  private static final List<String[]> REQUESTS = List.of(
+      new String[] { "GET", "/users/mario/feed" },
+      new String[] { "GET", "/users/mario/blog" },
+      new String[] { "GET", "/users/mario/posts/3f2a9c4e-6d1b-4b7e-9a51-0c2d8e7f1a23" },
+      new String[] { "POST", "/users/mario/posts/3f2a9c4e-6d1b-4b7e-9a51-0c2d8e7f1a23/reactions" },
+      new String[] { "POST", "/users/mario/posts/3f2a9c4e-6d1b-4b7e-9a51-0c2d8e7f1a23/comments" },
+      new String[] { "GET", "/users/mario/wallet" },
+      new String[] { "GET", "/users" },
+      new String[] { "OPTIONS", "/users/mario/feed" });
+
+  private static final List<String> METHODS = List.of("GET", "POST", "DELETE", "OPTIONS");
+
+  // the old dispatch: every route of the method is tried, then the parameters
+  // of the matching ones are extracted with the regex again
+  private long runLinear(Map<String, List<ExpressRoute>> linear) {
+    var found = 0L;
+    for (var i = 0; i < DISPATCHES; i++) {
+      var request = REQUESTS.get(i % REQUESTS.size());
+      var routes = linear.get(request[0]);
+      var target = request[1];
+
+      if (routes.stream().anyMatch(route -> route.matches(target))) {
+        for (var route : routes) {
+          if (route.matches(target)) {
+            found += route.getParametersFromPath(target).size();
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  private long runTrie(Map<String, ExpressRouteTrie<String>> tries) {
+    var found = 0L;
+    for (var i = 0; i < DISPATCHES; i++) {
+      var request = REQUESTS.get(i % REQUESTS.size());
+      var ematch = tries.get(request[0]).match(request[1]);
+
+      if (ematch.isDefined()) {
+        found += ematch.get().getParameters().size();
+      }
+    }
+    return found;
+  }
+
+  @Test
+  public void compareDispatch() {
+    var linear = new HashMap<String, List<ExpressRoute>>();
+    var tries = new HashMap<String, ExpressRouteTrie<String>>();
+
+    for (var method : METHODS) {
+      linear.put(method, new ArrayList<>());
+      tries.put(method, new ExpressRouteTrie<>());
+    }
+    for (var route : ROUTES) {
+      linear.get(route[0]).add(new ExpressRoute(route[1]));
+      tries.get(route[0]).add(new ExpressRoute(route[1]), route[1]);
+    }
+
+    // warmup
+    runLinear(linear);
+    runTrie(tries);
+
+    var start = System.nanoTime();
+    var linearFound = runLinear(linear);
+    var linearTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    var trieFound = runTrie(tries);
+    var trieTime = System.nanoTime() - start;
+
+    System.out.println(DISPATCHES + " dispatches over " + ROUTES.size() + " routes");
+    System.out.println(String.format("linear regex: %7.1f ns/dispatch (%d parameters)",
+        linearTime / (double) DISPATCHES, linearFound));
+    System.out.println(String.format("trie        : %7.1f ns/dispatch (%d parameters)",
+        trieTime / (double) DISPATCHES, trieFound));
+  }
+}
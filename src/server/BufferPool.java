@@ -0,0 +1,148 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// buffers lent to the connections to store the incoming requests
+// the buffers are grouped by size classes (powers of two, from MIN_BUFFER_SIZE to
+// MAX_BUFFER_SIZE): a buffer is taken back when the connection does not need it
+// anymore, so a keep-alive client reuses the same few buffers for all its requests
+public class BufferPool {
+
+  public static final Integer MIN_BUFFER_SIZE = 4 * 1024;
+  public static final Integer MAX_BUFFER_SIZE = 1024 * 1024;
+
+  private static final Integer CLASSES_COUNT = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE)
+      - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE) + 1;
+
+  private final Boolean direct;
+  // max number of idle buffers retained for each size class
+  private final Integer maxBuffersPerClass;
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private final ConcurrentLinkedQueue<ByteBuffer>[] classes = new ConcurrentLinkedQueue[CLASSES_COUNT];
+  private final AtomicInteger[] classesSizes = new AtomicInteger[CLASSES_COUNT];
+
+  // acquisitions served by an idle buffer
+  private final LongAdder hits = new LongAdder();
+  // acquisitions that required a new allocation
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder allocatedBytes = new LongAdder();
+
+  private BufferPool(Boolean direct, Integer maxBuffersPerClass) {
+    this.direct = direct;
+    this.maxBuffersPerClass = maxBuffersPerClass;
+
+    for (var i = 0; i < CLASSES_COUNT; i++) {
+      this.classes[i] = new ConcurrentLinkedQueue<>();
+      this.classesSizes[i] = new AtomicInteger(0);
+    }
+  }
+
+  // null or non positive values fall back to the defaults:
+  // heap buffers, 1024 idle buffers per size class
+  public static BufferPool of(Boolean direct, Integer maxBuffersPerClass) {
+    var d = direct != null && direct;
+    var m = maxBuffersPerClass != null && maxBuffersPerClass > 0 ? maxBuffersPerClass : 1024;
+
+    return new BufferPool(d, m);
+  }
+
+  public static BufferPool of() {
+    return of(null, null);
+  }
+
+  // index of the smallest size class that can hold minCapacity bytes,
+  // -1 if the request is too big to be pooled
+  private static int classOf(int minCapacity) {
+    if (minCapacity > MAX_BUFFER_SIZE) {
+      return -1;
+    }
+    var size = Math.max(MIN_BUFFER_SIZE, Integer.highestOneBit(minCapacity - 1) << 1);
+    return Integer.numberOfTrailingZeros(size) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+  }
+
+  // get a cleared buffer with at least minCapacity bytes of room
+  public ByteBuffer acquire(int minCapacity) {
+    var index = classOf(minCapacity);
+
+    if (index >= 0) {
+      var buf = this.classes[index].poll();
+      if (buf != null) {
+        this.classesSizes[index].decrementAndGet();
+        this.hits.increment();
+        return buf.clear();
+      }
+    }
+
+    var capacity = index >= 0 ? MIN_BUFFER_SIZE << index : minCapacity;
+    this.misses.increment();
+    this.allocatedBytes.add(capacity);
+    return this.direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  // take back a buffer, it must not be used anymore by the caller
+  public void release(ByteBuffer buf) {
+    if (buf == null || buf.isDirect() != this.direct) {
+      return;
+    }
+
+    var capacity = buf.capacity();
+    // only the buffers of exactly one size class are retained
+    if (Integer.bitCount(capacity) != 1 || capacity < MIN_BUFFER_SIZE || capacity > MAX_BUFFER_SIZE) {
+      return;
+    }
+
+    var index = classOf(capacity);
+    if (this.classesSizes[index].incrementAndGet() <= this.maxBuffersPerClass) {
+      this.classes[index].offer(buf);
+    } else {
+      // enough idle buffers of this size, let the gc collect it
+      this.classesSizes[index].decrementAndGet();
+    }
+  }
+
+  // get a buffer with at least minCapacity bytes of room containing the data of
+  // the given one (the bytes before its position), which is taken back
+  public ByteBuffer grow(ByteBuffer buf, int minCapacity) {
+    var bigger = acquire(minCapacity);
+    bigger.put(buf.flip());
+    release(buf);
+    return bigger;
+  }
+
+  public Boolean isDirect() {
+    return this.direct;
+  }
+
+  public Long getHits() {
+    return this.hits.sum();
+  }
+
+  public Long getMisses() {
+    return this.misses.sum();
+  }
+
+  // percentage of the acquisitions served without allocating
+  public Double getHitRate() {
+    var hits = this.hits.sum();
+    var total = hits + this.misses.sum();
+    return total == 0 ? 0.0 : hits * 100.0 / total;
+  }
+
+  public Long getAllocatedBytes() {
+    return this.allocatedBytes.sum();
+  }
+
+  // number of idle buffers
+  public Integer getIdleCount() {
+    var count = 0;
+    for (var size : this.classesSizes) {
+      count += size.get();
+    }
+    return count;
+  }
+
+}
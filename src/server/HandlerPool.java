@@ -0,0 +1,195 @@
+package server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// the threads that run the jexpress handlers
+// "pool" mode: a bounded pool of platform threads with a bounded queue
+// "virtual" mode: each request runs on its own (virtual) thread, the
+// number of requests in flight is bounded and each route has its own cap
+public class HandlerPool {
+
+  // when the queue is full, stop reading from the client until there is room
+  public static final String REJECT_BACKPRESSURE = "backpressure";
+  // when the queue is full, reply immediately with a 503
+  public static final String REJECT_503 = "503";
+
+  public static final String MODE_POOL = "pool";
+  public static final String MODE_VIRTUAL = "virtual";
+
+  private final ExecutorService executor;
+  private final String rejectPolicy;
+  private final String mode;
+  private final Integer queueCapacity;
+  // how many submissions have found the queue full
+  private final LongAdder rejected = new LongAdder();
+
+  // virtual mode only: requests in flight and per route slots
+  private final Semaphore inFlight;
+  private final Integer routeConcurrency;
+  private final ConcurrentMap<String, Semaphore> routeSlots = new ConcurrentHashMap<>();
+  private final Boolean usesVirtualThreads;
+
+  private HandlerPool(Integer threads, Integer queueCapacity, String rejectPolicy, String mode,
+      Integer routeConcurrency) {
+    var threadsCounter = new AtomicInteger(0);
+    ThreadFactory factory = r -> {
+      var thread = new Thread(r, "handler-" + threadsCounter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+
+    this.rejectPolicy = rejectPolicy;
+    this.mode = mode;
+    this.queueCapacity = queueCapacity;
+    this.routeConcurrency = routeConcurrency;
+
+    if (mode.equals(MODE_VIRTUAL)) {
+      var virtualExecutor = newVirtualThreadPerTaskExecutor();
+
+      this.usesVirtualThreads = virtualExecutor != null;
+      this.executor = virtualExecutor != null ? virtualExecutor : Executors.newCachedThreadPool(factory);
+      this.inFlight = new Semaphore(queueCapacity);
+    } else {
+      this.usesVirtualThreads = false;
+      this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(queueCapacity), factory);
+      this.inFlight = null;
+    }
+  }
+
+  // virtual threads are available since JDK 21, on older runtimes
+  // each request gets its own platform thread instead
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (Exception e) {
+      System.out.println("virtual threads are not supported, falling back to a platform thread per request");
+      return null;
+    }
+  }
+
+  // null or non positive values fall back to the defaults:
+  // one thread per core, 1024 queued (or in flight) requests, backpressure,
+  // pool mode, 64 concurrent requests per route
+  public static HandlerPool of(Integer threads, Integer queueCapacity, String rejectPolicy, String mode,
+      Integer routeConcurrency) {
+    var t = threads != null && threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    var q = queueCapacity != null && queueCapacity > 0 ? queueCapacity : 1024;
+    var p = rejectPolicy != null && rejectPolicy.equals(REJECT_503) ? REJECT_503 : REJECT_BACKPRESSURE;
+    var m = mode != null && mode.equals(MODE_VIRTUAL) ? MODE_VIRTUAL : MODE_POOL;
+    var r = routeConcurrency != null && routeConcurrency > 0 ? routeConcurrency : 64;
+
+    return new HandlerPool(t, q, p, m, r);
+  }
+
+  public static HandlerPool of(Integer threads, Integer queueCapacity, String rejectPolicy) {
+    return of(threads, queueCapacity, rejectPolicy, null, null);
+  }
+
+  public static HandlerPool of() {
+    return of(null, null, null, null, null);
+  }
+
+  // try to run a task, return false if there is no room for it
+  // the route is used only in virtual mode to apply the per route cap
+  public Boolean trySubmit(String route, Runnable task) {
+    if (this.inFlight != null) {
+      return this.trySubmitVirtual(route, task);
+    }
+
+    try {
+      this.executor.execute(task);
+      return true;
+    } catch (RejectedExecutionException e) {
+      this.rejected.increment();
+      return false;
+    }
+  }
+
+  public Boolean trySubmit(Runnable task) {
+    return this.trySubmit(null, task);
+  }
+
+  private Boolean trySubmitVirtual(String route, Runnable task) {
+    if (!this.inFlight.tryAcquire()) {
+      this.rejected.increment();
+      return false;
+    }
+
+    var slots = this.routeSlots.computeIfAbsent(route != null ? route : "", __ -> new Semaphore(routeConcurrency));
+
+    try {
+      this.executor.execute(() -> {
+        // a blocked virtual thread is cheap: wait for a slot of the route
+        slots.acquireUninterruptibly();
+        try {
+          task.run();
+        } finally {
+          slots.release();
+          this.inFlight.release();
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      this.inFlight.release();
+      this.rejected.increment();
+      return false;
+    }
+  }
+
+  public Boolean isBackpressure() {
+    return this.rejectPolicy.equals(REJECT_BACKPRESSURE);
+  }
+
+  public String getMode() {
+    return this.mode;
+  }
+
+  public Boolean usesVirtualThreads() {
+    return this.usesVirtualThreads;
+  }
+
+  // number of tasks waiting: for a thread in pool mode, for a route slot in virtual mode
+  public Integer getQueueDepth() {
+    if (this.inFlight != null) {
+      return this.routeSlots.values()
+          .stream()
+          .map(Semaphore::getQueueLength)
+          .reduce(0, (acc, val) -> acc + val);
+    } else {
+      return ((ThreadPoolExecutor) this.executor).getQueue().size();
+    }
+  }
+
+  public Integer getQueueCapacity() {
+    return this.queueCapacity;
+  }
+
+  public Long getRejectedCount() {
+    return this.rejected.sum();
+  }
+
+  // number of tasks that are running (or, in virtual mode, are in flight)
+  public Integer getActiveCount() {
+    if (this.inFlight != null) {
+      return this.queueCapacity - this.inFlight.availablePermits();
+    } else {
+      return ((ThreadPoolExecutor) this.executor).getActiveCount();
+    }
+  }
+
+  public void shutdown() {
+    this.executor.shutdown();
+  }
+}
@@ -0,0 +1,38 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+import utils.ToJSON;
+
+// registry of named gauges, read on demand
+public class Metrics {
+
+  // sorted to have a stable json output
+  private final Map<String, Supplier<Number>> gauges = new ConcurrentSkipListMap<>();
+
+  public static Metrics of() {
+    return new Metrics();
+  }
+
+  // register (or replace) a gauge
+  public void gauge(String name, Supplier<Number> gauge) {
+    if (name != null && gauge != null) {
+      this.gauges.put(name, gauge);
+    }
+  }
+
+  public String toJSON() {
+    var toRet = "{";
+
+    toRet += this.gauges.entrySet()
+        .stream()
+        .map(e -> ToJSON.toJSON(e.getKey()) + ":" + ToJSON.toJSON(e.getValue().get()))
+        .reduce("", (acc, curr) -> acc.equals("") ? curr : acc + "," + curr);
+
+    toRet += "}";
+
+    return toRet;
+  }
+}
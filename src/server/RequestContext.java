@@ -1,121 +1,183 @@
 package server;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import http.HttpRequest;
+import http.HttpRequestParser;
 import http.HttpResponse;
+import http.HttpResponseEncoder;
+import io.vavr.control.Either;
 import io.vavr.control.Option;
 
 // used as attachment to the channels handled by NIO
+// a client can pipeline many requests: they are parsed one after the other
+// from the same buffer and their responses are sent back in the same order
 public class RequestContext {
-  // used to store the request
-  private byte[] requestBuffer = new byte[128];
-  // first free slot into the requestBuffer
-  private Integer head = 0;
-
-  // counter used to store the content length value
-  public Integer yetToRead = -1;
-  // this flag indicates an error during some process
+  // max number of requests read from a client whose response has not been sent yet
+  public static final Integer MAX_PIPELINED_REQUESTS = 16;
+
+  // lends the buffers used to store the requests
+  private final BufferPool bufferPool;
+  // used to store the request, taken from the pool only while
+  // there are bytes of a request to be stored (the data is before the position)
+  private ByteBuffer requestBuffer = null;
+
+  // incrementally parses the content of the request buffer
+  private final HttpRequestParser parser = HttpRequestParser.of();
+
+  // the responses of the requests read so far, in the order of the requests
+  // (completed by the handler threads, consumed by the reactor thread)
+  private final ConcurrentLinkedQueue<ResponseSlot> responses = new ConcurrentLinkedQueue<>();
+  // how many responses have not been sent yet
+  private Integer pendingResponses = 0;
+  // used to store the bytes of the HTTP response being sent: head and body
+  private ByteBuffer[] responseBuffers = null;
+  // this flag indicates that the connection has to be closed
+  // once the response being sent has been sent
+  private Boolean closeAfterResponse = false;
+
+  // this flag indicates that a request is waiting for room into the handler pool
+  public Boolean isPaused = false;
+  // this flag indicates an error during some process: no more requests are read
+  // and the connection will be closed after the queued responses
   public Boolean isError = false;
-  // this flags indicates if the headers of the request
-  // have already been parsed
-  public Boolean headersParsed = false;
-  // used to store the HTTP response to be sent
-  private HttpResponse response = null;
-  // used to store the bytes of the HTTP response to be sent
-  private ByteBuffer responseBuffer = null;
-
-  public void setResponse(HttpResponse res) {
-    if (res != null) {
-      this.response = res;
-      this.responseBuffer = ByteBuffer.wrap(res.toString().getBytes());
-    }
-  }
 
-  public Option<HttpResponse> getResponse() {
-    return Option.of(this.response);
+  private RequestContext(BufferPool bufferPool) {
+    this.bufferPool = bufferPool;
   }
 
-  public Option<ByteBuffer> getResponseBuffer() {
-    return Option.of(this.responseBuffer);
-  }
+  // the place where the response of a request will be stored
+  public static class ResponseSlot {
+    private volatile Boolean closeConnection = false;
+    private volatile ByteBuffer[] buffers = null;
 
-  // store new content into the request buffer, increasing its size when necessary
-  public void concatRequestBufferWith(byte[] another, int amount) {
+    private ResponseSlot() {
+    }
 
-    if (amount > requestBuffer.length - head) {
-      requestBuffer = Arrays.copyOf(requestBuffer, (int) ((requestBuffer.length + amount) * 1.618033));
+    // set the response, the connection will be closed after it if closeConnection is true
+    // (the response is encoded by the calling thread, not by the reactor one)
+    public void complete(HttpResponse res, Boolean closeConnection) {
+      // the buffers are written last because they signal the completion
+      this.closeConnection = closeConnection;
+      this.buffers = HttpResponseEncoder.encode(res);
     }
 
-    for (var i = 0; i < amount; i++, head++) {
-      requestBuffer[head] = another[i];
+    public Boolean isCompleted() {
+      return this.buffers != null;
     }
   }
 
-  // transform the content of the request buffer into a string
-  public String requestBufferToString(Boolean useUTF8) {
+  // reserve the slot for the response of the request just read
+  public ResponseSlot enqueueResponse() {
+    var slot = new ResponseSlot();
+    this.responses.offer(slot);
+    this.pendingResponses++;
+    return slot;
+  }
+
+  // check if further requests can be read from the client
+  public Boolean canAcceptRequests() {
+    return !this.isPaused && !this.isError && this.pendingResponses < MAX_PIPELINED_REQUESTS;
+  }
+
+  // check if there is something to be sent
+  public Boolean hasResponseReady() {
+    var next = this.responses.peek();
+    return this.responseBuffers != null || (next != null && next.isCompleted());
+  }
 
-    var validSubset = Arrays.copyOfRange(requestBuffer, 0, this.head);
-    try {
-      if (useUTF8) {
-        return new String(validSubset, "UTF-8");
-      } else {
-        return new String(validSubset);
+  // get the buffers of the response to be sent, if it is ready,
+  // preserving the order of the requests
+  public Option<ByteBuffer[]> getResponseBuffers() {
+    if (this.responseBuffers == null) {
+      var next = this.responses.peek();
+
+      if (next != null && next.isCompleted()) {
+        this.responses.poll();
+        this.responseBuffers = next.buffers;
+        this.closeAfterResponse = next.closeConnection;
       }
-    } catch (UnsupportedEncodingException e) {
-      e.printStackTrace();
-      return "";
     }
+
+    return Option.of(this.responseBuffers);
   }
 
-  // check if the request buffer contain a sequence of bytes
-  public Integer requestBufferContains(byte[] sub) {
+  // to be called once the response buffers have been entirely sent
+  // returns true if the connection has to be closed
+  public Boolean responseSent() {
+    this.responseBuffers = null;
+    this.pendingResponses--;
+    return this.closeAfterResponse;
+  }
 
-    try {
-      for (var i = 0; i < requestBuffer.length; i++) {
-        var found = true;
+  // read from the channel straight into the request buffer, taking
+  // a buffer from the pool or a bigger one when necessary
+  public int readFrom(ReadableByteChannel channel) throws IOException {
+    if (this.requestBuffer == null) {
+      this.requestBuffer = this.bufferPool.acquire(BufferPool.MIN_BUFFER_SIZE);
+    } else if (!this.requestBuffer.hasRemaining()) {
+      this.requestBuffer = this.bufferPool.grow(this.requestBuffer, this.requestBuffer.capacity() * 2);
+    }
 
-        for (var j = 0; j < sub.length && found; j++) {
-          if (requestBuffer[i + j] != sub[j]) {
-            found = false;
-          }
-        }
+    var bytesRead = channel.read(this.requestBuffer);
 
-        if (found) {
-          return i;
-        }
+    // nothing to hold
+    if (this.requestBuffer.position() == 0) {
+      releaseBuffers();
+    }
 
-      }
+    return bytesRead;
+  }
 
-      return -1;
-    } catch (IndexOutOfBoundsException e) {
-      return -1;
+  // the valid content of the request buffer
+  private ByteBuffer requestData() {
+    if (this.requestBuffer == null) {
+      return ByteBuffer.allocate(0);
     }
+    return this.requestBuffer.duplicate().flip();
   }
 
-  public Integer requestBufferContentSize() {
-    return this.head;
+  // scan the bytes stored since the last call
+  // returns true if the whole request has been read
+  public Either<String, Boolean> parseRequest() {
+    return parser.advance(requestData());
   }
 
-  public byte[] getRequestBuffer() {
-    return requestBuffer.clone();
+  // build the request once it has been entirely read
+  public Either<String, HttpRequest> buildRequest() {
+    return parser.build(requestData());
+  }
+
+  // remove the request just read from the request buffer, keeping
+  // the bytes that already belong to the next requests
+  public void consumeRequest() {
+    var end = parser.getRequestEnd();
+    this.parser.reset();
+
+    if (end == this.requestBuffer.position()) {
+      // the usual case: no pipelined bytes, the buffer goes back to the pool
+      releaseBuffers();
+    } else {
+      this.requestBuffer.flip().position(end);
+      this.requestBuffer.compact();
+    }
+  }
+
+  public Integer requestBufferContentSize() {
+    return this.requestBuffer == null ? 0 : this.requestBuffer.position();
   }
 
-  // clear the whole instance to be used for
-  // further requests from the same client
-  public void clear() {
-    this.requestBuffer = new byte[128];
-    this.head = 0;
-    this.yetToRead = -1;
-    this.isError = false;
-    this.headersParsed = false;
-    this.response = null;
-    this.responseBuffer = null;
+  // give the request buffer back to the pool, e.g. when the connection is closed
+  public void releaseBuffers() {
+    this.bufferPool.release(this.requestBuffer);
+    this.requestBuffer = null;
   }
 
-  public static RequestContext of() {
-    return new RequestContext();
+  public static RequestContext of(BufferPool bufferPool) {
+    return new RequestContext(bufferPool);
   }
 
 }
@@ -2,34 +2,72 @@ package server;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.concurrent.CompletableFuture;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import domain.feedback.Feedback;
 import http.HttpConstants;
 import http.HttpRequest;
 import http.HttpResponse;
-import io.vavr.control.Either;
+import http.HttpResponseEncoder;
 import jexpress.JExpress;
+import utils.Triple;
 
 public class Server implements Runnable {
   private JExpress jexpress;
   private Integer port;
   private String ip;
-
-  private Server(JExpress jexpress, String ip, Integer port) {
+  // number of worker selectors the accepted connections are spread across
+  private Integer reactorsCount;
+  // how often, in ms, a reactor retries the requests rejected by a full handler pool
+  private static final Long DEFERRED_POLL_INTERVAL = 5L;
+  // threads that run the jexpress handlers
+  private HandlerPool handlerPool;
+  // buffers lent to the connections to store the requests
+  private BufferPool bufferPool;
+
+  private Server(JExpress jexpress, String ip, Integer port, Integer reactorsCount, HandlerPool handlerPool,
+      BufferPool bufferPool) {
     this.jexpress = jexpress;
     this.ip = ip;
     this.port = port;
+    this.reactorsCount = reactorsCount;
+    this.handlerPool = handlerPool;
+    this.bufferPool = bufferPool;
   }
 
   // API
   public static Server of(JExpress jexpress, String ip, Integer port) {
-    return new Server(jexpress, ip, port);
+    return of(jexpress, ip, port, null, null, null);
+  }
+
+  public static Server of(JExpress jexpress, String ip, Integer port, Integer reactorsCount,
+      HandlerPool handlerPool) {
+    return of(jexpress, ip, port, reactorsCount, handlerPool, null);
+  }
+
+  // a null or non positive number of reactors means one reactor per available core
+  // a null handler pool or buffer pool means a pool with the default settings
+  public static Server of(JExpress jexpress, String ip, Integer port, Integer reactorsCount,
+      HandlerPool handlerPool, BufferPool bufferPool) {
+    var reactors = reactorsCount != null && reactorsCount > 0 ? reactorsCount
+        : Runtime.getRuntime().availableProcessors();
+    var pool = handlerPool != null ? handlerPool : HandlerPool.of();
+    var buffers = bufferPool != null ? bufferPool : BufferPool.of();
+    return new Server(jexpress, ip, port, reactors, pool, buffers);
+  }
+
+  public HandlerPool getHandlerPool() {
+    return this.handlerPool;
+  }
+
+  public BufferPool getBufferPool() {
+    return this.bufferPool;
   }
 
   public HttpResponse badRequestCloseConnection(String error) {
@@ -41,243 +79,379 @@ public class Server implements Runnable {
         "INTERNAL SERVER ERROR").toJSON(), HttpConstants.MIME_APPLICATION_JSON, false).get();
   }
 
+  public HttpResponse serviceUnavailableKeepAliveConnection() {
+    return HttpResponse.build503(Feedback.error(
+        "\"SERVICE UNAVAILABLE\"").toJSON(), HttpConstants.MIME_APPLICATION_JSON, true).get();
+  }
+
   public HttpResponse okKeepAliveConnection(String message) {
     return HttpResponse.build200(Feedback.error(message).toJSON(), HttpConstants.MIME_APPLICATION_JSON, true).get();
   }
 
   // handle the accept "event"
-  public void handleAccept(ServerSocketChannel serverChannel, Selector selector) throws IOException {
+  private void handleAccept(ServerSocketChannel serverChannel, Reactor reactor) throws IOException {
     // accept the connetion, returns a channel that is properly configured
     var client = serverChannel.accept();
+
+    // spurious wakeup, there was no pending connection
+    if (client == null) {
+      return;
+    }
+
     client.configureBlocking(false);
 
+    // the channel will be registered by the reactor thread itself
+    reactor.enqueue(client);
+  }
+
+  // register a new client into the selector of the current reactor
+  public void handleRegistration(SocketChannel client, Selector selector) throws IOException {
     // firstly, we have to read a message from the client
     var newClientKey = client.register(selector, SelectionKey.OP_READ);
 
     // create the context associated with the channel
-    var clientCtx = RequestContext.of();
+    var clientCtx = RequestContext.of(this.bufferPool);
 
     // attach the context to the channel
     newClientKey.attach(clientCtx);
   }
 
   // handle the write "event"
-  public void handleWrite(SelectionKey key) throws IOException {
+  private void handleWrite(SelectionKey key, Reactor reactor) throws IOException {
     var clientCtx = (RequestContext) key.attachment();
     var client = (SocketChannel) key.channel();
 
-    // something weird has happened: there is no response buffer
-    if (clientCtx.getResponseBuffer().isEmpty()) {
-      clientCtx.isError = true;
-      clientCtx.setResponse(internalServerErrorCloseConnection());
-    }
-
-    // get the response buffer
-    var resBuf = clientCtx.getResponseBuffer().get();
+    // send the ready responses, in order, until the socket buffer is full
+    var eresBufs = clientCtx.getResponseBuffers();
+    while (eresBufs.isDefined()) {
+      // head and body with a single gathering write
+      var resBufs = eresBufs.get();
+      client.write(resBufs);
 
-    // if all the response has been sent to the client
-    if (!resBuf.hasRemaining()) {
-      // clean it up for the next request
-      clientCtx.clear();
+      if (HttpResponseEncoder.hasRemaining(resBufs)) {
+        // the client is slow, retry at the next write "event"
+        return;
+      }
 
       // if an error has occurred, here is the right place
       // to close the connection
-      if (clientCtx.isError) {
-        key.cancel();
-        client.close();
-      } else {
-        key.interestOps(SelectionKey.OP_READ);
+      if (clientCtx.responseSent()) {
+        closeClient(key);
+        return;
       }
 
-    } else {
-      client.write(resBuf);
+      eresBufs = clientCtx.getResponseBuffers();
     }
+
+    // some room for other requests may have been made: the next
+    // pipelined ones could be already into the request buffer
+    processRequests(key, reactor);
   }
 
-  // search the sequence CR LF CR LF into a partial HTTP request
-  // to parse the content length header
-  public Either<String, Integer> searchCRLFx2(RequestContext clientCtx) {
+  // close the connection of a client, giving its buffers back to the pool
+  private void closeClient(SelectionKey key) throws IOException {
+    key.cancel();
 
-    var error = "";
-    var toRet = -1;
+    var clientCtx = (RequestContext) key.attachment();
+    if (clientCtx != null) {
+      clientCtx.releaseBuffers();
+    }
 
-    // the index of the first carriage return if the CR LF CR LF sequence is present
-    var separatorIndex = clientCtx.requestBufferContains(HttpConstants.CRLFx2Byte);
+    key.channel().close();
+  }
 
-    // CR LF CR LF sequence was found
-    if (separatorIndex != -1) {
+  // handle the read "event"
+  private void handleRead(SelectionKey key, Reactor reactor) throws IOException {
 
-      // parsing of the partial request to extract the Content-Length header
-      var ereq = HttpRequest.parse(clientCtx.requestBufferToString(true));
+    var clientCtx = (RequestContext) key.attachment();
+    var client = (SocketChannel) key.channel();
+
+    // read a bit of the incoming message straight into the client's buffer
+    var bytesRead = clientCtx.readFrom(client);
+
+    if (bytesRead < 0) {
+      // client has closed the connection
+      closeClient(key);
+      return;
+    }
+
+    processRequests(key, reactor);
+  }
+
+  // dispatch the requests entirely stored into the client's buffer, one after
+  // the other: a single read could contain more than one pipelined request
+  private void processRequests(SelectionKey key, Reactor reactor) {
+    var clientCtx = (RequestContext) key.attachment();
+
+    while (clientCtx.canAcceptRequests()) {
+
+      // the parser only scans the bytes that have not been scanned yet
+      var eParseRes = clientCtx.parseRequest();
+
+      if (eParseRes.isLeft()) {
+        // something iswrong with this request
+        // the server has to reply with an appropriate
+        // http response to then close the connection
+        clientCtx.isError = true;
+        clientCtx.enqueueResponse().complete(badRequestCloseConnection(eParseRes.getLeft()), true);
+        break;
+      }
+
+      if (!eParseRes.get()) {
+        // we haven't read the whole request yet
+        break;
+      }
+
+      var ereq = clientCtx.buildRequest();
+
+      // the bytes after the request belong to the next one
+      clientCtx.consumeRequest();
+
+      // the response will be sent after the ones of the previous requests
+      var slot = clientCtx.enqueueResponse();
 
-      // invalid http request because parser has failed
       if (ereq.isLeft()) {
-        error = "invalid http request: " + ereq.getLeft();
-      } else {
-        // get a valid request instance
-        var req = ereq.get();
+        // invalid http request because the parser has failed
+        clientCtx.isError = true;
+        slot.complete(badRequestCloseConnection("invalid http request: " + ereq.getLeft()), true);
+        break;
+      }
 
-        var method = req.getMethod();
-        var noCLRequired = method.equals(HttpConstants.GET) || method.equals(HttpConstants.DELETE)
-            || method.equals(HttpConstants.OPTIONS);
-        var contentLengthHeader = req.getHeaders().get("Content-Length");
-        var isThereContentLengthHeader = contentLengthHeader != null;
+      // get a valid request instance
+      var req = ereq.get();
 
-        if (isThereContentLengthHeader) {
+      // the handler will run on the handler pool
+      var task = makeHandlerTask(key, slot, req, reactor);
 
-          try {
-            var contentLength = Integer.parseInt(contentLengthHeader);
-
-            // skip CR LF CR LF
-            var afterindex = separatorIndex + 4;
-            // how many bytes of the request have been read
-            var bytesStored = clientCtx.requestBufferContentSize();
-
-            // compute the number of missing bytes to read
-            if (afterindex == bytesStored) {
-              // CR LF CR LF sequence was at the very end of the buffer,
-              // so we have to read the whole body
-              toRet = contentLength;
-            } else if (afterindex < bytesStored) {
-              // CR LF CR LF sequence was not at the end of the buffer,
-              // so we have already read some bytes of the body
-              toRet = contentLength - (bytesStored - afterindex);
-            } else {
-              // afterindex > bytesStored is impossible because in the
-              // worst case the CR LF CR LF sequence was at the very end
-              // of the buffer, so afterindex would be equal but not greather than bytesStored
-              throw new RuntimeException("the impossible has happened");
-            }
-          } catch (NumberFormatException e) {
-            // string -> int conversion failed
-            error = "malformed Content-Length header";
-          }
+      // in virtual mode each route has its own concurrency cap
+      var route = handlerPool.getMode().equals(HandlerPool.MODE_VIRTUAL)
+          ? jexpress.resolveRoute(req).getOrElse("")
+          : null;
 
-        } else if (!noCLRequired) {
-          // if there is no Content-Length header and the request is not a GET request nor
-          // a DELETE request nor a OPTIONS request, the server does not accept that request
-          error = "missing Content-Length header";
+      if (!handlerPool.trySubmit(route, task)) {
+        if (handlerPool.isBackpressure()) {
+          // stop reading from this client, the request will be
+          // resubmitted by the reactor as soon as there is room
+          clientCtx.isPaused = true;
+          reactor.defer(key, route, task);
         } else {
-          // GET or DELETE or OPTIONS without payload: we have encountered the CR LF CR LF
-          // sequence => we have just read the whole request
-          toRet = 0;
+          // reply immediately, the connection can be reused
+          slot.complete(serviceUnavailableKeepAliveConnection(), false);
         }
       }
-      clientCtx.headersParsed = true;
-    } else {
-      // we haven't read enough bytes of the request yet
     }
 
-    if (error.equals("")) {
-      return Either.right(toRet);
-    } else {
-      return Either.left(error);
-    }
+    updateInterestOps(key);
+  }
 
+  // the connection has to be closed after a response with the "Connection: close" header
+  private static Boolean closesConnection(HttpResponse res) {
+    return "close".equals(res.getHeaders().get("Connection"));
   }
 
-  // handle the read "event"
-  public void handleRead(SelectionKey key, ByteBuffer buf, Selector selector) throws IOException {
+  // read while the client can send other requests, write while
+  // there is a response ready to be sent
+  // (must be called by the reactor thread that owns the key)
+  private void updateInterestOps(SelectionKey key) {
+    if (!key.isValid()) {
+      return;
+    }
 
     var clientCtx = (RequestContext) key.attachment();
-    var client = (SocketChannel) key.channel();
+    var ops = 0;
 
-    // clear the shared buffer
-    buf.clear();
+    if (clientCtx.canAcceptRequests()) {
+      ops |= SelectionKey.OP_READ;
+    }
+    if (clientCtx.hasResponseReady()) {
+      ops |= SelectionKey.OP_WRITE;
+    }
 
-    // read a bit of the incoming message into the shared buffer
-    var bytesRead = client.read(buf);
+    key.interestOps(ops);
+  }
 
-    if (bytesRead < 0) {
-      // client has closed the connection
-      key.cancel();
-      client.close();
-      return;
+  // create the task that runs the jexpress handlers and
+  // then hands the response back to the reactor of the client
+  private Runnable makeHandlerTask(SelectionKey key, RequestContext.ResponseSlot slot, HttpRequest req,
+      Reactor reactor) {
+    return () -> {
+      try {
+        var eres = jexpress.handle(req);
+
+        // set the http response accordingly to the jexpress result
+        var res = eres == null ? internalServerErrorCloseConnection()
+            : eres.fold(
+                err -> badRequestCloseConnection(err),
+                r -> r);
+        slot.complete(res, closesConnection(res));
+      } catch (Exception e) {
+        e.printStackTrace();
+        slot.complete(internalServerErrorCloseConnection(), true);
+      }
+
+      // the interests set is updated by the reactor thread
+      reactor.responseReady(key);
+    };
+  }
+
+  // a reactor owns a selector and serves, on its own thread, every
+  // read and write "event" of the connections the acceptor has assigned to it
+  private class Reactor implements Runnable {
+    private final Selector selector;
+    // channels accepted but not yet registered into the selector
+    private final ConcurrentLinkedQueue<SocketChannel> pendingClients = new ConcurrentLinkedQueue<>();
+    // requests that have found the handler pool full, in arrival order
+    // (accessed only by the reactor thread)
+    private final LinkedList<Triple<SelectionKey, String, Runnable>> deferred = new LinkedList<>();
+    // clients that have a new response ready to be sent
+    private final ConcurrentLinkedQueue<SelectionKey> readyKeys = new ConcurrentLinkedQueue<>();
+
+    private Reactor(Selector selector) {
+      this.selector = selector;
     }
 
-    var error = "";
-
-    // concat what has been read into the client's buffer
-    var bufArray = buf.array();
-    var bufDataLen = buf.position();
-    clientCtx.concatRequestBufferWith(bufArray, bufDataLen);
-
-    if (clientCtx.headersParsed == false) {
-      // Content-Length header not yet parsed, we are looking for the CR LF CR LF
-      // sequence that divides the last header from the body
-      // We need to extract the Content-Length value to know how long is the body of
-      // the request
-      var eSearchRes = this.searchCRLFx2(clientCtx);
-      if (eSearchRes.isLeft()) {
-        error = eSearchRes.getLeft();
-      } else {
-        clientCtx.yetToRead = eSearchRes.get();
+    // hand a new client to the reactor, it could be called by any thread
+    private void enqueue(SocketChannel client) {
+      this.pendingClients.offer(client);
+      // the reactor thread may be blocked into select()
+      this.selector.wakeup();
+    }
+
+    // notify that a response is ready, it could be called by any thread
+    private void responseReady(SelectionKey key) {
+      this.readyKeys.offer(key);
+      // the reactor thread may be blocked into select()
+      this.selector.wakeup();
+    }
+
+    // enable the write "event" of the clients that have a response ready
+    private void updateReadyKeys() {
+      var key = (SelectionKey) null;
+      while ((key = this.readyKeys.poll()) != null) {
+        try {
+          updateInterestOps(key);
+        } catch (Exception e) {
+          // the client has gone away in the meantime
+        }
       }
-    } else {
-      // "Content-Length" header already parsed, just update
-      // how many bytes are missing to read the whole request
-      clientCtx.yetToRead -= bufDataLen;
     }
 
-    if (!error.equals("")) {
-      // something iswrong with this request
-      // the server has to reply with an appropriate
-      // http response to then close the connection
-      clientCtx.isError = true;
-      clientCtx.setResponse(badRequestCloseConnection(error));
+    // park a request that cannot be handled yet
+    private void defer(SelectionKey key, String route, Runnable task) {
+      this.deferred.add(Triple.of(key, route, task));
+    }
 
-      // deregister OP_READ, register OP_WRITE
-      key.interestOps(SelectionKey.OP_WRITE);
+    // resubmit the parked requests, in order, while the handler pool accepts them
+    private void resubmitDeferred() {
+      while (!this.deferred.isEmpty()) {
+        var entry = this.deferred.peek();
 
-    } else if (clientCtx.yetToRead == 0) {
-      // nothing more to read
-      var ereq = HttpRequest.parse(clientCtx.requestBufferToString(true));
+        if (!entry.fst().isValid()) {
+          // the client has gone away in the meantime
+          this.deferred.poll();
+        } else if (handlerPool.trySubmit(entry.snd(), entry.trd())) {
+          this.deferred.poll();
 
-      if (ereq.isLeft()) {
-        // invalid http request because the parser has failed
-        clientCtx.isError = true;
-        clientCtx.setResponse(badRequestCloseConnection("invalid http request: " + ereq.getLeft()));
+          // the client can go on with its other requests
+          var key = entry.fst();
+          ((RequestContext) key.attachment()).isPaused = false;
+          try {
+            processRequests(key, this);
+          } catch (Exception e) {
+            // the client has gone away in the meantime
+          }
+        } else {
+          // still full
+          break;
+        }
+      }
+    }
+
+    // register the clients the acceptor has handed to this reactor
+    private void registerPendingClients() {
+      var client = (SocketChannel) null;
+      while ((client = this.pendingClients.poll()) != null) {
+        try {
+          handleRegistration(client, this.selector);
+        } catch (IOException e) {
+          e.printStackTrace();
+          try {
+            client.close();
+          } catch (IOException e1) {
+            e1.printStackTrace();
+          }
+        }
+      }
+    }
 
-        // deregister OP_READ, register OP_WRITE
-        key.interestOps(SelectionKey.OP_WRITE);
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        try {
+
+          // wait an event from the selector, polling the handler pool
+          // if there are requests waiting for room
+          if (this.deferred.isEmpty()) {
+            selector.select();
+          } else {
+            selector.select(DEFERRED_POLL_INTERVAL);
+          }
+
+          registerPendingClients();
+          updateReadyKeys();
+          resubmitDeferred();
+
+          var it = selector.selectedKeys().iterator();
+
+          while (it.hasNext()) {
 
-      } else {
-        // get a valid request instance
-        var req = ereq.get();
+            var key = it.next();
 
-        // handle using the common thread pool
-        var reqResult = CompletableFuture.supplyAsync(() -> jexpress.handle(req));
+            try {
+              // a key could be both readable and writable
+              if (key.isReadable()) {
 
-        reqResult.thenAccept(eres -> {
+                handleRead(key, this);
 
-          // set the http response accordingly to the jexpress result
-          clientCtx.setResponse(
-              eres.fold(
-                  err -> badRequestCloseConnection(err),
-                  res -> res));
+              }
+              if (key.isValid() && key.isWritable()) {
 
-          // deregister OP_READ, register OP_WRITE
-          key.interestOps(SelectionKey.OP_WRITE);
+                handleWrite(key, this);
 
-          // needed because we update the interests set asynchronously
-          selector.wakeup();
+              }
 
-        });
+              // remove the key from the selected set, but not from the registered set
+              it.remove();
+            } catch (Exception e) {
+              e.printStackTrace();
+              it.remove();
+              try {
+                closeClient(key);
+              } catch (IOException e1) {
+                e1.printStackTrace();
+              }
+            }
+          }
 
+        } catch (Exception ex) {
+          ex.printStackTrace();
+        }
       }
 
-    } else {
-      // we haven't read the whole request yet
-      // and no error has occurred
+      try {
+        selector.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
     }
-
   }
 
   public void run() {
 
+    var reactorThreads = (List<Thread>) new LinkedList<Thread>();
+
     // set up the server
     try (var serverChannel = ServerSocketChannel.open();
-        var selector = Selector.open();
+        var acceptSelector = Selector.open();
         var serverSocket = serverChannel.socket();) {
 
       // server config
@@ -286,56 +460,43 @@ public class Server implements Runnable {
       serverChannel.configureBlocking(false);
 
       // listen for incoming clients
-      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+      serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+      // start the reactors, each one with its own selector and thread
+      var reactors = new Reactor[reactorsCount];
+      for (var i = 0; i < reactorsCount; i++) {
+        reactors[i] = new Reactor(Selector.open());
+
+        var reactorThread = new Thread(reactors[i], "reactor-" + i);
+        reactorThreads.add(reactorThread);
+        reactorThread.start();
+      }
 
-      // shared, fixed buffer between requests
-      // (safe because NIO input reading is single-threaded)
-      var buf = ByteBuffer.allocate(4096);
+      // the accepted connections are assigned to the reactors in a round robin fashion
+      var nextReactor = 0;
 
-      while (true) {
+      while (!Thread.currentThread().isInterrupted()) {
         try {
 
-          // wait an event from the selector
-          selector.select();
+          // wait an accept event from the selector
+          acceptSelector.select();
 
-          var it = selector.selectedKeys().iterator();
+          var it = acceptSelector.selectedKeys().iterator();
 
           while (it.hasNext()) {
 
             var key = it.next();
 
-            try {
-              if (key.isAcceptable()) {
-
-                System.out.print("new client\n");
-
-                this.handleAccept(serverChannel, selector);
+            // remove the key from the selected set, but not from the registered set
+            it.remove();
 
-              } else if (key.isReadable()) {
+            if (key.isAcceptable()) {
 
-                this.handleRead(key, buf, selector);
+              System.out.print("new client\n");
 
-              } else if (key.isWritable()) {
+              this.handleAccept(serverChannel, reactors[nextReactor]);
+              nextReactor = (nextReactor + 1) % reactors.length;
 
-                this.handleWrite(key);
-
-              }
-
-              // remove the key from the selected set, but not from the registered set
-              it.remove();
-            } catch (Exception e) {
-              e.printStackTrace();
-              key.cancel();
-              var channelToClose = key.channel();
-
-              // serverChannel is autocloseable (try-with-resources)
-              if (channelToClose != serverChannel) {
-                try {
-                  channelToClose.close();
-                } catch (IOException e1) {
-                  e1.printStackTrace();
-                }
-              }
             }
           }
 
@@ -348,6 +509,9 @@ public class Server implements Runnable {
 
     Exception e) {
       e.printStackTrace();
+    } finally {
+      // stop the reactors together with the acceptor
+      reactorThreads.forEach(Thread::interrupt);
     }
   }
 
@@ -13,6 +13,62 @@ public class ServerConfig {
   public final Long wallet_interval = null;
   public final String stub_name = null;
   public final String jwt_secret = null;
+  // optional: "jwt" (default) or "session", the latter issues opaque session ids
+  // (for the clients that don't need to read the token) that expire after session_ttl ms
+  // (default a day) without requests
+  public final String auth_mode = null;
+  public final Long session_ttl = null;
+  // optional: number of worker selectors, defaults to the number of cores
+  public final Integer selector_threads = null;
+  // optional: handler pool settings, default to one thread per core,
+  // 1024 queued requests and the "backpressure" policy (the other is "503")
+  public final Integer handler_threads = null;
+  public final Integer handler_queue_size = null;
+  public final String handler_reject_policy = null;
+  // optional: "pool" (default) or "virtual", the latter runs each request on its
+  // own virtual thread with at most handler_route_concurrency (default 64)
+  // requests in flight per route
+  public final String handler_mode = null;
+  public final Integer handler_route_concurrency = null;
+  // optional: request buffers pool settings, default to heap buffers
+  // and at most 1024 idle buffers per size class
+  public final Boolean buffer_pool_direct = null;
+  public final Integer buffer_pool_max_buffers = null;
+  // optional: materialized feeds, disabled by default; each feed keeps at most
+  // feed_max_size posts (default 1000) and the posts of the authors with more than
+  // feed_fanout_threshold followers (default 10000) are merged at read time
+  public final Boolean feed_engine = null;
+  public final Integer feed_max_size = null;
+  public final Integer feed_fanout_threshold = null;
+  // optional: number of threads that compute the wallet rewards, defaults to 1
+  public final Integer wallet_threads = null;
+  // optional: write ahead log of the mutations, stored next to the snapshot;
+  // disabled by default, wal_durability is "always" (fsync before replying),
+  // "interval" (fsync every wal_sync_interval ms, default 100) or "none"
+  public final String wal_durability = null;
+  public final Long wal_sync_interval = null;
+  // optional: "json" (default) or "binary", the format of the snapshots; a snapshot
+  // in either format is restored using snapshot_restore_threads (default one per core)
+  public final String snapshot_format = null;
+  public final Integer snapshot_restore_threads = null;
+  // optional: "random.org" (default) or "stub", the source of the bitcoin rate, that
+  // answers with exchange_rate_stub (default 1); the rate is kept in memory and refreshed
+  // in background, it becomes stale after exchange_rate_ttl ms (default 60000) and
+  // random.org is not called for exchange_rate_open_interval ms (default 30000)
+  // after exchange_rate_failure_threshold (default 3) failed refreshes in a row
+  public final String exchange_rate_source = null;
+  public final Double exchange_rate_stub = null;
+  public final Long exchange_rate_ttl = null;
+  public final Integer exchange_rate_failure_threshold = null;
+  public final Long exchange_rate_open_interval = null;
+  // optional: cost of the new password hashes (PBKDF2 iterations, default 210000), the
+  // weaker ones are rehashed at the login; the hashes are computed by hashing_threads
+  // threads (default a thread every 4 cores) and at most hashing_queue_size logins
+  // (default one per thread) wait for them, the others are refused: keep their sum
+  // below handler_threads so that the other requests are still served
+  public final Integer password_hash_iterations = null;
+  public final Integer hashing_threads = null;
+  public final Integer hashing_queue_size = null;
 
   public Boolean isValid() {
     return tcp_port != null && tcp_port != 0 &&
@@ -26,6 +82,10 @@ public class ServerConfig {
         persistence_interval != null && persistence_interval != 0 &&
         wallet_interval != null && wallet_interval != 0 &&
         stub_name != null && !stub_name.equals("") &&
-        jwt_secret != null && !jwt_secret.equals("");
+        jwt_secret != null && !jwt_secret.equals("") &&
+        (auth_mode == null || auth_mode.equals("jwt") || auth_mode.equals("session")) &&
+        (snapshot_format == null || snapshot_format.equals("json") || snapshot_format.equals("binary")) &&
+        (exchange_rate_source == null || exchange_rate_source.equals("random.org")
+            || exchange_rate_source.equals("stub"));
   }
 }
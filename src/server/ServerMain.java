@@ -2,6 +2,7 @@ package server;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -10,6 +11,7 @@ import java.net.UnknownHostException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -21,17 +23,24 @@ import domain.post.Post;
 import domain.reaction.Reaction;
 import domain.user.User;
 import domain.user.UserTags;
+import domain.wallet.WalletTransaction;
 import http.HttpConstants;
 import http.HttpResponse;
 import io.vavr.control.Either;
 import jexpress.JExpress;
 import server.RMI.RemoteServer;
 import server.RMI.IRemoteServer;
+import utils.Hasher;
+import utils.HashingPool;
 import utils.Pair;
 import utils.ToJSON;
-import utils.JWTUtils;
 import utils.Wrapper;
+import winsome.BinarySnapshot;
 import winsome.Winsome;
+import winsome.WriteAheadLog;
+import winsome.exchange.CachedRateProvider;
+import winsome.exchange.RandomOrgRateProvider;
+import winsome.exchange.StubRateProvider;
 
 public class ServerMain {
 
@@ -46,6 +55,7 @@ public class ServerMain {
   private static String COMMENTS_ROUTE = "/comments";
   private static String REACTIONS_ROUTE = "/reactions";
   private static String WALLET_ROUTE = "/wallet";
+  private static String METRICS_ROUTE = "/metrics";
 
   public static void main(String[] args) throws RemoteException, UnknownHostException, SocketException {
 
@@ -61,13 +71,35 @@ public class ServerMain {
     // read the config file
     var config = readConfigFile(args, objectMapper);
 
-    // restore the server status from the json file
+    // restore the server status from the snapshot
     // or create a new instance if it is not possible
-    var winsome = restoreServer(objectMapper, config.persistence_path);
+    var winsome = restoreServer(objectMapper, config.persistence_path, config.snapshot_restore_threads,
+        config.wal_durability, config.wal_sync_interval);
 
     // set the jwt secret (used internally to ccreate access tokens)
     winsome.setJWTSecret(config.jwt_secret);
 
+    // the cost of the password hashes and the threads that compute them
+    Hasher.setIterations(config.password_hash_iterations);
+    var hashingPool = HashingPool.of(config.hashing_threads, config.hashing_queue_size);
+    winsome.setHashingPool(hashingPool);
+
+    // opaque session ids instead of jwts
+    var useSessions = config.auth_mode != null && config.auth_mode.equals("session");
+    if (useSessions) {
+      winsome.enableSessions(config.session_ttl);
+    }
+
+    // materialized feeds
+    if (config.feed_engine != null && config.feed_engine) {
+      winsome.enableFeedEngine(config.feed_max_size, config.feed_fanout_threshold);
+    }
+
+    // rate of the bitcoin wallets, kept in memory and refreshed in background
+    var exchangeRates = configureExchangeRates(config.exchange_rate_source, config.exchange_rate_stub,
+        config.exchange_rate_ttl, config.exchange_rate_failure_threshold, config.exchange_rate_open_interval);
+    winsome.setExchangeRateProvider(exchangeRates);
+
     // RMI configuration
     var psr = configureRMI(winsome, config.remote_registry_port, config.stub_name);
     var stub = psr.snd();
@@ -80,25 +112,44 @@ public class ServerMain {
 
     // wallet thread configuration
     var walletThread = new Thread(
-        configureWalletThread(winsome, config.wallet_interval, config.author_percentage, multicastGroup,
-            config.multicast_port, ds));
+        configureWalletThread(winsome, config.wallet_interval, config.author_percentage, config.wallet_threads,
+            multicastGroup, config.multicast_port, ds));
+
+    // expired sessions thread configuration
+    var sessionSweeperThread = useSessions ? new Thread(configureSessionSweeperThread(winsome, config.session_ttl))
+        : null;
 
     // persistence thread configuration
     var persistenceThread = new Thread(
-        configurePersistenceThread(winsome, config.persistence_interval, config.persistence_path));
+        configurePersistenceThread(winsome, config.persistence_interval, config.persistence_path,
+            config.snapshot_format));
+
+    // pool of threads that will run the jexpress handlers
+    var handlerPool = HandlerPool.of(config.handler_threads, config.handler_queue_size,
+        config.handler_reject_policy, config.handler_mode, config.handler_route_concurrency);
+
+    // buffers lent to the connections to store the requests
+    var bufferPool = BufferPool.of(config.buffer_pool_direct, config.buffer_pool_max_buffers);
+
+    // metrics exposed to the clients
+    var metrics = configureMetrics(handlerPool, bufferPool, exchangeRates, hashingPool);
 
     // jexpress framework handlers
-    configureJExpressHandlers(jexpress, objectMapper, winsome, config.jwt_secret,
-        config.multicast_ip + ":" + config.multicast_port);
+    configureJExpressHandlers(jexpress, objectMapper, winsome, config.multicast_ip + ":" + config.multicast_port,
+        metrics);
 
     // server configuration
-    var server = Server.of(jexpress, config.server_ip, config.tcp_port);
+    var server = Server.of(jexpress, config.server_ip, config.tcp_port, config.selector_threads, handlerPool,
+        bufferPool);
     var serverThread = new Thread(server);
 
     // start threads
     serverThread.start();
     walletThread.start();
     persistenceThread.start();
+    if (sessionSweeperThread != null) {
+      sessionSweeperThread.start();
+    }
 
     System.out.println("Server has started");
 
@@ -129,20 +180,50 @@ public class ServerMain {
     }
   }
 
-  // try to restore the server state from a file
-  private static Winsome restoreServer(ObjectMapper objectMapper, String persistencePath) {
+  // try to restore the server state from a file, either json or binary,
+  // and from the write ahead log, if enabled
+  private static Winsome restoreServer(ObjectMapper objectMapper, String persistencePath, Integer restoreThreads,
+      String walDurability, Long walSyncInterval) {
     var toRet = (Winsome) null;
     try {
-      toRet = objectMapper.readValue(
-          new File(persistencePath), Winsome.class);
-
-      // if jackson has put null somewhere because of an invalid
-      // json file, an exception will be raised
-      toRet.toJSON();
+      if (BinarySnapshot.isBinary(persistencePath)) {
+        var restored = Winsome.fromBinarySnapshot(persistencePath,
+            restoreThreads != null ? restoreThreads : Runtime.getRuntime().availableProcessors());
+        if (restored.isLeft()) {
+          throw new RuntimeException(restored.getLeft());
+        }
+        toRet = restored.get();
+      } else {
+        toRet = objectMapper.readValue(
+            new File(persistencePath), Winsome.class);
+
+        // if jackson has put null somewhere because of an invalid
+        // json file, an exception will be raised: the state is
+        // streamed into a discarding sink, nothing is built in memory
+        try (var gen = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+          toRet.writeJSON(gen);
+        }
+      }
     } catch (Exception e) {
       System.out.println("Error restoring server state: " + e.getMessage());
       toRet = Winsome.of();
     }
+
+    if (walDurability != null) {
+      // replay the mutations that followed the snapshot, then keep logging
+      var winsome = toRet;
+      var ewal = WriteAheadLog.of(persistencePath, walDurability, walSyncInterval);
+      ewal
+          .flatMap(wal -> winsome.replay(wal))
+          .peek(records -> System.out.println("Write ahead log records replayed: " + records))
+          .swap()
+          .forEach(err -> System.out.println("Error replaying the write ahead log: " + err));
+      ewal.forEach(winsome::setWriteAheadLog);
+    }
+
+    // the indexes are not persisted
+    toRet.rebuildIndexes();
+
     return toRet;
   }
 
@@ -227,8 +308,9 @@ public class ServerMain {
   }
 
   private static Runnable configureWalletThread(Winsome winsome, Long wallet_interval, Integer author_perc,
-      InetAddress multicastGroup, Integer multicast_port, DatagramSocket ds) {
-    return winsome.makeWalletRunnable(wallet_interval, author_perc, () -> {
+      Integer wallet_threads, InetAddress multicastGroup, Integer multicast_port, DatagramSocket ds) {
+    var parallelism = wallet_threads != null ? wallet_threads : 1;
+    return winsome.makeWalletRunnable(wallet_interval, author_perc, parallelism, () -> {
       // this action will run each time the wallet has been updated
 
       var notification = "wallet updated";
@@ -245,16 +327,58 @@ public class ServerMain {
   }
 
   private static Runnable configurePersistenceThread(Winsome winsome, Long persistence_interval,
-      String persistence_path) {
-    return winsome.makePersistenceRunnable(persistence_interval, persistence_path, false).get();
+      String persistence_path, String snapshot_format) {
+    return winsome.makePersistenceRunnable(persistence_interval, persistence_path, false,
+        snapshot_format != null && snapshot_format.equals("binary")).get();
+  }
+
+  // the expired sessions are looked for every minute, or more often if they expire sooner
+  private static Runnable configureSessionSweeperThread(Winsome winsome, Long session_ttl) {
+    var interval = session_ttl != null && session_ttl > 0 ? Math.min(60000L, session_ttl) : 60000L;
+    return winsome.makeSessionSweeperRunnable(interval).get();
+  }
+
+  private static CachedRateProvider configureExchangeRates(String source, Double stub, Long ttl,
+      Integer failureThreshold, Long openInterval) {
+    var provider = source != null && source.equals("stub")
+        ? StubRateProvider.of(stub != null ? stub : 1.)
+        : RandomOrgRateProvider.of();
+
+    return CachedRateProvider.of(provider, ttl, failureThreshold, openInterval).start();
+  }
+
+  private static Metrics configureMetrics(HandlerPool handlerPool, BufferPool bufferPool,
+      CachedRateProvider exchangeRates, HashingPool hashingPool) {
+    var metrics = Metrics.of();
+
+    metrics.gauge("handler_queue_depth", handlerPool::getQueueDepth);
+    metrics.gauge("handler_queue_capacity", handlerPool::getQueueCapacity);
+    metrics.gauge("handler_active_threads", handlerPool::getActiveCount);
+    metrics.gauge("handler_rejected_total", handlerPool::getRejectedCount);
+    metrics.gauge("buffer_pool_hits_total", bufferPool::getHits);
+    metrics.gauge("buffer_pool_misses_total", bufferPool::getMisses);
+    metrics.gauge("buffer_pool_hit_rate", bufferPool::getHitRate);
+    metrics.gauge("buffer_pool_allocated_bytes_total", bufferPool::getAllocatedBytes);
+    metrics.gauge("buffer_pool_idle_buffers", bufferPool::getIdleCount);
+    metrics.gauge("exchange_rate", exchangeRates::getLastRate);
+    metrics.gauge("exchange_rate_age_ms", exchangeRates::getAge);
+    metrics.gauge("exchange_rate_refreshes_total", exchangeRates::getRefreshes);
+    metrics.gauge("exchange_rate_failures_total", exchangeRates::getFailures);
+    metrics.gauge("exchange_rate_stale_reads_total", exchangeRates::getStaleReads);
+    metrics.gauge("exchange_rate_circuit_open", () -> exchangeRates.isCircuitOpen() ? 1 : 0);
+    metrics.gauge("hashing_in_flight", hashingPool::getInFlight);
+    metrics.gauge("hashing_completed_total", hashingPool::getCompleted);
+    metrics.gauge("hashing_rejected_total", hashingPool::getRejected);
+
+    return metrics;
   }
 
   // jexpress :)
   private static void configureJExpressHandlers(JExpress jexpress, ObjectMapper objectMapper, Winsome winsome,
-      String jwtSecret, String multicastIpPort) {
+      String multicastIpPort, Metrics metrics) {
 
     // auth middleware
-    configureJExpressAuthMiddleware(jexpress, winsome, jwtSecret);
+    configureJExpressAuthMiddleware(jexpress, winsome);
 
     // CORS middleware
     configureJExpressCORSMiddleware(jexpress);
@@ -270,6 +394,14 @@ public class ServerMain {
               HttpConstants.MIME_APPLICATION_JSON, true));
     });
 
+    // server metrics
+    jexpress.get(METRICS_ROUTE, (req, params, reply) -> {
+      reply.accept(
+          HttpResponse.build200(
+              Feedback.right(metrics.toJSON()).toJSON(),
+              HttpConstants.MIME_APPLICATION_JSON, true));
+    });
+
     // users
     configureJExpressUsersHandlers(jexpress, objectMapper, winsome);
 
@@ -281,7 +413,7 @@ public class ServerMain {
 
   }
 
-  private static void configureJExpressAuthMiddleware(JExpress jexpress, Winsome winsome, String jwtSecret) {
+  private static void configureJExpressAuthMiddleware(JExpress jexpress, Winsome winsome) {
     jexpress.use((req, params, reply, next) -> {
 
       var target = req.getRequestTarget();
@@ -304,11 +436,8 @@ public class ServerMain {
         var jwt = req.getHeaders().get("Authorization").substring(7);
 
         // validate the jwt and extract the user that made the reqeust from it
-        var euser = JWTUtils
-            .validateJWT(jwtSecret, jwt)
-            .flatMap(user -> winsome
-                .getUserJWT(user.username)
-                .flatMap(currJWT -> currJWT.equals(jwt) ? Either.right(user) : Either.left("invalid auth token")));
+        // (a jwt validated recently is just looked up)
+        var euser = winsome.authenticate(jwt);
 
         if (euser.isRight()) {
           // set the context as the user
@@ -829,6 +958,10 @@ public class ServerMain {
 
       var toRet = Either.<String, HttpResponse>right(null);
 
+      // optional pagination of the feed
+      var cursor = req.getQueryParams().get("cursor");
+      var limit = req.getQueryParams().get("limit");
+
       try {
         // extract the user from the context
         var user = (User) req.context;
@@ -838,6 +971,25 @@ public class ServerMain {
           toRet = HttpResponse.build403(Feedback.error(ToJSON.toJSON("unauthorized")).toJSON(),
               HttpConstants.MIME_APPLICATION_JSON,
               true);
+        } else if (cursor != null || limit != null) {
+          // try to get a page of the feed of the user and reply accordingly
+          // with the result of the operation: {"posts": [...], "next_cursor": ...}
+          toRet = (limit == null || limit.matches("\\d{1,9}")
+              ? Either.<String, Integer>right(limit == null ? null : Integer.parseInt(limit))
+              : Either.<String, Integer>left("invalid limit"))
+              .flatMap(l -> winsome.showFeed(user.username, cursor, l))
+              .map(page -> "{\"posts\":" + ToJSON.sequence(page.fst()
+                  .stream()
+                  // serialize each post into json
+                  .map(p -> p.toJSON())
+                  .collect(Collectors.toList()))
+                  + ",\"next_cursor\":" + (page.snd() == null ? "null" : ToJSON.toJSON(page.snd())) + "}")
+              .flatMap(jpage -> HttpResponse.build200(
+                  Feedback.right(jpage).toJSON(),
+                  HttpConstants.MIME_APPLICATION_JSON, true))
+              .recoverWith(err -> HttpResponse.build400(
+                  Feedback.error(ToJSON.toJSON(err)).toJSON(),
+                  HttpConstants.MIME_APPLICATION_JSON, true));
         } else {
           // try to get the feed of the user and reply accordingly
           // with the result of the operation
@@ -878,6 +1030,11 @@ public class ServerMain {
       var useWincoins = currency != null && currency.equals("wincoin");
       var useBitcoins = currency != null && currency.equals("bitcoin");
 
+      // optional pagination of the history
+      var cursor = req.getQueryParams().get("cursor");
+      var limit = req.getQueryParams().get("limit");
+      var paginate = cursor != null || limit != null;
+
       try {
         // extract the user from the context
         var user = (User) req.context;
@@ -921,9 +1078,17 @@ public class ServerMain {
                 .fold(__ -> 0., r -> r);
           }
 
-          // get the history of the transactions
-          toRet = winsome.getUserWallet(user.username)
-              .map(ws -> ws
+          // get the history of the transactions, or a page of it
+          var history = paginate
+              ? (limit == null || limit.matches("\\d{1,9}")
+                  ? Either.<String, Integer>right(limit == null ? null : Integer.parseInt(limit))
+                  : Either.<String, Integer>left("invalid limit"))
+                  .flatMap(l -> winsome.getUserWallet(user.username, cursor, l))
+              : winsome.getUserWallet(user.username)
+                  .map(ws -> Pair.<List<WalletTransaction>, String>of(ws, null));
+
+          toRet = history
+              .map(page -> Pair.of(page.fst()
                   .stream()
                   .map(w -> {
                     // convert each gain, if needed
@@ -935,15 +1100,18 @@ public class ServerMain {
                   })
                   // serialize each transaction in json
                   .map(w -> w.toJSON())
-                  .collect(Collectors.toList()))
-              .map(ws -> {
+                  .collect(Collectors.toList()), page.snd()))
+              .map(page -> {
                 // create a json response on the fly
 
                 var toRetI = "{";
-                toRetI += "\"history\":" + ToJSON.sequence(ws) + "";
+                toRetI += "\"history\":" + ToJSON.sequence(page.fst()) + "";
                 if (!total.value.equals("")) {
                   toRetI += ",\"total\":" + total.value + "";
                 }
+                if (paginate) {
+                  toRetI += ",\"next_cursor\":" + (page.snd() == null ? "null" : ToJSON.toJSON(page.snd()));
+                }
                 toRetI += "}";
 
                 return toRetI;
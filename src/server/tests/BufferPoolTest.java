@@ -0,0 +1,70 @@
+package server.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import server.BufferPool;
+
+public class BufferPoolTest {
+
+  @Test
+  void sizeClasses() {
+    var pool = BufferPool.of();
+
+    assertEquals(BufferPool.MIN_BUFFER_SIZE, pool.acquire(1).capacity());
+    assertEquals(BufferPool.MIN_BUFFER_SIZE, pool.acquire(BufferPool.MIN_BUFFER_SIZE).capacity());
+    assertEquals(BufferPool.MIN_BUFFER_SIZE * 2, pool.acquire(BufferPool.MIN_BUFFER_SIZE + 1).capacity());
+    assertEquals(BufferPool.MAX_BUFFER_SIZE + 1, pool.acquire(BufferPool.MAX_BUFFER_SIZE + 1).capacity());
+    assertEquals(4, pool.getMisses());
+  }
+
+  @Test
+  void reuseReleasedBuffers() {
+    var pool = BufferPool.of(true, 1);
+
+    var first = pool.acquire(100);
+    assertTrue(first.isDirect());
+    first.put((byte) 1);
+    pool.release(first);
+    assertEquals(1, pool.getIdleCount());
+
+    var second = pool.acquire(100);
+    assertTrue(first == second);
+    assertEquals(0, second.position());
+    assertEquals(1, pool.getHits());
+
+    // at most one idle buffer per size class
+    pool.release(second);
+    pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_BUFFER_SIZE));
+    assertEquals(1, pool.getIdleCount());
+
+    // heap buffers are not taken by a direct pool
+    pool.release(ByteBuffer.allocate(BufferPool.MIN_BUFFER_SIZE * 2));
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  void growKeepsTheContent() {
+    var pool = BufferPool.of();
+
+    var buf = pool.acquire(BufferPool.MIN_BUFFER_SIZE);
+    for (var i = 0; i < buf.capacity(); i++) {
+      buf.put((byte) i);
+    }
+
+    var bigger = pool.grow(buf, buf.capacity() * 2);
+    assertEquals(BufferPool.MIN_BUFFER_SIZE * 2, bigger.capacity());
+    assertEquals(BufferPool.MIN_BUFFER_SIZE, bigger.position());
+    for (var i = 0; i < BufferPool.MIN_BUFFER_SIZE; i++) {
+      assertEquals((byte) i, bigger.get(i));
+    }
+
+    // the old one is back into the pool
+    assertEquals(1, pool.getIdleCount());
+  }
+
+}
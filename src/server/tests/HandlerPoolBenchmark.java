@@ -0,0 +1,121 @@
+package server.tests;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import http.HttpConstants;
+import http.HttpRequest;
+import http.HttpResponse;
+import jexpress.JExpress;
+import server.HandlerPool;
+
+// run with: --select-class server.tests.HandlerPoolBenchmark
+// compares the latency of the pool mode and of the virtual mode when 10% of the
+// requests hit a route that blocks like the bitcoin conversion does
+public class HandlerPoolBenchmark {
+
+  private static final Integer REQUESTS = Integer.getInteger("benchmark.requests", 2000);
+  // the arrival rate is fixed: a request every ARRIVAL_INTERVAL microseconds
+  private static final Long ARRIVAL_INTERVAL = 1000L;
+  // latency of the simulated outbound call (random.org)
+  private static final Long SLOW_CALL = 250L;
+  private static final Integer THREADS = 8;
+
+  private JExpress makeJExpress() {
+    var jexpress = JExpress.of();
+
+    jexpress.get("/users", (req, params, reply) -> {
+      reply.accept(HttpResponse.build200("[]", HttpConstants.MIME_APPLICATION_JSON, true));
+    });
+
+    jexpress.get("/users/:user_id/wallet", (req, params, reply) -> {
+      try {
+        // blocking call, like HttpURLConnection
+        Thread.sleep(SLOW_CALL);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      reply.accept(HttpResponse.build200("{}", HttpConstants.MIME_APPLICATION_JSON, true));
+    });
+
+    return jexpress;
+  }
+
+  private long[] run(HandlerPool pool, JExpress jexpress, HttpRequest fast, HttpRequest slow)
+      throws InterruptedException {
+    var latencies = new long[REQUESTS];
+    var done = new CountDownLatch(REQUESTS);
+    var start = System.nanoTime();
+
+    for (var i = 0; i < REQUESTS; i++) {
+      var index = i;
+      var req = i % 10 == 0 ? slow : fast;
+      var route = pool.getMode().equals(HandlerPool.MODE_VIRTUAL) ? jexpress.resolveRoute(req).getOrElse("") : null;
+
+      // open loop: each request has its own arrival time
+      var arrival = start + TimeUnit.MICROSECONDS.toNanos(ARRIVAL_INTERVAL * i);
+      while (System.nanoTime() < arrival) {
+        Thread.onSpinWait();
+      }
+
+      Runnable task = () -> {
+        jexpress.handle(req);
+        latencies[index] = System.nanoTime() - arrival;
+        done.countDown();
+      };
+
+      // like the reactor does in backpressure mode: retry until there is room
+      while (!pool.trySubmit(route, task)) {
+        Thread.sleep(1);
+      }
+    }
+
+    done.await();
+    pool.shutdown();
+
+    return latencies;
+  }
+
+  private String describe(long[] latencies, Boolean onlyFast) {
+    var values = new long[onlyFast ? latencies.length - (latencies.length + 9) / 10 : latencies.length];
+    var j = 0;
+    for (var i = 0; i < latencies.length; i++) {
+      if (!onlyFast || i % 10 != 0) {
+        values[j++] = latencies[i];
+      }
+    }
+    Arrays.sort(values);
+
+    return String.format("p50 %7.2f ms, p99 %8.2f ms, max %8.2f ms",
+        values[(int) (values.length * 0.50)] / 1e6,
+        values[(int) (values.length * 0.99)] / 1e6,
+        values[values.length - 1] / 1e6);
+  }
+
+  @Test
+  public void compareModes() throws InterruptedException {
+    var jexpress = makeJExpress();
+    var fast = HttpRequest.buildGetRequest("/users", java.util.Map.of()).get();
+    var slow = HttpRequest.buildGetRequest("/users/user1/wallet?currency=bitcoin", java.util.Map.of()).get();
+
+    // warmup
+    run(HandlerPool.of(THREADS, 1024, HandlerPool.REJECT_BACKPRESSURE), jexpress, fast, fast);
+
+    var pool = run(HandlerPool.of(THREADS, 1024, HandlerPool.REJECT_BACKPRESSURE), jexpress, fast, slow);
+    var virtualPool = HandlerPool.of(THREADS, 1024, HandlerPool.REJECT_BACKPRESSURE, HandlerPool.MODE_VIRTUAL,
+        64);
+    var virtualUsesVirtualThreads = virtualPool.usesVirtualThreads();
+    var virtual = run(virtualPool, jexpress, fast, slow);
+
+    System.out.println(REQUESTS + " requests, 10% blocked for " + SLOW_CALL + " ms, " + THREADS
+        + " pool threads");
+    System.out.println("pool    all : " + describe(pool, false));
+    System.out.println("pool    fast: " + describe(pool, true));
+    System.out.println("virtual all : " + describe(virtual, false)
+        + (virtualUsesVirtualThreads ? "" : " (platform thread per request)"));
+    System.out.println("virtual fast: " + describe(virtual, true));
+  }
+}
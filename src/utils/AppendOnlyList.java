@@ -0,0 +1,101 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+// a list where the elements can only be appended, stored in chunks of
+// doubling size that are never copied nor moved: the appends are serialized,
+// while the readers don't need any lock and see every element that was
+// appended before they have read the size
+public class AppendOnlyList<T> extends AbstractList<T> implements RandomAccess {
+
+  private static final Integer FIRST_CHUNK_SIZE = 4;
+  // enough chunks to index Integer.MAX_VALUE elements
+  private static final Integer CHUNKS = 30;
+  private static final Object[][] NO_CHUNKS = new Object[0][];
+
+  // the chunk k has FIRST_CHUNK_SIZE << k slots: the directory of the
+  // chunks grows with them, an empty list allocates nothing
+  private Object[][] chunks = NO_CHUNKS;
+  // written after the element (and the directory) it makes visible
+  private volatile int size = 0;
+
+  // public for jackson
+  public AppendOnlyList() {
+  }
+
+  public static <T> AppendOnlyList<T> of() {
+    return new AppendOnlyList<T>();
+  }
+
+  private static int chunkOf(int index) {
+    return 31 - Integer.numberOfLeadingZeros(index / FIRST_CHUNK_SIZE + 1);
+  }
+
+  private static int offsetOf(int index, int chunk) {
+    return index - FIRST_CHUNK_SIZE * ((1 << chunk) - 1);
+  }
+
+  @Override
+  public boolean add(T element) {
+    synchronized (this) {
+      var index = this.size;
+      if (index == Integer.MAX_VALUE) {
+        throw new IllegalStateException("list is full");
+      }
+
+      var chunk = chunkOf(index);
+      if (chunk == this.chunks.length) {
+        this.chunks = Arrays.copyOf(this.chunks, Math.min(CHUNKS, Math.max(2, chunk * 2)));
+      }
+      if (this.chunks[chunk] == null) {
+        this.chunks[chunk] = new Object[FIRST_CHUNK_SIZE << chunk];
+      }
+      this.chunks[chunk][offsetOf(index, chunk)] = element;
+
+      // publish the element
+      this.size = index + 1;
+    }
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    var chunk = chunkOf(index);
+    return (T) this.chunks[chunk][offsetOf(index, chunk)];
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  // iterate over the elements appended before the call
+  @Override
+  public Iterator<T> iterator() {
+    var end = this.size;
+    return new Iterator<T>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < end;
+      }
+
+      @Override
+      public T next() {
+        if (next >= end) {
+          throw new NoSuchElementException();
+        }
+        return get(next++);
+      }
+    };
+  }
+}
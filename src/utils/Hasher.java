@@ -2,12 +2,42 @@ package utils;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// the password hashes: "v1$<iterations>$<salt>$<hash>" (base64) is a salted
+// PBKDF2-HMAC-SHA512, a hash without a version is a legacy unsalted SHA-512
+// in hex. Both are verified, the legacy ones and the ones with fewer
+// iterations than the current ones should be rehashed (see needsRehash)
 public class Hasher {
   private Hasher() {
   }
 
-  // hash a string using SHA-512
+  private static final String V1 = "v1";
+  private static final Integer SALT_BYTES = 16;
+  private static final Integer HASH_BITS = 512;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  // OWASP recommendation for PBKDF2-HMAC-SHA512
+  public static final Integer DEFAULT_ITERATIONS = 210000;
+
+  private static volatile Integer iterations = DEFAULT_ITERATIONS;
+  private static final SecureRandom random = new SecureRandom();
+
+  // the cost of the new hashes, null or non positive values fall back to the default
+  public static void setIterations(Integer iterations) {
+    Hasher.iterations = iterations != null && iterations > 0 ? iterations : DEFAULT_ITERATIONS;
+  }
+
+  public static Integer getIterations() {
+    return iterations;
+  }
+
+  // hash a string using SHA-512 (the legacy format of the passwords)
   public static String hash(String string) {
     try {
 
@@ -15,13 +45,13 @@ public class Hasher {
 
       var bytes = md.digest(string.getBytes());
 
-      var sb = new StringBuilder();
+      var chars = new char[bytes.length * 2];
       for (int i = 0; i < bytes.length; i++) {
-        sb.append(Integer.toString((bytes[i] & 0xff) + 0x100, 16)
-            .substring(1));
+        chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+        chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
       }
 
-      return sb.toString();
+      return new String(chars);
 
     } catch (NoSuchAlgorithmException e) {
       e.printStackTrace();
@@ -29,4 +59,67 @@ public class Hasher {
       throw new RuntimeException(e.getMessage());
     }
   }
+
+  // hash a password with a new random salt and the current iterations
+  public static String hashPassword(String password) {
+    var salt = new byte[SALT_BYTES];
+    random.nextBytes(salt);
+    var its = iterations;
+
+    var encoder = Base64.getEncoder().withoutPadding();
+    return V1 + "$" + its + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(pbkdf2(password, salt, its));
+  }
+
+  // check a password against a stored hash, in either format
+  public static Boolean verify(String password, String stored) {
+    if (password == null || stored == null) {
+      return false;
+    }
+
+    var parts = stored.split("\\$");
+    if (parts.length == 1) {
+      // legacy
+      return MessageDigest.isEqual(hash(password).getBytes(), stored.getBytes());
+    }
+    if (parts.length != 4 || !parts[0].equals(V1)) {
+      return false;
+    }
+
+    try {
+      var decoder = Base64.getDecoder();
+      var salt = decoder.decode(parts[2]);
+      var expected = decoder.decode(parts[3]);
+      return MessageDigest.isEqual(pbkdf2(password, salt, Integer.parseInt(parts[1])), expected);
+    } catch (IllegalArgumentException e) {
+      // a malformed hash cannot be matched
+      return false;
+    }
+  }
+
+  // the stored hash is weaker than the ones created now
+  public static Boolean needsRehash(String stored) {
+    var parts = stored.split("\\$");
+    if (parts.length != 4 || !parts[0].equals(V1)) {
+      return true;
+    }
+
+    try {
+      return Integer.parseInt(parts[1]) < iterations;
+    } catch (NumberFormatException e) {
+      return true;
+    }
+  }
+
+  private static byte[] pbkdf2(String password, byte[] salt, Integer iterations) {
+    var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+    try {
+      return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512").generateSecret(spec).getEncoded();
+    } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+      e.printStackTrace();
+      // impossible, but...
+      throw new RuntimeException(e.getMessage());
+    } finally {
+      spec.clearPassword();
+    }
+  }
 }
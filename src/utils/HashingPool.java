@@ -0,0 +1,96 @@
+package utils;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import io.vavr.control.Either;
+
+// the threads that hash the passwords: at most `threads` hashes are computed
+// at the same time and at most `queueSize` more wait for a thread, a task
+// that finds no room is rejected at once. The caller waits for the result,
+// so a login storm keeps busy at most threads + queueSize callers and
+// `threads` cores, while the other requests are still served
+public class HashingPool {
+
+  private final ExecutorService executor;
+  // running + waiting tasks
+  private final Semaphore slots;
+  private final Integer capacity;
+
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  private HashingPool(Integer threads, Integer queueSize) {
+    var threadsCounter = new AtomicInteger(0);
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+      var thread = new Thread(r, "password-hasher-" + threadsCounter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.capacity = threads + queueSize;
+    this.slots = new Semaphore(this.capacity);
+  }
+
+  // null or non positive values fall back to the defaults:
+  // a thread every 4 cores (at least one), as many waiting tasks as threads
+  public static HashingPool of(Integer threads, Integer queueSize) {
+    var t = threads != null && threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    var q = queueSize != null && queueSize > 0 ? queueSize : t;
+
+    return new HashingPool(t, q);
+  }
+
+  public static HashingPool of() {
+    return of(null, null);
+  }
+
+  // run a task on the pool and wait for its result
+  // or an error in the form of a string if there is no room for it
+  public <T> Either<String, T> run(Supplier<T> task) {
+    if (!this.slots.tryAcquire()) {
+      this.rejected.increment();
+      return Either.left("server busy, retry later");
+    }
+
+    try {
+      var result = this.executor.submit(task::get).get();
+      this.completed.increment();
+      return Either.right(result);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Either.left("interrupted");
+    } catch (ExecutionException e) {
+      return Either.left(e.getCause().getMessage());
+    } catch (RejectedExecutionException e) {
+      return Either.left("the hashing pool has been shut down");
+    } finally {
+      this.slots.release();
+    }
+  }
+
+  public void shutdown() {
+    this.executor.shutdown();
+  }
+
+  // ---------------------------------------
+  // metrics
+
+  // number of tasks running or waiting for a thread
+  public Integer getInFlight() {
+    return this.capacity - this.slots.availablePermits();
+  }
+
+  public Long getCompleted() {
+    return this.completed.sum();
+  }
+
+  public Long getRejected() {
+    return this.rejected.sum();
+  }
+}
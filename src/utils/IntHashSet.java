@@ -0,0 +1,113 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// a set of non negative ints stored in a single int array (open addressing,
+// linear probing): the writes are serialized, while the readers don't need
+// any lock and see every write that happened before they have read the size
+public class IntHashSet {
+
+  private static final int EMPTY = -1;
+  private static final int REMOVED = -2;
+  private static final int[] NO_SLOTS = new int[0];
+
+  // replaced by a bigger table when more than half of the slots are used
+  private int[] slots = NO_SLOTS;
+  // slots that are not EMPTY (elements and REMOVED)
+  private int used = 0;
+  // written after every change, to publish it
+  private volatile int size = 0;
+
+  public static IntHashSet of() {
+    return new IntHashSet();
+  }
+
+  private static int indexOf(int[] slots, int element) {
+    // spread the dense ids over the table
+    return (element * 0x9E3779B9 >>> 1) & (slots.length - 1);
+  }
+
+  // the slot of the element, or the first EMPTY slot after the home of the element
+  private static int probe(int[] slots, int element) {
+    var mask = slots.length - 1;
+    var i = indexOf(slots, element);
+    while (slots[i] != EMPTY && slots[i] != element) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void resize(int capacity) {
+    var table = new int[capacity];
+    Arrays.fill(table, EMPTY);
+    for (var element : this.slots) {
+      if (element >= 0) {
+        table[probe(table, element)] = element;
+      }
+    }
+    this.slots = table;
+    this.used = this.size;
+  }
+
+  public synchronized Boolean add(int element) {
+    if (element < 0) {
+      throw new IllegalArgumentException("negative element " + element);
+    }
+
+    if ((this.used + 1) * 2 > this.slots.length) {
+      resize(Math.max(4, Integer.highestOneBit(this.size * 4 + 3)));
+    }
+
+    var i = probe(this.slots, element);
+    if (this.slots[i] == element) {
+      return false;
+    }
+
+    // the first removed slot met by the probe could be reused, but
+    // a reader could be probing past it for the same element
+    this.slots[i] = element;
+    this.used++;
+    this.size = this.size + 1;
+    return true;
+  }
+
+  public synchronized Boolean remove(int element) {
+    if (element < 0 || this.slots.length == 0) {
+      return false;
+    }
+
+    var i = probe(this.slots, element);
+    if (this.slots[i] != element) {
+      return false;
+    }
+
+    this.slots[i] = REMOVED;
+    this.size = this.size - 1;
+    return true;
+  }
+
+  public Boolean contains(int element) {
+    if (element < 0 || this.size == 0) {
+      return false;
+    }
+    var slots = this.slots;
+    return slots[probe(slots, element)] == element;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  // call the action with each element, in no particular order
+  public void forEach(IntConsumer action) {
+    if (this.size == 0) {
+      return;
+    }
+    for (var element : this.slots) {
+      if (element >= 0) {
+        action.accept(element);
+      }
+    }
+  }
+}
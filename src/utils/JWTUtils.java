@@ -6,6 +6,7 @@ import java.util.Date;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.JWTVerifier;
 
 import domain.user.User;
 import io.vavr.control.Either;
@@ -33,17 +34,32 @@ public class JWTUtils {
     return jwt;
   }
 
+  // build a verifier of the jwts signed with the provided secret
+  // using the HMAC256 algorithm: it can be reused and shared among threads
+  public static JWTVerifier buildVerifier(String secret) {
+    return JWT.require(Algorithm.HMAC256(secret))
+        .withIssuer("winsome-asc")
+        .withClaimPresence("username")
+        .build();
+  }
+
   // validate a jwt
   // using the HMAC256 algorithm and the provided secret
   public static Either<String, User> validateJWT(String secret, String jwt) {
-
-    var toRet = Either.<String, User>right(null);
     try {
-      var verifier = JWT.require(Algorithm.HMAC256(secret))
-          .withIssuer("winsome-asc")
-          .withClaimPresence("username")
-          .build();
+      return verifyJWT(buildVerifier(secret), jwt)
+          .map(p -> User.of(p.fst(), "INVALD_USER", null, false));
+    } catch (Exception e) {
+      return Either.left("invalid auth token");
+    }
+  }
 
+  // validate a jwt using a verifier built by buildVerifier,
+  // return its username and its expiry
+  public static Either<String, Pair<String, Long>> verifyJWT(JWTVerifier verifier, String jwt) {
+
+    var toRet = Either.<String, Pair<String, Long>>right(null);
+    try {
       var dec = verifier.verify(jwt);
 
       var usernameClaim = dec.getClaim("username");
@@ -53,7 +69,10 @@ public class JWTUtils {
         throw new RuntimeException();
       }
 
-      toRet = Either.right(User.of(usernameClaim.asString(), "INVALD_USER", null));
+      // the jwts created by createJWT always expire
+      var expiresAt = dec.getExpiresAt();
+      toRet = Either.right(Pair.of(usernameClaim.asString(),
+          expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime()));
 
     } catch (JWTVerificationException e) {
       // Invalid signature/claims e.g. token expired
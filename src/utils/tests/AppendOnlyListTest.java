@@ -0,0 +1,92 @@
+package utils.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import org.junit.jupiter.api.Test;
+
+import utils.AppendOnlyList;
+
+public class AppendOnlyListTest {
+
+  // sizes around the boundaries of the chunks
+  @ParameterizedTest(name = "{0}")
+  @ValueSource(ints = { 0, 1, 15, 16, 17, 47, 48, 49, 1000, 100000 })
+  void sameElementsOfArrayList(Integer size) {
+    var list = AppendOnlyList.<Integer>of();
+    var expected = new ArrayList<Integer>();
+    for (var i = 0; i < size; i++) {
+      list.add(i);
+      expected.add(i);
+    }
+
+    assertEquals(expected, list);
+    assertEquals(expected.size(), list.size());
+    assertThrows(IndexOutOfBoundsException.class, () -> list.get(size));
+  }
+
+  @Test
+  void iteratorSeesTheElementsAppendedBefore() {
+    var list = AppendOnlyList.<Integer>of();
+    list.add(0);
+    list.add(1);
+
+    var iterator = list.iterator();
+    list.add(2);
+
+    var seen = new ArrayList<Integer>();
+    iterator.forEachRemaining(seen::add);
+    assertEquals(2, seen.size());
+  }
+
+  // the readers don't lock: they must always see a complete prefix
+  @Test
+  void readersSeeAPrefixWhileWritersAppend() throws Exception {
+    var list = AppendOnlyList.<Integer>of();
+    var writers = 3;
+    var appends = 50000;
+    var done = new AtomicBoolean(false);
+    var errors = new ArrayList<String>();
+
+    var reader = new Thread(() -> {
+      while (!done.get()) {
+        var size = list.size();
+        for (var i = 0; i < size; i++) {
+          if (list.get(i) == null) {
+            synchronized (errors) {
+              errors.add("null element at " + i);
+            }
+          }
+        }
+      }
+    });
+    reader.start();
+
+    var threads = new ArrayList<Thread>();
+    for (var w = 0; w < writers; w++) {
+      var thread = new Thread(() -> {
+        for (var i = 0; i < appends; i++) {
+          list.add(i);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (var thread : threads) {
+      thread.join();
+    }
+    done.set(true);
+    reader.join();
+
+    assertTrue(errors.isEmpty(), errors.toString());
+    assertEquals(writers * appends, list.size());
+    assertEquals(writers * appends, list.stream().filter(e -> e != null).count());
+  }
+}
@@ -1,8 +1,11 @@
 package utils.tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
@@ -29,4 +32,60 @@ public class HashPasswordTest {
   void differentHash(String password) {
     assertNotEquals(Hasher.hash(password), Hasher.hash(password + " "));
   }
+
+  // the legacy format: SHA-512 in hex
+  @Test
+  void legacyHash() {
+    assertEquals("ba3253876aed6bc22d4a6ff53d8406c6ad864195ed144ab5c87621b6c233b548"
+        + "baeae6956df346ec8c17f5ea10f35ee3cbc514797ed7ddd3145464e2a0bab413", Hasher.hash("123456"));
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @CsvSource({
+      "abcde12345",
+      "password",
+      "123456",
+  })
+  void saltedHash(String password) {
+    var hash = Hasher.hashPassword(password);
+
+    assertTrue(hash.startsWith("v1$" + Hasher.getIterations() + "$"));
+    assertNotEquals(hash, Hasher.hashPassword(password));
+    assertTrue(Hasher.verify(password, hash));
+    assertFalse(Hasher.verify(password + " ", hash));
+    assertFalse(Hasher.needsRehash(hash));
+  }
+
+  @Test
+  void legacyHashesAreVerifiedAndRehashed() {
+    var legacy = Hasher.hash("password");
+
+    assertTrue(Hasher.verify("password", legacy));
+    assertFalse(Hasher.verify("password ", legacy));
+    assertTrue(Hasher.needsRehash(legacy));
+  }
+
+  @Test
+  void weakerHashesAreRehashed() {
+    var previous = Hasher.getIterations();
+    try {
+      Hasher.setIterations(1000);
+      var weak = Hasher.hashPassword("password");
+
+      Hasher.setIterations(2000);
+      assertTrue(Hasher.verify("password", weak));
+      assertTrue(Hasher.needsRehash(weak));
+      assertFalse(Hasher.needsRehash(Hasher.hashPassword("password")));
+    } finally {
+      Hasher.setIterations(previous);
+    }
+  }
+
+  @Test
+  void malformedHashes() {
+    assertFalse(Hasher.verify("password", "v1$1000$!!$!!"));
+    assertFalse(Hasher.verify("password", "v2$1000$c2FsdA$aGFzaA"));
+    assertFalse(Hasher.verify("password", null));
+    assertTrue(Hasher.needsRehash("v1$many$c2FsdA$aGFzaA"));
+  }
 }
@@ -0,0 +1,69 @@
+package utils.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import utils.HashingPool;
+
+public class HashingPoolTest {
+
+  @Test
+  void runOnThePool() {
+    var pool = HashingPool.of(2, 2);
+
+    assertEquals(42, pool.run(() -> 42).get());
+    assertTrue(pool.run(() -> Thread.currentThread().getName()).get().startsWith("password-hasher-"));
+    assertEquals("boom", pool.<Integer>run(() -> {
+      throw new RuntimeException("boom");
+    }).getLeft());
+    assertEquals(2, pool.getCompleted());
+    assertEquals(0, pool.getInFlight());
+
+    pool.shutdown();
+  }
+
+  // when the threads and the queue are taken the other tasks are refused at once
+  @Test
+  void rejectWhenFull() throws InterruptedException {
+    var pool = HashingPool.of(1, 1);
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+
+    var callers = new ArrayList<Thread>();
+    for (var i = 0; i < 2; i++) {
+      var caller = new Thread(() -> pool.run(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return null;
+      }));
+      caller.start();
+      callers.add(caller);
+    }
+
+    started.await();
+    while (pool.getInFlight() < 2) {
+      Thread.sleep(1);
+    }
+
+    assertTrue(pool.run(() -> 42).isLeft());
+    assertEquals(1, pool.getRejected());
+
+    release.countDown();
+    for (var caller : callers) {
+      caller.join();
+    }
+    assertEquals(42, pool.run(() -> 42).get());
+    assertEquals(0, pool.getInFlight());
+
+    pool.shutdown();
+  }
+}
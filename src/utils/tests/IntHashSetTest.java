@@ -0,0 +1,52 @@
+package utils.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import utils.IntHashSet;
+
+public class IntHashSetTest {
+
+  @Test
+  void emptySet() {
+    var set = IntHashSet.of();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(0));
+    assertFalse(set.remove(0));
+    set.forEach(__ -> {
+      throw new AssertionError("no elements expected");
+    });
+  }
+
+  // random adds and removes, compared with a HashSet
+  @Test
+  void sameElementsOfHashSet() {
+    var random = new Random(42);
+    var set = IntHashSet.of();
+    var expected = new HashSet<Integer>();
+
+    for (var i = 0; i < 200000; i++) {
+      var element = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(element), set.remove(element));
+      } else {
+        assertEquals(expected.add(element), set.add(element));
+      }
+    }
+
+    assertEquals(expected.size(), set.size());
+    for (var element = 0; element < 5000; element++) {
+      assertEquals(expected.contains(element), set.contains(element));
+    }
+
+    var seen = new HashSet<Integer>();
+    set.forEach(element -> assertTrue(seen.add(element)));
+    assertEquals(expected, seen);
+  }
+}
@@ -0,0 +1,107 @@
+package winsome;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import domain.user.User;
+
+// the jwts verified recently, each with the user it authenticates and its
+// expiry: a cached jwt is authenticated by a lookup, without verifying its
+// signature again. The jwts of the sessions that end must be evicted.
+// At most maxSize jwts are kept: when it is full the expired ones are dropped
+// and, if it is not enough, some of the others (they will be verified again)
+public class AuthCache {
+
+  private static class Entry {
+    final User user;
+    final Long expiresAt;
+
+    Entry(User user, Long expiresAt) {
+      this.user = user;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Integer maxSize;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private AuthCache(Integer maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  // null or non positive values fall back to the default: 65536 jwts
+  public static AuthCache of(Integer maxSize) {
+    return new AuthCache(maxSize != null && maxSize > 0 ? maxSize : 65536);
+  }
+
+  public static AuthCache of() {
+    return of(null);
+  }
+
+  // the user authenticated by a jwt, null if the jwt is not cached or it has expired
+  public User get(String jwt) {
+    var entry = this.entries.get(jwt);
+
+    if (entry == null) {
+      this.misses.increment();
+      return null;
+    } else if (entry.expiresAt <= System.currentTimeMillis()) {
+      this.entries.remove(jwt, entry);
+      this.misses.increment();
+      return null;
+    } else {
+      this.hits.increment();
+      return entry.user;
+    }
+  }
+
+  public void put(String jwt, User user, Long expiresAt) {
+    if (this.entries.size() >= this.maxSize) {
+      makeRoom();
+    }
+    this.entries.put(jwt, new Entry(user, expiresAt));
+  }
+
+  public void evict(String jwt) {
+    if (jwt != null) {
+      this.entries.remove(jwt);
+    }
+  }
+
+  public void clear() {
+    this.entries.clear();
+  }
+
+  // drop the expired jwts, then a quarter of the others if still full
+  private synchronized void makeRoom() {
+    if (this.entries.size() < this.maxSize) {
+      return;
+    }
+
+    var now = System.currentTimeMillis();
+    this.entries.values().removeIf(entry -> entry.expiresAt <= now);
+
+    var toDrop = this.entries.size() - this.maxSize * 3 / 4;
+    var it = this.entries.keySet().iterator();
+    while (toDrop-- > 0 && it.hasNext()) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  public Integer size() {
+    return this.entries.size();
+  }
+
+  public Long getHits() {
+    return this.hits.sum();
+  }
+
+  public Long getMisses() {
+    return this.misses.sum();
+  }
+}
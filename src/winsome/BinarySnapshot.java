@@ -0,0 +1,472 @@
+package winsome;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import domain.post.PostId;
+import io.vavr.control.Either;
+
+// a compact binary snapshot of Winsome: the magic bytes "WNSB" and the
+// version of the format, followed by sections framed as
+// <type><length><crc32 of the payload><payload>.
+// The usernames are stored once in the DICTIONARY section and then
+// referenced by their index, the uuids are stored as two longs.
+// The last section is END, containing the number of the previous ones:
+// a file without it has not been completely written.
+public class BinarySnapshot {
+
+  public static final Integer VERSION = 1;
+
+  public static final byte META = 1; // wallet previous timestamp
+  public static final byte DICTIONARY = 2; // usernames
+  public static final byte USERS = 3; // a chunk of users, with their posts
+  public static final byte LOGGED_USERS = 4; // usernames and jwts
+  public static final byte POST_AUTHORS = 5; // post uuids and authors
+  public static final byte WALLET = 6; // a chunk of users transactions
+  public static final byte END = 7; // number of sections
+
+  private static final byte[] MAGIC = { 'W', 'N', 'S', 'B' };
+  private static final Integer HEADER_SIZE = 8;
+  private static final Integer SECTION_HEADER_SIZE = 9;
+  private static final Integer BUFFER_SIZE = 64 * 1024;
+
+  // usernames not in the dictionary and uuids not in canonical form are written as strings
+  private static final Integer INLINE_USERNAME = -1;
+  private static final byte UUID_LONGS = 0;
+  private static final byte UUID_STRING = 1;
+
+  private BinarySnapshot() {
+  }
+
+  // tell if a file starts with the magic bytes of a binary snapshot
+  public static Boolean isBinary(String path) {
+    try (var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      var header = ByteBuffer.allocate(MAGIC.length);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+      }
+      return Arrays.equals(header.array(), MAGIC);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  // ---------------------------------------
+  // writing
+
+  // write the sections of a snapshot into a file, through a buffered channel
+  public static class Writer implements AutoCloseable {
+    private final FileChannel channel;
+    private final OutputStream out;
+    private final CRC32 crc = new CRC32();
+    private Integer sections = 0;
+
+    private Writer(String path) throws IOException {
+      this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+
+      var header = ByteBuffer.allocate(HEADER_SIZE);
+      header.put(MAGIC);
+      header.putInt(VERSION);
+      out.write(header.array());
+    }
+
+    public static Either<String, Writer> of(String path) {
+      if (path == null) {
+        return Either.left("path cannot be null");
+      }
+
+      try {
+        return Either.right(new Writer(path));
+      } catch (IOException e) {
+        return Either.left("cannot open the snapshot: " + e.getMessage());
+      }
+    }
+
+    public void section(byte type, Encoder encoder) throws IOException {
+      var payload = encoder.toBytes();
+      crc.reset();
+      crc.update(payload);
+
+      var header = ByteBuffer.allocate(SECTION_HEADER_SIZE);
+      header.put(type);
+      header.putInt(payload.length);
+      header.putInt((int) crc.getValue());
+      out.write(header.array());
+      out.write(payload);
+      sections++;
+    }
+
+    // write the END section and force the file to the disk
+    // return the size of the file
+    public Long finish() throws IOException {
+      section(END, Encoder.of(Map.of()).integer(sections));
+      out.flush();
+      channel.force(false);
+      return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  // the payload of a section
+  public static class Encoder {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> dictionary;
+
+    private Encoder(Map<String, Integer> dictionary) {
+      this.dictionary = dictionary;
+    }
+
+    // dictionary: username -> index
+    public static Encoder of(Map<String, Integer> dictionary) {
+      return new Encoder(dictionary);
+    }
+
+    // a nullable string
+    public Encoder string(String s) {
+      try {
+        if (s == null) {
+          out.writeInt(-1);
+        } else {
+          var encoded = s.getBytes(StandardCharsets.UTF_8);
+          out.writeInt(encoded.length);
+          out.write(encoded);
+        }
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    // a list of strings, preceded by its size
+    public Encoder strings(List<String> ss) {
+      integer(ss.size());
+      ss.forEach(this::string);
+      return this;
+    }
+
+    // the index of a username in the dictionary
+    public Encoder username(String username) {
+      var index = dictionary.get(username);
+      if (index != null) {
+        return integer(index);
+      } else {
+        return integer(INLINE_USERNAME).string(username);
+      }
+    }
+
+    // a list of usernames, preceded by its size
+    public Encoder usernames(List<String> usernames) {
+      integer(usernames.size());
+      usernames.forEach(this::username);
+      return this;
+    }
+
+    public Encoder uuid(String uuid) {
+      try {
+        if (PostId.isCanonical(uuid)) {
+          out.writeByte(UUID_LONGS);
+          out.writeLong(PostId.mostSignificantBits(uuid));
+          out.writeLong(PostId.leastSignificantBits(uuid));
+        } else {
+          out.writeByte(UUID_STRING);
+          string(uuid);
+        }
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    public Encoder integer(Integer i) {
+      try {
+        out.writeInt(i);
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    public Encoder number(Long l) {
+      try {
+        out.writeLong(l);
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    public Encoder number(Double d) {
+      try {
+        out.writeDouble(d);
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    public Encoder bool(Boolean b) {
+      try {
+        out.writeBoolean(b);
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    public byte[] toBytes() {
+      return bytes.toByteArray();
+    }
+  }
+
+  // ---------------------------------------
+  // reading
+
+  // the position of a section inside the file
+  public static class Section {
+    public final byte type;
+    public final Long offset; // of the payload
+    public final Integer length;
+    public final Integer checksum;
+
+    private Section(byte type, Long offset, Integer length, Integer checksum) {
+      this.type = type;
+      this.offset = offset;
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+
+  // list the sections of a snapshot and load them, possibly from many threads
+  public static class Reader implements AutoCloseable {
+    private final FileChannel channel;
+    private final List<Section> sections = new ArrayList<>();
+
+    private Reader(String path) throws IOException {
+      this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    }
+
+    // read the headers of the sections, the payloads are loaded on demand
+    private Either<String, Void> scan() throws IOException {
+      var header = read(0L, HEADER_SIZE);
+      var magic = new byte[MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        return Either.left("not a binary snapshot");
+      }
+      var version = header.getInt();
+      if (version != VERSION) {
+        return Either.left("unsupported snapshot version " + version);
+      }
+
+      var position = (long) HEADER_SIZE;
+      var size = channel.size();
+      while (position + SECTION_HEADER_SIZE <= size) {
+        var sectionHeader = read(position, SECTION_HEADER_SIZE);
+        var type = sectionHeader.get();
+        var length = sectionHeader.getInt();
+        var checksum = sectionHeader.getInt();
+        position += SECTION_HEADER_SIZE;
+
+        if (length < 0 || position + length > size) {
+          return Either.left("truncated snapshot");
+        }
+
+        if (type == END) {
+          var end = load(new Section(type, position, length, checksum));
+          if (end.isLeft() || !end.get().integer().equals(sections.size())) {
+            return Either.left("invalid end of the snapshot");
+          }
+          return Either.right(null);
+        }
+
+        sections.add(new Section(type, position, length, checksum));
+        position += length;
+      }
+
+      return Either.left("truncated snapshot");
+    }
+
+    public static Either<String, Reader> of(String path) {
+      if (path == null) {
+        return Either.left("path cannot be null");
+      }
+
+      var reader = (Reader) null;
+      try {
+        reader = new Reader(path);
+        var scanned = reader.scan();
+        if (scanned.isLeft()) {
+          reader.close();
+          return Either.left(scanned.getLeft());
+        }
+        return Either.right(reader);
+      } catch (IOException e) {
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (IOException __) {
+          }
+        }
+        return Either.left("cannot read the snapshot: " + e.getMessage());
+      }
+    }
+
+    // positional reads: safe from many threads
+    private ByteBuffer read(Long position, Integer length) throws IOException {
+      var buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("unexpected end of file");
+        }
+      }
+      return buffer.flip();
+    }
+
+    public List<Section> sections() {
+      return sections;
+    }
+
+    // load the payload of a section and verify its checksum
+    public Either<String, Decoder> load(Section section) {
+      return load(section, List.of());
+    }
+
+    public Either<String, Decoder> load(Section section, List<String> dictionary) {
+      try {
+        var payload = read(section.offset, section.length);
+        var crc = new CRC32();
+        crc.update(payload.array(), 0, section.length);
+        if ((int) crc.getValue() != section.checksum) {
+          return Either.left("corrupted snapshot section at " + section.offset);
+        }
+        return Either.right(Decoder.of(payload, dictionary));
+      } catch (IOException e) {
+        return Either.left("cannot read the snapshot: " + e.getMessage());
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  // to read the fields of a section in the order they were written
+  public static class Decoder {
+    private final ByteBuffer in;
+    private final List<String> dictionary;
+
+    private Decoder(ByteBuffer in, List<String> dictionary) {
+      this.in = in;
+      this.dictionary = dictionary;
+    }
+
+    // dictionary: index -> username
+    public static Decoder of(ByteBuffer in, List<String> dictionary) {
+      return new Decoder(in, dictionary);
+    }
+
+    private void require(Integer bytes) throws IOException {
+      if (bytes < 0 || in.remaining() < bytes) {
+        throw new IOException("malformed snapshot section");
+      }
+    }
+
+    public Boolean hasRemaining() {
+      return in.hasRemaining();
+    }
+
+    public String string() throws IOException {
+      var length = integer();
+      if (length < 0) {
+        return null;
+      }
+      require(length);
+      var s = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+      in.position(in.position() + length);
+      return s;
+    }
+
+    public List<String> strings() throws IOException {
+      var size = integer();
+      require(size);
+      var toRet = new ArrayList<String>(size);
+      for (var i = 0; i < size; i++) {
+        toRet.add(string());
+      }
+      return toRet;
+    }
+
+    // the username in the dictionary, the same instance for every occurrence
+    public String username() throws IOException {
+      var index = integer();
+      if (index == INLINE_USERNAME) {
+        return string();
+      } else if (index < 0 || index >= dictionary.size()) {
+        throw new IOException("malformed snapshot section");
+      }
+      return dictionary.get(index);
+    }
+
+    public List<String> usernames() throws IOException {
+      var size = integer();
+      require(size);
+      var toRet = new ArrayList<String>(size);
+      for (var i = 0; i < size; i++) {
+        toRet.add(username());
+      }
+      return toRet;
+    }
+
+    public String uuid() throws IOException {
+      require(1);
+      if (in.get() == UUID_LONGS) {
+        require(16);
+        return PostId.toString(in.getLong(), in.getLong());
+      } else {
+        return string();
+      }
+    }
+
+    public Integer integer() throws IOException {
+      require(4);
+      return in.getInt();
+    }
+
+    public Long longNumber() throws IOException {
+      require(8);
+      return in.getLong();
+    }
+
+    public Double doubleNumber() throws IOException {
+      require(8);
+      return in.getDouble();
+    }
+
+    public Boolean bool() throws IOException {
+      require(1);
+      return in.get() != 0;
+    }
+  }
+}
@@ -0,0 +1,339 @@
+package winsome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+import domain.post.Post;
+import domain.user.User;
+import io.vavr.control.Either;
+import utils.Pair;
+
+// materialized feeds: each user has a bounded feed, ordered from the newest
+// to the oldest post, that is updated when a post is created (or rewinned)
+// or deleted and when the user follows or unfollows someone (fan-out on write).
+// The posts of the authors with more than fanoutThreshold followers are never
+// pushed: they are merged into the feed when it is read (fan-out on read).
+// A feed is built on its first read, so inactive users cost nothing, and
+// its entries are validated against the network when read.
+public class FeedEngine {
+
+  private static final Integer DEFAULT_MAX_SIZE = 1000;
+  private static final Integer DEFAULT_FANOUT_THRESHOLD = 10000;
+
+  // a reference to a post in a feed
+  private static class Entry implements Comparable<Entry> {
+    private final Long timestamp;
+    private final String postUuid;
+    private final String author;
+
+    private Entry(Long timestamp, String postUuid, String author) {
+      this.timestamp = timestamp;
+      this.postUuid = postUuid;
+      this.author = author;
+    }
+
+    private static Entry of(Post post) {
+      return new Entry(post.timestamp, post.uuid, post.author);
+    }
+
+    // from the newest to the oldest, the uuid breaks ties
+    @Override
+    public int compareTo(Entry other) {
+      var cmp = Long.compare(other.timestamp, this.timestamp);
+      return cmp != 0 ? cmp : other.postUuid.compareTo(this.postUuid);
+    }
+
+    // "<timestamp>_<post uuid>"
+    private String toCursor() {
+      return timestamp + "_" + postUuid;
+    }
+  }
+
+  private static class Feed {
+    private final TreeSet<Entry> entries = new TreeSet<>();
+    // has the feed been filled with the posts of the followed users?
+    private Boolean built = false;
+  }
+
+  private final ConcurrentMap<String, User> network;
+  private final Integer maxSize;
+  private final Integer fanoutThreshold;
+
+  // username -> feed of the user
+  private final ConcurrentMap<String, Feed> feeds = new ConcurrentHashMap<>();
+
+  // authors whose posts are read from their blogs instead of being pushed,
+  // each one with its posts ordered from the newest to the oldest
+  // (once an author becomes hot it stays hot, so no post is missed)
+  private final ConcurrentMap<String, NavigableSet<Entry>> hotAuthors = new ConcurrentHashMap<>();
+
+  private FeedEngine(ConcurrentMap<String, User> network, Integer maxSize, Integer fanoutThreshold) {
+    this.network = network;
+    this.maxSize = maxSize;
+    this.fanoutThreshold = fanoutThreshold;
+  }
+
+  public static FeedEngine of(ConcurrentMap<String, User> network, Integer maxSize, Integer fanoutThreshold) {
+    if (network == null) {
+      throw new NullPointerException("network cannot be null");
+    }
+    return new FeedEngine(
+        network,
+        maxSize != null && maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE,
+        fanoutThreshold != null && fanoutThreshold >= 0 ? fanoutThreshold : DEFAULT_FANOUT_THRESHOLD);
+  }
+
+  // ---------------------------------------
+  // internal methods
+
+  private Boolean isHot(User author) {
+    if (hotAuthors.containsKey(author.username)) {
+      return true;
+    }
+
+    if (author.followers.size() <= fanoutThreshold) {
+      return false;
+    }
+
+    // the posts created from now on are added by onPost
+    hotAuthors.computeIfAbsent(author.username, __ -> {
+      var blog = new ConcurrentSkipListSet<Entry>();
+      author.posts.values().forEach(post -> blog.add(Entry.of(post)));
+      return blog;
+    });
+    return true;
+  }
+
+  // add an entry to a feed, dropping the oldest one if the feed is full
+  // (the caller must own the feed's lock)
+  private void push(Feed feed, Entry entry) {
+    feed.entries.add(entry);
+    if (feed.entries.size() > maxSize) {
+      feed.entries.pollLast();
+    }
+  }
+
+  // add the most recent posts of an author to a feed
+  // (the caller must own the feed's lock)
+  private void backfill(Feed feed, User author) {
+    author.posts.values()
+        .stream()
+        .map(Entry::of)
+        .sorted()
+        .limit(maxSize)
+        .forEach(entry -> push(feed, entry));
+  }
+
+  // return the feed of a user, building it if it is the first time
+  private Feed getFeed(User user) {
+    var feed = feeds.computeIfAbsent(user.username, __ -> new Feed());
+
+    synchronized (feed) {
+      if (!feed.built) {
+        // the posts created from now on are pushed into the feed
+        user.getFollowing()
+            .stream()
+            .map(network::get)
+            .filter(author -> author != null && !isHot(author))
+            .forEach(author -> backfill(feed, author));
+        feed.built = true;
+      }
+    }
+
+    return feed;
+  }
+
+  // the post referenced by an entry if it still belongs to the feed of the user
+  private Post resolve(User user, Entry entry) {
+    if (!user.following.contains(entry.author)) {
+      return null;
+    }
+
+    var author = network.get(entry.author);
+    return author == null ? null : author.posts.get(entry.postUuid);
+  }
+
+  // "<timestamp>_<post uuid>" -> the entry used as an exclusive lower bound
+  private static Either<String, Entry> parseCursor(String cursor) {
+    var separator = cursor.indexOf('_');
+    if (separator <= 0 || separator == cursor.length() - 1) {
+      return Either.left("invalid cursor");
+    }
+
+    try {
+      var timestamp = Long.parseLong(cursor.substring(0, separator));
+      return Either.right(new Entry(timestamp, cursor.substring(separator + 1), null));
+    } catch (NumberFormatException e) {
+      return Either.left("invalid cursor");
+    }
+  }
+
+  // ---------------------------------------
+  // API
+
+  // take the page of posts that follows the cursor (or the first page if
+  // the cursor is null), from the newest to the oldest, together with the
+  // cursor of the next page (null if there are no more posts)
+  public static Either<String, Pair<List<Post>, String>> paginate(Stream<Post> posts, String cursor,
+      Integer limit) {
+    if (limit != null && limit <= 0) {
+      return Either.left("invalid limit");
+    }
+
+    var efrom = cursor == null ? Either.<String, Entry>right(null) : parseCursor(cursor);
+
+    return efrom.map(from -> {
+      var page = new TreeMap<Entry, Post>();
+
+      posts
+          .filter(post -> post != null)
+          .forEach(post -> {
+            var entry = Entry.of(post);
+            if (from == null || entry.compareTo(from) > 0) {
+              page.put(entry, post);
+              if (limit != null && page.size() > limit) {
+                page.pollLastEntry();
+              }
+            }
+          });
+
+      var next = limit != null && page.size() == limit ? page.lastKey().toCursor() : null;
+      return Pair.of(new ArrayList<>(page.values()), next);
+    });
+  }
+
+  // read a page of the feed of a user, limit cannot exceed the size of a feed
+  public Either<String, Pair<List<Post>, String>> read(User user, String cursor, Integer limit) {
+    if (limit != null && limit <= 0) {
+      return Either.left("invalid limit");
+    }
+
+    var max = limit == null ? maxSize : Math.min(limit, maxSize);
+    var efrom = cursor == null ? Either.<String, Entry>right(null) : parseCursor(cursor);
+
+    return efrom.flatMap(from -> {
+      var candidates = new ArrayList<Post>();
+      var feed = getFeed(user);
+
+      synchronized (feed) {
+        var entries = from == null ? feed.entries : feed.entries.tailSet(from, false);
+        var found = 0;
+        for (var entry : entries) {
+          var post = resolve(user, entry);
+          if (post != null) {
+            candidates.add(post);
+            if (++found == max) {
+              break;
+            }
+          }
+        }
+      }
+
+      // fan-out on read for the followed hot authors, walking the smaller of the two sets:
+      // only the newest max posts after the cursor of each one are candidates
+      var followedHot = new ArrayList<NavigableSet<Entry>>();
+      if (user.following.size() < hotAuthors.size()) {
+        for (var username : user.following) {
+          var blog = hotAuthors.get(username);
+          if (blog != null) {
+            followedHot.add(blog);
+          }
+        }
+      } else {
+        hotAuthors.forEach((username, blog) -> {
+          if (user.following.contains(username)) {
+            followedHot.add(blog);
+          }
+        });
+      }
+
+      for (var blog : followedHot) {
+        var entries = from == null ? blog : blog.tailSet(from, false);
+        var found = 0;
+        for (var entry : entries) {
+          var post = resolve(user, entry);
+          if (post != null) {
+            candidates.add(post);
+            if (++found == max) {
+              break;
+            }
+          }
+        }
+      }
+
+      return paginate(candidates.stream(), cursor, max);
+    });
+  }
+
+  // a post has been created by an author
+  public void onPost(User author, Post post) {
+    var entry = Entry.of(post);
+
+    if (isHot(author)) {
+      hotAuthors.get(author.username).add(entry);
+      return;
+    }
+
+    author.getFollowers().forEach(follower -> {
+      var feed = feeds.get(follower);
+      if (feed != null) {
+        synchronized (feed) {
+          push(feed, entry);
+        }
+      }
+    });
+  }
+
+  // a post has been deleted by its author
+  public void onDelete(User author, Post post) {
+    var entry = Entry.of(post);
+
+    var blog = hotAuthors.get(author.username);
+    if (blog != null) {
+      blog.remove(entry);
+      return;
+    }
+
+    author.getFollowers().forEach(follower -> {
+      var feed = feeds.get(follower);
+      if (feed != null) {
+        synchronized (feed) {
+          feed.entries.remove(entry);
+        }
+      }
+    });
+  }
+
+  // a user has started following an author
+  public void onFollow(User user, User author) {
+    var feed = feeds.get(user.username);
+    if (feed != null && !isHot(author)) {
+      synchronized (feed) {
+        backfill(feed, author);
+      }
+    }
+  }
+
+  // a user has stopped following an author
+  public void onUnfollow(User user, User author) {
+    var feed = feeds.get(user.username);
+    if (feed != null) {
+      synchronized (feed) {
+        feed.entries.removeIf(entry -> entry.author.equals(author.username));
+      }
+    }
+  }
+
+  // drop every feed, they will be built again when read
+  public void clear() {
+    feeds.clear();
+    hotAuthors.clear();
+  }
+}
@@ -0,0 +1,113 @@
+package winsome;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import domain.user.User;
+import utils.Pair;
+
+// the opaque sessions: random 128 bit ids mapped to the user they authenticate,
+// looked up without any cryptography. A session expires after ttl ms without
+// requests (sliding expiry): an expired session does not authenticate anymore
+// and it is removed by sweep
+public class SessionTable {
+
+  // the last access of a session is updated at most once in this interval
+  private static final Long TOUCH_INTERVAL = 1000L;
+
+  private static class Session {
+    final User user;
+    volatile long lastAccess;
+
+    Session(User user, long lastAccess) {
+      this.user = user;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+  private final SecureRandom random = new SecureRandom();
+  private final Long ttl;
+
+  private SessionTable(Long ttl) {
+    this.ttl = ttl;
+  }
+
+  // null or non positive values fall back to the default: a day
+  public static SessionTable of(Long ttl) {
+    return new SessionTable(ttl != null && ttl > 0 ? ttl : 24 * 60 * 60 * 1000L);
+  }
+
+  public Long getTTL() {
+    return this.ttl;
+  }
+
+  // a new random id, as 32 hex digits
+  public String newId() {
+    var bytes = new byte[16];
+    this.random.nextBytes(bytes);
+
+    var toRet = new StringBuilder(32);
+    for (var b : bytes) {
+      toRet.append(Character.forDigit((b >> 4) & 0xF, 16));
+      toRet.append(Character.forDigit(b & 0xF, 16));
+    }
+    return toRet.toString();
+  }
+
+  // start a session that was just accessed
+  public void put(String id, User user) {
+    this.sessions.put(id, new Session(user, System.currentTimeMillis()));
+  }
+
+  // the user of a session that has not expired, null if there is none
+  public User get(String id) {
+    var session = this.sessions.get(id);
+    if (session == null) {
+      return null;
+    }
+
+    var now = System.currentTimeMillis();
+    var lastAccess = session.lastAccess;
+    if (now - lastAccess > this.ttl) {
+      return null;
+    }
+
+    // sliding expiry, without writing at each request
+    if (now - lastAccess > TOUCH_INTERVAL) {
+      session.lastAccess = now;
+    }
+    return session.user;
+  }
+
+  public void remove(String id) {
+    if (id != null) {
+      this.sessions.remove(id);
+    }
+  }
+
+  public void clear() {
+    this.sessions.clear();
+  }
+
+  // remove the expired sessions, return their ids and their usernames
+  public List<Pair<String, String>> sweep() {
+    var toRet = new ArrayList<Pair<String, String>>();
+    var now = System.currentTimeMillis();
+
+    this.sessions.forEach((id, session) -> {
+      if (now - session.lastAccess > this.ttl && this.sessions.remove(id, session)) {
+        toRet.add(Pair.of(id, session.user.username));
+      }
+    });
+
+    return toRet;
+  }
+
+  public Integer size() {
+    return this.sessions.size();
+  }
+}
@@ -0,0 +1,206 @@
+package winsome;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import domain.post.AuthorPostUuid;
+import domain.post.Post;
+import domain.reaction.ReactionStore;
+import domain.user.User;
+import domain.wallet.WalletTransaction;
+import utils.AppendOnlyList;
+
+// the state of Winsome at the start of a snapshot (copy-on-write):
+// while the snapshot is being written, the first mutation of a part of
+// the state saves what the part was before (its image), holding the
+// same lock the mutation holds. The snapshot reads the live part first
+// and then looks for its image: if there is one, the part has changed
+// since the start and the image is used, otherwise the read is still valid.
+// The comments, the reactions, the rewins and the transactions are only
+// appended: their image is their size.
+class SnapshotImage {
+
+  private final Long prevTimestamp;
+
+  // users registered after the start
+  private final Set<String> born = ConcurrentHashMap.newKeySet();
+  // username -> jwt, empty if the user was not logged
+  private final ConcurrentMap<String, Optional<String>> loggedUsers = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<User, String> passwords = new ConcurrentHashMap<>();
+  private final ConcurrentMap<User, List<String>> followers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<User, List<String>> following = new ConcurrentHashMap<>();
+  private final ConcurrentMap<User, List<Post>> posts = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<Post, Integer> rewins = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Post, Integer> comments = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Post, Integer> reactions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Post, Boolean> justDeleted = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Post, Long> iterations = new ConcurrentHashMap<>();
+
+  // username -> number of transactions
+  private final ConcurrentMap<String, Integer> transactions = new ConcurrentHashMap<>();
+
+  private SnapshotImage(Long prevTimestamp) {
+    this.prevTimestamp = prevTimestamp;
+  }
+
+  // the wallet thread is not running when a snapshot starts
+  public static SnapshotImage of(Long prevTimestamp) {
+    return new SnapshotImage(prevTimestamp);
+  }
+
+  // ---------------------------------------
+  // called by the mutations, before they happen
+
+  public void register(String username) {
+    born.add(username);
+  }
+
+  public void loggedUser(String username, Supplier<String> jwt) {
+    loggedUsers.computeIfAbsent(username, __ -> Optional.ofNullable(jwt.get()));
+  }
+
+  public void password(User user) {
+    passwords.computeIfAbsent(user, u -> u.password);
+  }
+
+  public void followers(User user) {
+    followers.computeIfAbsent(user, User::getFollowers);
+  }
+
+  public void following(User user) {
+    following.computeIfAbsent(user, User::getFollowing);
+  }
+
+  public void posts(User user) {
+    posts.computeIfAbsent(user, u -> new ArrayList<>(u.posts.values()));
+  }
+
+  public void rewins(Post post) {
+    rewins.computeIfAbsent(post, p -> {
+      synchronized (p.rewins) {
+        return p.rewins.size();
+      }
+    });
+  }
+
+  public void comments(Post post) {
+    comments.computeIfAbsent(post, p -> p.comments.size());
+  }
+
+  public void reactions(Post post) {
+    reactions.computeIfAbsent(post, p -> p.reactions.size());
+  }
+
+  public void justDeleted(Post post) {
+    justDeleted.computeIfAbsent(post, p -> p.justDeleted);
+  }
+
+  public void iteration(Post post) {
+    iterations.computeIfAbsent(post, Post::getWalletScannerIteration);
+  }
+
+  public void transactions(String username, Supplier<Integer> count) {
+    transactions.computeIfAbsent(username, __ -> count.get());
+  }
+
+  // ---------------------------------------
+  // called by the snapshot
+
+  public Long getPrevTimestamp() {
+    return prevTimestamp;
+  }
+
+  public Boolean isBorn(String username) {
+    return born.contains(username);
+  }
+
+  // the logged users at the start
+  public Map<String, String> loggedUsers(Map<String, String> live) {
+    var toRet = new LinkedHashMap<String, String>();
+
+    live.forEach((username, jwt) -> loggedUsers
+        .getOrDefault(username, Optional.of(jwt))
+        .ifPresent(j -> toRet.put(username, j)));
+
+    // the ones that have logged out in the meantime
+    loggedUsers.forEach((username, jwt) -> {
+      if (!toRet.containsKey(username)) {
+        jwt.ifPresent(j -> toRet.put(username, j));
+      }
+    });
+
+    return toRet;
+  }
+
+  // the posts of a user at the start (the live instances)
+  public List<Post> postsOf(User live) {
+    var read = new ArrayList<Post>(live.posts.values());
+    return posts.getOrDefault(live, read);
+  }
+
+  // a copy of a user, with its posts, as it was at the start
+  public User user(User live) {
+    var passwordRead = live.password;
+    var frozen = User.of(live.username, passwords.getOrDefault(live, passwordRead), live.tags, false);
+
+    var followersRead = live.getFollowers();
+    frozen.followers.addAll(followers.getOrDefault(live, followersRead));
+
+    var followingRead = live.getFollowing();
+    frozen.following.addAll(following.getOrDefault(live, followingRead));
+
+    for (var post : postsOf(live)) {
+      frozen.posts.put(post.uuid, post(post));
+    }
+
+    return frozen;
+  }
+
+  // a copy of a post as it was at the start
+  public Post post(Post live) {
+    var frozen = new Post();
+    frozen.uuid = live.uuid;
+    frozen.timestamp = live.timestamp;
+    frozen.title = live.title;
+    frozen.content = live.content;
+    frozen.author = live.author;
+
+    var justDeletedRead = false;
+    synchronized (live) {
+      justDeletedRead = live.justDeleted;
+    }
+    frozen.justDeleted = justDeleted.getOrDefault(live, justDeletedRead);
+
+    var iterationRead = live.getWalletScannerIteration();
+    frozen.walletScannerIteration = iterations.getOrDefault(live, iterationRead);
+
+    var rewinsRead = (List<AuthorPostUuid>) null;
+    synchronized (live.rewins) {
+      rewinsRead = new ArrayList<>(live.rewins);
+    }
+    frozen.rewins = new LinkedList<>(rewinsRead.subList(0, rewins.getOrDefault(live, rewinsRead.size())));
+
+    frozen.comments = AppendOnlyList.of();
+    frozen.comments.addAll(live.comments.subList(0, comments.getOrDefault(live, live.comments.size())));
+
+    frozen.reactions = ReactionStore.of();
+    frozen.reactions.addAll(live.reactions.subList(0, reactions.getOrDefault(live, live.reactions.size())));
+
+    return frozen;
+  }
+
+  // the transactions of a user at the start
+  public List<WalletTransaction> transactionsOf(String username, List<WalletTransaction> read) {
+    return read.subList(0, transactions.getOrDefault(username, read.size()));
+  }
+}
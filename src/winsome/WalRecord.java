@@ -0,0 +1,155 @@
+package winsome;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// a record of the write ahead log of Winsome: a type followed by the
+// fields of the mutation, uuids and timestamps included, so that the
+// replay does not depend on the clock nor on the generated uuids
+public class WalRecord {
+
+  public static final byte REGISTER = 1; // username, password hash, tags
+  public static final byte LOGIN = 2; // username, jwt
+  public static final byte LOGOUT = 3; // username
+  public static final byte FOLLOW = 4; // username, followed username
+  public static final byte UNFOLLOW = 5; // username, unfollowed username
+  public static final byte POST = 6; // author, uuid, timestamp, title, content, rewinned author?, rewinned uuid?
+  public static final byte DELETE = 7; // author, uuid
+  public static final byte REACTION = 8; // post author, post uuid, author, is upvote, timestamp
+  public static final byte COMMENT = 9; // post author, post uuid, author, text, timestamp
+  public static final byte WALLET = 10; // timestamp, posts iterations, users transactions
+  public static final byte PASSWORD = 11; // username, password hash
+  public static final byte UNREGISTER = 12; // username (a registration rolled back)
+
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  private final DataOutputStream out = new DataOutputStream(bytes);
+
+  private WalRecord(byte type) {
+    this.bytes.write(type);
+  }
+
+  public static WalRecord of(byte type) {
+    return new WalRecord(type);
+  }
+
+  // a nullable string
+  public WalRecord string(String s) {
+    try {
+      if (s == null) {
+        out.writeInt(-1);
+      } else {
+        var encoded = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+      }
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // a list of strings, preceded by its size
+  public WalRecord strings(List<String> ss) {
+    integer(ss.size());
+    ss.forEach(this::string);
+    return this;
+  }
+
+  public WalRecord integer(Integer i) {
+    try {
+      out.writeInt(i);
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public WalRecord number(Long l) {
+    try {
+      out.writeLong(l);
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public WalRecord number(Double d) {
+    try {
+      out.writeDouble(d);
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public WalRecord bool(Boolean b) {
+    try {
+      out.writeBoolean(b);
+      return this;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public byte[] toBytes() {
+    return bytes.toByteArray();
+  }
+
+  // to read the fields of a record in the order they were written
+  public static class Reader {
+    private final DataInputStream in;
+    private final byte type;
+
+    private Reader(byte[] record) {
+      // the first byte is the type
+      var hasType = record.length > 0;
+      this.type = hasType ? record[0] : 0;
+      this.in = new DataInputStream(new ByteArrayInputStream(record, hasType ? 1 : 0, record.length));
+    }
+
+    public static Reader of(byte[] record) {
+      return new Reader(record);
+    }
+
+    public byte type() {
+      return type;
+    }
+
+    public String string() throws IOException {
+      var length = in.readInt();
+      return length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    public List<String> strings() throws IOException {
+      var size = in.readInt();
+      var toRet = new ArrayList<String>(size);
+      for (var i = 0; i < size; i++) {
+        toRet.add(string());
+      }
+      return toRet;
+    }
+
+    public Integer integer() throws IOException {
+      return in.readInt();
+    }
+
+    public Long longNumber() throws IOException {
+      return in.readLong();
+    }
+
+    public Double doubleNumber() throws IOException {
+      return in.readDouble();
+    }
+
+    public Boolean bool() throws IOException {
+      return in.readBoolean();
+    }
+  }
+}
@@ -1,48 +1,77 @@
 package winsome;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.auth0.jwt.interfaces.JWTVerifier;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import domain.comment.Comment;
 import domain.comment.CommentFactory;
 import domain.post.AuthorPostUuid;
 import domain.post.Post;
 import domain.post.PostFactory;
+import domain.post.PostIndex;
 import domain.reaction.Reaction;
 import domain.reaction.ReactionFactory;
+import domain.reaction.ReactionStore;
 import domain.user.User;
+import domain.user.UserDictionary;
 import domain.user.UserFactory;
 import domain.wallet.Wallet;
 import domain.wallet.WalletTransaction;
-import http.HttpConstants;
 import io.vavr.control.Either;
+import utils.AppendOnlyList;
 import utils.Hasher;
+import utils.HashingPool;
 import utils.Pair;
 import utils.TriConsumer;
 import utils.Triple;
 import utils.JWTUtils;
 import utils.Wrapper;
+import winsome.exchange.ExchangeRateProvider;
+import winsome.exchange.RandomOrgRateProvider;
 
 // to ignore JWT_SIGN_SECRET
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Winsome {
 
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final Integer SNAPSHOT_BUFFER_SIZE = 64 * 1024;
+  private static final Integer SNAPSHOT_CHUNK_SIZE = 1024;
+
   // ---------------------------------------
   // internal properties
 
@@ -59,15 +88,59 @@ public class Winsome {
   // postAuthors: a concurrent hashmap containing the relation
   // post UUID -> author
   @JsonProperty("postAuthors")
-  private final ConcurrentMap<String, String> postAuthors = new ConcurrentHashMap<>();
+  private final PostIndex<String> postAuthors = PostIndex.of();
+
+  // usersByTag: an inverted index containing the relation
+  // tag -> usernames of the users having that tag
+  // (derived from the network: it is not persisted, see rebuildIndexes)
+  private final ConcurrentMap<String, Set<String>> usersByTag = new ConcurrentHashMap<>();
+
+  // registering: the usernames whose registration is running
+  private final Set<String> registering = ConcurrentHashMap.newKeySet();
 
   // wallet: a data structure containing the history of
   // transactions of each user
   @JsonProperty("wallet")
   private final Wallet wallet = Wallet.of();
 
+  // newReactions and newComments: the reactions and the comments
+  // not yet evaluated by the wallet thread, together with their post
+  // (derived from the network: they are not persisted, see rebuildIndexes)
+  private final ConcurrentLinkedQueue<Pair<Post, Reaction>> newReactions = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<Pair<Post, Comment>> newComments = new ConcurrentLinkedQueue<>();
+
+  // optional write ahead log of the mutations (see setWriteAheadLog)
+  private WriteAheadLog wal = null;
+
+  // optional materialized feeds (see enableFeedEngine)
+  // derived from the network: they are not persisted
+  private FeedEngine feedEngine = null;
+
+  // the rate to convert wincoins into bitcoins
+  private ExchangeRateProvider exchangeRates = RandomOrgRateProvider.of();
+
+  // the mutations hold the read lock, a snapshot takes the write lock
+  // only to start: every mutation happens either before or after its start
+  private final ReentrantReadWriteLock epoch = new ReentrantReadWriteLock();
+  // held by an iteration of the wallet thread, that must not span the start of a snapshot
+  private final Object walletIterationLock = new Object();
+  // one snapshot at a time
+  private final Object snapshotLock = new Object();
+  // the images of what has changed since the start of the running snapshot, if any
+  private volatile SnapshotImage image = null;
+
   // the jwt secret used to sign the issued JWT tokens
   private String JWT_SIGN_SECRET = "";
+  // the verifier of the issued JWT tokens, built once for the secret
+  private JWTVerifier jwtVerifier = null;
+  // the JWT tokens authenticated recently (see authenticate)
+  private final AuthCache authCache = AuthCache.of();
+  // optional opaque sessions used instead of the JWT tokens (see enableSessions)
+  // derived from loggedUsers: they are not persisted
+  private SessionTable sessions = null;
+  // optional pool where the passwords are hashed (see setHashingPool),
+  // if there is none they are hashed by the calling thread
+  private HashingPool hashingPool = null;
 
   // this callback is called when the followers set of a user changes
   // it receives a reference to the performer of the follow/unfollow action,
@@ -89,6 +162,551 @@ public class Winsome {
     }
   }
 
+  // run a mutation of the state, that cannot span the start of a snapshot
+  private <T> Either<String, T> mutation(Supplier<Either<String, T>> action) {
+    epoch.readLock().lock();
+    try {
+      return action.get();
+    } finally {
+      epoch.readLock().unlock();
+    }
+  }
+
+  // save the image of what is going to be mutated, if a snapshot is running
+  private void capture(Consumer<SnapshotImage> action) {
+    var current = this.image;
+    if (current != null) {
+      action.accept(current);
+    }
+  }
+
+  // start a snapshot once the running mutations and the running iteration
+  // of the wallet thread are over
+  private SnapshotImage beginSnapshot() {
+    synchronized (walletIterationLock) {
+      epoch.writeLock().lock();
+      try {
+        this.image = SnapshotImage.of(this.wallet.getPrevTimestamp());
+        return this.image;
+      } finally {
+        epoch.writeLock().unlock();
+      }
+    }
+  }
+
+  private void endSnapshot() {
+    this.image = null;
+  }
+
+  // append a record to the write ahead log, if any
+  private Either<String, Void> log(Supplier<WalRecord> record) {
+    if (this.wal == null) {
+      return Either.right(null);
+    }
+    return this.wal
+        .append(record.get().toBytes())
+        .flatMap(__ -> Either.<String, Void>right(null));
+  }
+
+  // hash a password (or check it) on the hashing pool, if any
+  private <T> Either<String, T> hashing(Supplier<T> task) {
+    var pool = this.hashingPool;
+    return pool == null ? Either.right(task.get()) : pool.run(task);
+  }
+
+  // add a user to the indexes
+  // (the tags of a user cannot change after the registration)
+  private void indexUser(User user) {
+    user.tags.forEach(tag -> usersByTag
+        .computeIfAbsent(tag, __ -> ConcurrentHashMap.newKeySet())
+        .add(user.username));
+  }
+
+  // remove from a queue of new reactions/comments the ones created before nowTimestamp
+  // and group them by post, the others are left for the next iteration of the wallet thread
+  // the queue is not ordered by timestamp (concurrent producers, rebuildIndexes): every entry
+  // already there is examined, as the full scan would do, but not the ones added meanwhile,
+  // to not chase the producers
+  private <T> Map<Post, List<T>> drainActivity(ConcurrentLinkedQueue<Pair<Post, T>> queue, Long nowTimestamp,
+      Function<T, Long> timestamp) {
+    var toRet = new LinkedHashMap<Post, List<T>>();
+    var later = new LinkedList<Pair<Post, T>>();
+
+    var pending = queue.size();
+    var activity = pending > 0 ? queue.poll() : null;
+    while (activity != null) {
+      if (timestamp.apply(activity.snd()) < nowTimestamp) {
+        toRet.computeIfAbsent(activity.fst(), __ -> new LinkedList<>()).add(activity.snd());
+      } else {
+        later.add(activity);
+      }
+      activity = --pending > 0 ? queue.poll() : null;
+    }
+
+    queue.addAll(later);
+    return toRet;
+  }
+
+  // compute the gains of a post given its new reactions and comments and add them
+  // to the gains of each user (username -> gains)
+  // return true if the post has been evaluated, i.e. there was at least one positive
+  // reaction or one comment
+  private Boolean rewardPost(Post post, List<Reaction> reactions, List<Comment> postComments,
+      Integer authorPercentage, Map<String, List<Double>> gains) {
+
+    // extract the positive reactions
+    var positiveReactions = reactions
+        .stream()
+        .filter(r -> r.isUpvote)
+        .collect(Collectors.toList());
+
+    // group the comments into a list of entries <author, list of its comments to the post>
+    var comments = postComments
+        .stream()
+        .collect(Collectors.groupingBy(c -> c.author))
+        .entrySet()
+        .stream()
+        .collect(Collectors.toList());
+
+    // continue only if there is at least a positive reaction or a comment
+    if (positiveReactions.size() == 0 && comments.size() == 0) {
+      return false;
+    }
+
+    // sum the values of all the reactions
+    var reactionsSum = reactions
+        .stream()
+        .map(r -> r.isUpvote ? 1 : -1)
+        .reduce(0, (acc, val) -> acc + val);
+
+    // compute their contribute
+    var reactionsContribute = Math.log(Math.max(reactionsSum, 0) + 1);
+
+    // sum the values of all the comments and computes their contribute
+    var commentsSum = comments
+        .stream()
+        .map(ce -> (double) ce.getValue().size())
+        .reduce(0., (acc, val) -> acc + (2. / (1 + Math.pow(Math.E, -(val.intValue() - 1)))));
+
+    var commentsContribute = Math.log(commentsSum + 1);
+
+    // overall gain
+    var gain = (reactionsContribute + commentsContribute) / post.getWalletScannerIteration();
+
+    // compute the gain of the author
+    var authorGain = (gain / 100) * authorPercentage;
+
+    // list of other users that have contributed to the post (contains no
+    // duplicates)
+    var otherUsers = Stream.concat(
+        positiveReactions
+            .stream()
+            .map(r -> r.author),
+        comments
+            .stream()
+            .map(ce -> ce.getKey()))
+        .distinct()
+        .collect(Collectors.toList());
+
+    // compute the gain of the other users
+    var othersGain = ((gain / 100) * (100 - authorPercentage)) / otherUsers.stream().count();
+
+    // the gain of the author
+    gains.computeIfAbsent(post.author, __ -> new LinkedList<>()).add(authorGain);
+
+    // the gains of other users
+    otherUsers
+        .stream()
+        .forEach(user -> gains.computeIfAbsent(user, __ -> new LinkedList<>()).add(othersGain));
+
+    // update the number of iterations performed on the psot
+    capture(i -> i.iteration(post));
+    post.incrementWalletScannerIteration();
+
+    return true;
+  }
+
+  // the post of an author, or null if it does not exist
+  private Post findPost(String author, String postUuid) {
+    var user = network.get(author);
+    return user == null ? null : user.posts.get(postUuid);
+  }
+
+  // apply a record of the write ahead log
+  private void replayRecord(WalRecord.Reader record, Map<String, Integer> replayedComments) throws IOException {
+    switch (record.type()) {
+      case WalRecord.REGISTER: {
+        var user = User.of(record.string(), record.string(), record.strings(), false);
+        if (network.putIfAbsent(user.username, user) == null) {
+          wallet.addUser(user.username);
+        }
+        break;
+      }
+      case WalRecord.UNREGISTER: {
+        var username = record.string();
+        network.remove(username);
+        wallet.removeUser(username);
+        break;
+      }
+      case WalRecord.PASSWORD: {
+        var user = network.get(record.string());
+        var hash = record.string();
+        if (user != null) {
+          user.password = hash;
+        }
+        break;
+      }
+      case WalRecord.LOGIN: {
+        var username = record.string();
+        var jwt = record.string();
+        if (network.containsKey(username)) {
+          startSession(username, jwt);
+          var previous = loggedUsers.put(username, jwt);
+          // the snapshot may already contain this login
+          if (!jwt.equals(previous)) {
+            invalidate(previous);
+          }
+        }
+        break;
+      }
+      case WalRecord.LOGOUT: {
+        invalidate(loggedUsers.remove(record.string()));
+        break;
+      }
+      case WalRecord.FOLLOW:
+      case WalRecord.UNFOLLOW: {
+        var user = network.get(record.string());
+        var other = network.get(record.string());
+        if (user != null && other != null) {
+          if (record.type() == WalRecord.FOLLOW) {
+            user.addFollowing(other.username);
+            other.addFollower(user.username);
+          } else {
+            user.removeFollowing(other.username);
+            other.removeFollower(user.username);
+          }
+        }
+        break;
+      }
+      case WalRecord.POST: {
+        var author = network.get(record.string());
+        var uuid = record.string();
+        var timestamp = record.longNumber();
+        var post = Post.of(record.string(), record.string(), author != null ? author.username : null);
+        var rewinnedAuthor = record.string();
+        var rewinnedUuid = record.string();
+        post.uuid = uuid;
+        post.timestamp = timestamp;
+
+        if (author != null && author.posts.putIfAbsent(uuid, post) == null) {
+          postAuthors.put(uuid, author.username);
+
+          var rewinned = rewinnedAuthor == null ? null : network.get(rewinnedAuthor);
+          var original = rewinned == null ? null : rewinned.posts.get(rewinnedUuid);
+          if (original != null) {
+            original.rewins.add(AuthorPostUuid.of(author.username, uuid));
+          }
+        }
+        break;
+      }
+      case WalRecord.DELETE: {
+        var author = network.get(record.string());
+        var uuid = record.string();
+        var post = author == null ? null : author.posts.remove(uuid);
+        if (post != null) {
+          post.justDeleted = true;
+          postAuthors.remove(uuid);
+        }
+        break;
+      }
+      case WalRecord.REACTION: {
+        var post = findPost(record.string(), record.string());
+        var reaction = Reaction.of(null, null, record.string());
+        reaction.isUpvote = record.bool();
+        reaction.timestamp = record.longNumber();
+
+        if (post != null) {
+          reaction.postUuid = post.uuid;
+          // a reaction already restored is discarded
+          post.reactions.add(reaction);
+        }
+        break;
+      }
+      case WalRecord.COMMENT: {
+        var post = findPost(record.string(), record.string());
+        var author = record.string();
+        var comment = Comment.of(record.string(), post != null ? post.uuid : null, author);
+        comment.timestamp = record.longNumber();
+
+        if (post != null) {
+          // two equal comments are legit: a comment is added only if the post
+          // has no more copies of it than the ones met so far
+          var key = post.uuid + "/" + comment.author + "/" + comment.timestamp + "/" + comment.text;
+          var replayed = replayedComments.merge(key, 1, Integer::sum) - 1;
+          var copies = post.comments.stream()
+              .filter(c -> c.author.equals(comment.author) && c.timestamp.equals(comment.timestamp)
+                  && c.text.equals(comment.text))
+              .count();
+          if (copies <= replayed) {
+            post.comments.add(comment);
+          }
+        }
+        break;
+      }
+      case WalRecord.WALLET: {
+        var timestamp = record.longNumber();
+
+        var posts = record.integer();
+        for (var i = 0; i < posts; i++) {
+          var post = findPost(record.string(), record.string());
+          var iteration = record.longNumber();
+          if (post != null) {
+            synchronized (post) {
+              post.walletScannerIteration = Math.max(post.walletScannerIteration, iteration);
+            }
+          }
+        }
+
+        var users = record.integer();
+        for (var i = 0; i < users; i++) {
+          var username = record.string();
+          var transactions = new LinkedList<WalletTransaction>();
+          var size = record.integer();
+          for (var j = 0; j < size; j++) {
+            transactions.add(WalletTransaction.of(record.doubleNumber(), record.longNumber()));
+          }
+          wallet.restoreTransactions(username, transactions);
+        }
+
+        wallet.setPrevTimestamp(Math.max(wallet.getPrevTimestamp(), timestamp));
+        break;
+      }
+      default:
+        throw new IOException("unknown record type " + record.type());
+    }
+  }
+
+  // encode a post into a section of a binary snapshot (see BinarySnapshot)
+  private static void encodePost(BinarySnapshot.Encoder encoder, Post post) {
+    encoder
+        .uuid(post.uuid)
+        .number(post.timestamp)
+        .string(post.title)
+        .string(post.content)
+        .username(post.author)
+        .bool(post.justDeleted)
+        .number(post.getWalletScannerIteration());
+
+    synchronized (post.rewins) {
+      encoder.integer(post.rewins.size());
+      post.rewins.forEach(r -> encoder.username(r.author).uuid(r.postUuid));
+    }
+
+    // the comments and the reactions appended after these reads are not encoded
+    var comments = post.getComments();
+    encoder.integer(comments.size());
+    comments.forEach(c -> encoder.string(c.text).number(c.timestamp).username(c.author).uuid(c.postUuid));
+
+    var reactions = post.getReactions();
+    encoder.integer(reactions.size());
+    reactions.forEach(r -> encoder.bool(r.isUpvote).number(r.timestamp).username(r.author).uuid(r.postUuid));
+  }
+
+  // encode a user, with its posts
+  private static void encodeUser(BinarySnapshot.Encoder encoder, User user) {
+    encoder
+        .username(user.username)
+        .string(user.password)
+        .strings(user.tags)
+        .usernames(user.getFollowers())
+        .usernames(user.getFollowing());
+
+    var posts = new ArrayList<Post>(user.posts.values());
+    encoder.integer(posts.size());
+    posts.forEach(post -> encodePost(encoder, post));
+  }
+
+  private static Post decodePost(BinarySnapshot.Decoder decoder) throws IOException {
+    var post = new Post();
+
+    post.uuid = decoder.uuid();
+    post.timestamp = decoder.longNumber();
+    post.title = decoder.string();
+    post.content = decoder.string();
+    post.author = decoder.username();
+    post.justDeleted = decoder.bool();
+    post.walletScannerIteration = decoder.longNumber();
+
+    post.rewins = new LinkedList<AuthorPostUuid>();
+    var rewins = decoder.integer();
+    for (var i = 0; i < rewins; i++) {
+      post.rewins.add(AuthorPostUuid.of(decoder.username(), decoder.uuid()));
+    }
+
+    post.comments = AppendOnlyList.of();
+    var comments = decoder.integer();
+    for (var i = 0; i < comments; i++) {
+      var comment = new Comment();
+      comment.text = decoder.string();
+      comment.timestamp = decoder.longNumber();
+      comment.author = decoder.username();
+      comment.postUuid = decoder.uuid();
+      post.comments.add(comment);
+    }
+
+    post.reactions = ReactionStore.of();
+    var reactions = decoder.integer();
+    for (var i = 0; i < reactions; i++) {
+      var reaction = new Reaction();
+      reaction.isUpvote = decoder.bool();
+      reaction.timestamp = decoder.longNumber();
+      reaction.author = decoder.username();
+      reaction.postUuid = decoder.uuid();
+      post.reactions.add(reaction);
+    }
+
+    return post;
+  }
+
+  private static User decodeUser(BinarySnapshot.Decoder decoder) throws IOException {
+    var user = User.of(decoder.username(), decoder.string(), decoder.strings(), false);
+    user.followers.addAll(decoder.usernames());
+    user.following.addAll(decoder.usernames());
+
+    var posts = decoder.integer();
+    for (var i = 0; i < posts; i++) {
+      var post = decodePost(decoder);
+      user.posts.put(post.uuid, post);
+    }
+
+    return user;
+  }
+
+  // write the items into sections of at most SNAPSHOT_CHUNK_SIZE items each,
+  // so that they can be decoded in parallel
+  private static <T> void writeChunks(BinarySnapshot.Writer writer, byte type, Map<String, Integer> dictionary,
+      Iterable<T> items, BiConsumer<BinarySnapshot.Encoder, T> encode) throws IOException {
+
+    var chunk = new ArrayList<T>(SNAPSHOT_CHUNK_SIZE);
+    for (var item : items) {
+      chunk.add(item);
+      if (chunk.size() == SNAPSHOT_CHUNK_SIZE) {
+        var encoder = BinarySnapshot.Encoder.of(dictionary).integer(chunk.size());
+        chunk.forEach(i -> encode.accept(encoder, i));
+        writer.section(type, encoder);
+        chunk.clear();
+      }
+    }
+
+    if (!chunk.isEmpty()) {
+      var encoder = BinarySnapshot.Encoder.of(dictionary).integer(chunk.size());
+      chunk.forEach(i -> encode.accept(encoder, i));
+      writer.section(type, encoder);
+    }
+  }
+
+  // restore a section of a binary snapshot, the sections are independent
+  // of each other and can be restored concurrently
+  private Either<String, Void> restoreSection(byte type, BinarySnapshot.Decoder decoder) {
+    try {
+      switch (type) {
+        case BinarySnapshot.USERS: {
+          var users = decoder.integer();
+          for (var i = 0; i < users; i++) {
+            var user = decodeUser(decoder);
+            network.put(user.username, user);
+          }
+          break;
+        }
+        case BinarySnapshot.LOGGED_USERS: {
+          var users = decoder.integer();
+          for (var i = 0; i < users; i++) {
+            loggedUsers.put(decoder.username(), decoder.string());
+          }
+          break;
+        }
+        case BinarySnapshot.POST_AUTHORS: {
+          var posts = decoder.integer();
+          for (var i = 0; i < posts; i++) {
+            postAuthors.put(decoder.uuid(), decoder.username());
+          }
+          break;
+        }
+        case BinarySnapshot.META: {
+          wallet.setPrevTimestamp(decoder.longNumber());
+          break;
+        }
+        case BinarySnapshot.WALLET: {
+          var users = decoder.integer();
+          for (var i = 0; i < users; i++) {
+            var username = decoder.username();
+            var transactions = new LinkedList<WalletTransaction>();
+            var size = decoder.integer();
+            for (var j = 0; j < size; j++) {
+              var timestamp = decoder.longNumber();
+              transactions.add(WalletTransaction.of(decoder.doubleNumber(), timestamp));
+            }
+            wallet.addUser(username);
+            wallet.restoreTransactions(username, transactions);
+          }
+          break;
+        }
+        default:
+          // the dictionary has already been read
+          break;
+      }
+      return Either.right(null);
+    } catch (IOException e) {
+      return Either.left(e.getMessage());
+    }
+  }
+
+  // compute the gains of each user given some posts and their new reactions and comments
+  private Map<String, List<Double>> rewardPosts(Collection<Post> posts, Map<Post, List<Reaction>> reactions,
+      Map<Post, List<Comment>> comments, Integer authorPercentage) {
+    var gains = new LinkedHashMap<String, List<Double>>();
+
+    posts.forEach(post -> {
+      // skip the posts deleted in the meantime
+      var author = this.network.get(post.author);
+      if (author != null && author.posts.get(post.uuid) == post) {
+        rewardPost(post, reactions.getOrDefault(post, List.of()), comments.getOrDefault(post, List.of()),
+            authorPercentage, gains);
+      }
+    });
+
+    return gains;
+  }
+
+  // as above, but the posts are partitioned by author between the threads of the pool
+  // (so each post is evaluated by only one thread) and the partial gains are merged
+  private Map<String, List<Double>> rewardPostsInParallel(ForkJoinPool pool, Integer shards, Collection<Post> posts,
+      Map<Post, List<Reaction>> reactions, Map<Post, List<Comment>> comments, Integer authorPercentage)
+      throws InterruptedException, ExecutionException {
+
+    var partitions = new ArrayList<List<Post>>();
+    for (var i = 0; i < shards; i++) {
+      partitions.add(new LinkedList<>());
+    }
+    posts.forEach(post -> partitions.get(Math.floorMod(post.author.hashCode(), shards)).add(post));
+
+    var partials = pool.invokeAll(partitions
+        .stream()
+        .filter(partition -> !partition.isEmpty())
+        .map(partition -> (Callable<Map<String, List<Double>>>) () -> rewardPosts(partition, reactions, comments,
+            authorPercentage))
+        .collect(Collectors.toList()));
+
+    var gains = new LinkedHashMap<String, List<Double>>();
+    for (var partial : partials) {
+      partial.get().forEach((username, userGains) -> gains
+          .computeIfAbsent(username, __ -> new LinkedList<>())
+          .addAll(userGains));
+    }
+
+    return gains;
+  }
+
   // return a specific post of a specific author if
   // both the author and the post UUID are valid
   // or an error in the form of a string if not
@@ -105,7 +723,8 @@ public class Winsome {
 
   // creates a new post if all the arguments are valid
   // or an error in the form of a string if not
-  private Either<String, Post> makePost(String username, String title, String content) {
+  // (rewinned is the post being rewinned, if any)
+  private Either<String, Post> makePost(String username, String title, String content, AuthorPostUuid rewinned) {
     return nullGuard(username, "username")
         .flatMap(__ -> nullGuard(title, "title"))
         .flatMap(__ -> nullGuard(content, "content"))
@@ -116,12 +735,29 @@ public class Winsome {
             .toEither()
             // collect together eventual errors
             .mapLeft(seq -> seq.mkString("\n"))
+            // log the post before it becomes visible
+            .flatMap(post -> log(() -> WalRecord.of(WalRecord.POST)
+                .string(post.author)
+                .string(post.uuid)
+                .number(post.timestamp)
+                .string(post.title)
+                .string(post.content)
+                .string(rewinned != null ? rewinned.author : null)
+                .string(rewinned != null ? rewinned.postUuid : null))
+                .map(__ -> post))
             // otherwise insert into the user's post the new post
+            .peek(__ -> capture(i -> i.posts(user)))
             .map(post -> user.posts.compute(post.uuid, (k, v) -> {
               // save the relation post UUID -> author
               this.postAuthors.put(post.uuid, user.username);
               return post;
-            })));
+            }))
+            // push the post into the feeds of the followers
+            .peek(post -> {
+              if (feedEngine != null) {
+                feedEngine.onPost(user, post);
+              }
+            }));
   }
 
   // return the blog of a user if the argument is valid
@@ -131,9 +767,8 @@ public class Winsome {
         // extract the user by its username
         .flatMap(__ -> Either.<String, User>right(network.get(username)))
         // collect its post into a list
-        .map(user -> user.posts.entrySet()
+        .map(user -> user.posts.values()
             .stream()
-            .map(entry -> entry.getValue())
             .collect(Collectors.toList()));
   }
 
@@ -143,7 +778,7 @@ public class Winsome {
     return nullGuard(username, "username")
         // extract the user by its username
         .flatMap(__ -> Either.<String, User>right(network.get(username)))
-        // return a deep copy of its transactions
+        // return a read-only view of its transactions
         .flatMap(user -> this.wallet.getWalletOf(user.username));
   }
 
@@ -161,6 +796,17 @@ public class Winsome {
           if (post != null) {
             // synchronized with rewinPost
             synchronized (post) {
+              // the rewins logged so far precede the deletion
+              var elog = log(() -> WalRecord.of(WalRecord.DELETE).string(user.username).string(post.uuid));
+              if (elog.isLeft()) {
+                return elog.map(__ -> post);
+              }
+
+              capture(i -> {
+                i.justDeleted(post);
+                i.posts(user);
+              });
+
               // signal the fact that the post is going to be deleted soon
               post.justDeleted = true;
 
@@ -175,6 +821,10 @@ public class Winsome {
               this.postAuthors.remove(post.uuid);
               user.posts.remove(post.uuid);
             }
+
+            if (feedEngine != null) {
+              feedEngine.onDelete(user, post);
+            }
           } else {
             toRet = Either.left("unknown post");
           }
@@ -188,6 +838,92 @@ public class Winsome {
   // set the jwt secret stored internally
   public void setJWTSecret(String jwtSecret) {
     this.JWT_SIGN_SECRET = jwtSecret != null ? jwtSecret : "";
+    this.jwtVerifier = JWT_SIGN_SECRET.equals("") ? null : JWTUtils.buildVerifier(JWT_SIGN_SECRET);
+    this.authCache.clear();
+  }
+
+  // rebuild the indexes derived from the network,
+  // to be called after the state has been restored
+  public void rebuildIndexes() {
+    this.usersByTag.clear();
+    this.network.values().forEach(this::indexUser);
+
+    // a restored json has a new string for each author (see UserDictionary)
+    this.postAuthors.replaceAll((__, author) -> UserDictionary.intern(author));
+
+    this.authCache.clear();
+    rebuildSessions();
+
+    // the reactions and the comments not yet evaluated by the wallet thread
+    var prevTimestamp = this.wallet.getPrevTimestamp();
+    this.newReactions.clear();
+    this.newComments.clear();
+    this.network.values().forEach(user -> user.posts.values().forEach(post -> {
+      post.getReactions()
+          .stream()
+          .filter(r -> r.timestamp >= prevTimestamp)
+          .forEach(r -> this.newReactions.add(Pair.of(post, r)));
+      post.getComments()
+          .stream()
+          .filter(c -> c.timestamp >= prevTimestamp)
+          .forEach(c -> this.newComments.add(Pair.of(post, c)));
+    }));
+
+    if (this.feedEngine != null) {
+      this.feedEngine.clear();
+    }
+  }
+
+  // log each mutation into the write ahead log from now on
+  // (to be called after the log has been replayed)
+  public void setWriteAheadLog(WriteAheadLog wal) {
+    this.wal = wal;
+  }
+
+  // apply the mutations stored into a write ahead log on top of the current state
+  // (the restored snapshot), return the number of records applied
+  // each record is applied idempotently: the snapshot may already contain it
+  public Either<String, Long> replay(WriteAheadLog log) {
+    var errors = new LinkedList<String>();
+    // how many times each comment has been met during this replay
+    var comments = new HashMap<String, Integer>();
+
+    return nullGuard(log, "log")
+        .flatMap(__ -> log.replay(record -> {
+          try {
+            replayRecord(WalRecord.Reader.of(record), comments);
+          } catch (Exception e) {
+            errors.add(e.getMessage());
+          }
+        }))
+        .filterOrElse(__ -> errors.isEmpty(), __ -> "invalid log records: " + String.join("\n", errors));
+  }
+
+  // keep a materialized feed of at most maxSize posts for each user,
+  // the authors with more than fanoutThreshold followers are merged at read time
+  // (null arguments mean the defaults)
+  public void enableFeedEngine(Integer maxSize, Integer fanoutThreshold) {
+    this.feedEngine = FeedEngine.of(this.network, maxSize, fanoutThreshold);
+  }
+
+  // set where the rate to convert wincoins into bitcoins comes from
+  public void setExchangeRateProvider(ExchangeRateProvider provider) {
+    this.exchangeRates = provider != null ? provider : RandomOrgRateProvider.of();
+  }
+
+  // hash the passwords on a pool from now on, so that the threads
+  // serving the requests do not compute them (null means the calling thread)
+  public void setHashingPool(HashingPool pool) {
+    this.hashingPool = pool;
+  }
+
+  // issue opaque session ids instead of JWT tokens from now on: a session
+  // expires after ttl ms without requests (null means the default, a day,
+  // see makeSessionSweeperRunnable); the logged users keep their tokens
+  public void enableSessions(Long ttl) {
+    this.sessions = SessionTable.of(ttl);
+    this.authCache.clear();
+    rebuildSessions();
   }
 
   // set the callback to call when the set of followers of a user changes
@@ -228,6 +964,98 @@ public class Winsome {
         });
   }
 
+  // authenticate the user of a jwt if it is valid and it is the current jwt of
+  // the user, or return an error in the form of a string if not: the jwts
+  // authenticated recently are found in a cache, without verifying them again
+  // (the returned user carries only the username)
+  public Either<String, User> authenticate(String jwt) {
+    if (jwt == null) {
+      return Either.left("invalid auth token");
+    }
+
+    // an opaque session is just looked up
+    var sessions = this.sessions;
+    if (sessions != null) {
+      var user = sessions.get(jwt);
+      return user != null ? Either.right(user) : Either.left("invalid auth token");
+    }
+
+    var cached = this.authCache.get(jwt);
+    if (cached != null) {
+      return Either.right(cached);
+    }
+
+    var verifier = this.jwtVerifier;
+    if (verifier == null) {
+      return Either.left("INVALID_JWT_SECRET");
+    }
+
+    return JWTUtils.verifyJWT(verifier, jwt)
+        .flatMap(p -> jwt.equals(loggedUsers.get(p.fst())) ? Either.right(p) : Either.left("invalid auth token"))
+        .flatMap(p -> {
+          var user = authenticatedUser(p.fst());
+          this.authCache.put(jwt, user, p.snd());
+
+          // the session may have ended before the jwt was cached,
+          // so its eviction may have come too early
+          if (jwt.equals(loggedUsers.get(user.username))) {
+            return Either.<String, User>right(user);
+          } else {
+            this.authCache.evict(jwt);
+            return Either.<String, User>left("invalid auth token");
+          }
+        });
+  }
+
+  // the user carried by the authenticated requests
+  private static User authenticatedUser(String username) {
+    return User.of(username, "INVALD_USER", null, false);
+  }
+
+  // a token that cannot authenticate anymore
+  private void invalidate(String jwt) {
+    this.authCache.evict(jwt);
+    if (this.sessions != null) {
+      this.sessions.remove(jwt);
+    }
+  }
+
+  // a token that can authenticate its user, if sessions are enabled
+  private void startSession(String username, String jwt) {
+    if (this.sessions != null) {
+      this.sessions.put(jwt, authenticatedUser(username));
+    }
+  }
+
+  // the sessions of the logged users, started now
+  private void rebuildSessions() {
+    if (this.sessions != null) {
+      this.sessions.clear();
+      this.loggedUsers.forEach(this::startSession);
+    }
+  }
+
+  // end an expired session as if its user had logged out,
+  // unless the user has logged in again
+  private void expireSession(String username, String jwt) {
+    var user = network.get(username);
+    if (user == null) {
+      return;
+    }
+
+    mutation(() -> {
+      // the logins and the logouts of a user are logged in the order they are applied
+      synchronized (user) {
+        if (!jwt.equals(loggedUsers.get(username))) {
+          return Either.<String, Void>right(null);
+        }
+        capture(i -> i.loggedUser(username, () -> loggedUsers.get(username)));
+        return log(() -> WalRecord.of(WalRecord.LOGOUT).string(username))
+            .peek(__ -> invalidate(loggedUsers.remove(username)));
+      }
+    }).swap().forEach(System.out::println);
+  }
+
   // get a user given its username if the argument is valid
   // or an error in the form of a string if not
   public Either<String, User> getUser(String username) {
@@ -249,32 +1077,49 @@ public class Winsome {
   // or an error in the form of a string if not
   public Either<String, User> register(String username, String password, List<String> tags) {
 
-    // try to create a new user using the factory
-    var euser = UserFactory
+    // try to create a new user using the factory (that hashes the password)
+    var euser = hashing(() -> UserFactory
         .create(username, password, tags)
         .toEither()
         // collect together eventual errors
-        .mapLeft(seq -> seq.mkString("\n"));
+        .mapLeft(seq -> seq.mkString("\n")))
+        .flatMap(e -> e);
 
-    return euser
-        // try to store the new user into the network
-        .map(user -> network.putIfAbsent(username, user))
-        .flatMap(user -> {
-          // putIfAbsent return null if there was no previous mapping for the key
-          // => success
-          if (user == null) {
-            // add the user to the wallet too
-            var addUserRes = wallet.addUser(username);
-            if (addUserRes.isRight()) {
-              return euser;
-            } else {
-              // maintain consistency: if the user cannot be added to the wallet
-              // remove it from the network and return the error
-              network.remove(username);
-              return addUserRes.flatMap(__ -> euser);
-            }
-          } else {
-            return Either.left("user already exists");
+    // the registrations of the same username are serialized, so that only
+    // the one that stores the user has logged it
+    return euser.flatMap(u -> registering.add(u.username) ? Either.right(u) : Either.left("user already exists"))
+        .flatMap(u -> {
+          try {
+            return mutation(() -> euser
+                .flatMap(user -> network.containsKey(user.username)
+                    ? Either.left("user already exists")
+                    : Either.right(user))
+                // log the user before it becomes visible
+                .flatMap(user -> log(() -> WalRecord.of(WalRecord.REGISTER)
+                    .string(user.username)
+                    .string(user.password)
+                    .strings(user.tags))
+                    .map(__ -> user))
+                // store the new user into the network
+                .flatMap(user -> {
+                  capture(i -> i.register(username));
+                  network.put(username, user);
+
+                  // add the user to the wallet too
+                  var addUserRes = wallet.addUser(username);
+                  if (addUserRes.isRight()) {
+                    indexUser(user);
+                    return euser;
+                  } else {
+                    // maintain consistency: if the user cannot be added to the wallet
+                    // remove it from the network, and from the log, and return the error
+                    network.remove(username);
+                    log(() -> WalRecord.of(WalRecord.UNREGISTER).string(username));
+                    return addUserRes.flatMap(__ -> euser);
+                  }
+                }));
+          } finally {
+            registering.remove(u.username);
           }
         });
   }
@@ -283,50 +1128,95 @@ public class Winsome {
   // or an error in the form of a string if not
   // return the created jwt
   public Either<String, String> login(String username, String password, Boolean forceLogin) {
-    return nullGuard(username, "username")
+    // the password is checked before the mutation, that must be short
+    var euser = nullGuard(username, "username")
         .flatMap(__ -> nullGuard(password, "password"))
         .flatMap(__ -> nullGuard(password, "jwt"))
-        .flatMap(__ -> JWT_SIGN_SECRET.equals("") ? Either.left("INVALID_JWT_SECRET") : Either.right(null))
+        .flatMap(__ -> JWT_SIGN_SECRET.equals("") && sessions == null
+            ? Either.left("INVALID_JWT_SECRET")
+            : Either.right(null))
         // extract the user by its username
         .flatMap(__ -> Either.<String, User>right(network.get(username)))
         .flatMap(user -> user == null ? Either.left("unknown user") : Either.right(user))
         // check the passowrd
-        .flatMap(user -> !Hasher.hash(password).equals(user.password) ? Either.left("invalid password")
-            : Either.right(user))
         .flatMap(user -> {
+          var stored = user.password;
+          return hashing(() -> Hasher.verify(password, stored))
+              .flatMap(valid -> !valid ? Either.left("invalid password") : Either.right(user))
+              // a weak hash is replaced while the password is known
+              .peek(__ -> {
+                if (Hasher.needsRehash(stored)) {
+                  rehash(user, stored, password).swap().forEach(System.out::println);
+                }
+              });
+        });
 
-          // create a new jwt and try to store it
-          var newjwt = JWTUtils.createJWT(JWT_SIGN_SECRET, username);
-          var currJWT = loggedUsers.putIfAbsent(user.username, newjwt);
-
-          // putIfAbsent return null if there was no previous mapping for the key
-          if (currJWT == null) {
-            return JWTUtils.wrapWithMessageJSON(newjwt, "user successfully logged");
-          } else if (forceLogin) {
-            // update the user token and send it back
-            loggedUsers.put(user.username, newjwt);
-            return JWTUtils.wrapWithMessageJSON(newjwt, "user was already logged, previous sessions are now invalid");
-          } else {
-            // it is an error
-            return Either.left("user seems to be already logged somewhere else");
+    return euser.flatMap(user -> mutation(() -> {
+      // the logins and the logouts of a user are logged in the order they are applied
+      synchronized (user) {
+        var currJWT = loggedUsers.get(user.username);
+        if (currJWT != null && !forceLogin) {
+          // it is an error
+          return Either.left("user seems to be already logged somewhere else");
+        }
+
+        // create a new jwt (or a session id), log it and then store it
+        capture(i -> i.loggedUser(user.username, () -> loggedUsers.get(user.username)));
+        var newjwt = sessions != null ? sessions.newId() : JWTUtils.createJWT(JWT_SIGN_SECRET, username);
+        return log(() -> WalRecord.of(WalRecord.LOGIN).string(user.username).string(newjwt))
+            .flatMap(__ -> {
+              // a session starts before its id is stored, and it ends after the id
+              // is replaced or removed: a replaced id cannot authenticate anymore
+              startSession(user.username, newjwt);
+              loggedUsers.put(user.username, newjwt);
+
+              if (currJWT == null) {
+                return JWTUtils.wrapWithMessageJSON(newjwt, "user successfully logged");
+              } else {
+                // the previous token cannot authenticate anymore
+                invalidate(currJWT);
+                return JWTUtils.wrapWithMessageJSON(newjwt,
+                    "user was already logged, previous sessions are now invalid");
+              }
+            });
+      }
+    }));
+  }
+
+  // replace the stored hash of the password of a user with a new one, unless
+  // it has changed in the meantime: the old one is still valid if it fails
+  private Either<String, Void> rehash(User user, String stored, String password) {
+    return hashing(() -> Hasher.hashPassword(password))
+        .flatMap(hash -> mutation(() -> {
+          synchronized (user) {
+            if (!stored.equals(user.password)) {
+              return Either.<String, Void>right(null);
+            }
+            capture(i -> i.password(user));
+            return log(() -> WalRecord.of(WalRecord.PASSWORD).string(user.username).string(hash))
+                .peek(__ -> user.password = hash);
           }
-        });
+        }));
   }
 
   // login a user if the argument is valid
   // or an error in the form of a string if not
   public Either<String, Void> logout(String username) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> Either.<String, User>right(network.get(username)))
         // extract the user by its username
         .flatMap(user -> user == null ? Either.left("unknown user") : Either.right(user))
         .flatMap(user -> {
-          if (loggedUsers.remove(user.username) != null) {
-            return Either.<String, Void>right(null);
-          } else {
-            return Either.left("user was not logged");
+          // the logins and the logouts of a user are logged in the order they are applied
+          synchronized (user) {
+            if (!loggedUsers.containsKey(user.username)) {
+              return Either.left("user was not logged");
+            }
+            capture(i -> i.loggedUser(user.username, () -> loggedUsers.get(user.username)));
+            return log(() -> WalRecord.of(WalRecord.LOGOUT).string(user.username))
+                .peek(__ -> invalidate(loggedUsers.remove(user.username)));
           }
-        });
+        }));
   }
 
   // return a list of users having at least one common tag with the provided user
@@ -339,16 +1229,19 @@ public class Winsome {
         .flatMap(
             user -> !loggedUsers.containsKey(user.username) ? Either.left("user is not logged") : Either.right(user))
         .map(user -> {
-          return network.entrySet()
-              .stream()
-              .filter(
-                  // filter out those users who haven't at least a tag in common
-                  // and filter out the provided user
-                  e -> !e.getKey().equals(user.username)
-                      && e.getValue().tags.stream().anyMatch(t -> user.tags.contains(t)))
-              // get only their usernames
-              .map(e -> e.getValue().username)
-              .collect(Collectors.toList());
+          // union of the users of each tag of the provided user (at most 5)
+          var users = new LinkedHashSet<String>();
+          user.tags.forEach(tag -> {
+            var usersWithTag = usersByTag.get(tag);
+            if (usersWithTag != null) {
+              users.addAll(usersWithTag);
+            }
+          });
+
+          // filter out the provided user
+          users.remove(user.username);
+
+          return users.stream().collect(Collectors.toList());
         });
   }
 
@@ -361,7 +1254,7 @@ public class Winsome {
         .flatMap(user -> user == null ? Either.left("unknown user") : Either.right(user))
         .flatMap(
             user -> !loggedUsers.containsKey(user.username) ? Either.left("user is not logged") : Either.right(user))
-        // synchronized operation
+        // lock-free read
         .map(user -> user.getFollowers());
   }
 
@@ -374,14 +1267,14 @@ public class Winsome {
         .flatMap(user -> user == null ? Either.left("unknown user") : Either.right(user))
         .flatMap(
             user -> !loggedUsers.containsKey(user.username) ? Either.left("user is not logged") : Either.right(user))
-        // synchronized operation
+        // lock-free read
         .map(user -> user.getFollowing());
   }
 
   // make a user to follow another user if the argumetns are valid
   // or an error in the form of a string if the argument is not valid
   public Either<String, Void> followUser(String username, String usernameToFollow) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> nullGuard(usernameToFollow, "usernameToFollow"))
         .flatMap(
             __ -> username.equals(usernameToFollow) ? Either.left("a user cannot follow itself") : Either.right(null))
@@ -400,31 +1293,36 @@ public class Winsome {
           var user = pair.fst();
           var userToFollow = pair.snd();
 
-          // useful flags to track the success or the failure of the following actions
-          var b1 = false;
-          var b2 = false;
-          // synchronized operations
-          synchronized (user.following) {
-            synchronized (userToFollow.followers) {
-              b1 = user.addFollowing(userToFollow.username);
-              b2 = userToFollow.addFollower(user.username);
+          // synchronized operations: the record is logged in the order the
+          // follows and the unfollows of the pair are applied
+          return User.synchronizedOnFollow(user, userToFollow, () -> {
+            if (user.following.contains(userToFollow.username)) {
+              return Either.<String, Void>left(username + " was already following " + usernameToFollow);
             }
-          }
-          if (b1 && b2) {
-            // call the callback if everything went fine
-            onChangeFollowers.accept(user, userToFollow.username, true);
-            return Either.<String, Void>right(null);
-          } else {
-            return Either.left(username + " was already following " + usernameToFollow);
-          }
-
-        });
+            return log(() -> WalRecord.of(WalRecord.FOLLOW).string(user.username).string(userToFollow.username))
+                .peek(__ -> {
+                  capture(i -> {
+                    i.following(user);
+                    i.followers(userToFollow);
+                  });
+                  user.addFollowing(userToFollow.username);
+                  userToFollow.addFollower(user.username);
+                });
+          })
+              .peek(__ -> {
+                if (feedEngine != null) {
+                  feedEngine.onFollow(user, userToFollow);
+                }
+                // call the callback if everything went fine
+                onChangeFollowers.accept(user, userToFollow.username, true);
+              });
+        }));
   }
 
   // make a user to unfollow another user if the argumetns are valid
   // or an error in the form of a string if the argument is not valid
   public Either<String, Void> unfollowUser(String username, String usernameToUnfollow) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> nullGuard(usernameToUnfollow, "usernameToUnfollow"))
         // extract the user by its username
         .flatMap(__ -> Either.<String, User>right(network.get(username)))
@@ -441,24 +1339,31 @@ public class Winsome {
           var user = pair.fst();
           var userToUnfollow = pair.snd();
 
-          // useful flags to track the success or the failure of the following actions
-          var b1 = false;
-          var b2 = false;
-          // synchronized operations
-          synchronized (user.following) {
-            synchronized (userToUnfollow.followers) {
-              b1 = user.removeFollowing(userToUnfollow.username);
-              b2 = userToUnfollow.removeFollower(user.username);
+          // synchronized operations: the record is logged in the order the
+          // follows and the unfollows of the pair are applied
+          return User.synchronizedOnFollow(user, userToUnfollow, () -> {
+            if (!user.following.contains(userToUnfollow.username)) {
+              return Either.<String, Void>left(username + " wasn't following " + usernameToUnfollow);
             }
-          }
-          // call the callback if everything went fine
-          if (b1 && b2) {
-            onChangeFollowers.accept(user, userToUnfollow.username, false);
-            return Either.<String, Void>right(null);
-          } else {
-            return Either.left(username + " wasn't following " + usernameToUnfollow);
-          }
-        });
+            return log(
+                () -> WalRecord.of(WalRecord.UNFOLLOW).string(user.username).string(userToUnfollow.username))
+                .peek(__ -> {
+                  capture(i -> {
+                    i.following(user);
+                    i.followers(userToUnfollow);
+                  });
+                  user.removeFollowing(userToUnfollow.username);
+                  userToUnfollow.removeFollower(user.username);
+                });
+          })
+              // call the callback if everything went fine
+              .peek(__ -> {
+                if (feedEngine != null) {
+                  feedEngine.onUnfollow(user, userToUnfollow);
+                }
+                onChangeFollowers.accept(user, userToUnfollow.username, false);
+              });
+        }));
   }
 
   // return the blog of a user if the argument is valid
@@ -476,7 +1381,7 @@ public class Winsome {
   // create a new post if the arguments are valid
   // or an error in the form of a string if not
   public Either<String, Post> createPost(String username, String title, String content) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> nullGuard(title, "title"))
         .flatMap(__ -> nullGuard(content, "content"))
         // extract the user by its username
@@ -484,12 +1389,17 @@ public class Winsome {
         .flatMap(user -> user == null ? Either.left("unknown user") : Either.right(user))
         .flatMap(
             user -> !loggedUsers.containsKey(user.username) ? Either.left("user is not logged") : Either.right(user))
-        .flatMap(user -> makePost(user.username, title, content));
+        .flatMap(user -> makePost(user.username, title, content, null)));
   }
 
   // return the blog of a user if the argument is valid
   // or an error in the form of a string if not
+  // (when the feed engine is enabled, the most recent posts of the materialized feed)
   public Either<String, List<Post>> showFeed(String username) {
+    if (feedEngine != null) {
+      return showFeed(username, null, null).map(page -> page.fst());
+    }
+
     return nullGuard(username, "username")
         // extract the user by its username
         .flatMap(__ -> Either.<String, User>right(network.get(username)))
@@ -513,6 +1423,27 @@ public class Winsome {
             })));
   }
 
+  // return a page of the feed of a user, from the newest to the oldest post,
+  // and the cursor of the next page if the arguments are valid
+  // or an error in the form of a string if not
+  // (a null cursor means the first page, a null limit means no limit)
+  public Either<String, Pair<List<Post>, String>> showFeed(String username, String cursor, Integer limit) {
+    return nullGuard(username, "username")
+        // extract the user by its username
+        .flatMap(__ -> Either.<String, User>right(network.get(username)))
+        .flatMap(user -> user == null ? Either.left("unknown user") : Either.right(user))
+        .flatMap(
+            user -> !loggedUsers.containsKey(user.username) ? Either.left("user is not logged") : Either.right(user))
+        .flatMap(user -> feedEngine != null
+            ? feedEngine.read(user, cursor, limit)
+            // without the engine the feed is rebuilt from the blogs
+            : FeedEngine.paginate(user.getFollowing()
+                .stream()
+                .map(network::get)
+                .filter(following -> following != null)
+                .flatMap(following -> following.posts.values().stream()), cursor, limit));
+  }
+
   // return a specific post of a specific author if the arguments are valid
   // or an error in the form of a string if not
   // (username wants to see an author's post)
@@ -535,21 +1466,21 @@ public class Winsome {
   // delete a specific post of a specific user if the arguments are valid
   // or an error in the form of a string if not
   public Either<String, Post> deletePost(String username, String postUuid) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> nullGuard(postUuid, "postUuid"))
         // extract the user by its username
         .flatMap(__ -> Either.<String, User>right(network.get(username)))
         .flatMap(user -> user == null ? Either.left("unknown user") : Either.right(user))
         .flatMap(
             user -> !loggedUsers.containsKey(user.username) ? Either.left("user is not logged") : Either.right(user))
-        .flatMap(user -> cancelPost(user.username, postUuid));
+        .flatMap(user -> cancelPost(user.username, postUuid)));
   }
 
   // rewin a specific post of a specific author if the arguments are valid
   // or an error in the form of a string if not
   // (username wants to rewin an author's post)
   public Either<String, Post> rewinPost(String username, String author, String postUuid) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> nullGuard(author, "author"))
         .flatMap(__ -> nullGuard(postUuid, "postUuid"))
         // extract the user by its username
@@ -571,13 +1502,10 @@ public class Winsome {
           var user = t.fst();
           var ath = t.snd();
 
-          // syncronized operation
-          synchronized (user.following) {
-            if (!user.following.contains(ath.username))
-              return Either.left("cannot rewin post not in feed");
-            else
-              return Either.right(t);
-          }
+          if (!user.following.contains(ath.username))
+            return Either.left("cannot rewin post not in feed");
+          else
+            return Either.right(t);
         })
         .flatMap(t -> {
           var user = t.fst();
@@ -590,20 +1518,25 @@ public class Winsome {
               toRet = Either.left("the post has just been deleted");
             } else {
               // rewin the post
-              toRet = makePost(user.username, post.title, post.content);
+              toRet = makePost(user.username, post.title, post.content, AuthorPostUuid.of(post.author, post.uuid));
               // save a reference into the rewinned post to the rewin
-              toRet.forEach(rewinned -> post.rewins.add(AuthorPostUuid.of(rewinned.author, rewinned.uuid)));
+              toRet.forEach(rewinned -> {
+                capture(i -> i.rewins(post));
+                synchronized (post.rewins) {
+                  post.rewins.add(AuthorPostUuid.of(rewinned.author, rewinned.uuid));
+                }
+              });
             }
           }
           return toRet;
-        });
+        }));
   }
 
   // rate a specific post of a specific author if the arguments are valid
   // or an error in the form of a string if not
   // (username wants to rate an author's post)
   public Either<String, Reaction> ratePost(String username, String author, String postUuid, Boolean isUpvote) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> nullGuard(author, "author"))
         .flatMap(__ -> nullGuard(postUuid, "postUuid"))
         .flatMap(__ -> nullGuard(isUpvote, "isUpvote"))
@@ -628,37 +1561,51 @@ public class Winsome {
               var authorUser = t.snd();
               var post = t.trd();
 
-              // synchronized operations
-              synchronized (user.following) {
-                synchronized (post.reactions) {
-                  var toRet = Either.<String, Reaction>right(null);
-
-                  // is the post into the user's feed?
-                  if (!user.following.contains(authorUser.username)) {
-                    toRet = Either.left("cannot rate post not in feed");
-                    // has the user already rated this post?
-                  } else if (post.reactions.stream().anyMatch(r -> r.author.equals(user.username))) {
-                    toRet = Either.left("cannot rate a post twice");
-                  } else {
-                    // create the reaction
-                    toRet = ReactionFactory.create(isUpvote, post.uuid, user.username)
-                        .toEither()
-                        // collect together eventual errors
-                        .mapLeft(set -> set.mkString("\n"));
-
-                    toRet.forEach(post.reactions::add);
-                  }
-                  return toRet;
+              var toRet = Either.<String, Reaction>right(null);
+
+              // is the post into the user's feed?
+              if (!user.following.contains(authorUser.username)) {
+                toRet = Either.left("cannot rate post not in feed");
+                // has the user already rated this post? if not, the reaction
+                // of the user is claimed so no concurrent rating can add another one
+              } else if (!post.reactions.claim(user.username)) {
+                toRet = Either.left("cannot rate a post twice");
+              } else {
+                // create the reaction
+                toRet = ReactionFactory.create(isUpvote, post.uuid, user.username)
+                    .toEither()
+                    // collect together eventual errors
+                    .mapLeft(set -> set.mkString("\n"))
+                    // log the reaction before it becomes visible
+                    .flatMap(reaction -> log(() -> WalRecord.of(WalRecord.REACTION)
+                        .string(authorUser.username)
+                        .string(post.uuid)
+                        .string(reaction.author)
+                        .bool(reaction.isUpvote)
+                        .number(reaction.timestamp))
+                        .map(__ -> reaction));
+
+                toRet.forEach(reaction -> {
+                  capture(i -> i.reactions(post));
+                  post.reactions.append(reaction);
+                  // to be evaluated by the wallet thread
+                  newReactions.add(Pair.of(post, reaction));
+                });
+
+                // the reaction has not been added: the user can rate again
+                if (toRet.isLeft()) {
+                  post.reactions.release(user.username);
                 }
               }
-            });
+              return toRet;
+            }));
   }
 
   // comment a specific post of a specific author if the arguments are valid
   // or an error in the form of a string if not
   // (username wants to comment an author's post)
   public Either<String, Comment> addComment(String username, String author, String postUuid, String text) {
-    return nullGuard(username, "username")
+    return mutation(() -> nullGuard(username, "username")
         .flatMap(__ -> nullGuard(author, "author"))
         .flatMap(__ -> nullGuard(postUuid, "postUuid"))
         .flatMap(__ -> nullGuard(text, "text"))
@@ -682,27 +1629,35 @@ public class Winsome {
               var authorUser = t.snd();
               var post = t.trd();
 
-              // synchronized operations
-              synchronized (user.following) {
-                synchronized (post.comments) {
-                  var toRet = Either.<String, Comment>right(null);
-
-                  // is the post into the user's feed?
-                  if (!user.following.contains(authorUser.username)) {
-                    toRet = Either.left("cannot comment post not in feed");
-                  } else {
-                    // create the comment
-                    toRet = CommentFactory.create(text, postUuid, user.username)
-                        .toEither()
-                        // collect together eventual errors
-                        .mapLeft(set -> set.mkString("\n"));
-
-                    toRet.forEach(post.comments::add);
-                  }
-                  return toRet;
-                }
+              var toRet = Either.<String, Comment>right(null);
+
+              // is the post into the user's feed?
+              if (!user.following.contains(authorUser.username)) {
+                toRet = Either.left("cannot comment post not in feed");
+              } else {
+                // create the comment
+                toRet = CommentFactory.create(text, postUuid, user.username)
+                    .toEither()
+                    // collect together eventual errors
+                    .mapLeft(set -> set.mkString("\n"))
+                    // log the comment before it becomes visible
+                    .flatMap(comment -> log(() -> WalRecord.of(WalRecord.COMMENT)
+                        .string(authorUser.username)
+                        .string(post.uuid)
+                        .string(comment.author)
+                        .string(comment.text)
+                        .number(comment.timestamp))
+                        .map(__ -> comment));
+
+                toRet.forEach(comment -> {
+                  capture(i -> i.comments(post));
+                  post.comments.add(comment);
+                  // to be evaluated by the wallet thread
+                  newComments.add(Pair.of(post, comment));
+                });
               }
-            });
+              return toRet;
+            }));
   }
 
   // return the wallet of a user if the argument is valid
@@ -717,11 +1672,36 @@ public class Winsome {
         .flatMap(user -> getWalletOfUser(user.username));
   }
 
+  // return a page of the wallet of a user, from the oldest to the newest
+  // transaction, and the cursor of the next page if the arguments are valid
+  // or an error in the form of a string if not
+  // (a null cursor means the first page, a null limit means no limit)
+  public Either<String, Pair<List<WalletTransaction>, String>> getUserWallet(String username, String cursor,
+      Integer limit) {
+    return nullGuard(username, "username")
+        .flatMap(__ -> cursor == null || cursor.matches("\\d{1,9}")
+            ? Either.<String, Integer>right(cursor == null ? 0 : Integer.parseInt(cursor))
+            : Either.<String, Integer>left("invalid cursor"))
+        .flatMap(from -> Either.<String, User>right(network.get(username))
+            .flatMap(user -> user == null ? Either.left("unknown user " + username) : Either.right(user))
+            .flatMap(user -> !loggedUsers.containsKey(user.username)
+                ? Either.left("user is not logged")
+                : Either.right(user))
+            .flatMap(user -> this.wallet.getHistoryOf(user.username, from, limit))
+            .map(ts -> Pair.of(ts, limit != null && ts.size() == limit ? String.valueOf(from + limit) : null)));
+  }
+
   // return the wallet of a user, adding together the transactions
   // or an error in the form of a string if the argument is not valid
   public Either<String, Double> getUserWalletInWincoin(String username) {
-    return getUserWallet(username)
-        .map(ts -> ts.stream().map(t -> t.gain).reduce(0., (acc, val) -> acc + val));
+    return nullGuard(username, "username")
+        // extract the user by its username
+        .flatMap(__ -> Either.<String, User>right(network.get(username)))
+        .flatMap(user -> user == null ? Either.left("unknown user " + username) : Either.right(user))
+        .flatMap(
+            user -> !loggedUsers.containsKey(user.username) ? Either.left("user is not logged") : Either.right(user))
+        // the balance is kept updated by the wallet
+        .flatMap(user -> this.wallet.getBalanceOf(user.username));
   }
 
   // return the wallet of a user, adding together the transactions using bitcoin
@@ -729,56 +1709,72 @@ public class Winsome {
   // or an error in the form of a string if the argument is not valid
   public Either<String, Pair<Double, Double>> getUserWalletInBitcoin(String username) {
     return getUserWalletInWincoin(username)
-        .flatMap(ws -> {
-
-          // get a fake conversion rate from random.org
-          try {
-            var url = new URL("https://www.random.org/decimal-fractions/?num=1&dec=10&col=1&format=plain&rnd=new");
-            var con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod(HttpConstants.GET);
-
-            if (con.getResponseCode() == HttpURLConnection.HTTP_OK) {
-              var reader = new BufferedReader(new InputStreamReader(con.getInputStream()));
-
-              var inputLine = "";
-              var res = new StringBuffer();
-
-              while ((inputLine = reader.readLine()) != null) {
-                res.append(inputLine);
-              }
-              reader.close();
+        .flatMap(ws -> this.exchangeRates
+            .getRate()
+            .mapLeft(err -> {
+              System.out.println(err);
+              return "conversion in bitcoin has failed";
+            })
+            .map(rate -> Pair.of(rate, rate * ws)));
+  }
 
-              var rate = Double.parseDouble(res.toString());
+  // create a deamon to periodically end the expired sessions,
+  // as if their users had logged out (see enableSessions)
+  public Either<String, Runnable> makeSessionSweeperRunnable(Long interval) {
+    return nullGuard(interval, "interval")
+        .flatMap(__ -> this.sessions == null ? Either.left("sessions are not enabled") : Either.right(this.sessions))
+        .map(table -> () -> {
+          while (!Thread.currentThread().isInterrupted()) {
+            try {
+              table.sweep().forEach(p -> expireSession(p.snd(), p.fst()));
 
-              return Either.right(Pair.of(rate, rate * ws));
-            } else {
-              throw new RuntimeException("get request to random.org has failed");
+              Thread.sleep(interval);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            } catch (Exception e) {
+              e.printStackTrace();
             }
-          } catch (Exception e) {
-            e.printStackTrace();
-            return Either.left("conversion in bitcoin has failed");
           }
         });
   }
 
   // create a deamon to persist the server's state on the disk
   public Either<String, Runnable> makePersistenceRunnable(Long interval, String path, Boolean minify) {
+    return this.makePersistenceRunnable(interval, path, minify, false);
+  }
+
+  // create a deamon to persist the server's state on the disk,
+  // using the binary format if binary is true
+  public Either<String, Runnable> makePersistenceRunnable(Long interval, String path, Boolean minify,
+      Boolean binary) {
     return nullGuard(interval, "interval")
         .flatMap(__ -> nullGuard(path, "path"))
         .flatMap(__ -> nullGuard(minify, "minify"))
+        .flatMap(__ -> nullGuard(binary, "binary"))
         .map(__ -> () -> {
           while (!Thread.currentThread().isInterrupted()) {
             try {
+              // the mutations logged from now on go to a new segment of the log,
+              // the previous ones will be contained in the snapshot
+              var segment = this.wal != null ? this.wal.rotate() : Either.<String, Integer>left("no log");
+
               // could be interrupted, the internal state is serialized
               // usign the json format
-              Files.write(Paths.get(path + ".temp"), this.toJSON().getBytes());
-
-              // does not matter if the file does not exist
-              var oldSnapshot = new File(path);
-              oldSnapshot.delete();
-
-              var newSnapshot = new File(path + ".temp");
-              newSnapshot.renameTo(new File(path));
+              // streamed directly into the file
+              var written = binary ? this.writeBinarySnapshot(path + ".temp") : this.writeSnapshot(path + ".temp");
+              written.swap().forEach(System.out::println);
+
+              if (written.isRight()) {
+                // does not matter if the file does not exist
+                var oldSnapshot = new File(path);
+                oldSnapshot.delete();
+
+                var newSnapshot = new File(path + ".temp");
+                if (newSnapshot.renameTo(new File(path))) {
+                  // the snapshot is on the disk: truncate the log
+                  segment.forEach(n -> this.wal.deleteSegmentsBefore(n).swap().forEach(System.out::println));
+                }
+              }
 
               Thread.sleep(interval);
             } catch (InterruptedException e) {
@@ -805,126 +1801,85 @@ public class Winsome {
   // the Runnable action is performed after each iteration, but only if at least
   // one user's wallet has been updated
   public Either<String, Runnable> makeWalletRunnable(Long interval, Integer authorPercentage, Runnable action) {
+    return this.makeWalletRunnable(interval, authorPercentage, 1, action);
+  }
+
+  // as above, but the gains are computed by a pool of parallelism threads,
+  // each one taking care of the posts of a subset of the authors
+  public Either<String, Runnable> makeWalletRunnable(Long interval, Integer authorPercentage, Integer parallelism,
+      Runnable action) {
     return nullGuard(interval, "interval")
+        .flatMap(__ -> nullGuard(parallelism, "parallelism"))
+        .filterOrElse(n -> n > 0, n -> n + " is an invalid parallelism")
+        .flatMap(__ -> nullGuard(action, "action"))
         .flatMap(__ -> nullGuard(authorPercentage, "authorPercentage"))
-        .flatMap(__ -> nullGuard(authorPercentage, "action"))
         .filterOrElse(p -> p >= 0 && p <= 100, p -> p + " is an invalid author percentage")
         .map(__ -> () -> {
           var nowTimestamp = Wrapper.of(0L);
 
+          // sequential computation if there is only one thread
+          var pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+
           while (!Thread.currentThread().isInterrupted()) {
             try {
 
-              // get the current time
-              nowTimestamp.value = new Date().getTime();
-
-              // should the action run?
-              var runAction = Wrapper.of(false);
-
-              // collect all the posts of the network
-              var posts = this.network
-                  .entrySet()
-                  .stream()
-                  .flatMap(ne -> ne.getValue().posts
-                      .entrySet()
-                      .stream()
-                      .map(ue -> ue.getValue()));
-
-              // for each post
-              posts.forEach(post -> {
-
-                // collect all its reactions with a timestamp that is
-                // greater than the one of the previous iteration of the daemon
-                var reactions = post.getReactions()
-                    .stream()
-                    .filter(r -> r.timestamp >= this.wallet.getPrevTimestamp() && r.timestamp < nowTimestamp.value)
-                    .collect(Collectors.toList());
-
-                // extract the positive reactions
-                var positiveReactions = reactions
-                    .stream()
-                    .filter(r -> r.isUpvote)
-                    .collect(Collectors.toList());
-
-                // collect all its comments with a timestamp that is
-                // greater than the one of the previous iteration of the daemon
-                // into a list of entries <author, list of its comments to the post>
-                var comments = post.getComments()
-                    .stream()
-                    .filter(c -> c.timestamp >= this.wallet.getPrevTimestamp() && c.timestamp < nowTimestamp.value)
-                    .collect(Collectors.groupingBy(c -> c.author))
-                    .entrySet()
-                    .stream()
-                    .collect(Collectors.toList());
-
-                // continue only if there is at least a positive reaction or a comment
-                if (positiveReactions.size() != 0 || comments.size() != 0) {
-
-                  // sum the values of all the reactions
-                  var reactionsSum = reactions
-                      .stream()
-                      .map(r -> r.isUpvote ? 1 : -1)
-                      .reduce(0, (acc, val) -> acc + val);
-
-                  // compute their contribute
-                  var reactionsContribute = Math.log(Math.max(reactionsSum, 0) + 1);
-
-                  // sum the values of all the comments and computes their contribute
-                  var commentsSum = comments
-                      .stream()
-                      .map(ce -> (double) ce.getValue().size())
-                      .reduce(0., (acc, val) -> acc + (2. / (1 + Math.pow(Math.E, -(val.intValue() - 1)))));
-
-                  var commentsContribute = Math.log(commentsSum + 1);
-
-                  // overall gain
-                  var gain = (reactionsContribute + commentsContribute) / post.getWalletScannerIteration();
-
-                  // compute the gain of the author
-                  var authorGain = (gain / 100) * authorPercentage;
-
-                  // list of other users that have contributed to the post (contains no
-                  // duplicates)
-                  var otherUsers = Stream.concat(
-                      positiveReactions
-                          .stream()
-                          .map(r -> r.author),
-                      comments
-                          .stream()
-                          .map(ce -> ce.getKey()))
-                      .distinct()
-                      .collect(Collectors.toList());
-
-                  // compute the gain of the other users
-                  var othersGain = ((gain / 100) * (100 - authorPercentage)) / otherUsers.stream().count();
-
-                  // update the wallet of the author
+              // an iteration happens either before or after the start of a snapshot
+              var gains = (Map<String, List<Double>>) null;
+              synchronized (walletIterationLock) {
+                // get the current time
+                nowTimestamp.value = new Date().getTime();
+
+                // take the reactions and the comments created since the previous
+                // iteration of the daemon, grouped by post: only the posts that
+                // had some activity are evaluated
+                var reactions = drainActivity(this.newReactions, nowTimestamp.value, r -> r.timestamp);
+                var comments = drainActivity(this.newComments, nowTimestamp.value, c -> c.timestamp);
+
+                var posts = new LinkedHashSet<Post>(reactions.keySet());
+                posts.addAll(comments.keySet());
+
+                // compute the gains of each user
+                gains = pool == null
+                    ? rewardPosts(posts, reactions, comments, authorPercentage)
+                    : rewardPostsInParallel(pool, parallelism, posts, reactions, comments, authorPercentage);
+
+                // update the wallets, a batch of transactions for each user
+                var transactions = new LinkedHashMap<String, List<WalletTransaction>>();
+                gains.forEach((username, userGains) -> {
+                  capture(i -> i.transactions(username,
+                      () -> this.wallet.countTransactionsOf(username).getOrElse(0)));
                   this.wallet
-                      .addTransaction(post.author, authorGain)
+                      .addTransactions(username, userGains)
+                      .peek(ts -> transactions.put(username, ts))
                       .swap()
                       .forEach(System.out::println);
-
-                  // update the wallet of other users
-                  otherUsers
-                      .stream()
-                      .forEach(user -> this.wallet
-                          .addTransaction(user, othersGain)
-                          .swap()
-                          .forEach(System.out::println));
-
-                  // update the number of iterations performed on the psot
-                  post.incrementWalletScannerIteration();
-
-                  // yes because at least one post has been evaluated
-                  runAction.value = true;
+                });
+
+                this.wallet.setPrevTimestamp(nowTimestamp.value);
+
+                // log the outcome of the iteration
+                if (!transactions.isEmpty()) {
+                  log(() -> {
+                    var record = WalRecord.of(WalRecord.WALLET)
+                        .number(nowTimestamp.value)
+                        .integer(posts.size());
+                    posts.forEach(post -> record
+                        .string(post.author)
+                        .string(post.uuid)
+                        .number(post.getWalletScannerIteration()));
+                    record.integer(transactions.size());
+                    transactions.forEach((username, ts) -> {
+                      record.string(username).integer(ts.size());
+                      ts.forEach(t -> record.number(t.gain).number(t.timestamp));
+                    });
+                    return record;
+                  }).swap().forEach(System.out::println);
                 }
-              });
-
-              this.wallet.setPrevTimestamp(nowTimestamp.value);
+              }
 
               // run the action at the end of the wallet updating process
               // if the gain of at least one post was computed
-              if (runAction.value) {
+              if (!gains.isEmpty()) {
                 action.run();
               }
 
@@ -935,6 +1890,10 @@ public class Winsome {
               e.printStackTrace();
             }
           }
+
+          if (pool != null) {
+            pool.shutdownNow();
+          }
         });
   }
 
@@ -970,6 +1929,205 @@ public class Winsome {
         "}");
   }
 
+  // the usernames of the users at the start of a snapshot
+  private List<String> usernamesAt(SnapshotImage image) {
+    return this.network.keySet()
+        .stream()
+        .filter(username -> !image.isBorn(username))
+        .collect(Collectors.toList());
+  }
+
+  // copies of the users, with their posts, at the start of a snapshot
+  private Iterable<User> usersAt(SnapshotImage image) {
+    return () -> this.network.values()
+        .stream()
+        .filter(user -> !image.isBorn(user.username))
+        .map(image::user)
+        .iterator();
+  }
+
+  // the relation post UUID -> author at the start of a snapshot,
+  // derived from the posts of the users
+  private Iterable<Pair<String, String>> postAuthorsAt(SnapshotImage image) {
+    return () -> this.network.values()
+        .stream()
+        .filter(user -> !image.isBorn(user.username))
+        .flatMap(user -> image.postsOf(user).stream().map(post -> Pair.of(post.uuid, user.username)))
+        .iterator();
+  }
+
+  // stream the same json of toJSON, user by user, without building it in memory:
+  // the state is the one at the start of the call, the mutations are not blocked
+  public void writeJSON(JsonGenerator gen) throws IOException {
+    synchronized (snapshotLock) {
+      var image = beginSnapshot();
+      try {
+        gen.writeStartObject();
+
+        gen.writeObjectFieldStart("network");
+        for (var user : usersAt(image)) {
+          gen.writeFieldName(user.username);
+          user.writeJSON(gen, true);
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("loggedUsers");
+        for (var e : image.loggedUsers(this.loggedUsers).entrySet()) {
+          gen.writeStringField(e.getKey(), e.getValue());
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("postAuthors");
+        for (var p : postAuthorsAt(image)) {
+          gen.writeStringField(p.fst(), p.snd());
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("wallet");
+        gen.writeNumberField("prevTimestamp", image.getPrevTimestamp());
+        gen.writeObjectFieldStart("wallet");
+        for (var username : usernamesAt(image)) {
+          gen.writeArrayFieldStart(username);
+          for (var t : image.transactionsOf(username, this.wallet.getWalletOf(username).getOrElse(List.of()))) {
+            t.writeJSON(gen);
+          }
+          gen.writeEndArray();
+        }
+        gen.writeEndObject();
+        gen.writeEndObject();
+
+        gen.writeEndObject();
+      } finally {
+        endSnapshot();
+      }
+    }
+  }
+
+  // write a snapshot of the state into a file, through a buffered channel
+  // that is forced to the disk before returning
+  public Either<String, Long> writeSnapshot(String path) {
+    return nullGuard(path, "path")
+        .flatMap(__ -> {
+          try (var channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            var out = new BufferedOutputStream(Channels.newOutputStream(channel), SNAPSHOT_BUFFER_SIZE);
+            var gen = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            // the channel is closed by the try
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            this.writeJSON(gen);
+            gen.close();
+            out.flush();
+            channel.force(false);
+
+            return Either.<String, Long>right(channel.size());
+          } catch (IOException e) {
+            return Either.<String, Long>left("cannot write the snapshot: " + e.getMessage());
+          }
+        });
+  }
+
+  // write a snapshot of the state into a file using the binary format (see BinarySnapshot):
+  // the state is the one at the start of the call, the mutations are not blocked
+  public Either<String, Long> writeBinarySnapshot(String path) {
+    return nullGuard(path, "path")
+        .flatMap(__ -> BinarySnapshot.Writer.of(path))
+        .flatMap(writer -> {
+          synchronized (snapshotLock) {
+            var image = beginSnapshot();
+            try (writer) {
+              var usernames = usernamesAt(image);
+              var dictionary = new HashMap<String, Integer>();
+              usernames.forEach(username -> dictionary.put(username, dictionary.size()));
+              writer.section(BinarySnapshot.DICTIONARY, BinarySnapshot.Encoder.of(dictionary).strings(usernames));
+
+              writeChunks(writer, BinarySnapshot.USERS, dictionary, usersAt(image), Winsome::encodeUser);
+              writeChunks(writer, BinarySnapshot.LOGGED_USERS, dictionary,
+                  image.loggedUsers(this.loggedUsers).entrySet(),
+                  (encoder, e) -> encoder.username(e.getKey()).string(e.getValue()));
+              writeChunks(writer, BinarySnapshot.POST_AUTHORS, dictionary, postAuthorsAt(image),
+                  (encoder, p) -> encoder.uuid(p.fst()).username(p.snd()));
+
+              writer.section(BinarySnapshot.META,
+                  BinarySnapshot.Encoder.of(dictionary).number(image.getPrevTimestamp()));
+              writeChunks(writer, BinarySnapshot.WALLET, dictionary, usernames, (encoder, username) -> {
+                var transactions = image.transactionsOf(username,
+                    this.wallet.getWalletOf(username).getOrElse(List.of()));
+                encoder.username(username).integer(transactions.size());
+                transactions.forEach(t -> encoder.number(t.timestamp).number(t.gain));
+              });
+
+              return Either.<String, Long>right(writer.finish());
+            } catch (IOException e) {
+              return Either.<String, Long>left("cannot write the snapshot: " + e.getMessage());
+            } finally {
+              endSnapshot();
+            }
+          }
+        });
+  }
+
+  // restore an instance from a binary snapshot, the sections are decoded
+  // by parallelism threads
+  public static Either<String, Winsome> fromBinarySnapshot(String path, Integer parallelism) {
+    return BinarySnapshot.Reader.of(path)
+        .flatMap(reader -> {
+          var pool = (ForkJoinPool) null;
+          try (reader) {
+            var winsome = new Winsome();
+
+            // the other sections refer to the usernames in the dictionary
+            var dictionary = new ArrayList<String>();
+            for (var section : reader.sections()) {
+              if (section.type == BinarySnapshot.DICTIONARY) {
+                var decoder = reader.load(section);
+                if (decoder.isLeft()) {
+                  return Either.<String, Winsome>left(decoder.getLeft());
+                }
+                // the usernames of the snapshot become the shared instances
+                decoder.get().strings().forEach(username -> dictionary.add(UserDictionary.intern(username)));
+              }
+            }
+
+            var tasks = reader.sections()
+                .stream()
+                .filter(section -> section.type != BinarySnapshot.DICTIONARY)
+                .map(section -> (Callable<Either<String, Void>>) () -> reader
+                    .load(section, dictionary)
+                    .flatMap(decoder -> winsome.restoreSection(section.type, decoder)))
+                .collect(Collectors.toList());
+
+            var results = new ArrayList<Either<String, Void>>();
+            if (parallelism != null && parallelism > 1) {
+              pool = new ForkJoinPool(parallelism);
+              for (var future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+              }
+            } else {
+              for (var task : tasks) {
+                results.add(task.call());
+              }
+            }
+
+            var errors = results
+                .stream()
+                .filter(Either::isLeft)
+                .map(Either::getLeft)
+                .distinct()
+                .collect(Collectors.joining("\n"));
+
+            return errors.isEmpty() ? Either.<String, Winsome>right(winsome) : Either.<String, Winsome>left(errors);
+          } catch (Exception e) {
+            return Either.<String, Winsome>left("cannot restore the snapshot: " + e.getMessage());
+          } finally {
+            if (pool != null) {
+              pool.shutdownNow();
+            }
+          }
+        });
+  }
+
   // static utils
 
   public static Winsome of() {
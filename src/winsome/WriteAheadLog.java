@@ -0,0 +1,305 @@
+package winsome;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import io.vavr.control.Either;
+
+// an append-only log of binary records, split into segments
+// ("<path>.wal.<n>"): a new segment is started when the log is opened
+// and each time it is rotated, so that the segments covered by a
+// snapshot can be deleted.
+// Each record is framed as <length><crc32 of the payload><payload>, a
+// torn or corrupted record marks the end of the segment.
+// Durability:
+// "always": append returns after the record has been fsync-ed, the
+// appenders waiting at the same time share a single fsync (group commit)
+// "interval": a daemon fsyncs the log every syncInterval ms
+// "none": the records are left to the OS
+public class WriteAheadLog {
+
+  public static final String DURABILITY_ALWAYS = "always";
+  public static final String DURABILITY_INTERVAL = "interval";
+  public static final String DURABILITY_NONE = "none";
+
+  private static final Long DEFAULT_SYNC_INTERVAL = 100L;
+  private static final Integer HEADER_SIZE = 8;
+  private static final Integer MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+  private final String path;
+  private final String durability;
+
+  // guarded by this
+  private FileChannel channel;
+  private Integer segment;
+  private Long appended = 0L;
+
+  // guarded by syncLock
+  private final Object syncLock = new Object();
+  private Long synced = 0L;
+
+  private final Thread syncer;
+  private volatile Boolean closed = false;
+
+  private WriteAheadLog(String path, String durability, Long syncInterval) throws IOException {
+    this.path = path;
+    this.durability = durability;
+
+    var segments = listSegments();
+    this.segment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+    this.channel = openSegment(this.segment);
+
+    if (durability.equals(DURABILITY_INTERVAL)) {
+      this.syncer = new Thread(() -> {
+        while (!closed) {
+          try {
+            Thread.sleep(syncInterval);
+            sync(currentLsn());
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }, "wal-syncer");
+      this.syncer.setDaemon(true);
+      this.syncer.start();
+    } else {
+      this.syncer = null;
+    }
+  }
+
+  // open the log stored at "<path>.wal.*", the records are appended to a new segment
+  public static Either<String, WriteAheadLog> of(String path, String durability, Long syncInterval) {
+    if (path == null) {
+      return Either.left("path cannot be null");
+    }
+
+    var mode = durability != null ? durability : DURABILITY_ALWAYS;
+    if (!mode.equals(DURABILITY_ALWAYS) && !mode.equals(DURABILITY_INTERVAL) && !mode.equals(DURABILITY_NONE)) {
+      return Either.left(mode + " is an invalid durability");
+    }
+
+    try {
+      return Either.right(new WriteAheadLog(path, mode,
+          syncInterval != null && syncInterval > 0 ? syncInterval : DEFAULT_SYNC_INTERVAL));
+    } catch (IOException e) {
+      return Either.left("cannot open the write ahead log: " + e.getMessage());
+    }
+  }
+
+  // ---------------------------------------
+  // internal methods
+
+  private Path segmentPath(Integer n) {
+    return Paths.get(path + ".wal." + n);
+  }
+
+  // the numbers of the segments on the disk, in ascending order
+  private List<Integer> listSegments() throws IOException {
+    var base = Paths.get(path).toAbsolutePath();
+    var prefix = base.getFileName().toString() + ".wal.";
+
+    try (var files = Files.list(base.getParent())) {
+      return files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d{1,9}"))
+          .map(name -> Integer.parseInt(name.substring(prefix.length())))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private FileChannel openSegment(Integer n) throws IOException {
+    return FileChannel.open(segmentPath(n), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+  }
+
+  private synchronized Long currentLsn() {
+    return appended;
+  }
+
+  // fsync the log up to the record lsn, unless someone else has already done it
+  // return false if the record may not have reached the disk
+  private Boolean sync(Long lsn) {
+    synchronized (syncLock) {
+      if (synced >= lsn) {
+        return true;
+      } else if (closed) {
+        return false;
+      }
+
+      var target = (Long) null;
+      var current = (FileChannel) null;
+      synchronized (this) {
+        target = appended;
+        current = channel;
+      }
+
+      try {
+        // the previous segments have been forced when rotated
+        current.force(false);
+        synced = target;
+        return true;
+      } catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
+    }
+  }
+
+  // read the records of a segment until its end or the first invalid record
+  private static Long replaySegment(Path segment, Consumer<byte[]> consumer) throws IOException {
+    var records = 0L;
+    var data = ByteBuffer.wrap(Files.readAllBytes(segment));
+    var crc = new CRC32();
+
+    while (data.remaining() >= HEADER_SIZE) {
+      var length = data.getInt();
+      var checksum = data.getInt();
+      if (length < 0 || length > MAX_RECORD_SIZE || length > data.remaining()) {
+        break;
+      }
+
+      var payload = new byte[length];
+      data.get(payload);
+      crc.reset();
+      crc.update(payload);
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+
+      consumer.accept(payload);
+      records++;
+    }
+
+    return records;
+  }
+
+  // ---------------------------------------
+  // API
+
+  // append a record and return its log sequence number
+  // (in "always" mode, after it has reached the disk)
+  public Either<String, Long> append(byte[] payload) {
+    if (payload == null) {
+      return Either.left("payload cannot be null");
+    }
+    if (payload.length > MAX_RECORD_SIZE) {
+      return Either.left("record too large");
+    }
+
+    var crc = new CRC32();
+    crc.update(payload);
+
+    var frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+    frame.putInt(payload.length);
+    frame.putInt((int) crc.getValue());
+    frame.put(payload);
+    frame.flip();
+
+    var lsn = 0L;
+    synchronized (this) {
+      if (closed) {
+        return Either.left("the write ahead log is closed");
+      }
+      try {
+        while (frame.hasRemaining()) {
+          channel.write(frame);
+        }
+      } catch (IOException e) {
+        return Either.left("cannot write to the write ahead log: " + e.getMessage());
+      }
+      lsn = ++appended;
+    }
+
+    if (durability.equals(DURABILITY_ALWAYS) && !sync(lsn)) {
+      return Either.left("cannot sync the write ahead log");
+    }
+
+    return Either.right(lsn);
+  }
+
+  // pass to the consumer every record of the log, from the oldest to the newest
+  // and return the number of records read
+  public Either<String, Long> replay(Consumer<byte[]> consumer) {
+    try {
+      var records = 0L;
+      for (var n : listSegments()) {
+        records += replaySegment(segmentPath(n), consumer);
+      }
+      return Either.right(records);
+    } catch (IOException e) {
+      return Either.left("cannot read the write ahead log: " + e.getMessage());
+    }
+  }
+
+  // start a new segment: the records appended from now on will go there
+  // return the number of the new segment
+  public Either<String, Integer> rotate() {
+    synchronized (syncLock) {
+      synchronized (this) {
+        try {
+          channel.force(false);
+          channel.close();
+          synced = appended;
+
+          segment += 1;
+          channel = openSegment(segment);
+          return Either.right(segment);
+        } catch (IOException e) {
+          return Either.left("cannot rotate the write ahead log: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  // delete the segments older than the given one, i.e. the ones covered by a snapshot
+  public Either<String, Integer> deleteSegmentsBefore(Integer n) {
+    try {
+      var deleted = 0;
+      for (var old : listSegments()) {
+        if (old < n) {
+          Files.deleteIfExists(segmentPath(old));
+          deleted++;
+        }
+      }
+      return Either.right(deleted);
+    } catch (IOException e) {
+      return Either.left("cannot delete the old segments: " + e.getMessage());
+    }
+  }
+
+  public String getDurability() {
+    return durability;
+  }
+
+  // fsync the pending records and close the log
+  public void close() {
+    synchronized (syncLock) {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        try {
+          channel.force(false);
+          channel.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+
+    if (syncer != null) {
+      syncer.interrupt();
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package winsome.exchange;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vavr.control.Either;
+
+// keeps the last rate of another provider in memory, refreshed in background:
+// the requests never wait for the source. A rate older than ttl is stale, it is
+// still returned while a refresh is started (stale-while-revalidate).
+// After failureThreshold failed refreshes in a row the circuit opens and the
+// source is not called for openInterval ms, then a single refresh is tried
+// again (half open) and the circuit closes only if it succeeds
+public class CachedRateProvider implements ExchangeRateProvider {
+
+  private static class Rate {
+    final Double value;
+    final Long timestamp;
+
+    Rate(Double value, Long timestamp) {
+      this.value = value;
+      this.timestamp = timestamp;
+    }
+  }
+
+  private final ExchangeRateProvider source;
+  private final Long ttl;
+  private final Integer failureThreshold;
+  private final Long openInterval;
+
+  // a single daemon thread calls the source
+  private final ScheduledExecutorService refresher;
+  // a refresh is queued or running
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+  private volatile Rate last = null;
+
+  // circuit breaker, only the refresher thread writes it
+  private volatile Integer consecutiveFailures = 0;
+  private volatile Long openUntil = 0L;
+
+  private final LongAdder refreshes = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder staleReads = new LongAdder();
+
+  private CachedRateProvider(ExchangeRateProvider source, Long ttl, Integer failureThreshold, Long openInterval) {
+    this.source = source;
+    this.ttl = ttl;
+    this.failureThreshold = failureThreshold;
+    this.openInterval = openInterval;
+    this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+      var thread = new Thread(r, "exchange-rate-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // null or non positive values fall back to the defaults: a ttl of a minute,
+  // the circuit opens for 30 seconds after 3 failures
+  public static CachedRateProvider of(ExchangeRateProvider source, Long ttl, Integer failureThreshold,
+      Long openInterval) {
+    if (source == null) {
+      throw new IllegalArgumentException("source cannot be null");
+    }
+    var t = ttl != null && ttl > 0 ? ttl : 60000L;
+    var f = failureThreshold != null && failureThreshold > 0 ? failureThreshold : 3;
+    var o = openInterval != null && openInterval > 0 ? openInterval : 30000L;
+
+    return new CachedRateProvider(source, t, f, o);
+  }
+
+  public static CachedRateProvider of(ExchangeRateProvider source) {
+    return of(source, null, null, null);
+  }
+
+  // refresh the rate now and then every half ttl, so that it is always fresh
+  // while the source is available
+  public CachedRateProvider start() {
+    this.refresher.scheduleWithFixedDelay(this::refresh, 0, Math.max(1, this.ttl / 2), TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  public void stop() {
+    this.refresher.shutdownNow();
+  }
+
+  // start a refresh, unless there is one already
+  private void refresh() {
+    if (this.refreshing.compareAndSet(false, true)) {
+      try {
+        this.refresher.execute(() -> {
+          try {
+            fetch();
+          } finally {
+            this.refreshing.set(false);
+          }
+        });
+      } catch (Exception e) {
+        // the refresher has been stopped
+        this.refreshing.set(false);
+      }
+    }
+  }
+
+  // call the source, unless the circuit is open
+  private void fetch() {
+    if (System.currentTimeMillis() < this.openUntil) {
+      return;
+    }
+
+    var rate = Either.<String, Double>left("no rate");
+    try {
+      rate = this.source.getRate();
+    } catch (Exception e) {
+      rate = Either.left(e.getMessage());
+    }
+
+    var now = System.currentTimeMillis();
+    if (rate.isRight() && rate.get() != null && !rate.get().isNaN()) {
+      this.last = new Rate(rate.get(), now);
+      this.consecutiveFailures = 0;
+      this.refreshes.increment();
+    } else {
+      this.failures.increment();
+      this.consecutiveFailures = this.consecutiveFailures + 1;
+      if (this.consecutiveFailures >= this.failureThreshold) {
+        this.openUntil = now + this.openInterval;
+      }
+      rate.swap().forEach(System.out::println);
+    }
+  }
+
+  @Override
+  public Either<String, Double> getRate() {
+    var rate = this.last;
+
+    if (rate == null) {
+      refresh();
+      return Either.left("exchange rate not available");
+    }
+
+    if (System.currentTimeMillis() - rate.timestamp > this.ttl) {
+      this.staleReads.increment();
+      refresh();
+    }
+
+    return Either.right(rate.value);
+  }
+
+  // ---------------------------------------
+  // metrics
+
+  // the last rate, 0 if there is none
+  public Double getLastRate() {
+    var rate = this.last;
+    return rate == null ? 0. : rate.value;
+  }
+
+  // ms since the last successful refresh, -1 if there was none
+  public Long getAge() {
+    var rate = this.last;
+    return rate == null ? -1L : System.currentTimeMillis() - rate.timestamp;
+  }
+
+  public Long getRefreshes() {
+    return this.refreshes.sum();
+  }
+
+  public Long getFailures() {
+    return this.failures.sum();
+  }
+
+  public Long getStaleReads() {
+    return this.staleReads.sum();
+  }
+
+  public Boolean isCircuitOpen() {
+    return System.currentTimeMillis() < this.openUntil;
+  }
+}
@@ -0,0 +1,10 @@
+package winsome.exchange;
+
+import io.vavr.control.Either;
+
+// the rate to convert wincoins into bitcoins
+public interface ExchangeRateProvider {
+
+  // the current rate or an error in the form of a string
+  Either<String, Double> getRate();
+}
@@ -0,0 +1,47 @@
+package winsome.exchange;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import http.HttpConstants;
+import io.vavr.control.Either;
+
+// a fake rate taken from random.org: each call is a blocking http request
+public class RandomOrgRateProvider implements ExchangeRateProvider {
+
+  private static final String URL = "https://www.random.org/decimal-fractions/?num=1&dec=10&col=1&format=plain&rnd=new";
+  private static final Integer TIMEOUT = 5000;
+
+  public static RandomOrgRateProvider of() {
+    return new RandomOrgRateProvider();
+  }
+
+  @Override
+  public Either<String, Double> getRate() {
+    try {
+      var con = (HttpURLConnection) new URL(URL).openConnection();
+      con.setRequestMethod(HttpConstants.GET);
+      con.setConnectTimeout(TIMEOUT);
+      con.setReadTimeout(TIMEOUT);
+
+      if (con.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        return Either.left("get request to random.org has failed");
+      }
+
+      try (var reader = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+        var inputLine = "";
+        var res = new StringBuilder();
+
+        while ((inputLine = reader.readLine()) != null) {
+          res.append(inputLine);
+        }
+
+        return Either.right(Double.parseDouble(res.toString().trim()));
+      }
+    } catch (Exception e) {
+      return Either.left("get request to random.org has failed: " + e.getMessage());
+    }
+  }
+}
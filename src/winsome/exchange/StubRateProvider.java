@@ -0,0 +1,23 @@
+package winsome.exchange;
+
+import io.vavr.control.Either;
+
+// a local provider that always answers with the same rate, for tests
+// and for the servers that cannot reach random.org
+public class StubRateProvider implements ExchangeRateProvider {
+
+  private final Double rate;
+
+  private StubRateProvider(Double rate) {
+    this.rate = rate;
+  }
+
+  public static StubRateProvider of(Double rate) {
+    return new StubRateProvider(rate);
+  }
+
+  @Override
+  public Either<String, Double> getRate() {
+    return this.rate == null ? Either.left("rate cannot be null") : Either.right(this.rate);
+  }
+}
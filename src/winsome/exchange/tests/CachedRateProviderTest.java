@@ -0,0 +1,138 @@
+package winsome.exchange.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import io.vavr.control.Either;
+import winsome.exchange.CachedRateProvider;
+import winsome.exchange.ExchangeRateProvider;
+import winsome.exchange.StubRateProvider;
+
+public class CachedRateProviderTest {
+
+  // a source that counts its calls and answers with the given rate
+  private static class Source implements ExchangeRateProvider {
+    final AtomicInteger calls = new AtomicInteger(0);
+    final AtomicReference<Either<String, Double>> rate = new AtomicReference<>(Either.right(1.));
+    volatile long delay = 0;
+
+    @Override
+    public Either<String, Double> getRate() {
+      calls.incrementAndGet();
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return rate.get();
+    }
+  }
+
+  private static void await(CachedRateProvider provider, Double rate) throws InterruptedException {
+    for (var i = 0; i < 200 && !provider.getLastRate().equals(rate); i++) {
+      provider.getRate();
+      Thread.sleep(10);
+    }
+    assertEquals(rate, provider.getLastRate());
+  }
+
+  // ask for the (stale) rate until the source is called again
+  private static void awaitCalls(CachedRateProvider provider, Source source, Integer calls)
+      throws InterruptedException {
+    for (var i = 0; i < 200 && source.calls.get() < calls; i++) {
+      provider.getRate();
+      Thread.sleep(10);
+    }
+    assertEquals(calls, source.calls.get());
+  }
+
+  @Test
+  void freshAndStaleRates() throws InterruptedException {
+    var source = new Source();
+    var provider = CachedRateProvider.of(source, 200L, null, null);
+
+    // nothing yet: the first request starts a refresh
+    assertTrue(provider.getRate().isLeft());
+    await(provider, 1.);
+    assertEquals(1., provider.getRate().get());
+
+    // a fresh rate is answered from memory
+    for (var i = 0; i < 100; i++) {
+      provider.getRate();
+    }
+    assertEquals(1, source.calls.get());
+
+    // a stale rate is still answered, while it is refreshed once
+    Thread.sleep(250);
+    source.rate.set(Either.right(2.));
+    source.delay = 200;
+    var start = System.nanoTime();
+    for (var i = 0; i < 100; i++) {
+      assertEquals(1., provider.getRate().get());
+    }
+    assertTrue(System.nanoTime() - start < 100_000_000L);
+    await(provider, 2.);
+    assertEquals(2, source.calls.get());
+    assertTrue(provider.getStaleReads() > 0);
+
+    provider.stop();
+  }
+
+  @Test
+  void circuitBreaker() throws InterruptedException {
+    var source = new Source();
+    var provider = CachedRateProvider.of(source, 1L, 2, 300L);
+
+    provider.getRate();
+    await(provider, 1.);
+
+    // the source fails: after two failures the circuit opens
+    source.rate.set(Either.left("down"));
+    awaitCalls(provider, source, 2);
+    awaitCalls(provider, source, 3);
+    // the failure is counted once the call has returned
+    for (var i = 0; i < 200 && !provider.isCircuitOpen(); i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(provider.isCircuitOpen());
+
+    // while open, the source is not called and the last rate is answered
+    for (var i = 0; i < 10; i++) {
+      assertEquals(1., provider.getRate().get());
+      Thread.sleep(10);
+    }
+    assertEquals(3, source.calls.get());
+    assertEquals(2L, provider.getFailures());
+
+    // half open: a single call, that closes the circuit
+    Thread.sleep(300);
+    assertFalse(provider.isCircuitOpen());
+    source.rate.set(Either.right(3.));
+    provider.getRate();
+    await(provider, 3.);
+    assertEquals(4, source.calls.get());
+    assertFalse(provider.isCircuitOpen());
+
+    provider.stop();
+  }
+
+  @Test
+  void backgroundRefresher() throws InterruptedException {
+    var provider = CachedRateProvider.of(StubRateProvider.of(0.25), 50L, null, null).start();
+
+    await(provider, 0.25);
+    Thread.sleep(200);
+    // refreshed every half ttl, never stale
+    assertTrue(provider.getRefreshes() > 2);
+    assertTrue(provider.getAge() < 150L);
+    assertEquals(0.25, provider.getRate().get());
+
+    provider.stop();
+  }
+}
@@ -0,0 +1,77 @@
+package winsome.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import io.vavr.control.Either;
+import utils.JWTUtils;
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.AuthBenchmark
+// the cost of authenticating a request of a logged user, as done by the auth
+// middleware: a lookup of a cached jwt or of an opaque session, compared with
+// the old path that built a verifier, verified the signature and then compared
+// the jwt with the one of the logged user for each request
+@ExtendWith(CheapPasswordHashes.class)
+public class AuthBenchmark {
+
+  private static final Integer USERS = Integer.getInteger("benchmark.users", 1000);
+  private static final Integer REQUESTS = Integer.getInteger("benchmark.requests", 200000);
+
+  @Test
+  public void authenticate() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    var withSessions = Winsome.of();
+    withSessions.setJWTSecret("secret");
+    withSessions.enableSessions(null);
+
+    var objectMapper = new ObjectMapper();
+    var jwts = new ArrayList<String>();
+    var ids = new ArrayList<String>();
+    for (var i = 0; i < USERS; i++) {
+      winsome.register("user" + i, "pwd", List.of("music"));
+      jwts.add(objectMapper.readTree(winsome.login("user" + i, "pwd", false).get()).get("jwt").asText());
+      withSessions.register("user" + i, "pwd", List.of("music"));
+      ids.add(objectMapper.readTree(withSessions.login("user" + i, "pwd", false).get()).get("jwt").asText());
+    }
+
+    for (var round = 0; round < 3; round++) {
+      var start = System.nanoTime();
+      var ok = 0;
+      for (var i = 0; i < REQUESTS; i++) {
+        ok += winsome.authenticate(jwts.get(i % USERS)).isRight() ? 1 : 0;
+      }
+      var cached = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (var i = 0; i < REQUESTS; i++) {
+        ok += withSessions.authenticate(ids.get(i % USERS)).isRight() ? 1 : 0;
+      }
+      var sessions = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      var legacyOk = 0;
+      for (var i = 0; i < REQUESTS / 10; i++) {
+        var jwt = jwts.get(i % USERS);
+        legacyOk += JWTUtils
+            .validateJWT("secret", jwt)
+            .flatMap(user -> winsome
+                .getUserJWT(user.username)
+                .flatMap(currJWT -> currJWT.equals(jwt) ? Either.right(user) : Either.left("invalid auth token")))
+            .isRight() ? 1 : 0;
+      }
+      var legacy = System.nanoTime() - start;
+
+      System.out.printf(
+          "round %d: cached jwt %8.3f us/request, session %8.3f us/request, old %8.3f us/request"
+              + " (%d + %d authenticated)%n",
+          round, cached / 1e3 / REQUESTS, sessions / 1e3 / REQUESTS, legacy / 1e3 / (REQUESTS / 10), ok, legacyOk);
+    }
+  }
+}
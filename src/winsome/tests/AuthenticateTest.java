@@ -0,0 +1,75 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import domain.user.User;
+import utils.JWTUtils;
+import winsome.AuthCache;
+import winsome.Winsome;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class AuthenticateTest {
+
+  private static String jwtOf(String loginResult) throws Exception {
+    return new ObjectMapper().readTree(loginResult).get("jwt").asText();
+  }
+
+  @Test
+  void sessionsAndCache() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    winsome.register("mario", "pwd", List.of("music"));
+
+    var jwt = jwtOf(winsome.login("mario", "pwd", false).get());
+
+    // verified once, then found in the cache
+    var user = winsome.authenticate(jwt).get();
+    assertEquals("mario", user.username);
+    assertTrue(user == winsome.authenticate(jwt).get());
+
+    // a jwt signed with another secret, or not the current one of the user
+    // (the expiry has the precision of a second)
+    Thread.sleep(1000);
+    assertTrue(winsome.authenticate(JWTUtils.createJWT("other", "mario")).isLeft());
+    assertTrue(winsome.authenticate(JWTUtils.createJWT("secret", "mario")).isLeft());
+    assertTrue(winsome.authenticate("garbage").isLeft());
+    assertTrue(winsome.authenticate(null).isLeft());
+
+    // a forced login invalidates the previous jwt
+    var newJwt = jwtOf(winsome.login("mario", "pwd", true).get());
+    assertTrue(winsome.authenticate(jwt).isLeft());
+    assertEquals("mario", winsome.authenticate(newJwt).get().username);
+
+    // and so does a logout
+    winsome.logout("mario");
+    assertTrue(winsome.authenticate(newJwt).isLeft());
+  }
+
+  @Test
+  void expiryAndBound() {
+    var cache = AuthCache.of(100);
+    var user = User.of("mario", "pwd", List.of("music"));
+
+    cache.put("expired", user, System.currentTimeMillis() - 1);
+    assertNull(cache.get("expired"));
+    assertEquals(0, cache.size());
+
+    for (var i = 0; i < 1000; i++) {
+      cache.put("jwt" + i, user, Long.MAX_VALUE);
+      assertTrue(cache.size() <= 100);
+    }
+    assertTrue(cache.get("jwt999") == user);
+
+    cache.evict("jwt999");
+    assertNull(cache.get("jwt999"));
+  }
+}
@@ -0,0 +1,103 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import winsome.BinarySnapshot;
+import winsome.Winsome;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class BinarySnapshotTest {
+
+  @TempDir
+  Path dir;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private Winsome sample() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+
+    List.of("mario", "luigi", "peach", "toad").forEach(username -> {
+      winsome.register(username, "pwd", List.of("music", "sport"));
+      winsome.login(username, "pwd", false);
+    });
+    winsome.followUser("mario", "luigi");
+    winsome.followUser("peach", "luigi");
+    winsome.followUser("luigi", "mario");
+
+    var post = winsome.createPost("luigi", "hello", "wörld \"quoted\"\nnew line").get();
+    winsome.ratePost("mario", "luigi", post.uuid, true);
+    winsome.ratePost("peach", "luigi", post.uuid, false);
+    winsome.addComment("mario", "luigi", post.uuid, "hi luigi");
+    winsome.rewinPost("mario", "luigi", post.uuid);
+
+    var deleted = winsome.createPost("mario", "deleted", "post").get();
+    winsome.deletePost("mario", deleted.uuid);
+    winsome.logout("toad");
+
+    // a run of the wallet thread
+    Thread.sleep(5);
+    var done = new CountDownLatch(1);
+    var walletThread = new Thread(winsome.makeWalletRunnable(60000L, 70, done::countDown).get());
+    walletThread.start();
+    done.await();
+    walletThread.interrupt();
+    walletThread.join();
+
+    return winsome;
+  }
+
+  @Test
+  void roundTrip() throws Exception {
+    var winsome = sample();
+    var path = dir.resolve("server.bin").toString();
+
+    assertTrue(winsome.writeBinarySnapshot(path).get() > 0);
+    assertTrue(BinarySnapshot.isBinary(path));
+
+    for (var parallelism : List.of(1, 4)) {
+      var restored = Winsome.fromBinarySnapshot(path, parallelism).get();
+      assertEquals(objectMapper.readTree(winsome.toJSON()), objectMapper.readTree(restored.toJSON()));
+    }
+
+    // the json snapshot is not binary
+    var json = dir.resolve("server.json").toString();
+    winsome.writeSnapshot(json).get();
+    assertFalse(BinarySnapshot.isBinary(json));
+    assertTrue(Winsome.fromBinarySnapshot(json, 1).isLeft());
+  }
+
+  @Test
+  void corruptedSnapshotsAreRejected() throws Exception {
+    var winsome = sample();
+    var path = dir.resolve("server.bin");
+    winsome.writeBinarySnapshot(path.toString()).get();
+    var bytes = Files.readAllBytes(path);
+
+    // a flipped byte inside a section
+    var flipped = bytes.clone();
+    flipped[bytes.length / 2] ^= 0x40;
+    var corrupted = dir.resolve("corrupted.bin");
+    Files.write(corrupted, flipped);
+    assertTrue(Winsome.fromBinarySnapshot(corrupted.toString(), 2).isLeft());
+
+    // a snapshot without its end
+    var truncated = dir.resolve("truncated.bin");
+    Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4));
+    assertTrue(Winsome.fromBinarySnapshot(truncated.toString(), 2).isLeft());
+  }
+}
@@ -0,0 +1,29 @@
+package winsome.tests;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import utils.Hasher;
+
+// for the test classes whose users are not what is tested: their passwords
+// are hashed cheaply, then the previous cost of the hashes is restored
+// use with: @ExtendWith(CheapPasswordHashes.class)
+public class CheapPasswordHashes implements BeforeAllCallback, AfterAllCallback {
+
+  public static final Integer ITERATIONS = 1000;
+
+  private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace
+      .create(CheapPasswordHashes.class);
+
+  @Override
+  public void beforeAll(ExtensionContext context) {
+    context.getStore(NAMESPACE).put("previous", Hasher.getIterations());
+    Hasher.setIterations(ITERATIONS);
+  }
+
+  @Override
+  public void afterAll(ExtensionContext context) {
+    Hasher.setIterations(context.getStore(NAMESPACE).remove("previous", Integer.class));
+  }
+}
@@ -0,0 +1,83 @@
+package winsome.tests;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.FeedBenchmark
+// compares the latency of showFeed when the feed is rebuilt from the blogs
+// of the followed users and when the materialized feed is read
+@ExtendWith(CheapPasswordHashes.class)
+public class FeedBenchmark {
+
+  private static final Integer FOLLOWING = Integer.getInteger("benchmark.following", 2000);
+  private static final Integer POSTS = Integer.getInteger("benchmark.posts", 10);
+  private static final Integer CALLS = Integer.getInteger("benchmark.calls", 200);
+  private static final Integer PAGE = Integer.getInteger("benchmark.page", 20);
+
+  private Winsome makeWinsome(Boolean engine) {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    if (engine) {
+      winsome.enableFeedEngine(null, null);
+    }
+
+    winsome.register("reader", "pwd", List.of("music"));
+    winsome.login("reader", "pwd", false);
+
+    for (var i = 0; i < FOLLOWING; i++) {
+      var author = "author" + i;
+      winsome.register(author, "pwd", List.of("music"));
+      winsome.login(author, "pwd", false);
+      winsome.followUser("reader", author);
+      for (var j = 0; j < POSTS; j++) {
+        winsome.createPost(author, "title " + j, "content");
+      }
+    }
+
+    return winsome;
+  }
+
+  private long run(Winsome winsome, Boolean paged) {
+    var read = 0L;
+    for (var i = 0; i < CALLS; i++) {
+      read += paged
+          ? winsome.showFeed("reader", null, PAGE).get().fst().size()
+          : winsome.showFeed("reader").get().size();
+    }
+    return read;
+  }
+
+  @Test
+  public void compareShowFeed() {
+    var legacy = makeWinsome(false);
+    var engine = makeWinsome(true);
+
+    // warmup (and first read of the materialized feed)
+    run(legacy, false);
+    run(engine, true);
+
+    var start = System.nanoTime();
+    var legacyRead = run(legacy, false);
+    var legacyTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    var legacyPagedRead = run(legacy, true);
+    var legacyPagedTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    var engineRead = run(engine, true);
+    var engineTime = System.nanoTime() - start;
+
+    System.out.println(FOLLOWING + " followed users, " + POSTS + " posts each, " + CALLS + " calls");
+    System.out.println(String.format("rebuilt feed       : %9.3f ms/call (%d posts read)",
+        legacyTime / 1e6 / CALLS, legacyRead));
+    System.out.println(String.format("rebuilt feed, paged: %9.3f ms/call (%d posts read)",
+        legacyPagedTime / 1e6 / CALLS, legacyPagedRead));
+    System.out.println(String.format("materialized, paged: %9.3f ms/call (%d posts read)",
+        engineTime / 1e6 / CALLS, engineRead));
+  }
+}
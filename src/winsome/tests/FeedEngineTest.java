@@ -0,0 +1,157 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import domain.post.Post;
+import winsome.Winsome;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class FeedEngineTest {
+
+  private static final List<String> USERS = List.of("mario", "luigi", "peach", "toad");
+
+  // fanoutThreshold == 1: the authors with two followers are hot
+  private Winsome makeWinsome(Boolean engine) {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    if (engine) {
+      winsome.enableFeedEngine(5, 1);
+    }
+
+    USERS.forEach(username -> {
+      winsome.register(username, "pwd", List.of("music"));
+      winsome.login(username, "pwd", false);
+    });
+
+    return winsome;
+  }
+
+  private void post(Winsome winsome, String author, String title) {
+    winsome.createPost(author, title, "content");
+    try {
+      // distinct timestamps
+      Thread.sleep(2);
+    } catch (InterruptedException e) {
+    }
+  }
+
+  private List<String> titles(List<Post> posts) {
+    return posts.stream().map(p -> p.title).collect(Collectors.toList());
+  }
+
+  private List<String> readAll(Winsome winsome, String username, Integer limit) {
+    var titles = new ArrayList<String>();
+    var cursor = (String) null;
+    do {
+      var page = winsome.showFeed(username, cursor, limit).get();
+      titles.addAll(titles(page.fst()));
+      cursor = page.snd();
+    } while (cursor != null);
+    return titles;
+  }
+
+  @Test
+  void feedIsMaterializedAndPaginated() {
+    var winsome = makeWinsome(true);
+
+    winsome.followUser("mario", "luigi");
+    post(winsome, "luigi", "l1");
+    // the feed is built on the first read
+    assertEquals(List.of("l1"), titles(winsome.showFeed("mario").get()));
+
+    // then it is updated on write
+    post(winsome, "luigi", "l2");
+    post(winsome, "toad", "t1");
+    winsome.followUser("mario", "toad");
+    post(winsome, "luigi", "l3");
+    assertEquals(List.of("l3", "t1", "l2", "l1"), titles(winsome.showFeed("mario").get()));
+    assertEquals(List.of("l3", "t1", "l2", "l1"), readAll(winsome, "mario", 3));
+
+    // deletions, unfollows and the rewins
+    var l2 = winsome.showFeed("mario").get().get(2);
+    winsome.deletePost("luigi", l2.uuid);
+    winsome.unfollowUser("mario", "toad");
+    assertEquals(List.of("l3", "l1"), titles(winsome.showFeed("mario").get()));
+
+    winsome.followUser("luigi", "peach");
+    post(winsome, "peach", "p1");
+    var p1 = winsome.showFeed("luigi").get().get(0);
+    winsome.rewinPost("luigi", "peach", p1.uuid);
+    assertEquals(List.of("p1", "l3", "l1"), titles(winsome.showFeed("mario").get()));
+
+    // feeds are bounded
+    for (var i = 0; i < 6; i++) {
+      post(winsome, "luigi", "n" + i);
+    }
+    assertEquals(List.of("n5", "n4", "n3", "n2", "n1"), readAll(winsome, "mario", 2));
+
+    assertTrue(winsome.showFeed("mario", "nope", 2).isLeft());
+    assertTrue(winsome.showFeed("mario", null, 0).isLeft());
+  }
+
+  @Test
+  void hotAuthorsAreMergedOnRead() {
+    var winsome = makeWinsome(true);
+
+    winsome.followUser("mario", "luigi");
+    winsome.followUser("mario", "toad");
+    winsome.followUser("peach", "toad");
+    winsome.showFeed("mario");
+
+    // toad has two followers, its posts are not pushed
+    post(winsome, "toad", "t1");
+    post(winsome, "luigi", "l1");
+    post(winsome, "toad", "t2");
+
+    assertEquals(List.of("t2", "l1", "t1"), titles(winsome.showFeed("mario").get()));
+    assertEquals(List.of("t2", "l1", "t1"), readAll(winsome, "mario", 1));
+    assertEquals(List.of("t2", "t1"), titles(winsome.showFeed("peach").get()));
+
+    // the deleted posts of a hot author are gone
+    var t1 = winsome.showFeed("peach").get().get(1);
+    winsome.deletePost("toad", t1.uuid);
+    assertEquals(List.of("t2"), titles(winsome.showFeed("peach").get()));
+
+    winsome.unfollowUser("mario", "toad");
+    assertEquals(List.of("l1"), titles(winsome.showFeed("mario").get()));
+
+    // luigi becomes hot: its older posts are still read
+    winsome.followUser("peach", "luigi");
+    post(winsome, "luigi", "l2");
+    assertEquals(List.of("l2", "l1"), titles(winsome.showFeed("mario").get()));
+    assertEquals(List.of("l2", "t2", "l1"), readAll(winsome, "peach", 1));
+  }
+
+  @Test
+  void sameFeedWithAndWithoutTheEngine() {
+    var engine = makeWinsome(true);
+    var legacy = makeWinsome(false);
+
+    for (var winsome : List.of(engine, legacy)) {
+      winsome.followUser("mario", "luigi");
+      winsome.followUser("mario", "peach");
+      post(winsome, "luigi", "l1");
+      post(winsome, "peach", "p1");
+      post(winsome, "toad", "t1");
+    }
+
+    assertEquals(Set.copyOf(titles(legacy.showFeed("mario").get())),
+        Set.copyOf(titles(engine.showFeed("mario").get())));
+    assertEquals(readAll(legacy, "mario", 1), readAll(engine, "mario", 1));
+
+    var last = legacy.showFeed("mario", null, 2).get();
+    assertEquals(List.of("p1", "l1"), titles(last.fst()));
+    assertNull(legacy.showFeed("mario", last.snd(), 2).get().snd());
+  }
+
+}
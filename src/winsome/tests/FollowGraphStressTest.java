@@ -0,0 +1,115 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import winsome.Winsome;
+
+// random follow/unfollow pairs between a few users, in both directions at the
+// same time, while other threads read the relations: nothing must deadlock and
+// the relations must end up symmetric
+// (-Dstress.seconds=N to run it for N seconds, e.g. some minutes)
+@ExtendWith(CheapPasswordHashes.class)
+public class FollowGraphStressTest {
+
+  private static final Long SECONDS = Long.getLong("stress.seconds", 2L);
+  private static final Integer USERS = 6;
+  private static final Integer WRITERS = 6;
+  private static final Integer READERS = 2;
+
+  @Test
+  void randomFollowsAndUnfollows() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+
+    var usernames = new ArrayList<String>();
+    for (var i = 0; i < USERS; i++) {
+      usernames.add("user" + i);
+      winsome.register("user" + i, "pwd", List.of("tag"));
+      winsome.login("user" + i, "pwd", false);
+    }
+
+    var deadline = System.currentTimeMillis() + SECONDS * 1000;
+    var operations = new AtomicInteger(0);
+    var errors = new ArrayList<String>();
+    var threads = new ArrayList<Thread>();
+
+    for (var i = 0; i < WRITERS; i++) {
+      var seed = i;
+      threads.add(new Thread(() -> {
+        var random = new Random(seed);
+        while (System.currentTimeMillis() < deadline) {
+          var user = usernames.get(random.nextInt(USERS));
+          var other = usernames.get(random.nextInt(USERS));
+          if (user.equals(other)) {
+            continue;
+          }
+
+          // the pair in both directions
+          if (random.nextBoolean()) {
+            winsome.followUser(user, other);
+            winsome.followUser(other, user);
+          } else {
+            winsome.unfollowUser(user, other);
+            winsome.unfollowUser(other, user);
+          }
+          operations.incrementAndGet();
+        }
+      }));
+    }
+
+    for (var i = 0; i < READERS; i++) {
+      var seed = WRITERS + i;
+      threads.add(new Thread(() -> {
+        var random = new Random(seed);
+        while (System.currentTimeMillis() < deadline) {
+          var user = usernames.get(random.nextInt(USERS));
+          winsome.listFollowers(user);
+          winsome.listFollowing(user);
+          winsome.synchronizedActionOnFollowersOfUser(user, followers -> {
+            if (followers.contains(user)) {
+              synchronized (errors) {
+                errors.add(user + " follows itself");
+              }
+            }
+          });
+        }
+      }));
+    }
+
+    threads.forEach(Thread::start);
+    for (var thread : threads) {
+      thread.join(SECONDS * 1000 + 10000);
+    }
+
+    // a thread still running long after the deadline is stuck
+    assertNull(ManagementFactory.getThreadMXBean().findDeadlockedThreads());
+    assertFalse(threads.stream().anyMatch(Thread::isAlive));
+    assertTrue(errors.isEmpty(), errors.toString());
+    assertTrue(operations.get() > 0);
+
+    // the relations are symmetric
+    for (var username : usernames) {
+      for (var following : winsome.listFollowing(username).get()) {
+        assertTrue(winsome.listFollowers(following).get().contains(username));
+      }
+      for (var follower : winsome.listFollowers(username).get()) {
+        assertTrue(winsome.listFollowing(follower).get().contains(username));
+      }
+      var followers = winsome.listFollowers(username).get();
+      assertEquals(followers.size(), new HashSet<>(followers).size());
+    }
+  }
+}
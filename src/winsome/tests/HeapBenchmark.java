@@ -0,0 +1,59 @@
+package winsome.tests;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.HeapBenchmark
+// the heap retained by a synthetic network (the same of SnapshotBenchmark)
+// of -Dbenchmark.users users, once built and once restored from a json
+// snapshot, where every username is read as a new string
+// (give the jvm enough memory, e.g. -Xmx4g)
+@ExtendWith(CheapPasswordHashes.class)
+public class HeapBenchmark {
+
+  private static final Integer USERS = Integer.getInteger("benchmark.users", 1000000);
+
+  private static Long usedHeap() throws InterruptedException {
+    var memory = ManagementFactory.getMemoryMXBean();
+    for (var i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  private static void report(String what, Long retained) {
+    System.out.printf("  %-9s %10.1f MB retained, %8.1f bytes per user%n", what, retained / 1e6,
+        (double) retained / USERS);
+  }
+
+  @Test
+  public void retainedHeap() throws Exception {
+    var snapshot = Files.createTempFile("heap", ".json");
+    System.out.println(USERS + " users");
+
+    var before = usedHeap();
+    var winsome = SnapshotBenchmark.network(USERS);
+    report("built", usedHeap() - before);
+
+    winsome.writeSnapshot(snapshot.toString()).get();
+    winsome = null;
+
+    before = usedHeap();
+    var restored = new ObjectMapper().readValue(new File(snapshot.toString()), Winsome.class);
+    restored.rebuildIndexes();
+    report("restored", usedHeap() - before);
+
+    // keep the network reachable until the measure is done
+    System.out.println(restored.hashCode() != 0 ? "" : " ");
+    Files.delete(snapshot);
+  }
+}
@@ -0,0 +1,91 @@
+package winsome.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import domain.user.User;
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.ListUsersBenchmark
+// compares the latency of listUsers when the whole network is scanned
+// and when the tag -> users index is used
+@ExtendWith(CheapPasswordHashes.class)
+public class ListUsersBenchmark {
+
+  private static final Integer USERS = Integer.getInteger("benchmark.users", 1000000);
+  private static final Integer TAGS = Integer.getInteger("benchmark.tags", 5000);
+  private static final Integer CALLS = Integer.getInteger("benchmark.calls", 50);
+
+  // the old listUsers: a scan of the network comparing the tags of every user
+  private static Integer scan(ConcurrentMap<String, User> network, User user) {
+    return network.entrySet()
+        .stream()
+        .filter(e -> !e.getKey().equals(user.username)
+            && e.getValue().tags.stream().anyMatch(t -> user.tags.contains(t)))
+        .map(e -> e.getValue().username)
+        .collect(Collectors.toList())
+        .size();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void compareListUsers() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    var random = new Random(42);
+
+    // each user has from 1 to 5 tags out of TAGS
+    var usernames = new ArrayList<String>();
+    for (var i = 0; i < USERS; i++) {
+      var tags = new String[1 + random.nextInt(5)];
+      for (var j = 0; j < tags.length; j++) {
+        tags[j] = "tag" + random.nextInt(TAGS);
+      }
+      winsome.register("user" + i, "pwd", Arrays.asList(tags));
+      usernames.add("user" + i);
+    }
+
+    var networkField = Winsome.class.getDeclaredField("network");
+    networkField.setAccessible(true);
+    var network = (ConcurrentMap<String, User>) networkField.get(winsome);
+
+    var callers = new ArrayList<String>();
+    for (var i = 0; i < CALLS; i++) {
+      var username = usernames.get(random.nextInt(USERS));
+      winsome.login(username, "pwd", true);
+      callers.add(username);
+    }
+
+    // warmup
+    for (var username : callers.subList(0, Math.min(5, CALLS))) {
+      scan(network, network.get(username));
+      winsome.listUsers(username);
+    }
+
+    var scanned = 0L;
+    var start = System.nanoTime();
+    for (var username : callers) {
+      scanned += scan(network, network.get(username));
+    }
+    var scanTime = System.nanoTime() - start;
+
+    var indexed = 0L;
+    start = System.nanoTime();
+    for (var username : callers) {
+      indexed += winsome.listUsers(username).get().size();
+    }
+    var indexTime = System.nanoTime() - start;
+
+    System.out.println(USERS + " users, " + TAGS + " tags, " + CALLS + " calls");
+    System.out.println(String.format("network scan: %9.3f ms/call (%d users listed)",
+        scanTime / 1e6 / CALLS, scanned));
+    System.out.println(String.format("tag index   : %9.3f ms/call (%d users listed)",
+        indexTime / 1e6 / CALLS, indexed));
+  }
+}
@@ -0,0 +1,65 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import winsome.Winsome;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class ListUsersTest {
+
+  private Winsome makeWinsome() {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+
+    winsome.register("mario", "pwd", List.of("Sport", "music"));
+    winsome.register("luigi", "pwd", List.of("music", "wine"));
+    winsome.register("peach", "pwd", List.of("sport"));
+    winsome.register("toad", "pwd", List.of("cooking"));
+
+    return winsome;
+  }
+
+  private Set<String> listUsers(Winsome winsome, String username) {
+    return winsome.listUsers(username).get().stream().collect(Collectors.toSet());
+  }
+
+  @Test
+  void usersWithACommonTag() {
+    var winsome = makeWinsome();
+    winsome.login("mario", "pwd", false);
+    winsome.login("toad", "pwd", false);
+
+    // tags are lowercased by the factory
+    assertEquals(Set.of("luigi", "peach"), listUsers(winsome, "mario"));
+    assertEquals(Set.of(), listUsers(winsome, "toad"));
+    assertTrue(winsome.listUsers("luigi").isLeft());
+    assertTrue(winsome.listUsers("nobody").isLeft());
+
+    // duplicated registrations do not touch the index
+    assertTrue(winsome.register("peach", "pwd", List.of("cooking")).isLeft());
+    assertEquals(Set.of(), listUsers(winsome, "toad"));
+  }
+
+  @Test
+  void indexesAreRebuiltAfterRestore() throws Exception {
+    var winsome = makeWinsome();
+
+    var restored = new ObjectMapper().readValue(winsome.toJSON(), Winsome.class);
+    restored.rebuildIndexes();
+    restored.setJWTSecret("secret");
+    restored.login("luigi", "pwd", false);
+
+    assertEquals(Set.of("mario"), listUsers(restored, "luigi"));
+  }
+
+}
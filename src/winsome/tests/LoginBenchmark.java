@@ -0,0 +1,136 @@
+package winsome.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import server.HandlerPool;
+import utils.Hasher;
+import utils.HashingPool;
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.LoginBenchmark
+// a login storm served by the handler threads, while a client keeps sending
+// a cheap request (the list of the users with a common tag): the logins hash
+// the password either on the handler thread or on the hashing pool, that
+// refuses the logins it has no room for (the clients retry after a pause)
+public class LoginBenchmark {
+
+  private static final Integer USERS = Integer.getInteger("benchmark.users", 32);
+  private static final Integer ITERATIONS = Integer.getInteger("benchmark.iterations", Hasher.DEFAULT_ITERATIONS);
+  private static final Integer CLIENTS = Integer.getInteger("benchmark.clients", 32);
+  private static final Integer HANDLERS = Integer.getInteger("benchmark.handlers", 8);
+  private static final Long DURATION = Long.getLong("benchmark.duration", 10000L);
+  // pause of a client after a refused login, and between two cheap requests
+  private static final Long RETRY_PAUSE = 50L;
+  private static final Long PROBE_INTERVAL = 5L;
+
+  // run a request on a handler thread and wait for its result
+  private static <T> T serve(HandlerPool handlers, Supplier<T> request) {
+    var result = new CompletableFuture<T>();
+    while (!handlers.trySubmit(() -> result.complete(request.get()))) {
+      Thread.onSpinWait();
+    }
+    return result.join();
+  }
+
+  private static void sleep(Long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void storm(Winsome winsome, String label) throws Exception {
+    var handlers = HandlerPool.of(HANDLERS, 1024, null);
+    var done = new AtomicBoolean(false);
+    var logins = new LongAdder();
+    var refused = new LongAdder();
+
+    var clients = new ArrayList<Thread>();
+    for (var c = 0; c < CLIENTS; c++) {
+      var username = "user" + (c % USERS);
+      var client = new Thread(() -> {
+        while (!done.get()) {
+          var res = serve(handlers, () -> winsome.login(username, "pwd", true));
+          if (res.isRight()) {
+            logins.increment();
+          } else {
+            refused.increment();
+            sleep(RETRY_PAUSE);
+          }
+        }
+      });
+      client.start();
+      clients.add(client);
+    }
+
+    var latencies = new ArrayList<Long>();
+    var start = System.nanoTime();
+    while (System.nanoTime() - start < DURATION * 1000000) {
+      var sent = System.nanoTime();
+      serve(handlers, () -> winsome.listUsers("user0"));
+      latencies.add(System.nanoTime() - sent);
+      sleep(PROBE_INTERVAL);
+    }
+    var elapsed = System.nanoTime() - start;
+
+    done.set(true);
+    for (var client : clients) {
+      client.join();
+    }
+    handlers.shutdown();
+
+    Collections.sort(latencies);
+    System.out.printf(
+        "%-22s %7.1f logins/s, %7.1f refused/s, cheap request p50 %8.3f ms, p99 %8.3f ms, max %8.3f ms (%d sent)%n",
+        label, logins.sum() / (elapsed / 1e9), refused.sum() / (elapsed / 1e9),
+        latencies.get(latencies.size() / 2) / 1e6, latencies.get(latencies.size() * 99 / 100) / 1e6,
+        latencies.get(latencies.size() - 1) / 1e6, latencies.size());
+  }
+
+  @Test
+  public void loginStorm() throws Exception {
+    var previous = Hasher.getIterations();
+    try {
+      Hasher.setIterations(ITERATIONS);
+      var winsome = Winsome.of();
+      winsome.setJWTSecret("secret");
+      for (var i = 0; i < USERS; i++) {
+        winsome.register("user" + i, "pwd", List.of("music"));
+      }
+
+      // the cost of a hash, for reference
+      var start = System.nanoTime();
+      var verified = true;
+      for (var i = 0; i < 10; i++) {
+        verified &= Hasher.verify("pwd", Hasher.hashPassword("pwd"));
+      }
+      System.out.printf("%d iterations: %8.3f ms per hash (%s)%n", ITERATIONS,
+          (System.nanoTime() - start) / 1e6 / 20, verified);
+
+      winsome.setHashingPool(null);
+      storm(winsome, "on the handlers");
+
+      var pool = HashingPool.of();
+      winsome.setHashingPool(pool);
+      storm(winsome, "on the hashing pool");
+      pool.shutdown();
+
+      // more threads, but still some handlers free for the other requests
+      var wide = HashingPool.of(HANDLERS / 4, HANDLERS / 4);
+      winsome.setHashingPool(wide);
+      storm(winsome, "on a pool of " + HANDLERS / 4 + "+" + HANDLERS / 4);
+      wide.shutdown();
+    } finally {
+      Hasher.setIterations(previous);
+    }
+  }
+}
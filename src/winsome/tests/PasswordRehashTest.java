@@ -0,0 +1,95 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import utils.Hasher;
+import utils.HashingPool;
+import winsome.Winsome;
+import winsome.WriteAheadLog;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class PasswordRehashTest {
+
+  @TempDir
+  Path dir;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private String passwordOf(Winsome winsome, String username) throws Exception {
+    return objectMapper.readTree(winsome.toJSON()).get("network").get(username).get("password").asText();
+  }
+
+  // a state saved when the passwords were hashed with SHA-512
+  private Winsome legacyState() throws Exception {
+    var winsome = Winsome.of();
+    winsome.register("mario", "pwd", List.of("music"));
+    winsome.register("luigi", "pwd", List.of("music"));
+
+    var tree = objectMapper.readTree(winsome.toJSON());
+    ((ObjectNode) tree.get("network").get("mario")).put("password", Hasher.hash("pwd"));
+    ((ObjectNode) tree.get("network").get("luigi")).put("password", Hasher.hash("pwd"));
+
+    var restored = objectMapper.treeToValue(tree, Winsome.class);
+    restored.rebuildIndexes();
+    restored.setJWTSecret("secret");
+    return restored;
+  }
+
+  @Test
+  void legacyHashesAreRehashedAtLogin() throws Exception {
+    var path = dir.resolve("server.json").toString();
+    var wal = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_ALWAYS, null).get();
+
+    var winsome = legacyState();
+    var snapshot = winsome.toJSON();
+    winsome.setWriteAheadLog(wal);
+    winsome.setHashingPool(HashingPool.of(1, 1));
+
+    // a wrong password changes nothing
+    assertTrue(winsome.login("mario", "wrong", false).isLeft());
+    assertEquals(Hasher.hash("pwd"), passwordOf(winsome, "mario"));
+
+    assertTrue(winsome.login("mario", "pwd", false).isRight());
+    var rehashed = passwordOf(winsome, "mario");
+    assertTrue(rehashed.startsWith("v1$1000$"));
+    assertTrue(Hasher.verify("pwd", rehashed));
+    assertEquals(Hasher.hash("pwd"), passwordOf(winsome, "luigi"));
+
+    // the new hash is used from now on
+    assertTrue(winsome.login("mario", "pwd", true).isRight());
+    assertEquals(rehashed, passwordOf(winsome, "mario"));
+    wal.close();
+
+    // and it is not lost if the server stops before the next snapshot
+    var restored = objectMapper.readValue(snapshot, Winsome.class);
+    restored.replay(WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get());
+    assertEquals(rehashed, passwordOf(restored, "mario"));
+  }
+
+  @Test
+  void weakerHashesAreRehashedAtLogin() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    winsome.register("mario", "pwd", List.of("music"));
+
+    var previous = Hasher.getIterations();
+    try {
+      Hasher.setIterations(2000);
+      assertTrue(winsome.login("mario", "pwd", false).isRight());
+      assertTrue(passwordOf(winsome, "mario").startsWith("v1$2000$"));
+    } finally {
+      Hasher.setIterations(previous);
+    }
+  }
+}
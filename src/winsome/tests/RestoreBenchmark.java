@@ -0,0 +1,57 @@
+package winsome.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.RestoreBenchmark
+// compares the cold start of the server from the json snapshot and from
+// the binary one, written from the same synthetic network (see SnapshotBenchmark)
+// (-Dbenchmark.parallelism=N to decode the binary sections with N threads)
+@ExtendWith(CheapPasswordHashes.class)
+public class RestoreBenchmark {
+
+  private static final Integer USERS = Integer.getInteger("benchmark.users", 100000);
+  private static final Integer PARALLELISM = Integer.getInteger("benchmark.parallelism",
+      Runtime.getRuntime().availableProcessors());
+
+  private static long measure(Callable<Winsome> restore) throws Exception {
+    System.gc();
+    var start = System.nanoTime();
+    restore.call().rebuildIndexes();
+    return System.nanoTime() - start;
+  }
+
+  @Test
+  public void compareColdStarts() throws Exception {
+    var dir = Files.createTempDirectory("restore");
+    var json = dir.resolve("server.json");
+    var binary = dir.resolve("server.bin");
+
+    var winsome = SnapshotBenchmark.network(USERS);
+    winsome.writeSnapshot(json.toString()).get();
+    winsome.writeBinarySnapshot(binary.toString()).get();
+    winsome = null;
+
+    System.out.println(USERS + " users, restore with " + PARALLELISM + " threads");
+
+    // the first restore of each format, as it happens when the server starts
+    var objectMapper = new ObjectMapper();
+    var jsonElapsed = measure(() -> objectMapper.readValue(new File(json.toString()), Winsome.class));
+    var binaryElapsed = measure(() -> Winsome.fromBinarySnapshot(binary.toString(), PARALLELISM).get());
+
+    System.out.println(String.format("json  : %8.1f MB, %9.1f ms", Files.size(json) / 1e6, jsonElapsed / 1e6));
+    System.out.println(String.format("binary: %8.1f MB, %9.1f ms", Files.size(binary) / 1e6, binaryElapsed / 1e6));
+
+    Files.delete(json);
+    Files.delete(binary);
+    Files.delete(dir);
+  }
+}
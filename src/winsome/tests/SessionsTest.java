@@ -0,0 +1,95 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import domain.user.User;
+import winsome.SessionTable;
+import winsome.Winsome;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class SessionsTest {
+
+  private static String tokenOf(String loginResult) throws Exception {
+    return new ObjectMapper().readTree(loginResult).get("jwt").asText();
+  }
+
+  @Test
+  void slidingExpiry() throws InterruptedException {
+    var table = SessionTable.of(1500L);
+    var user = User.of("mario", "pwd", List.of("music"));
+
+    var ids = new HashSet<String>();
+    for (var i = 0; i < 1000; i++) {
+      var id = table.newId();
+      assertTrue(id.matches("[0-9a-f]{32}"));
+      ids.add(id);
+    }
+    assertEquals(1000, ids.size());
+
+    var used = table.newId();
+    var idle = table.newId();
+    table.put(used, user);
+    table.put(idle, user);
+
+    // the used session slides, the idle one expires
+    for (var i = 0; i < 4; i++) {
+      Thread.sleep(600);
+      assertTrue(table.get(used) == user);
+    }
+    assertNull(table.get(idle));
+    var swept = table.sweep();
+    assertEquals(1, swept.size());
+    assertEquals(idle, swept.get(0).fst());
+    assertEquals("mario", swept.get(0).snd());
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  void opaqueSessions() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    winsome.register("mario", "pwd", List.of("music"));
+    winsome.register("luigi", "pwd", List.of("music"));
+
+    // logged with a jwt before the sessions are enabled
+    var jwt = tokenOf(winsome.login("luigi", "pwd", false).get());
+    winsome.enableSessions(500L);
+    assertEquals("luigi", winsome.authenticate(jwt).get().username);
+
+    var id = tokenOf(winsome.login("mario", "pwd", false).get());
+    assertTrue(id.matches("[0-9a-f]{32}"));
+    assertEquals("mario", winsome.authenticate(id).get().username);
+    assertTrue(winsome.authenticate("0123456789abcdef0123456789abcdef").isLeft());
+
+    // a forced login ends the previous session
+    var newId = tokenOf(winsome.login("mario", "pwd", true).get());
+    assertTrue(winsome.authenticate(id).isLeft());
+    assertEquals("mario", winsome.authenticate(newId).get().username);
+
+    winsome.logout("mario");
+    assertTrue(winsome.authenticate(newId).isLeft());
+
+    // the sweeper logs out the users of the expired sessions
+    var lastId = tokenOf(winsome.login("mario", "pwd", false).get());
+    var sweeper = new Thread(winsome.makeSessionSweeperRunnable(100L).get());
+    sweeper.start();
+    Thread.sleep(1000);
+    sweeper.interrupt();
+    sweeper.join();
+
+    assertTrue(winsome.authenticate(lastId).isLeft());
+    assertTrue(winsome.getUserJWT("mario").isLeft());
+    assertTrue(winsome.getUserJWT("luigi").isLeft());
+    assertTrue(winsome.login("mario", "pwd", false).isRight());
+  }
+}
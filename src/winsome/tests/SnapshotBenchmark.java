@@ -0,0 +1,107 @@
+package winsome.tests;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.SnapshotBenchmark
+// compares the snapshot built as a single string by toJSON with the one
+// streamed into the file by writeSnapshot, on synthetic networks of growing size
+// (the string concatenation is quadratic: it is skipped on the networks
+// larger than -Dbenchmark.legacyMax users)
+@ExtendWith(CheapPasswordHashes.class)
+public class SnapshotBenchmark {
+
+  private static final String SIZES = System.getProperty("benchmark.sizes", "1000,10000,100000");
+  private static final Integer LEGACY_MAX = Integer.getInteger("benchmark.legacyMax", 10000);
+  private static final Integer POSTS = Integer.getInteger("benchmark.posts", 2);
+  private static final Integer FOLLOWING = Integer.getInteger("benchmark.following", 5);
+
+  static Winsome network(Integer users) {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    var random = new Random(42);
+
+    for (var i = 0; i < users; i++) {
+      winsome.register("user" + i, "pwd", List.of("music", "sport"));
+      winsome.login("user" + i, "pwd", false);
+    }
+
+    for (var i = 0; i < users; i++) {
+      var username = "user" + i;
+      for (var j = 0; j < FOLLOWING; j++) {
+        var followed = "user" + random.nextInt(users);
+        if (!followed.equals(username)) {
+          winsome.followUser(username, followed);
+        }
+      }
+      for (var j = 0; j < POSTS; j++) {
+        var post = winsome.createPost(username, "title " + j, "some content of the post " + j).get();
+        var other = "user" + random.nextInt(users);
+        if (!other.equals(username)) {
+          winsome.followUser(other, username);
+          winsome.ratePost(other, username, post.uuid, random.nextBoolean());
+          winsome.addComment(other, username, post.uuid, "a comment");
+        }
+      }
+    }
+
+    return winsome;
+  }
+
+  // elapsed ms and MB allocated by the current thread
+  private static String measure(Callable<Long> snapshot) throws Exception {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    var id = Thread.currentThread().getId();
+
+    var allocated = threads.getThreadAllocatedBytes(id);
+    var start = System.nanoTime();
+    var bytes = snapshot.call();
+    var elapsed = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(id) - allocated;
+
+    return String.format("%9.1f ms, %9.1f MB allocated, %8.1f MB written", elapsed / 1e6, allocated / 1e6,
+        bytes / 1e6);
+  }
+
+  @Test
+  public void compareSnapshots() throws Exception {
+    var dir = Files.createTempDirectory("snapshot");
+    var legacy = dir.resolve("legacy.json");
+    var streamed = dir.resolve("streamed.json");
+
+    for (var users : Arrays.stream(SIZES.split(",")).map(Integer::parseInt).collect(Collectors.toList())) {
+      var winsome = network(users);
+      System.out.println(users + " users, " + users * POSTS + " posts");
+
+      // warm up
+      winsome.writeSnapshot(streamed.toString()).get();
+
+      if (users <= LEGACY_MAX) {
+        System.out.println("  toJSON + Files.write: " + measure(() -> {
+          Files.write(Paths.get(legacy.toString()), winsome.toJSON().getBytes());
+          return Files.size(legacy);
+        }));
+      } else {
+        System.out.println("  toJSON + Files.write: skipped");
+      }
+
+      System.out.println("  writeSnapshot:        " + measure(() -> winsome.writeSnapshot(streamed.toString()).get()));
+    }
+
+    for (var file : List.of(legacy, streamed)) {
+      Files.deleteIfExists(file);
+    }
+    Files.delete(dir);
+  }
+}
@@ -0,0 +1,244 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import utils.Pair;
+import winsome.Winsome;
+
+// snapshots taken while many threads mutate the state must describe a
+// state that really existed: the relations between users, posts, rewins
+// and wallets have to be intact
+@ExtendWith(CheapPasswordHashes.class)
+public class SnapshotConsistencyTest {
+
+  private static final Integer WRITERS = 4;
+  private static final Integer MUTATIONS = 1500;
+
+  // the authors only write posts, that are never deleted
+  private static final List<String> AUTHORS = List.of("a0", "a1", "a2", "a3");
+  // the readers rate, comment and rewin
+  private static final List<String> READERS = List.of("r0", "r1", "r2", "r3", "r4", "r5");
+  // the deleters write posts that are rewinned and then deleted
+  private static final List<String> DELETERS = List.of("d0", "d1", "d2");
+
+  @TempDir
+  Path dir;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final List<Pair<String, String>> authorPosts = new CopyOnWriteArrayList<>();
+  private final ConcurrentLinkedQueue<Pair<String, String>> deleterPosts = new ConcurrentLinkedQueue<>();
+  // rewin uuid -> rewinned post
+  private final Map<String, Pair<String, String>> rewinOf = new ConcurrentHashMap<>();
+
+  private void randomMutation(Winsome winsome, Random random, Integer writer, Integer n) {
+    var reader = READERS.get(random.nextInt(READERS.size()));
+    var deleter = DELETERS.get(random.nextInt(DELETERS.size()));
+
+    switch (random.nextInt(9)) {
+      case 0: {
+        var author = AUTHORS.get(random.nextInt(AUTHORS.size()));
+        winsome.createPost(author, "title", "content").forEach(p -> authorPosts.add(Pair.of(author, p.uuid)));
+        break;
+      }
+      case 1:
+      case 2: {
+        if (!authorPosts.isEmpty()) {
+          var post = authorPosts.get(random.nextInt(authorPosts.size()));
+          winsome.ratePost(reader, post.fst(), post.snd(), random.nextBoolean());
+          winsome.addComment(reader, post.fst(), post.snd(), "comment");
+        }
+        break;
+      }
+      case 3: {
+        winsome.createPost(deleter, "title", "content").forEach(p -> deleterPosts.add(Pair.of(deleter, p.uuid)));
+        break;
+      }
+      case 4: {
+        var post = deleterPosts.peek();
+        if (post != null) {
+          winsome.rewinPost(reader, post.fst(), post.snd()).forEach(rewin -> rewinOf.put(rewin.uuid, post));
+        }
+        break;
+      }
+      case 5: {
+        var post = deleterPosts.poll();
+        if (post != null) {
+          winsome.deletePost(post.fst(), post.snd());
+        }
+        break;
+      }
+      case 6: {
+        winsome.unfollowUser(reader, deleter);
+        winsome.followUser(reader, deleter);
+        break;
+      }
+      case 7: {
+        winsome.logout(reader);
+        winsome.login(reader, "pwd", false);
+        break;
+      }
+      default: {
+        var username = "new" + writer + "_" + n;
+        winsome.register(username, "pwd", List.of("tag"));
+        winsome.login(username, "pwd", false);
+        winsome.followUser(username, reader);
+      }
+    }
+  }
+
+  private Set<String> names(JsonNode array) {
+    var toRet = new HashSet<String>();
+    array.forEach(n -> toRet.add(n.asText()));
+    return toRet;
+  }
+
+  private void checkIntegrity(JsonNode state) {
+    var network = state.get("network");
+    var postAuthors = state.get("postAuthors");
+    var wallet = state.get("wallet").get("wallet");
+
+    var posts = 0;
+    var usernames = new HashSet<String>();
+    for (var username : (Iterable<String>) network::fieldNames) {
+      usernames.add(username);
+      var user = network.get(username);
+
+      // the follow relation is symmetric
+      for (var following : names(user.get("following"))) {
+        assertNotNull(network.get(following));
+        assertTrue(names(network.get(following).get("followers")).contains(username));
+      }
+      for (var follower : names(user.get("followers"))) {
+        assertNotNull(network.get(follower));
+        assertTrue(names(network.get(follower).get("following")).contains(username));
+      }
+
+      var iterations = 0;
+      for (var post : user.get("posts")) {
+        posts++;
+        var uuid = post.get("uuid").asText();
+        iterations += Integer.parseInt(post.get("walletScannerIteration").asText()) - 1;
+
+        // a deletion is never half done
+        assertFalse(post.get("justDeleted").asBoolean());
+        assertEquals(username, postAuthors.get(uuid).asText());
+
+        // the rewins of a post exist
+        for (var rewin : post.get("rewins")) {
+          var rewinAuthor = network.get(rewin.get("author").asText());
+          assertNotNull(rewinAuthor.get("posts").get(rewin.get("postUuid").asText()));
+        }
+
+        // and the rewinned post of a rewin exists
+        var original = rewinOf.get(uuid);
+        if (original != null) {
+          var originalPost = network.get(original.fst()).get("posts").get(original.snd());
+          assertNotNull(originalPost);
+          var found = false;
+          for (var rewin : originalPost.get("rewins")) {
+            found |= rewin.get("postUuid").asText().equals(uuid);
+          }
+          assertTrue(found);
+        }
+      }
+
+      // each evaluation of a post of an author is a transaction of the author
+      if (AUTHORS.contains(username)) {
+        assertEquals(iterations, wallet.get(username).size());
+      }
+    }
+
+    assertEquals(posts, postAuthors.size());
+    var walletUsernames = new HashSet<String>();
+    wallet.fieldNames().forEachRemaining(walletUsernames::add);
+    assertEquals(usernames, walletUsernames);
+    state.get("loggedUsers").fieldNames().forEachRemaining(username -> assertTrue(usernames.contains(username)));
+  }
+
+  @Test
+  void snapshotsUnderConcurrentWrites() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+
+    for (var username : List.of(AUTHORS, READERS, DELETERS).stream().flatMap(List::stream).toArray(String[]::new)) {
+      winsome.register(username, "pwd", List.of("tag"));
+      winsome.login(username, "pwd", false);
+    }
+    for (var reader : READERS) {
+      AUTHORS.forEach(author -> winsome.followUser(reader, author));
+      DELETERS.forEach(deleter -> winsome.followUser(reader, deleter));
+    }
+
+    var walletThread = new Thread(winsome.makeWalletRunnable(2L, 70).get());
+    walletThread.start();
+
+    var stop = new AtomicBoolean(false);
+    var writers = new ArrayList<Thread>();
+    for (var i = 0; i < WRITERS; i++) {
+      var writer = i;
+      writers.add(new Thread(() -> {
+        var random = new Random(writer);
+        for (var n = 0; n < MUTATIONS && !stop.get(); n++) {
+          randomMutation(winsome, random, writer, n);
+        }
+      }));
+    }
+    writers.forEach(Thread::start);
+
+    try {
+      // snapshots until the writers are done
+      var snapshots = 0;
+      for (var i = 0; writers.stream().anyMatch(Thread::isAlive); i++) {
+        Thread.sleep(5);
+
+        var state = (JsonNode) null;
+        if (i % 2 == 0) {
+          var path = dir.resolve("server.json").toString();
+          winsome.writeSnapshot(path).get();
+          state = objectMapper.readTree(new File(path));
+        } else {
+          var path = dir.resolve("server.bin").toString();
+          winsome.writeBinarySnapshot(path).get();
+          state = objectMapper.readTree(Winsome.fromBinarySnapshot(path, 2).get().toJSON());
+        }
+
+        checkIntegrity(state);
+        snapshots++;
+      }
+
+      // the snapshots were taken while the writers were running
+      assertTrue(snapshots > 0);
+    } finally {
+      stop.set(true);
+      for (var writer : writers) {
+        writer.join();
+      }
+      walletThread.interrupt();
+      walletThread.join();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package winsome.tests;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import domain.reaction.Reaction;
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.ViralPostBenchmark
+// rates a single post with a growing number of users and measures the cost of
+// the last ratings and of counting the votes, compared with the old linked
+// list of reactions that had to be scanned for both
+@ExtendWith(CheapPasswordHashes.class)
+public class ViralPostBenchmark {
+
+  private static final Integer REACTIONS = Integer.getInteger("benchmark.reactions", 100000);
+  private static final Integer SAMPLES = Integer.getInteger("benchmark.samples", 1000);
+
+  @Test
+  public void ratePopularPost() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+
+    winsome.register("author", "pwd", List.of("music"));
+    winsome.login("author", "pwd", false);
+    var post = winsome.createPost("author", "viral", "content").get();
+
+    // the old storage, filled with the same reactions
+    var legacy = new LinkedList<Reaction>();
+
+    for (var checkpoint = SAMPLES; checkpoint <= REACTIONS; checkpoint *= 10) {
+      // users rating the post up to the checkpoint, the last SAMPLES are measured
+      var elapsed = 0L;
+      var legacyElapsed = 0L;
+      for (var i = post.reactions.size(); i < checkpoint; i++) {
+        var username = "user" + i;
+        winsome.register(username, "pwd", List.of("music"));
+        winsome.login(username, "pwd", false);
+        winsome.followUser(username, "author");
+
+        var start = System.nanoTime();
+        var reaction = winsome.ratePost(username, "author", post.uuid, i % 3 != 0).get();
+        var stop = System.nanoTime();
+
+        // the old duplicate check
+        var legacyStart = System.nanoTime();
+        synchronized (legacy) {
+          if (legacy.stream().noneMatch(r -> r.author.equals(username))) {
+            legacy.add(reaction);
+          }
+        }
+        var legacyStop = System.nanoTime();
+
+        if (i >= checkpoint - SAMPLES) {
+          elapsed += stop - start;
+          legacyElapsed += legacyStop - legacyStart;
+        }
+      }
+
+      var start = System.nanoTime();
+      for (var i = 0; i < SAMPLES; i++) {
+        post.getUpvotes();
+        post.getDownvotes();
+      }
+      var counts = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (var i = 0; i < SAMPLES; i++) {
+        synchronized (legacy) {
+          legacy.stream().filter(r -> r.isUpvote).count();
+          legacy.stream().filter(r -> !r.isUpvote).count();
+        }
+      }
+      var legacyCounts = System.nanoTime() - start;
+
+      System.out.println(checkpoint + " reactions");
+      System.out.printf("  ratePost:      %10.2f us/op (old duplicate check alone: %10.2f us/op)%n",
+          elapsed / 1e3 / SAMPLES, legacyElapsed / 1e3 / SAMPLES);
+      System.out.printf("  count votes:   %10.2f us/op (old: %10.2f us/op)%n",
+          counts / 1e3 / SAMPLES, legacyCounts / 1e3 / SAMPLES);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package winsome.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import domain.wallet.Wallet;
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.WalletBenchmark
+// reads the wallet of a user with a growing number of transactions: the
+// total in wincoins and a page of the history, compared with summing
+// a copy of the whole history as it was done before
+public class WalletBenchmark {
+
+  private static final Integer TRANSACTIONS = Integer.getInteger("benchmark.transactions", 100000);
+  private static final Integer SAMPLES = Integer.getInteger("benchmark.samples", 200);
+  private static final Integer PAGE = 20;
+
+  @Test
+  public void readLongWallet() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    winsome.register("user", "pwd", List.of("music"));
+    winsome.login("user", "pwd", false);
+
+    var walletField = Winsome.class.getDeclaredField("wallet");
+    walletField.setAccessible(true);
+    var wallet = (Wallet) walletField.get(winsome);
+
+    var transactions = 0;
+    for (var checkpoint = 1000; checkpoint <= TRANSACTIONS; checkpoint *= 10) {
+      // the wallet thread adds the gains in batches
+      while (transactions < checkpoint) {
+        var batch = new ArrayList<Double>();
+        for (var i = 0; i < 100; i++) {
+          batch.add((transactions + i) % 7 * 0.1);
+        }
+        wallet.addTransactions("user", batch);
+        transactions += batch.size();
+      }
+
+      var start = System.nanoTime();
+      for (var i = 0; i < SAMPLES; i++) {
+        winsome.getUserWalletInWincoin("user").get();
+      }
+      var total = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (var i = 0; i < SAMPLES; i++) {
+        winsome.getUserWallet("user", String.valueOf(checkpoint / 2), PAGE).get();
+      }
+      var page = System.nanoTime() - start;
+
+      // the old total: a copy of the history, summed with boxed doubles
+      start = System.nanoTime();
+      for (var i = 0; i < SAMPLES; i++) {
+        winsome.getUserWallet("user").get()
+            .stream()
+            .map(t -> t.gain)
+            .collect(Collectors.toList())
+            .stream()
+            .reduce(0., (acc, val) -> acc + val);
+      }
+      var legacy = System.nanoTime() - start;
+
+      System.out.println(checkpoint + " transactions");
+      System.out.printf("  total:          %10.2f us/op (old sum of the history: %10.2f us/op)%n",
+          total / 1e3 / SAMPLES, legacy / 1e3 / SAMPLES);
+      System.out.printf("  page of %d:     %10.2f us/op%n", PAGE, page / 1e3 / SAMPLES);
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import domain.comment.Comment;
+import domain.post.Post;
+import domain.reaction.Reaction;
+import winsome.Winsome;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class WalletRewardTest {
+
+  private static final Integer AUTHOR_PERCENTAGE = 70;
+  private static final List<String> USERS = List.of("mario", "luigi", "peach", "toad", "yoshi");
+
+  private static void sleep(Long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+    }
+  }
+
+  // the reward formula, applied to the reactions and the comments of an iteration
+  private static void reward(Map<String, List<Double>> gains, String author, List<Reaction> reactions,
+      List<Comment> comments, Long iteration) {
+    var positive = reactions.stream().filter(r -> r.isUpvote).collect(Collectors.toList());
+    var byAuthor = comments.stream().collect(Collectors.groupingBy(c -> c.author));
+    if (positive.isEmpty() && byAuthor.isEmpty()) {
+      return;
+    }
+
+    var reactionsSum = reactions.stream().map(r -> r.isUpvote ? 1 : -1).reduce(0, (acc, val) -> acc + val);
+    var commentsSum = byAuthor.entrySet()
+        .stream()
+        .map(ce -> (double) ce.getValue().size())
+        .reduce(0., (acc, val) -> acc + (2. / (1 + Math.pow(Math.E, -(val.intValue() - 1)))));
+    var gain = (Math.log(Math.max(reactionsSum, 0) + 1) + Math.log(commentsSum + 1)) / iteration;
+
+    var others = Stream.concat(positive.stream().map(r -> r.author), byAuthor.keySet().stream())
+        .distinct()
+        .collect(Collectors.toList());
+
+    gains.computeIfAbsent(author, __ -> new ArrayList<>()).add((gain / 100) * AUTHOR_PERCENTAGE);
+    others.forEach(user -> gains.computeIfAbsent(user, __ -> new ArrayList<>())
+        .add(((gain / 100) * (100 - AUTHOR_PERCENTAGE)) / others.size()));
+  }
+
+  private static Map<String, List<Double>> ledger(Winsome winsome, List<String> users) {
+    var toRet = new HashMap<String, List<Double>>();
+    users.forEach(username -> {
+      var gains = winsome.getUserWallet(username).get()
+          .stream()
+          .map(t -> t.gain)
+          .sorted()
+          .collect(Collectors.toList());
+      if (!gains.isEmpty()) {
+        toRet.put(username, gains);
+      }
+    });
+    return toRet;
+  }
+
+  @Test
+  void onlyTheNewActivityIsRewarded() {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    USERS.forEach(username -> {
+      winsome.register(username, "pwd", List.of("music"));
+      winsome.login(username, "pwd", false);
+    });
+    USERS.forEach(username -> USERS.forEach(other -> winsome.followUser(username, other)));
+
+    var first = winsome.createPost("mario", "first", "content").get();
+    var second = winsome.createPost("luigi", "second", "content").get();
+    var deleted = winsome.createPost("peach", "deleted", "content").get();
+    var expected = new HashMap<String, List<Double>>();
+
+    // first iteration
+    var r1 = List.of(
+        winsome.ratePost("luigi", "mario", first.uuid, true).get(),
+        winsome.ratePost("peach", "mario", first.uuid, true).get(),
+        winsome.ratePost("toad", "mario", first.uuid, false).get());
+    var c1 = List.of(
+        winsome.addComment("toad", "mario", first.uuid, "nice").get(),
+        winsome.addComment("toad", "mario", first.uuid, "very nice").get(),
+        winsome.addComment("yoshi", "mario", first.uuid, "meh").get());
+    var r2 = List.of(winsome.ratePost("mario", "luigi", second.uuid, false).get());
+    winsome.ratePost("mario", "peach", deleted.uuid, true);
+    winsome.deletePost("peach", deleted.uuid);
+    reward(expected, "mario", r1, c1, 1L);
+    reward(expected, "luigi", r2, List.of(), 1L);
+
+    var walletThread = new Thread(winsome.makeWalletRunnable(300L, AUTHOR_PERCENTAGE).get());
+    sleep(5L);
+    walletThread.start();
+    sleep(100L);
+
+    // second iteration: only the posts that had some activity are evaluated
+    var r3 = List.of(winsome.ratePost("yoshi", "mario", first.uuid, true).get());
+    var c3 = List.of(winsome.addComment("peach", "luigi", second.uuid, "hi").get());
+    reward(expected, "mario", r3, List.of(), 2L);
+    reward(expected, "luigi", List.of(), c3, 1L);
+
+    sleep(400L);
+    walletThread.interrupt();
+
+    expected.values().forEach(gains -> gains.sort(Double::compare));
+    assertEquals(expected, ledger(winsome, USERS));
+  }
+
+  // run a single iteration of the wallet thread
+  private static void runIteration(Winsome winsome, Integer parallelism) throws InterruptedException {
+    var done = new CountDownLatch(1);
+    var walletThread = new Thread(winsome.makeWalletRunnable(60000L, AUTHOR_PERCENTAGE, parallelism,
+        done::countDown).get());
+    walletThread.start();
+    done.await();
+    walletThread.interrupt();
+    walletThread.join();
+  }
+
+  @Test
+  void parallelAndSequentialLedgersMatch() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    var random = new Random(42);
+    var users = new ArrayList<String>(USERS);
+    for (var i = 0; i < 45; i++) {
+      users.add("user" + i);
+    }
+
+    users.forEach(username -> {
+      winsome.register(username, "pwd", List.of("music"));
+      winsome.login(username, "pwd", false);
+    });
+    users.forEach(username -> users.forEach(other -> winsome.followUser(username, other)));
+
+    var posts = new ArrayList<Post>();
+    for (var i = 0; i < 200; i++) {
+      posts.add(winsome.createPost(users.get(random.nextInt(users.size())), "title", "content").get());
+    }
+    for (var i = 0; i < 3000; i++) {
+      var post = posts.get(random.nextInt(posts.size()));
+      var username = users.get(random.nextInt(users.size()));
+      if (random.nextBoolean()) {
+        winsome.ratePost(username, post.author, post.uuid, random.nextInt(3) > 0);
+      } else {
+        winsome.addComment(username, post.author, post.uuid, "comment");
+      }
+    }
+    sleep(5L);
+
+    // two copies of the same state
+    var objectMapper = new ObjectMapper();
+    var sequential = objectMapper.readValue(winsome.toJSON(), Winsome.class);
+    var parallel = objectMapper.readValue(winsome.toJSON(), Winsome.class);
+    sequential.rebuildIndexes();
+    parallel.rebuildIndexes();
+
+    runIteration(sequential, 1);
+    runIteration(parallel, 4);
+
+    var ledger = ledger(sequential, users);
+    assertEquals(ledger, ledger(parallel, users));
+    assertEquals(users.size(), ledger.size());
+  }
+
+  @Test
+  void outOfOrderActivityIsRewardedLikeTheFullScan() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    USERS.forEach(username -> {
+      winsome.register(username, "pwd", List.of("music"));
+      winsome.login(username, "pwd", false);
+    });
+    USERS.forEach(username -> USERS.forEach(other -> winsome.followUser(username, other)));
+
+    var post = winsome.createPost("mario", "post", "content").get();
+
+    // a reaction queued before an older one, as concurrent producers may do:
+    // the full scan sees only the older one in this iteration
+    var future = winsome.ratePost("luigi", "mario", post.uuid, true).get();
+    future.timestamp = System.currentTimeMillis() + 3600000L;
+    var older = List.of(winsome.ratePost("peach", "mario", post.uuid, true).get());
+    var comments = List.of(winsome.addComment("toad", "mario", post.uuid, "nice").get());
+    sleep(5L);
+
+    var expected = new HashMap<String, List<Double>>();
+    reward(expected, "mario", older, comments, 1L);
+    runIteration(winsome, 1);
+
+    expected.values().forEach(gains -> gains.sort(Double::compare));
+    assertEquals(expected, ledger(winsome, USERS));
+  }
+}
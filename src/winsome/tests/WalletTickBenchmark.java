@@ -0,0 +1,112 @@
+package winsome.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import domain.post.Post;
+import domain.reaction.Reaction;
+import domain.user.User;
+import winsome.Winsome;
+
+// run with: --select-class winsome.tests.WalletTickBenchmark
+// compares an iteration of the wallet thread that scans the whole history
+// with the one that evaluates only the posts that had some activity
+// (-Dbenchmark.parallelism=N to compute the gains with N threads)
+@ExtendWith(CheapPasswordHashes.class)
+public class WalletTickBenchmark {
+
+  private static final Integer USERS = Integer.getInteger("benchmark.users", 20000);
+  private static final Integer POSTS = Integer.getInteger("benchmark.posts", 10);
+  private static final Integer REACTIONS = Integer.getInteger("benchmark.reactions", 10);
+  private static final Integer ACTIVE = Integer.getInteger("benchmark.active", 1000);
+  private static final Integer PARALLELISM = Integer.getInteger("benchmark.parallelism", 1);
+
+  // the old iteration: every reaction and comment of every post is copied and
+  // filtered by timestamp (only the selection, the gains are not computed)
+  private static Integer scan(ConcurrentMap<String, User> network, Long prevTimestamp, Long nowTimestamp) {
+    return network.values()
+        .stream()
+        .flatMap(user -> user.posts.values().stream())
+        .map(post -> post.getReactions()
+            .stream()
+            .filter(r -> r.timestamp >= prevTimestamp && r.timestamp < nowTimestamp)
+            .collect(Collectors.toList())
+            .size()
+            + post.getComments()
+                .stream()
+                .filter(c -> c.timestamp >= prevTimestamp && c.timestamp < nowTimestamp)
+                .collect(Collectors.groupingBy(c -> c.author))
+                .size())
+        .reduce(0, Integer::sum);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void compareTicks() throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+    var random = new Random(42);
+
+    for (var i = 0; i < USERS; i++) {
+      winsome.register("user" + i, "pwd", List.of("music"));
+      winsome.login("user" + i, "pwd", false);
+    }
+
+    // old posts with old reactions, already rewarded
+    var posts = new ArrayList<Post>();
+    for (var i = 0; i < USERS; i++) {
+      for (var j = 0; j < POSTS; j++) {
+        var post = winsome.createPost("user" + i, "title", "content").get();
+        for (var k = 0; k < REACTIONS; k++) {
+          var reaction = Reaction.of(true, post.uuid, "user" + random.nextInt(USERS));
+          reaction.timestamp = 0L;
+          post.reactions.add(reaction);
+        }
+        posts.add(post);
+      }
+    }
+
+    // recent activity on ACTIVE posts
+    for (var i = 0; i < ACTIVE; i++) {
+      var post = posts.get(random.nextInt(posts.size()));
+      var user = "user" + random.nextInt(USERS);
+      if (!user.equals(post.author)) {
+        winsome.followUser(user, post.author);
+        winsome.ratePost(user, post.author, post.uuid, true);
+      }
+    }
+    Thread.sleep(5);
+
+    var networkField = Winsome.class.getDeclaredField("network");
+    networkField.setAccessible(true);
+    var network = (ConcurrentMap<String, User>) networkField.get(winsome);
+
+    // warmup and measure of the full scan
+    scan(network, 1L, System.currentTimeMillis());
+    var start = System.nanoTime();
+    var scanned = scan(network, 1L, System.currentTimeMillis());
+    var scanTime = System.nanoTime() - start;
+
+    // a single iteration of the wallet thread
+    var done = new CountDownLatch(1);
+    var walletThread = new Thread(winsome.makeWalletRunnable(60000L, 70, PARALLELISM, done::countDown).get());
+    start = System.nanoTime();
+    walletThread.start();
+    done.await();
+    var tickTime = System.nanoTime() - start;
+    walletThread.interrupt();
+
+    System.out.println(USERS * POSTS + " posts, " + USERS * POSTS * REACTIONS + " old reactions, "
+        + ACTIVE + " new reactions");
+    System.out.println(String.format("full scan (selection only): %9.3f ms (%d new found)", scanTime / 1e6, scanned));
+    System.out.println(String.format("incremental iteration     : %9.3f ms (%d threads)", tickTime / 1e6,
+        PARALLELISM));
+  }
+}
@@ -9,10 +9,13 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 
 import io.vavr.control.Either;
 import winsome.Winsome;
+import winsome.exchange.StubRateProvider;
 
+@ExtendWith(CheapPasswordHashes.class)
 public class WinsomeTest {
 
   private <E> Either<E, Void> sleep(Long ms) {
@@ -42,6 +45,8 @@ public class WinsomeTest {
     var winsome = new Winsome();
 
     winsome.setJWTSecret("askjldfhaslkjdfhlkajsh");
+    // don't depend on random.org
+    winsome.setExchangeRateProvider(StubRateProvider.of(0.5));
 
     var walletThread = new Thread(winsome.makeWalletRunnable(20000L, 70).get());
     var persistenceThread = new Thread(winsome.makePersistenceRunnable(500L,
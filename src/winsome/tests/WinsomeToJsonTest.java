@@ -1,8 +1,11 @@
 package winsome.tests;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -13,6 +16,8 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 
 import domain.comment.Comment;
 import domain.post.Post;
@@ -22,7 +27,9 @@ import domain.wallet.Wallet;
 import winsome.Winsome;
 
 @SuppressWarnings("unchecked")
+@ExtendWith(CheapPasswordHashes.class)
 public class WinsomeToJsonTest {
+
   @Test
   public void fromtoJSONSingleThread()
       throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException,
@@ -104,4 +111,35 @@ public class WinsomeToJsonTest {
             e.getValue().following instanceof Set<?> &&
             e.getValue().posts instanceof ConcurrentMap<?, ?>));
   }
+
+  @Test
+  public void streamedSnapshotMatchesToJSON(@TempDir Path dir) throws Exception {
+    var winsome = Winsome.of();
+    winsome.setJWTSecret("secret");
+
+    List.of("user1", "user2", "user3").forEach(username -> {
+      winsome.register(username, "pwd", List.of("tag1", "tag2"));
+      winsome.login(username, "pwd", false);
+    });
+    winsome.followUser("user2", "user1");
+    winsome.followUser("user3", "user1");
+
+    var post = winsome.createPost("user1", "Title", "a \"quoted\"\ncontent").get();
+    winsome.ratePost("user2", "user1", post.uuid, true);
+    winsome.ratePost("user3", "user1", post.uuid, false);
+    winsome.addComment("user2", "user1", post.uuid, "a comment");
+    winsome.rewinPost("user3", "user1", post.uuid);
+    winsome.logout("user3");
+
+    var path = dir.resolve("server.json").toString();
+    assertTrue(winsome.writeSnapshot(path).isRight());
+
+    var objectMapper = new ObjectMapper();
+    var streamed = Files.readAllBytes(Path.of(path));
+    assertEquals(objectMapper.readTree(winsome.toJSON()), objectMapper.readTree(streamed));
+
+    // and it can be restored
+    var restored = objectMapper.readValue(streamed, Winsome.class);
+    assertEquals(objectMapper.readTree(winsome.toJSON()), objectMapper.readTree(restored.toJSON()));
+  }
 }
@@ -0,0 +1,64 @@
+package winsome.tests;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import winsome.WriteAheadLog;
+
+// run with: --select-class winsome.tests.WriteAheadLogBenchmark
+// appends from many threads with the three durability modes: in "always"
+// mode the threads waiting for the disk share the same fsync (group commit)
+public class WriteAheadLogBenchmark {
+
+  private static final Integer THREADS = Integer.getInteger("benchmark.threads", 16);
+  private static final Integer APPENDS = Integer.getInteger("benchmark.appends", 500);
+  private static final Integer RECORD_SIZE = Integer.getInteger("benchmark.recordSize", 200);
+
+  private long run(String durability) throws Exception {
+    var dir = Files.createTempDirectory("wal");
+    var wal = WriteAheadLog.of(dir.resolve("server.json").toString(), durability, 10L).get();
+    var record = new byte[RECORD_SIZE];
+
+    var threads = new ArrayList<Thread>();
+    for (var i = 0; i < THREADS; i++) {
+      threads.add(new Thread(() -> {
+        for (var j = 0; j < APPENDS; j++) {
+          wal.append(record).get();
+        }
+      }));
+    }
+
+    var start = System.nanoTime();
+    threads.forEach(Thread::start);
+    for (var thread : threads) {
+      thread.join();
+    }
+    var elapsed = System.nanoTime() - start;
+
+    wal.close();
+    try (var files = Files.list(dir)) {
+      for (var file : files.toArray(Path[]::new)) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(dir);
+
+    return elapsed;
+  }
+
+  @Test
+  public void compareDurability() throws Exception {
+    var records = THREADS * APPENDS;
+    System.out.println(THREADS + " threads, " + records + " records of " + RECORD_SIZE + " bytes");
+
+    for (var durability : List.of(WriteAheadLog.DURABILITY_ALWAYS, WriteAheadLog.DURABILITY_INTERVAL,
+        WriteAheadLog.DURABILITY_NONE)) {
+      var elapsed = run(durability);
+      System.out.println(String.format("%-8s: %9.0f records/s", durability, records / (elapsed / 1e9)));
+    }
+  }
+}
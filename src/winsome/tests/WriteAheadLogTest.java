@@ -0,0 +1,235 @@
+package winsome.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import winsome.Winsome;
+import winsome.WriteAheadLog;
+
+@ExtendWith(CheapPasswordHashes.class)
+public class WriteAheadLogTest {
+
+  @TempDir
+  Path dir;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  // the state of a Winsome instance, but the last run of the wallet thread
+  private JsonNode state(Winsome winsome) throws Exception {
+    var tree = objectMapper.readTree(winsome.toJSON());
+    ((ObjectNode) tree.get("wallet")).remove("prevTimestamp");
+    return tree;
+  }
+
+  private void firstHalf(Winsome winsome) {
+    winsome.setJWTSecret("secret");
+    List.of("mario", "luigi", "peach").forEach(username -> {
+      winsome.register(username, "pwd", List.of("music", "Sport"));
+      winsome.login(username, "pwd", false);
+    });
+    winsome.followUser("mario", "luigi");
+    winsome.followUser("peach", "luigi");
+    winsome.followUser("luigi", "mario");
+
+    var post = winsome.createPost("luigi", "hello", "world").get();
+    winsome.ratePost("mario", "luigi", post.uuid, true);
+    winsome.addComment("mario", "luigi", post.uuid, "hi luigi");
+    winsome.rewinPost("mario", "luigi", post.uuid);
+  }
+
+  private void secondHalf(Winsome winsome) throws Exception {
+    var post = winsome.createPost("mario", "second", "post").get();
+    winsome.ratePost("luigi", "mario", post.uuid, false);
+    winsome.addComment("luigi", "mario", post.uuid, "meh");
+    winsome.addComment("luigi", "mario", post.uuid, "meh");
+
+    var deleted = winsome.createPost("luigi", "deleted", "post").get();
+    winsome.rewinPost("peach", "luigi", deleted.uuid);
+    winsome.ratePost("mario", "luigi", deleted.uuid, true);
+    winsome.deletePost("luigi", deleted.uuid);
+
+    winsome.unfollowUser("peach", "luigi");
+    winsome.logout("peach");
+    winsome.login("luigi", "pwd", true);
+
+    // a run of the wallet thread
+    Thread.sleep(5);
+    var done = new CountDownLatch(1);
+    var walletThread = new Thread(winsome.makeWalletRunnable(60000L, 70, done::countDown).get());
+    walletThread.start();
+    done.await();
+    walletThread.interrupt();
+    walletThread.join();
+  }
+
+  @Test
+  void replayRebuildsTheState() throws Exception {
+    var path = dir.resolve("server.json").toString();
+    var wal = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_ALWAYS, null).get();
+
+    var winsome = Winsome.of();
+    winsome.setWriteAheadLog(wal);
+    firstHalf(winsome);
+    secondHalf(winsome);
+    wal.close();
+
+    // from an empty state
+    var restored = Winsome.of();
+    var reopened = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get();
+    assertTrue(restored.replay(reopened).get() > 0);
+    assertEquals(state(winsome), state(restored));
+
+    // the replay is idempotent
+    restored.replay(reopened);
+    assertEquals(state(winsome), state(restored));
+  }
+
+  @Test
+  void replayOnTopOfASnapshot() throws Exception {
+    var path = dir.resolve("server.json").toString();
+    var wal = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_INTERVAL, 10L).get();
+
+    var winsome = Winsome.of();
+    winsome.setWriteAheadLog(wal);
+    firstHalf(winsome);
+
+    // the snapshot covers the first segment, that can be deleted
+    var segment = wal.rotate().get();
+    var snapshot = winsome.toJSON();
+    assertEquals(1, wal.deleteSegmentsBefore(segment).get());
+
+    secondHalf(winsome);
+    wal.close();
+
+    var restored = objectMapper.readValue(snapshot, Winsome.class);
+    var reopened = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get();
+    restored.replay(reopened).get();
+    assertEquals(state(winsome), state(restored));
+  }
+
+  @Test
+  void tornTailIsIgnored() throws Exception {
+    var path = dir.resolve("server.json").toString();
+    var wal = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_ALWAYS, null).get();
+
+    var winsome = Winsome.of();
+    winsome.setWriteAheadLog(wal);
+    firstHalf(winsome);
+    wal.close();
+
+    // half of a record
+    Files.write(Path.of(path + ".wal.0"), new byte[] { 0, 0, 0, 42, 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND);
+
+    var restored = Winsome.of();
+    var reopened = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get();
+    restored.replay(reopened).get();
+    assertEquals(state(winsome), state(restored));
+
+    assertTrue(WriteAheadLog.of(path, "sometimes", null).isLeft());
+  }
+
+  @Test
+  void concurrentRegistrationsLogOnlyTheWinner() throws Exception {
+    var path = dir.resolve("server.json").toString();
+    var wal = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get();
+
+    var winsome = Winsome.of();
+    winsome.setWriteAheadLog(wal);
+
+    // the same usernames registered at the same time, with different tags
+    var start = new CountDownLatch(1);
+    var threads = new ArrayList<Thread>();
+    var registered = new AtomicInteger(0);
+    for (var t = 0; t < 8; t++) {
+      var tag = "tag" + t;
+      var thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (var i = 0; i < 50; i++) {
+          winsome.register("user" + i, "pwd", List.of(tag)).forEach(__ -> registered.incrementAndGet());
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (var thread : threads) {
+      thread.join();
+    }
+    wal.close();
+    assertEquals(50, registered.get());
+
+    // the replay keeps the user stored by the winner of each registration
+    var restored = Winsome.of();
+    var reopened = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get();
+    assertEquals(50L, restored.replay(reopened).get());
+    assertEquals(state(winsome), state(restored));
+  }
+
+  @Test
+  void racingOppositeMutationsAreLoggedInOrder() throws Exception {
+    var path = dir.resolve("server.json").toString();
+    var wal = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get();
+
+    var winsome = Winsome.of();
+    winsome.setWriteAheadLog(wal);
+    winsome.setJWTSecret("secret");
+    List.of("mario", "luigi").forEach(username -> winsome.register(username, "pwd", List.of("music")));
+    winsome.login("mario", "pwd", false);
+
+    // follows against unfollows of the same pair, logins against logouts of the same user
+    var start = new CountDownLatch(1);
+    var threads = new ArrayList<Thread>();
+    for (var t = 0; t < 4; t++) {
+      var even = t % 2 == 0;
+      var thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (var i = 0; i < 500; i++) {
+          if (even) {
+            winsome.followUser("mario", "luigi");
+            winsome.login("luigi", "pwd", true);
+          } else {
+            winsome.unfollowUser("mario", "luigi");
+            winsome.logout("luigi");
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (var thread : threads) {
+      thread.join();
+    }
+    wal.close();
+
+    var restored = Winsome.of();
+    var reopened = WriteAheadLog.of(path, WriteAheadLog.DURABILITY_NONE, null).get();
+    restored.replay(reopened).get();
+    assertEquals(state(winsome), state(restored));
+  }
+
+}